@@ -5,4 +5,6 @@ dependencyResolutionManagement {
     repositories {
         mavenCentral()
     }
-}
\ No newline at end of file
+}
+
+include("simplechess-coroutines")
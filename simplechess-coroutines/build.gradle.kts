@@ -0,0 +1,74 @@
+plugins {
+    kotlin("jvm")
+    `java-library`
+    `maven-publish`
+}
+
+group = "io.github.nachogoro"
+version = rootProject.version
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+    withSourcesJar()
+}
+
+kotlin {
+    jvmToolchain(11)
+    explicitApi()
+}
+
+dependencies {
+    // Core library
+    api(project(":"))
+
+    // Coroutines and flows
+    api("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.10.2")
+
+    // Test dependencies
+    testImplementation("org.jetbrains.kotlin:kotlin-test")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+tasks.jar {
+    archiveBaseName.set("simple-chess-games-coroutines")
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile> {
+    compilerOptions {
+        jvmTarget.set(org.jetbrains.kotlin.gradle.dsl.JvmTarget.JVM_11)
+    }
+
+    // Compile as a friend of the core library, to share its internal
+    // declarations (such as the PGN tokenizer) without publishing them
+    val core = project(":")
+    friendPaths.from(core.layout.buildDirectory.dir("classes/kotlin/main"))
+    friendPaths.from(core.tasks.named<Jar>("jar").flatMap { it.archiveFile })
+}
+
+publishing {
+    publications {
+        create<MavenPublication>("maven") {
+            from(components["java"])
+
+            artifactId = "simple-chess-games-coroutines"
+
+            pom {
+                name.set("Simple Chess Games Coroutines")
+                description.set("Kotlin coroutine and Flow API for the Simple Chess Games library")
+                url.set("https://github.com/nachogoro/simple-chess-kotlin")
+
+                licenses {
+                    license {
+                        name.set("MIT License")
+                        url.set("https://opensource.org/licenses/MIT")
+                    }
+                }
+            }
+        }
+    }
+}
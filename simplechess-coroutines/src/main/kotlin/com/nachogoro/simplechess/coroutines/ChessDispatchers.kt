@@ -0,0 +1,32 @@
+package com.nachogoro.simplechess.coroutines
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+
+/**
+ * Dispatchers for running blocking library calls from coroutines.
+ *
+ * Every operation on a [com.nachogoro.simplechess.Game] blocks its thread while
+ * the native library computes the result, so it must not run on dispatchers
+ * meant for non-blocking work.
+ */
+public object ChessDispatchers {
+
+    /**
+     * Default dispatcher for native calls, running at most one call per
+     * available processor at a time. It shares threads with [Dispatchers.IO].
+     */
+    public val Native: CoroutineDispatcher = bounded(Runtime.getRuntime().availableProcessors())
+
+    /**
+     * Creates a dispatcher running at most [parallelism] native calls at a time.
+     *
+     * @param parallelism Maximum number of concurrent native calls
+     * @return A dispatcher sharing threads with [Dispatchers.IO]
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public fun bounded(parallelism: Int): CoroutineDispatcher {
+        require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+        return Dispatchers.IO.limitedParallelism(parallelism)
+    }
+}
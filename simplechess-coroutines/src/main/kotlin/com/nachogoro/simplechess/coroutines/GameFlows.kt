@@ -0,0 +1,127 @@
+package com.nachogoro.simplechess.coroutines
+
+import com.nachogoro.simplechess.ChessResult
+import com.nachogoro.simplechess.Game
+import com.nachogoro.simplechess.Move
+import com.nachogoro.simplechess.ReplayJob
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+
+/**
+ * Plays a stream of moves from this game.
+ *
+ * Moves are applied as they arrive, on [dispatcher]. Collection is cancellable
+ * between any two moves.
+ *
+ * @param moves The moves to play, in order
+ * @param dispatcher Dispatcher for the native calls
+ * @return A flow emitting the game after each move. It fails with an exception
+ *         if a move cannot be made (see [Game.makeMove])
+ */
+public fun Game.play(moves: Flow<Move>, dispatcher: CoroutineDispatcher = ChessDispatchers.Native): Flow<Game> =
+    flow {
+        var game = this@play
+        moves.collect { move ->
+            currentCoroutineContext().ensureActive()
+            game = game.makeMove(move).getOrThrow()
+            emit(game)
+        }
+    }.flowOn(dispatcher)
+
+/**
+ * Plays a stream of moves written in Standard Algebraic Notation from this game.
+ *
+ * Moves are applied as they arrive, on [dispatcher]. Collection is cancellable
+ * between any two moves.
+ *
+ * @param moves The moves to play, in order
+ * @param dispatcher Dispatcher for the native calls
+ * @return A flow emitting the game after each move. It fails with an exception
+ *         if a move cannot be resolved or made (see [Game.makeSanMove])
+ */
+public fun Game.playSan(moves: Flow<String>, dispatcher: CoroutineDispatcher = ChessDispatchers.Native): Flow<Game> =
+    flow {
+        var game = this@playSan
+        moves.collect { san ->
+            currentCoroutineContext().ensureActive()
+            game = game.makeSanMove(san).getOrThrow()
+            emit(game)
+        }
+    }.flowOn(dispatcher)
+
+/**
+ * Plays a sequence of moves from this game.
+ *
+ * If the calling coroutine is cancelled, no further moves are made.
+ *
+ * @param moves The moves to play, in order
+ * @param dispatcher Dispatcher for the native calls
+ * @return A ChessResult containing the game after the last move, or the Error
+ *         of the first move which cannot be made (see [Game.makeMove])
+ */
+public suspend fun Game.playAll(
+    moves: Iterable<Move>,
+    dispatcher: CoroutineDispatcher = ChessDispatchers.Native
+): ChessResult<Game> = withContext(dispatcher) {
+    var game = this@playAll
+    for (move in moves) {
+        ensureActive()
+        game = when (val result = game.makeMove(move)) {
+            is ChessResult.Success -> result.value
+            is ChessResult.Error -> return@withContext result
+        }
+    }
+    ChessResult.success(game)
+}
+
+/**
+ * Replays many games concurrently, each with [Game.fromUciMoves].
+ *
+ * Jobs are taken from [jobs] as workers become free, so at most [concurrency]
+ * of them are in flight at once however many there are, and no more than
+ * [dispatcher] allows run at the same time. If the calling coroutine is
+ * cancelled, no further jobs are taken.
+ *
+ * @param jobs The games to replay
+ * @param dispatcher Dispatcher for the native calls
+ * @param concurrency Maximum number of jobs in flight
+ * @return The outcome of each job, in input order
+ * @throws IllegalArgumentException if concurrency is not positive
+ */
+public suspend fun replayAll(
+    jobs: Iterable<ReplayJob>,
+    dispatcher: CoroutineDispatcher = ChessDispatchers.Native,
+    concurrency: Int = Runtime.getRuntime().availableProcessors()
+): List<ChessResult<Game>> {
+    require(concurrency > 0) { "concurrency must be positive: $concurrency" }
+    val pending = jobs.iterator()
+    val results = ArrayList<ChessResult<Game>?>()
+
+    // Takes the next job and reserves its slot in the results, or returns null once all are taken
+    fun next(): IndexedValue<ReplayJob>? = synchronized(results) {
+        if (!pending.hasNext()) return null
+        results.add(null)
+        IndexedValue(results.size - 1, pending.next())
+    }
+
+    coroutineScope {
+        repeat(concurrency) {
+            launch(dispatcher) {
+                while (true) {
+                    ensureActive()
+                    val (index, job) = next() ?: break
+                    val result = Game.fromUciMoves(job.startFen, job.moves)
+                    synchronized(results) { results[index] = result }
+                }
+            }
+        }
+    }
+    return results.map { checkNotNull(it) }
+}
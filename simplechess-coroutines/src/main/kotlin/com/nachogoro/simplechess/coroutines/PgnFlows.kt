@@ -0,0 +1,67 @@
+package com.nachogoro.simplechess.coroutines
+
+import com.nachogoro.simplechess.ChessResult
+import com.nachogoro.simplechess.Game
+import com.nachogoro.simplechess.PgnTokenizer
+import com.nachogoro.simplechess.PlayedMove
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.transformWhile
+
+/**
+ * Plays the first game of a PGN document, given line by line.
+ *
+ * The game starts from the position of the "FEN" tag, or from the standard
+ * starting position if there is none. Comments, variations, numeric annotation
+ * glyphs and move numbers are skipped, and the game ends at its result token
+ * (or at the end of the input). Lines are consumed lazily, so huge documents
+ * can be streamed; collection is cancellable between any two moves.
+ *
+ * @param dispatcher Dispatcher for the native calls
+ * @return A flow emitting each move as it is played. It fails with an exception
+ *         if the starting position is invalid or a move cannot be resolved or made
+ */
+public fun Flow<String>.pgnMoves(dispatcher: CoroutineDispatcher = ChessDispatchers.Native): Flow<PlayedMove> =
+    flow {
+        val tokenizer = PgnTokenizer()
+        var startFen: String? = null
+        var game: Game? = null
+        var ply = 0
+        this@pgnMoves.transformWhile { line ->
+            if (game == null && PgnTokenizer.isTagLine(line)) {
+                PgnTokenizer.parseTag(line)?.let { (name, value) -> if (name == "FEN") startFen = value }
+                return@transformWhile true
+            }
+            for (san in tokenizer.tokens(line)) {
+                currentCoroutineContext().ensureActive()
+                ply++
+                val current = game ?: startGame(startFen)
+                val next = when (val result = current.makeSanMove(san, offerDraw = san.endsWith(DRAW_OFFER))) {
+                    is ChessResult.Success -> result.value
+                    is ChessResult.Error ->
+                        throw IllegalArgumentException("Invalid move at ply $ply ($san): ${result.message}", result.cause)
+                }
+                game = next
+                emit(checkNotNull(next.lastMove))
+            }
+            !tokenizer.isFinished
+        }.collect { emit(it) }
+    }.flowOn(dispatcher)
+
+/**
+ * Plays the first game of a PGN document.
+ *
+ * @see pgnMoves
+ */
+public fun pgnMoves(pgn: String, dispatcher: CoroutineDispatcher = ChessDispatchers.Native): Flow<PlayedMove> =
+    pgn.lineSequence().asFlow().pgnMoves(dispatcher)
+
+private fun startGame(fen: String?): Game =
+    (if (fen == null) Game.newGame() else Game.fromFen(fen)).getOrThrow()
+
+private const val DRAW_OFFER = "(=)"
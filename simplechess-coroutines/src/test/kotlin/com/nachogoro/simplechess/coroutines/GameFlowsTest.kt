@@ -0,0 +1,158 @@
+package com.nachogoro.simplechess.coroutines
+
+import com.nachogoro.simplechess.ChessResult
+import com.nachogoro.simplechess.Game
+import com.nachogoro.simplechess.GameState
+import com.nachogoro.simplechess.ReplayJob
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.util.concurrent.atomic.AtomicInteger
+
+class GameFlowsTest {
+
+    private fun newGame(): Game = (Game.newGame() as ChessResult.Success).value
+
+    @Test
+    fun sanMovesAreStreamed() = runBlocking {
+        val games = newGame().playSan(listOf("e4", "e5", "Nf3").asFlow()).toList()
+
+        assertEquals(3, games.size)
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2", games.last().currentPosition.fen)
+    }
+
+    @Test
+    fun movesAreStreamed() = runBlocking {
+        val start = newGame()
+        val moves = start.playSan(listOf("d4", "d5").asFlow()).map { it.history.last().second.move }
+
+        val games = start.play(moves).toList()
+
+        assertEquals(2, games.size)
+        assertEquals(GameState.PLAYING, games.last().gameState)
+    }
+
+    @Test
+    fun illegalMoveFailsTheFlow() {
+        assertThrows(RuntimeException::class.java) {
+            runBlocking { newGame().playSan(listOf("e4", "e4").asFlow()).toList() }
+        }
+    }
+
+    @Test
+    fun cancellationStopsConsumingMoves() = runBlocking {
+        var requested = 0
+        val endless = flow {
+            while (true) {
+                requested++
+                emit(if (requested % 4 < 2) (if (requested % 2 == 1) "Nf3" else "Nf6") else (if (requested % 2 == 1) "Ng1" else "Ng8"))
+            }
+        }
+
+        val games = newGame().playSan(endless).take(5).toList()
+
+        assertEquals(5, games.size)
+        assertTrue(requested < 100)
+    }
+
+    @Test
+    fun pgnMovesAreStreamed() = runBlocking {
+        val pgn = """
+            [Event "Example"]
+            [White "A"]
+            [Black "B"]
+
+            1. e4 e5 {Open game} 2. Nf3 Nc6 (2... d6 3. d4) 3. Bb5 a6 $1
+            4. Ba4 Nf6 5. O-O 1-0
+            6. Re1
+        """.trimIndent()
+
+        val moves = pgnMoves(pgn).toList()
+
+        assertEquals(9, moves.size)
+        assertEquals("O-O", moves.last().algebraicNotation)
+    }
+
+    @Test
+    fun pgnWithFenTag() = runBlocking {
+        val pgn = """
+            [SetUp "1"]
+            [FEN "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1"]
+
+            1. e4 Kd7 *
+        """.trimIndent()
+
+        val moves = pgnMoves(pgn).toList()
+
+        assertEquals(listOf("e4", "Kd7"), moves.map { it.algebraicNotation })
+    }
+
+    @Test
+    fun invalidPgnMoveFailsTheFlow() {
+        assertThrows(IllegalArgumentException::class.java) {
+            runBlocking { pgnMoves("1. e4 e5 2. Ke3").toList() }
+        }
+    }
+
+    @Test
+    fun playAllStopsAtFirstError() = runBlocking {
+        val start = newGame()
+        val moves = start.playSan(listOf("e4", "e5").asFlow()).map { it.history.last().second.move }.toList()
+
+        assertTrue(start.playAll(moves).isSuccess)
+        assertTrue(start.playAll(listOf(moves[0], moves[0])).isError)
+    }
+
+    @Test
+    fun replayAllKeepsInputOrder() = runBlocking {
+        val results = replayAll(
+            listOf(
+                ReplayJob.fromStartPosition("e2e4"),
+                ReplayJob.fromStartPosition("e2e5"),
+                ReplayJob.fromStartPosition("d2d4 d7d5")
+            ),
+            ChessDispatchers.bounded(2)
+        )
+
+        assertEquals(1, results[0].getOrThrow().history.size)
+        assertTrue(results[1].isError)
+        assertEquals(2, results[2].getOrThrow().history.size)
+    }
+
+    @Test
+    fun cancelledReplayDoesNotFinish() = runBlocking {
+        // Counts the jobs taken by the replay
+        val taken = AtomicInteger()
+        val jobs = Iterable {
+            generateSequence { ReplayJob.fromStartPosition("e2e4 e7e5 g1f3 b8c6") }
+                .take(10_000)
+                .onEach { taken.incrementAndGet() }
+                .iterator()
+        }
+
+        val replay = async { replayAll(jobs, ChessDispatchers.bounded(1), concurrency = 2) }
+        delay(10)
+        replay.cancel()
+
+        assertThrows(CancellationException::class.java) { runBlocking { replay.await() } }
+        val takenWhenCancelled = taken.get()
+        assertTrue(takenWhenCancelled < 10_000)
+        delay(50)
+        assertEquals(takenWhenCancelled, taken.get())
+    }
+
+    @Test
+    fun replayConcurrencyMustBePositive() {
+        assertThrows(IllegalArgumentException::class.java) {
+            runBlocking { replayAll(emptyList(), concurrency = 0) }
+        }
+    }
+}
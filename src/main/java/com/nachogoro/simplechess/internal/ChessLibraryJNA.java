@@ -108,6 +108,8 @@ public class ChessLibraryJNA {
             this.file = (byte) file;
         }
 
+        static int offsetOf(String field) { return new Square().fieldOffset(field); }
+
         public static class ByValue extends Square implements Structure.ByValue {
             /**
              * Default constructor for JNA.
@@ -148,6 +150,8 @@ public class ChessLibraryJNA {
             this.color = color;
         }
 
+        static int offsetOf(String field) { return new Piece().fieldOffset(field); }
+
 
         public static class ByValue extends Piece implements Structure.ByValue {
             /**
@@ -198,6 +202,8 @@ public class ChessLibraryJNA {
              */
             public ByValue() {}
         }
+
+        static int offsetOf(String field) { return new PieceMove().fieldOffset(field); }
     }
 
     /**
@@ -260,6 +266,8 @@ public class ChessLibraryJNA {
             }
         }
 
+        static int offsetOf(String field) { return new Board().fieldOffset(field); }
+
         public static class ByValue extends Board implements Structure.ByValue {
             /**
              * Default constructor for JNA.
@@ -308,6 +316,8 @@ public class ChessLibraryJNA {
             en_passant_target = new Square.ByValue();
         }
 
+        static int offsetOf(String field) { return new GameStage().fieldOffset(field); }
+
 
         public static class ByValue extends GameStage implements Structure.ByValue {
             /**
@@ -334,6 +344,8 @@ public class ChessLibraryJNA {
         public GameHistoryEntry() {
             played_move = new PlayedMove.ByValue();
         }
+
+        static int offsetOf(String field) { return new GameHistoryEntry().fieldOffset(field); }
     }
 
     /**
@@ -374,12 +386,139 @@ public class ChessLibraryJNA {
         public Game() {
             current_stage = new GameStage.ByValue();
         }
+
+        static int offsetOf(String field) { return new Game().fieldOffset(field); }
+    }
+
+    // ========== FIELD OFFSETS ==========
+
+    /**
+     * Byte offsets of individual fields within the native game structure.
+     * <p>
+     * These allow reading single values straight from native memory without
+     * reading (and allocating) the whole {@link Game} structure.
+     */
+    public static class Offsets {
+        /** Size of a game structure */
+        public static final int GAME_SIZE = new Game().size();
+
+        /** Offset of the state within a game */
+        public static final int GAME_STATE = Game.offsetOf("state");
+
+        /** Offset of the draw reason within a game */
+        public static final int GAME_DRAW_REASON = Game.offsetOf("draw_reason");
+
+        /** Offset of the history array pointer within a game */
+        public static final int GAME_HISTORY = Game.offsetOf("history");
+
+        /** Offset of the history size within a game */
+        public static final int GAME_HISTORY_SIZE = Game.offsetOf("history_size");
+
+        /** Offset of the available moves array pointer within a game */
+        public static final int GAME_AVAILABLE_MOVES = Game.offsetOf("available_moves");
+
+        /** Offset of the available move count within a game */
+        public static final int GAME_AVAILABLE_MOVE_COUNT = Game.offsetOf("available_move_count");
+
+        /** Size of a piece move structure, as stored in the available moves array */
+        public static final int PIECE_MOVE_SIZE = new PieceMove().size();
+
+        /** Offset of the current stage within a game */
+        public static final int GAME_CURRENT_STAGE = Game.offsetOf("current_stage");
+
+        /** Offset of the draw claimability flag within a game */
+        public static final int GAME_IS_DRAW_CLAIMABLE = Game.offsetOf("is_draw_claimable");
+
+        /** Offset of the reason to claim a draw within a game */
+        public static final int GAME_REASON_TO_CLAIM_DRAW = Game.offsetOf("reason_to_claim_draw");
+
+        /** Offset of the active color of the current stage within a game */
+        public static final int STAGE_ACTIVE_COLOR = GAME_CURRENT_STAGE + GameStage.offsetOf("active_color");
+
+        /** Offset of the castling rights of the current stage within a game */
+        public static final int STAGE_CASTLING_RIGHTS = GAME_CURRENT_STAGE + GameStage.offsetOf("castling_rights");
+
+        /** Offset of the half move clock of the current stage within a game */
+        public static final int STAGE_HALF_MOVES = GAME_CURRENT_STAGE + GameStage.offsetOf("half_moves_since_last_capture_or_pawn_advance");
+
+        /** Offset of the full move number of the current stage within a game */
+        public static final int STAGE_FULL_MOVES = GAME_CURRENT_STAGE + GameStage.offsetOf("full_moves");
+
+        /** Offset of the en passant flag of the current stage within a game */
+        public static final int STAGE_HAS_EN_PASSANT_TARGET = GAME_CURRENT_STAGE + GameStage.offsetOf("has_en_passant_target");
+
+        /** Offset of the en passant target of the current stage within a game */
+        public static final int STAGE_EN_PASSANT_TARGET = GAME_CURRENT_STAGE + GameStage.offsetOf("en_passant_target");
+
+        /** Offset of the check status of the current stage within a game */
+        public static final int STAGE_CHECK_STATUS = GAME_CURRENT_STAGE + GameStage.offsetOf("check_status");
+
+        /** Offset of the FEN of the current stage within a game */
+        public static final int STAGE_FEN = GAME_CURRENT_STAGE + GameStage.offsetOf("fen");
+
+        /** Size of the FEN buffer of a stage */
+        public static final int FEN_SIZE = new GameStage().fen.length;
+
+        /** Offset of the played move within a history entry */
+        public static final int HISTORY_ENTRY_PLAYED_MOVE = GameHistoryEntry.offsetOf("played_move");
+
+        /** Size of a played move structure */
+        public static final int PLAYED_MOVE_SIZE = new PlayedMove().size();
+
+        /** Size of a history entry structure */
+        public static final int HISTORY_ENTRY_SIZE = new GameHistoryEntry().size();
+
+        /** Offset of the current board within a game */
+        private static final int BOARD = Game.offsetOf("current_stage") + GameStage.offsetOf("board");
+
+        /** Offset of the occupancy flags of the current board within a game */
+        public static final int BOARD_OCCUPIED = BOARD + Board.offsetOf("occupied");
+
+        /** Offset of the pieces of the current board within a game */
+        public static final int BOARD_PIECE_AT = BOARD + Board.offsetOf("piece_at");
+
+        /** Offset of the type within a piece */
+        public static final int PIECE_TYPE = Piece.offsetOf("type");
+
+        /** Offset of the color within a piece */
+        public static final int PIECE_COLOR = Piece.offsetOf("color");
+
+        /** Size of a piece structure */
+        public static final int PIECE_SIZE = new Piece().size();
+
+        /** Offset of the rank within a square */
+        public static final int SQUARE_RANK = Square.offsetOf("rank");
+
+        /** Offset of the file within a square */
+        public static final int SQUARE_FILE = Square.offsetOf("file");
+
+        /** Offset of the moving piece within a piece move */
+        public static final int PIECE_MOVE_PIECE = PieceMove.offsetOf("piece");
+
+        /** Offset of the origin square within a piece move */
+        public static final int PIECE_MOVE_SRC = PieceMove.offsetOf("src");
+
+        /** Offset of the destination square within a piece move */
+        public static final int PIECE_MOVE_DST = PieceMove.offsetOf("dst");
+
+        /** Offset of the promotion flag within a piece move */
+        public static final int PIECE_MOVE_IS_PROMOTION = PieceMove.offsetOf("is_promotion");
+
+        /** Offset of the promoted piece type within a piece move */
+        public static final int PIECE_MOVE_PROMOTED_TO = PieceMove.offsetOf("promoted_to");
     }
 
     // ========== LIBRARY INTERFACE ==========
 
     /**
      * Interface to the native chess library functions.
+     *
+     * <p>All functions are safe to call concurrently from any number of threads.
+     * Native games are immutable once created: every operation only reads the
+     * game it is given and returns a newly allocated one, and the library keeps
+     * no global mutable state. The only requirement is that a game is not
+     * destroyed while another call is still using it, which the Kotlin wrappers
+     * guarantee by keeping their owner reachable for the duration of each call.
      */
     public interface ChessLib extends Library {
         ChessLib INSTANCE = createInstance();
@@ -486,6 +625,77 @@ public class ChessLibraryJNA {
         return history;
     }
 
+    /**
+     * Helper method to read a single entry of the game history.
+     * @param ptr the native pointer to the history array
+     * @param index the index of the entry
+     * @return the history entry
+     */
+    public static GameHistoryEntry getHistoryEntryFromPointer(Pointer ptr, int index) {
+        GameHistoryEntry entry = Structure.newInstance(GameHistoryEntry.class, ptr.share((long) index * Offsets.HISTORY_ENTRY_SIZE));
+        entry.read();
+        return entry;
+    }
+
+    /**
+     * Helper method to read the move of a single entry of the game history.
+     * @param ptr the native pointer to the history array
+     * @param index the index of the entry
+     * @return the played move of the entry
+     */
+    public static PlayedMove getPlayedMoveFromPointer(Pointer ptr, int index) {
+        long offset = (long) index * Offsets.HISTORY_ENTRY_SIZE + Offsets.HISTORY_ENTRY_PLAYED_MOVE;
+        PlayedMove move = Structure.newInstance(PlayedMove.class, ptr.share(offset));
+        move.read();
+        return move;
+    }
+
+    /**
+     * Helper method to read the FEN of the current stage of a game.
+     * @param ptr the native pointer to the game structure
+     * @return the FEN of the current position
+     */
+    public static String getFenFromPointer(Pointer ptr) {
+        return byteArrayToString(ptr.getByteArray(Offsets.STAGE_FEN, Offsets.FEN_SIZE));
+    }
+
+    /**
+     * Helper method to read a single square of the current board of a game.
+     * @param ptr the native pointer to the game structure
+     * @param square the index of the square (0 = a1, 1 = b1, ..., 63 = h8)
+     * @return the piece encoded as {@code (color << 8) | type}, or -1 if the square is empty
+     */
+    public static int getPieceAtFromPointer(Pointer ptr, int square) {
+        if (ptr.getByte(Offsets.BOARD_OCCUPIED + square) == 0) return -1;
+        long pieceOffset = Offsets.BOARD_PIECE_AT + (long) square * Offsets.PIECE_SIZE;
+        int type = ptr.getInt(pieceOffset + Offsets.PIECE_TYPE);
+        int color = ptr.getInt(pieceOffset + Offsets.PIECE_COLOR);
+        return (color << 8) | type;
+    }
+
+    /**
+     * Helper method to read every square of the current board of a game, with
+     * one bulk read for the occupancy and one for the pieces.
+     * @param ptr the native pointer to the game structure
+     * @param pieces the array to fill, indexed by square, with the pieces encoded
+     *               as by {@link #getPieceAtFromPointer}
+     */
+    public static void getBoardFromPointer(Pointer ptr, int[] pieces) {
+        byte[] occupied = ptr.getByteArray(Offsets.BOARD_OCCUPIED, 64);
+        int stride = Offsets.PIECE_SIZE / Integer.BYTES;
+        int[] fields = ptr.getIntArray(Offsets.BOARD_PIECE_AT, 64 * stride);
+        for (int square = 0; square < 64; square++) {
+            if (occupied[square] == 0) {
+                pieces[square] = -1;
+                continue;
+            }
+            int piece = square * stride;
+            int type = fields[piece + Offsets.PIECE_TYPE / Integer.BYTES];
+            int color = fields[piece + Offsets.PIECE_COLOR / Integer.BYTES];
+            pieces[square] = (color << 8) | type;
+        }
+    }
+
     /**
      * Helper method to convert byte array to Java string (null-terminated).
      * @param bytes the null-terminated byte array
@@ -0,0 +1,19 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Shared pool for the library's pure-Kotlin bulk operations, with one daemon
+ * thread per available processor, created on first use.
+ */
+internal object BatchWorkers {
+
+    val parallelism: Int = Runtime.getRuntime().availableProcessors()
+
+    val executor: ExecutorService by lazy {
+        Executors.newFixedThreadPool(parallelism) { task ->
+            Thread(task, "simple-chess-batch").apply { isDaemon = true }
+        }
+    }
+}
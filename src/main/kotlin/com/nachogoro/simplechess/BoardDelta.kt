@@ -0,0 +1,75 @@
+package com.nachogoro.simplechess
+
+/**
+ * Squares whose content differs between two boards.
+ *
+ * Applying a delta to the first board (see [applyTo]) gives the second one,
+ * so a client holding a board only needs the delta to follow a move.
+ */
+public data class BoardDelta(
+    /**
+     * The changed squares, with the piece now on them or null if they were emptied.
+     */
+    val changes: Map<Square, Piece?>
+) {
+
+    /**
+     * Whether both boards are the same.
+     */
+    public val isEmpty: Boolean get() = changes.isEmpty()
+
+    /**
+     * Applies this delta to a board.
+     *
+     * @param board The pieces by square of the first board
+     * @return The pieces by square of the second board
+     */
+    public fun applyTo(board: Map<Square, Piece>): Map<Square, Piece> {
+        val result = board.toMutableMap()
+        for ((square, piece) in changes) {
+            if (piece == null) result.remove(square) else result[square] = piece
+        }
+        return result
+    }
+
+    public companion object {
+        /** Delta between two identical boards. */
+        public val EMPTY: BoardDelta = BoardDelta(emptyMap())
+
+        /**
+         * Computes the delta of a move from its description: the origin and
+         * destination squares, plus the rook of a castling move and the pawn
+         * captured en passant.
+         */
+        internal fun of(played: PlayedMove): BoardDelta {
+            val move = played.move
+            val changes = LinkedHashMap<Square, Piece?>(4)
+            changes[move.from] = null
+            changes[move.to] = move.promotion?.let { Piece.create(it, move.piece.color) } ?: move.piece
+
+            if (played.isEnPassant) {
+                changes[Square.fromRankAndFile(move.from.rank, move.to.file)] = null
+            } else if (move.piece.type == PieceType.KING && (move.to.file - move.from.file == 2 || move.from.file - move.to.file == 2)) {
+                val kingside = move.to.file > move.from.file
+                val rook = Piece.create(PieceType.ROOK, move.piece.color)
+                changes[Square.fromRankAndFile(move.from.rank, if (kingside) 'h' else 'a')] = null
+                changes[Square.fromRankAndFile(move.from.rank, if (kingside) 'f' else 'd')] = rook
+            }
+            return BoardDelta(changes)
+        }
+
+        /**
+         * Computes the delta between two boards square by square.
+         */
+        internal fun between(before: BoardState, after: BoardState): BoardDelta {
+            var changes: LinkedHashMap<Square, Piece?>? = null
+            for (i in 0 until 64) {
+                val code = after.squares[i]
+                if (before.squares[i] == code) continue
+                if (changes == null) changes = LinkedHashMap()
+                changes[Square.fromIndex(i)] = if (code == BoardState.EMPTY) null else BoardState.piece(code)
+            }
+            return if (changes == null) EMPTY else BoardDelta(changes)
+        }
+    }
+}
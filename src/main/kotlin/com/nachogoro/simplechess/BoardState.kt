@@ -0,0 +1,557 @@
+package com.nachogoro.simplechess
+
+/**
+ * Mutable board representation backing the library's pure-Kotlin position
+ * handling (FEN parsing, legality checks and move generation).
+ *
+ * Squares follow the native board layout (a1 = 0, b1 = 1, ..., h8 = 63).
+ * Each square holds the code of its [Piece] plus one, so 0 denotes an empty
+ * square, the lower three bits hold the piece type (pawn = 1, ..., king = 6)
+ * and bit 3 holds the color.
+ *
+ * Moves are packed into an Int holding the origin square, the destination
+ * square and the promotion type (see [packMove]). [makeMove] and [unmakeMove]
+ * update the board in place so a position can be traversed without
+ * allocating new boards, and keep its [zobristKey] up to date.
+ */
+internal class BoardState {
+
+    /** Contents of each square, see the class documentation for the encoding. */
+    val squares: IntArray = IntArray(64)
+
+    /** Color to move ([WHITE] or [BLACK]). */
+    var activeColor: Int = WHITE
+        set(value) {
+            field = value
+            keyValid = false
+        }
+
+    /** Castling rights, as a bitfield of the native [CastlingRight] values. */
+    var castlingRights: Int = 0
+        set(value) {
+            field = value
+            keyValid = false
+        }
+
+    /** En passant target square, or [NO_SQUARE]. */
+    var enPassantTarget: Int = NO_SQUARE
+        set(value) {
+            field = value
+            keyValid = false
+        }
+
+    /** Number of half moves since the last capture or pawn advance. */
+    var halfMoveClock: Int = 0
+
+    /** Full move number, incremented after each move of black. */
+    var fullMoveNumber: Int = 1
+
+    private val kingSquares = intArrayOf(NO_SQUARE, NO_SQUARE)
+
+    private var undoStack = IntArray(64)
+    private var undoSize = 0
+
+    /** Key of the position before each move of the undo stack. */
+    private var keyStack = LongArray(64)
+
+    private var key = 0L
+
+    /** Whether [key] matches the board: setting up the board directly invalidates it. */
+    private var keyValid = false
+
+    /**
+     * Polyglot hash of the position (see [ZobristKeys.POLYGLOT]).
+     *
+     * It is computed in full the first time it is needed after the board is
+     * set up, then updated incrementally by [makeMove], [makeNullMove] and
+     * their reverse operations.
+     */
+    val zobristKey: Long
+        get() {
+            if (!keyValid) {
+                key = ZobristKeys.POLYGLOT.computeHash(this)
+                keyValid = true
+            }
+            return key
+        }
+
+    /**
+     * Empties the board and resets the game state fields to their defaults.
+     */
+    fun clear() {
+        squares.fill(EMPTY)
+        kingSquares.fill(NO_SQUARE)
+        activeColor = WHITE
+        castlingRights = 0
+        enPassantTarget = NO_SQUARE
+        halfMoveClock = 0
+        fullMoveNumber = 1
+        undoSize = 0
+    }
+
+    /**
+     * Places a piece (or [EMPTY]) on a square, keeping track of the kings.
+     */
+    fun put(square: Int, piece: Int) {
+        squares[square] = piece
+        if (piece and TYPE_MASK == KING) kingSquares[piece shr 3] = square
+        keyValid = false
+    }
+
+    /**
+     * Square of the king of the given color, or [NO_SQUARE] if there is none.
+     */
+    fun kingSquare(color: Int): Int = kingSquares[color]
+
+    /**
+     * Whether the king of the given color is attacked.
+     */
+    fun isInCheck(color: Int): Boolean {
+        val king = kingSquares[color]
+        return king != NO_SQUARE && isAttacked(king, color xor 1)
+    }
+
+    /**
+     * Whether the given square is attacked by any piece of the given color.
+     */
+    fun isAttacked(square: Int, byColor: Int): Boolean {
+        val file = square and 7
+        val colorBits = byColor shl 3
+
+        // Pawns attack diagonally forward, so look diagonally backwards from the target
+        val pawn = PAWN or colorBits
+        if (byColor == WHITE) {
+            if (file > 0 && square >= 9 && squares[square - 9] == pawn) return true
+            if (file < 7 && square >= 7 && squares[square - 7] == pawn) return true
+        } else {
+            if (file < 7 && square <= 54 && squares[square + 9] == pawn) return true
+            if (file > 0 && square <= 56 && squares[square + 7] == pawn) return true
+        }
+
+        val knight = KNIGHT or colorBits
+        for (origin in KNIGHT_TARGETS[square]) if (squares[origin] == knight) return true
+
+        val king = KING or colorBits
+        for (origin in KING_TARGETS[square]) if (squares[origin] == king) return true
+
+        val queen = QUEEN or colorBits
+        val rook = ROOK or colorBits
+        val bishop = BISHOP or colorBits
+        for (direction in 0 until 8) {
+            val straight = direction < 4
+            for (origin in RAYS[direction][square]) {
+                val occupant = squares[origin]
+                if (occupant == EMPTY) continue
+                if (occupant == queen || occupant == (if (straight) rook else bishop)) return true
+                break
+            }
+        }
+        return false
+    }
+
+    /**
+     * Writes all legal moves of the active color into [out] and returns how many there are.
+     *
+     * [out] must be able to hold [MAX_MOVES] moves.
+     */
+    fun generateLegalMoves(out: IntArray): Int {
+        val count = generatePseudoLegalMoves(out)
+        val us = activeColor
+        var legal = 0
+        for (i in 0 until count) {
+            val move = out[i]
+            makeMove(move)
+            val keep = !isInCheck(us)
+            unmakeMove(move)
+            if (keep) out[legal++] = move
+        }
+        return legal
+    }
+
+    /**
+     * Whether the active color has at least one legal move.
+     */
+    fun hasLegalMove(): Boolean {
+        val moves = IntArray(MAX_MOVES)
+        val count = generatePseudoLegalMoves(moves)
+        val us = activeColor
+        for (i in 0 until count) {
+            makeMove(moves[i])
+            val legal = !isInCheck(us)
+            unmakeMove(moves[i])
+            if (legal) return true
+        }
+        return false
+    }
+
+    /**
+     * Check status of the active color.
+     */
+    fun checkStatus(): CheckType = when {
+        !isInCheck(activeColor) -> CheckType.NONE
+        hasLegalMove() -> CheckType.CHECK
+        else -> CheckType.CHECKMATE
+    }
+
+    /**
+     * Writes all pseudo-legal moves (moves which may leave the own king in
+     * check) of the active color into [out] and returns how many there are.
+     */
+    fun generatePseudoLegalMoves(out: IntArray): Int {
+        var count = 0
+        val us = activeColor
+        for (from in 0 until 64) {
+            val piece = squares[from]
+            if (piece == EMPTY || piece shr 3 != us) continue
+            when (piece and TYPE_MASK) {
+                PAWN -> count = generatePawnMoves(from, us, out, count)
+                KNIGHT -> count = generateStepMoves(from, us, KNIGHT_TARGETS[from], out, count)
+                KING -> {
+                    count = generateStepMoves(from, us, KING_TARGETS[from], out, count)
+                    count = generateCastlingMoves(from, us, out, count)
+                }
+                BISHOP -> count = generateSlidingMoves(from, us, 4, 8, out, count)
+                ROOK -> count = generateSlidingMoves(from, us, 0, 4, out, count)
+                QUEEN -> count = generateSlidingMoves(from, us, 0, 8, out, count)
+            }
+        }
+        return count
+    }
+
+    private fun generatePawnMoves(from: Int, us: Int, out: IntArray, start: Int): Int {
+        var count = start
+        val forward = if (us == WHITE) 8 else -8
+        val rank = from shr 3
+        val file = from and 7
+        val startRank = if (us == WHITE) 1 else 6
+        val lastRank = if (us == WHITE) 7 else 0
+
+        val single = from + forward
+        if (squares[single] == EMPTY) {
+            count = addPawnMove(from, single, lastRank, out, count)
+            val double = single + forward
+            if (rank == startRank && squares[double] == EMPTY) {
+                out[count++] = packMove(from, double, 0)
+            }
+        }
+        if (file > 0) count = addPawnCapture(from, single - 1, us, lastRank, out, count)
+        if (file < 7) count = addPawnCapture(from, single + 1, us, lastRank, out, count)
+        return count
+    }
+
+    private fun addPawnCapture(from: Int, to: Int, us: Int, lastRank: Int, out: IntArray, start: Int): Int {
+        val target = squares[to]
+        val capturesPiece = target != EMPTY && target shr 3 != us
+        // The en passant target only counts if the pawn which skipped it is actually there
+        val capturesEnPassant = to == enPassantTarget &&
+            squares[if (us == WHITE) to - 8 else to + 8] == PAWN or ((us xor 1) shl 3)
+        return if (capturesPiece || capturesEnPassant) addPawnMove(from, to, lastRank, out, start) else start
+    }
+
+    private fun addPawnMove(from: Int, to: Int, lastRank: Int, out: IntArray, start: Int): Int {
+        var count = start
+        if (to shr 3 == lastRank) {
+            for (promotion in PROMOTION_TYPES) out[count++] = packMove(from, to, promotion)
+        } else {
+            out[count++] = packMove(from, to, 0)
+        }
+        return count
+    }
+
+    private fun generateStepMoves(from: Int, us: Int, targets: IntArray, out: IntArray, start: Int): Int {
+        var count = start
+        for (to in targets) {
+            val target = squares[to]
+            if (target == EMPTY || target shr 3 != us) out[count++] = packMove(from, to, 0)
+        }
+        return count
+    }
+
+    private fun generateSlidingMoves(from: Int, us: Int, firstDirection: Int, lastDirection: Int, out: IntArray, start: Int): Int {
+        var count = start
+        for (direction in firstDirection until lastDirection) {
+            for (to in RAYS[direction][from]) {
+                val target = squares[to]
+                if (target == EMPTY) {
+                    out[count++] = packMove(from, to, 0)
+                    continue
+                }
+                if (target shr 3 != us) out[count++] = packMove(from, to, 0)
+                break
+            }
+        }
+        return count
+    }
+
+    private fun generateCastlingMoves(from: Int, us: Int, out: IntArray, start: Int): Int {
+        var count = start
+        val home = if (us == WHITE) 4 else 60
+        if (from != home) return count
+        val kingSide = if (us == WHITE) CastlingRight.WHITE_KING_SIDE.jnaValue else CastlingRight.BLACK_KING_SIDE.jnaValue
+        val queenSide = if (us == WHITE) CastlingRight.WHITE_QUEEN_SIDE.jnaValue else CastlingRight.BLACK_QUEEN_SIDE.jnaValue
+        val rook = ROOK or (us shl 3)
+        val them = us xor 1
+
+        if (castlingRights and kingSide != 0 &&
+            squares[home + 3] == rook && squares[home + 1] == EMPTY && squares[home + 2] == EMPTY &&
+            !isAttacked(home, them) && !isAttacked(home + 1, them) && !isAttacked(home + 2, them)
+        ) {
+            out[count++] = packMove(home, home + 2, 0)
+        }
+        if (castlingRights and queenSide != 0 &&
+            squares[home - 4] == rook && squares[home - 1] == EMPTY && squares[home - 2] == EMPTY &&
+            squares[home - 3] == EMPTY &&
+            !isAttacked(home, them) && !isAttacked(home - 1, them) && !isAttacked(home - 2, them)
+        ) {
+            out[count++] = packMove(home, home - 2, 0)
+        }
+        return count
+    }
+
+    /**
+     * Plays a (pseudo-legal) move on the board. It can be reverted with [unmakeMove].
+     */
+    fun makeMove(move: Int) {
+        val from = moveFrom(move)
+        val to = moveTo(move)
+        val promotion = movePromotion(move)
+        val piece = squares[from]
+        val type = piece and TYPE_MASK
+        val us = piece shr 3
+
+        val keys = ZobristKeys.POLYGLOT
+        val previousKey = zobristKey
+        var key = previousKey xor keys.stateKey(this)
+
+        var captured = squares[to]
+        var capturedSquare = to
+        val enPassant = type == PAWN && to == enPassantTarget && captured == EMPTY && (from and 7) != (to and 7)
+        if (enPassant) {
+            capturedSquare = if (us == WHITE) to - 8 else to + 8
+            captured = squares[capturedSquare]
+            squares[capturedSquare] = EMPTY
+        }
+
+        pushUndo(
+            captured or (castlingRights shl 4) or ((enPassantTarget + 1) shl 8) or
+                ((if (enPassant) 1 else 0) shl 15) or (halfMoveClock shl 16),
+            previousKey
+        )
+
+        val placed = if (promotion != 0) promotion or (us shl 3) else piece
+        squares[from] = EMPTY
+        squares[to] = placed
+        key = key xor keys.pieceKey(piece, from) xor keys.pieceKey(placed, to)
+        if (captured != EMPTY) key = key xor keys.pieceKey(captured, capturedSquare)
+        if (type == KING) {
+            kingSquares[us] = to
+            if (to - from == 2) {
+                key = key xor moveRook(from + 3, from + 1)
+            } else if (from - to == 2) {
+                key = key xor moveRook(from - 4, from - 1)
+            }
+        }
+
+        castlingRights = castlingRights and CASTLING_MASK[from] and CASTLING_MASK[to]
+        enPassantTarget = if (type == PAWN && (to - from == 16 || from - to == 16)) (from + to) / 2 else NO_SQUARE
+        halfMoveClock = if (type == PAWN || captured != EMPTY) 0 else halfMoveClock + 1
+        if (us == BLACK) fullMoveNumber++
+        activeColor = us xor 1
+        this.key = key xor keys.stateKey(this)
+        keyValid = true
+    }
+
+    /**
+     * Moves the rook of a castling move and returns the change to the key.
+     */
+    private fun moveRook(from: Int, to: Int): Long {
+        val rook = squares[from]
+        squares[to] = rook
+        squares[from] = EMPTY
+        return ZobristKeys.POLYGLOT.pieceKey(rook, from) xor ZobristKeys.POLYGLOT.pieceKey(rook, to)
+    }
+
+    /**
+     * Passes the turn without moving. It can be reverted with [unmakeNullMove].
+     *
+     * Only the side to move and the en passant target change; the clocks are
+     * left to the caller.
+     */
+    fun makeNullMove() {
+        val keys = ZobristKeys.POLYGLOT
+        val previousKey = zobristKey
+        pushUndo((castlingRights shl 4) or ((enPassantTarget + 1) shl 8) or (halfMoveClock shl 16), previousKey)
+        val key = previousKey xor keys.stateKey(this)
+        activeColor = activeColor xor 1
+        enPassantTarget = NO_SQUARE
+        this.key = key xor keys.stateKey(this)
+        keyValid = true
+    }
+
+    /**
+     * Reverts the last null move played with [makeNullMove].
+     */
+    fun unmakeNullMove() {
+        val undo = undoStack[--undoSize]
+        enPassantTarget = ((undo shr 8) and 0x7f) - 1
+        activeColor = activeColor xor 1
+        key = keyStack[undoSize]
+        keyValid = true
+    }
+
+    /**
+     * Reverts the last move played with [makeMove].
+     */
+    fun unmakeMove(move: Int) {
+        val undo = undoStack[--undoSize]
+        val previousKey = keyStack[undoSize]
+        val from = moveFrom(move)
+        val to = moveTo(move)
+        val moved = squares[to]
+        val us = moved shr 3
+        val captured = undo and 0xf
+
+        castlingRights = (undo shr 4) and 0xf
+        enPassantTarget = ((undo shr 8) and 0x7f) - 1
+        halfMoveClock = undo ushr 16
+        activeColor = us
+        if (us == BLACK) fullMoveNumber--
+
+        squares[from] = if (movePromotion(move) != 0) PAWN or (us shl 3) else moved
+        if (undo and EN_PASSANT_FLAG != 0) {
+            squares[to] = EMPTY
+            squares[if (us == WHITE) to - 8 else to + 8] = captured
+        } else {
+            squares[to] = captured
+        }
+        if (moved and TYPE_MASK == KING) {
+            kingSquares[us] = from
+            if (to - from == 2) {
+                squares[from + 3] = squares[from + 1]
+                squares[from + 1] = EMPTY
+            } else if (from - to == 2) {
+                squares[from - 4] = squares[from - 1]
+                squares[from - 1] = EMPTY
+            }
+        }
+        key = previousKey
+        keyValid = true
+    }
+
+    private fun pushUndo(entry: Int, previousKey: Long) {
+        if (undoSize == undoStack.size) {
+            undoStack = undoStack.copyOf(undoSize * 2)
+            keyStack = keyStack.copyOf(undoSize * 2)
+        }
+        keyStack[undoSize] = previousKey
+        undoStack[undoSize++] = entry
+    }
+
+    /**
+     * Returns an independent copy of this board (without move history).
+     */
+    fun copy(): BoardState {
+        val copy = BoardState()
+        squares.copyInto(copy.squares)
+        kingSquares.copyInto(copy.kingSquares)
+        copy.activeColor = activeColor
+        copy.castlingRights = castlingRights
+        copy.enPassantTarget = enPassantTarget
+        copy.halfMoveClock = halfMoveClock
+        copy.fullMoveNumber = fullMoveNumber
+        copy.key = key
+        copy.keyValid = keyValid
+        return copy
+    }
+
+    companion object {
+        const val WHITE = 0
+        const val BLACK = 1
+
+        const val EMPTY = 0
+        const val PAWN = 1
+        const val ROOK = 2
+        const val KNIGHT = 3
+        const val BISHOP = 4
+        const val QUEEN = 5
+        const val KING = 6
+        const val TYPE_MASK = 7
+
+        const val NO_SQUARE = -1
+
+        /** Upper bound of the number of legal moves in any chess position. */
+        const val MAX_MOVES = 256
+
+        private const val EN_PASSANT_FLAG = 1 shl 15
+
+        private val PROMOTION_TYPES = intArrayOf(QUEEN, ROOK, BISHOP, KNIGHT)
+
+        /**
+         * Packs a move. [promotion] is the type of the promoted piece (0 if none),
+         * which matches the packing used by [UciNotation].
+         */
+        fun packMove(from: Int, to: Int, promotion: Int): Int = from or (to shl 6) or (promotion shl 12)
+
+        fun moveFrom(move: Int): Int = move and 0x3f
+
+        fun moveTo(move: Int): Int = (move shr 6) and 0x3f
+
+        fun movePromotion(move: Int): Int = move shr 12
+
+        /** Board code of a piece. */
+        fun code(piece: Piece): Int = piece.code + 1
+
+        /** Piece of a (non-empty) board code. */
+        fun piece(code: Int): Piece = Piece.fromCode(code - 1)
+
+        /** Castling rights which survive a move touching each square. */
+        private val CASTLING_MASK = IntArray(64) { 0xf }.also {
+            it[4] = 0xf and (CastlingRight.WHITE_KING_SIDE.jnaValue or CastlingRight.WHITE_QUEEN_SIDE.jnaValue).inv()
+            it[0] = 0xf and CastlingRight.WHITE_QUEEN_SIDE.jnaValue.inv()
+            it[7] = 0xf and CastlingRight.WHITE_KING_SIDE.jnaValue.inv()
+            it[60] = 0xf and (CastlingRight.BLACK_KING_SIDE.jnaValue or CastlingRight.BLACK_QUEEN_SIDE.jnaValue).inv()
+            it[56] = 0xf and CastlingRight.BLACK_QUEEN_SIDE.jnaValue.inv()
+            it[63] = 0xf and CastlingRight.BLACK_KING_SIDE.jnaValue.inv()
+        }
+
+        /** Squares a knight reaches from each square. */
+        val KNIGHT_TARGETS = stepTargets(
+            intArrayOf(1, 2, 2, 1, -1, -2, -2, -1),
+            intArrayOf(2, 1, -1, -2, -2, -1, 1, 2)
+        )
+
+        private val KING_TARGETS = stepTargets(
+            intArrayOf(0, 1, 1, 1, 0, -1, -1, -1),
+            intArrayOf(1, 1, 0, -1, -1, -1, 0, 1)
+        )
+
+        /** Squares along each direction (four straight ones, then four diagonal ones), nearest first. */
+        val RAYS: Array<Array<IntArray>> = run {
+            val fileSteps = intArrayOf(0, 1, 0, -1, 1, 1, -1, -1)
+            val rankSteps = intArrayOf(1, 0, -1, 0, 1, -1, -1, 1)
+            Array(8) { direction ->
+                Array(64) { square ->
+                    val ray = ArrayList<Int>(7)
+                    var file = (square and 7) + fileSteps[direction]
+                    var rank = (square shr 3) + rankSteps[direction]
+                    while (file in 0..7 && rank in 0..7) {
+                        ray.add(rank * 8 + file)
+                        file += fileSteps[direction]
+                        rank += rankSteps[direction]
+                    }
+                    ray.toIntArray()
+                }
+            }
+        }
+
+        private fun stepTargets(fileSteps: IntArray, rankSteps: IntArray): Array<IntArray> = Array(64) { square ->
+            val targets = ArrayList<Int>(8)
+            for (i in fileSteps.indices) {
+                val file = (square and 7) + fileSteps[i]
+                val rank = (square shr 3) + rankSteps[i]
+                if (file in 0..7 && rank in 0..7) targets.add(rank * 8 + file)
+            }
+            targets.toIntArray()
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.nachogoro.simplechess
+
+/**
+ * Operations of the library reported to [ChessInstrumentation].
+ */
+public enum class ChessOperation {
+    /** Native call creating a game from the standard starting position. */
+    CREATE_GAME,
+
+    /** Native call creating a game from a FEN; the payload is the FEN length. */
+    CREATE_FROM_FEN,
+
+    /** Native call making a move, including the marshalling of the move. */
+    MAKE_MOVE,
+
+    /** Native call claiming a draw. */
+    CLAIM_DRAW,
+
+    /** Native call resigning a game. */
+    RESIGN,
+
+    /** Native call releasing a game. */
+    DESTROY_GAME,
+
+    /** Reading the available moves of a game into [Move] instances. */
+    DECODE_MOVES,
+
+    /** Reading the FEN of the current position of a game. */
+    DECODE_FEN,
+
+    /** Reading the pieces on the board of a game. */
+    DECODE_BOARD,
+
+    /** Reading a played move from the native history. */
+    DECODE_PLAYED_MOVE,
+
+    /** Reading an entry (FEN and played move) from the native history. */
+    DECODE_HISTORY_ENTRY,
+
+    /**
+     * Reading scalar fields of a game: its state, draw reasons, history size
+     * and move count when it is created, or the side to move, castling rights,
+     * en passant target, clocks and check status of its current position
+     * when one of them is first read.
+     */
+    READ_FIELDS
+}
+
+/**
+ * Listener of the native calls and decoding steps of the library, for
+ * latency instrumentation.
+ *
+ * A single instrumentation is installed for the whole process with [install].
+ * While none is, operations are not timed at all. Listeners are called on the
+ * thread which ran the operation, right after it, so they must be thread-safe
+ * and cheap; [HistogramInstrumentation] records them without locking.
+ */
+public fun interface ChessInstrumentation {
+
+    /**
+     * Called after an operation completes, whether or not it succeeded.
+     *
+     * @param operation The operation
+     * @param nanos The time it took, in nanoseconds
+     * @param payloadBytes The size of the data passed to or read from native
+     *        memory, in bytes, or 0 if there is none
+     */
+    public fun onOperation(operation: ChessOperation, nanos: Long, payloadBytes: Long)
+
+    public companion object {
+        /** Instrumentation which ignores every operation. */
+        public val NONE: ChessInstrumentation = ChessInstrumentation { _, _, _ -> }
+
+        /** The installed instrumentation, [NONE] by default. */
+        public val current: ChessInstrumentation get() = Instrumentation.listener ?: NONE
+
+        /**
+         * Installs an instrumentation for the whole process, replacing the
+         * current one. Installing [NONE] stops timing operations.
+         */
+        public fun install(instrumentation: ChessInstrumentation) {
+            Instrumentation.listener = instrumentation.takeUnless { it === NONE }
+        }
+    }
+}
+
+/**
+ * Times operations for the installed [ChessInstrumentation].
+ */
+internal object Instrumentation {
+
+    /** The installed listener, or null so disabled instrumentation costs a single read. */
+    @Volatile
+    @JvmField
+    var listener: ChessInstrumentation? = null
+
+    /**
+     * Runs an operation, reporting its duration if an instrumentation is installed.
+     */
+    inline fun <T> measure(operation: ChessOperation, payloadBytes: Long, block: () -> T): T {
+        val listener = listener ?: return block()
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            listener.onOperation(operation, System.nanoTime() - start, payloadBytes)
+        }
+    }
+}
@@ -12,9 +12,23 @@ public sealed class ChessResult<out T> {
     public data class Success<T>(val value: T) : ChessResult<T>()
 
     /**
-     * Error result containing an error message and optional cause.
+     * Error result containing an error message, its kind and optional cause.
+     *
+     * Expected failures, such as illegal moves or malformed input, are built
+     * directly by the library without throwing, so [cause] is only set for
+     * failures which raised an exception.
      */
-    public data class Error(val message: String, val cause: Throwable? = null) : ChessResult<Nothing>()
+    public data class Error(
+        val message: String,
+        val cause: Throwable? = null,
+        val kind: ErrorKind = ErrorKind.UNEXPECTED
+    ) : ChessResult<Nothing>() {
+        /**
+         * Creates an error of kind [ErrorKind.UNEXPECTED], as built before
+         * errors had a kind.
+         */
+        public constructor(message: String, cause: Throwable?) : this(message, cause, ErrorKind.UNEXPECTED)
+    }
 
     /**
      * Returns true if this is a Success result.
@@ -61,6 +75,11 @@ public sealed class ChessResult<out T> {
          */
         public fun <T> error(message: String, cause: Throwable? = null): ChessResult<T> = Error(message, cause)
 
+        /**
+         * Creates an Error result of a known kind, without a cause.
+         */
+        public fun <T> error(kind: ErrorKind, message: String): ChessResult<T> = Error(message, null, kind)
+
         /**
          * Wraps a potentially throwing operation in a ChessResult.
          */
@@ -72,6 +91,38 @@ public sealed class ChessResult<out T> {
     }
 }
 
+/**
+ * Kind of failure of a [ChessResult.Error].
+ */
+public enum class ErrorKind {
+    /** The move is not legal in the position it is played in. */
+    ILLEGAL_MOVE,
+
+    /** The game has already concluded. */
+    GAME_CONCLUDED,
+
+    /** No draw can be claimed in the current position. */
+    DRAW_NOT_CLAIMABLE,
+
+    /** There is no move to take back. */
+    NO_MOVE_TO_UNDO,
+
+    /** A FEN string is malformed or describes an invalid position. */
+    INVALID_FEN,
+
+    /** A move in algebraic or UCI notation is malformed or ambiguous. */
+    INVALID_NOTATION,
+
+    /** Serialized data, such as an encoded game, is malformed or truncated. */
+    INVALID_DATA,
+
+    /** The position is valid but outside what the operation handles, such as tablebase probes with castling rights. */
+    UNSUPPORTED_POSITION,
+
+    /** Any other failure, such as an I/O or native library error. */
+    UNEXPECTED
+}
+
 /**
  * Transform the value inside a Success result, or pass through Error unchanged.
  */
@@ -80,12 +131,20 @@ public inline fun <T, R> ChessResult<T>.map(transform: (T) -> R): ChessResult<R>
     is ChessResult.Error -> this
 }
 
+/**
+ * Chain an operation that itself returns a ChessResult, or pass through Error unchanged.
+ */
+public inline fun <T, R> ChessResult<T>.flatMap(transform: (T) -> ChessResult<R>): ChessResult<R> = when (this) {
+    is ChessResult.Success -> transform(value)
+    is ChessResult.Error -> this
+}
+
 /**
  * Transform the error message if this is an Error, or pass through Success unchanged.
  */
 public inline fun <T> ChessResult<T>.mapError(transform: (String) -> String): ChessResult<T> = when (this) {
     is ChessResult.Success -> this
-    is ChessResult.Error -> ChessResult.Error(transform(message), cause)
+    is ChessResult.Error -> ChessResult.Error(transform(message), cause, kind)
 }
 
 /**
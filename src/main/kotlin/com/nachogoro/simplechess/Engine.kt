@@ -0,0 +1,593 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Limits of a search. The search stops as soon as any of them is reached.
+ */
+public data class SearchLimits(
+    /** Maximum depth, in plies. */
+    val depth: Int = MAX_DEPTH,
+    /** Maximum number of nodes, summed over all threads. */
+    val nodes: Long = Long.MAX_VALUE,
+    /** Maximum time, in milliseconds. */
+    val timeMillis: Long = Long.MAX_VALUE
+) {
+    init {
+        require(depth in 1..MAX_DEPTH) { "depth must be between 1 and $MAX_DEPTH: $depth" }
+        require(nodes > 0) { "nodes must be positive: $nodes" }
+        require(timeMillis > 0) { "timeMillis must be positive: $timeMillis" }
+    }
+
+    public companion object {
+        /** Largest depth a search can reach. */
+        public const val MAX_DEPTH: Int = 64
+
+        /** Searches to a fixed depth. */
+        public fun depth(depth: Int): SearchLimits = SearchLimits(depth = depth)
+
+        /** Searches a fixed number of nodes. */
+        public fun nodes(nodes: Long): SearchLimits = SearchLimits(nodes = nodes)
+
+        /** Searches for a fixed time. */
+        public fun time(millis: Long): SearchLimits = SearchLimits(timeMillis = millis)
+    }
+}
+
+/**
+ * Outcome of a search.
+ */
+@ConsistentCopyVisibility
+public data class SearchResult internal constructor(
+    /** The best move found. */
+    val bestMove: Move,
+    /** Score of the position in centipawns, from the point of view of the side to move. */
+    val score: Int,
+    /**
+     * Number of moves to mate if the search found one: positive if the side to
+     * move mates, negative if it is mated. Null otherwise.
+     */
+    val mateIn: Int?,
+    /** Depth of the last completed iteration, in plies. */
+    val depth: Int,
+    /** Expected continuation, starting with [bestMove]. */
+    val principalVariation: List<Move>,
+    /** Number of nodes searched, summed over all threads. */
+    val nodes: Long,
+    /** Duration of the search, in milliseconds. */
+    val timeMillis: Long
+) {
+    /** Search speed, in nodes per second. */
+    public val nodesPerSecond: Long get() = if (timeMillis == 0L) nodes * 1000 else nodes * 1000 / timeMillis
+}
+
+/**
+ * Chess engine searching positions with an alpha-beta search.
+ *
+ * Each search deepens iteratively and uses principal variation search with
+ * null-move pruning, late move reductions and a quiescence search of captures.
+ * Moves are ordered by the transposition table, captures by most valuable
+ * victim and least valuable attacker, killer moves and the history heuristic.
+ *
+ * Searches run on [threads] threads with the Lazy SMP scheme: every thread
+ * searches the same position independently, sharing a lock-free transposition
+ * table, and the result of the calling thread is returned. Moves are generated
+ * in Kotlin, with the same rules as [Game.availableMoves]; no native calls are
+ * made while searching.
+ *
+ * An engine runs one search at a time; concurrent calls wait for each other.
+ * Engines must be closed once they are no longer needed.
+ */
+public class Engine private constructor(
+    /** Number of threads used by each search. */
+    public val threads: Int,
+    hashSizeMb: Int
+) : AutoCloseable {
+
+    private val table = TranspositionTable(hashSizeMb)
+
+    private val helpers: ExecutorService? = if (threads > 1) {
+        Executors.newFixedThreadPool(threads - 1) { task ->
+            Thread(task, "simple-chess-search").apply { isDaemon = true }
+        }
+    } else null
+
+    private val workers = Array(threads) { SearchWorker(it, table) }
+
+    private val searchLock = Any()
+
+    @Volatile
+    private var current: SearchState? = null
+
+    /**
+     * Searches the current position of a game.
+     *
+     * The history of the game is taken into account to detect repetitions.
+     *
+     * @param game The game to search
+     * @param limits When to stop searching
+     * @return A ChessResult containing the result, or an Error if the Game has
+     *         already concluded (state is not PLAYING)
+     */
+    public fun search(game: Game, limits: SearchLimits = SearchLimits()): ChessResult<SearchResult> {
+        if (game.gameState != GameState.PLAYING) return ChessResult.error(ErrorKind.GAME_CONCLUDED, "Game has already concluded")
+
+        // Games are sealed, so every game is a GameImpl
+        val history = ChessResult.catching { (game as GameImpl).repetitionKeys() }
+        return history.flatMap { search(game.currentPosition, it, limits) }
+    }
+
+    /**
+     * Searches a position.
+     *
+     * @param position The position to search
+     * @param limits When to stop searching
+     * @return A ChessResult containing the result, or an Error if the position has no legal moves
+     */
+    public fun search(position: Position, limits: SearchLimits = SearchLimits()): ChessResult<SearchResult> =
+        search(position, LongArray(0), limits)
+
+    /**
+     * Stops the running search, if any. The search returns the result of its
+     * last completed iteration (the first iteration is always completed).
+     */
+    public fun stop() {
+        current?.stopped = true
+    }
+
+    /**
+     * Clears the transposition table, so that the next search does not depend on previous ones.
+     */
+    public fun clearHash() {
+        synchronized(searchLock) { table.clear() }
+    }
+
+    /**
+     * Stops the running search and releases the helper threads.
+     */
+    override fun close() {
+        stop()
+        helpers?.shutdown()
+    }
+
+    private fun search(position: Position, history: LongArray, limits: SearchLimits): ChessResult<SearchResult> {
+        val board = BoardState()
+        Fen.parse(position.fen, board)?.let { return ChessResult.error(ErrorKind.INVALID_FEN, "Invalid position FEN: ${it.message}") }
+        if (!board.hasLegalMove()) return ChessResult.error(ErrorKind.GAME_CONCLUDED, "Position has no legal moves")
+
+        synchronized(searchLock) {
+            val state = SearchState(limits)
+            current = state
+            table.newSearch()
+            try {
+                val tasks = ArrayList<Future<*>>()
+                for (worker in workers.drop(1)) {
+                    worker.prepare(board, history, state)
+                    tasks.add(helpers!!.submit { worker.run() })
+                }
+                val main = workers[0]
+                main.prepare(board, history, state)
+                main.run()
+
+                // Helpers only stop once the main thread is done
+                state.stopped = true
+                tasks.forEach { it.get() }
+
+                val elapsed = (System.nanoTime() - state.startNanos) / 1_000_000
+                val pv = main.principalVariation
+                val moves = ArrayList<Move>(pv.size)
+                val replay = board.copy()
+                for (packed in pv) {
+                    moves.add(Move.fromPacked(packed, replay))
+                    replay.makeMove(packed)
+                }
+                return ChessResult.success(
+                    SearchResult(moves[0], main.score, mateIn(main.score), main.completedDepth, moves, state.nodes.get(), elapsed)
+                )
+            } finally {
+                current = null
+            }
+        }
+    }
+
+    private fun mateIn(score: Int): Int? = when {
+        score > SearchWorker.MATE_BOUND -> (SearchWorker.MATE - score + 1) / 2
+        score < -SearchWorker.MATE_BOUND -> -(SearchWorker.MATE + score) / 2
+        else -> null
+    }
+
+    /**
+     * State shared by the threads of one search.
+     */
+    internal class SearchState(val limits: SearchLimits) {
+        val startNanos: Long = System.nanoTime()
+        val deadline: Long = if (limits.timeMillis == Long.MAX_VALUE) Long.MAX_VALUE else startNanos + limits.timeMillis * 1_000_000
+        val nodes = AtomicLong()
+
+        @Volatile
+        var stopped = false
+    }
+
+    public companion object {
+        /** Default size of the transposition table, in megabytes. */
+        public const val DEFAULT_HASH_SIZE_MB: Int = 16
+
+        /**
+         * Creates an engine.
+         *
+         * @param threads Number of threads used by each search; defaults to the
+         *                number of available processors
+         * @param hashSizeMb Size of the transposition table, in megabytes
+         * @return A new engine
+         * @throws IllegalArgumentException if threads or hashSizeMb is not positive
+         */
+        public fun create(
+            threads: Int = Runtime.getRuntime().availableProcessors(),
+            hashSizeMb: Int = DEFAULT_HASH_SIZE_MB
+        ): Engine {
+            require(threads > 0) { "threads must be positive: $threads" }
+            require(hashSizeMb > 0) { "hashSizeMb must be positive: $hashSizeMb" }
+            return Engine(threads, hashSizeMb)
+        }
+    }
+}
+
+/**
+ * One thread of a search: iterative deepening over its own copy of the board.
+ */
+internal class SearchWorker(private val id: Int, private val table: TranspositionTable) {
+
+    private var board = BoardState()
+    private lateinit var state: Engine.SearchState
+
+    /** Hashes of the positions of the game followed by those of the current search path. */
+    private var hashes = LongArray(MAX_PLY)
+    private var rootIndex = 0
+
+    private val moves = Array(MAX_PLY) { IntArray(BoardState.MAX_MOVES) }
+    private val moveScores = Array(MAX_PLY) { IntArray(BoardState.MAX_MOVES) }
+    private val killers = IntArray(2 * MAX_PLY)
+    private val history = IntArray(64 * 64)
+    private val pv = Array(MAX_PLY) { IntArray(MAX_PLY) }
+    private val pvLength = IntArray(MAX_PLY)
+
+    /** Nodes searched since they were last added to the shared count. */
+    private var pendingNodes = 0
+
+    /** Result of the last completed iteration. */
+    var principalVariation: IntArray = IntArray(0)
+        private set
+    var score: Int = 0
+        private set
+    var completedDepth: Int = 0
+        private set
+
+    fun prepare(root: BoardState, gameHashes: LongArray, state: Engine.SearchState) {
+        this.state = state
+        board = root.copy()
+        if (hashes.size < gameHashes.size + MAX_PLY) hashes = LongArray(gameHashes.size + MAX_PLY)
+        gameHashes.copyInto(hashes)
+        rootIndex = gameHashes.size
+        hashes[rootIndex] = board.zobristKey
+        killers.fill(0)
+        history.fill(0)
+        pendingNodes = 0
+        principalVariation = IntArray(0)
+        score = 0
+        completedDepth = 0
+    }
+
+    fun run() {
+        try {
+            // Helpers start at different depths so that threads diverge early
+            var depth = 1 + id % 2
+            var previous = 0
+            while (depth <= state.limits.depth && !stopped()) {
+                val value = aspirationSearch(depth, previous)
+                if (stopped()) break
+                previous = value
+                score = value
+                completedDepth = depth
+                principalVariation = pv[0].copyOf(pvLength[0])
+                // A mate found at this depth cannot be improved on by deeper iterations
+                if (id == 0 && Math.abs(value) > MATE_BOUND && MATE - Math.abs(value) <= depth) break
+                depth++
+            }
+        } finally {
+            state.nodes.addAndGet(pendingNodes.toLong())
+            pendingNodes = 0
+        }
+    }
+
+    private fun aspirationSearch(depth: Int, previous: Int): Int {
+        if (depth < 4) return search(depth, -INFINITY, INFINITY, 0, true)
+        var window = ASPIRATION_WINDOW
+        while (true) {
+            val alpha = maxOf(previous - window, -INFINITY)
+            val beta = minOf(previous + window, INFINITY)
+            val value = search(depth, alpha, beta, 0, true)
+            if (stopped() || (value in (alpha + 1) until beta)) return value
+            window *= 4
+            if (window > 1000) return search(depth, -INFINITY, INFINITY, 0, true)
+        }
+    }
+
+    private fun search(remainingDepth: Int, alphaIn: Int, betaIn: Int, ply: Int, pvNode: Boolean): Int {
+        countNode()
+        if (stopped()) return 0
+        pvLength[ply] = ply
+        var alpha = alphaIn
+        var beta = betaIn
+        var depth = remainingDepth
+
+        if (ply > 0) {
+            if (board.halfMoveClock >= 100 || isRepetition(ply)) return DRAW
+            // Mate distance pruning
+            alpha = maxOf(alpha, -MATE + ply)
+            beta = minOf(beta, MATE - ply - 1)
+            if (alpha >= beta) return alpha
+        }
+        if (ply >= MAX_PLY - 1) return Evaluation.evaluate(board)
+
+        val inCheck = board.isInCheck(board.activeColor)
+        if (inCheck) depth++
+        if (depth <= 0) return quiesce(alpha, beta, ply)
+
+        val hash = hashes[rootIndex + ply]
+        val entry = table.probe(hash)
+        var tableMove = 0
+        if (entry != TranspositionTable.NONE) {
+            tableMove = TranspositionTable.move(entry)
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                val stored = fromTable(TranspositionTable.score(entry), ply)
+                when (TranspositionTable.bound(entry)) {
+                    TranspositionTable.EXACT -> return stored
+                    TranspositionTable.LOWER -> if (stored >= beta) return stored
+                    TranspositionTable.UPPER -> if (stored <= alpha) return stored
+                }
+            }
+        }
+
+        // Null move pruning: if passing still fails high, the position is good enough
+        if (!pvNode && !inCheck && depth >= 3 && ply > 0 && hasPieces(board.activeColor) && Evaluation.evaluate(board) >= beta) {
+            val value = -nullMoveSearch(depth - 1 - NULL_MOVE_REDUCTION, -beta, ply)
+            if (stopped()) return 0
+            if (value >= beta) return if (value > MATE_BOUND) beta else value
+        }
+
+        val moveList = moves[ply]
+        val count = board.generateLegalMoves(moveList)
+        if (count == 0) return if (inCheck) -MATE + ply else DRAW
+        scoreMoves(moveList, moveScores[ply], count, tableMove, ply)
+
+        val originalAlpha = alpha
+        var best = -INFINITY
+        var bestMove = 0
+        for (i in 0 until count) {
+            val move = pickMove(moveList, moveScores[ply], i, count)
+            val quiet = !isCapture(move) && BoardState.movePromotion(move) == 0
+            makeMove(move, ply)
+            var value: Int
+            if (i == 0) {
+                value = -search(depth - 1, -beta, -alpha, ply + 1, pvNode)
+            } else {
+                // Late quiet moves are searched to a reduced depth first
+                val reduction = if (depth >= 3 && i >= 4 && quiet && !inCheck) 1 else 0
+                value = -search(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, false)
+                if (value > alpha && reduction > 0) value = -search(depth - 1, -alpha - 1, -alpha, ply + 1, false)
+                if (value > alpha && value < beta) value = -search(depth - 1, -beta, -alpha, ply + 1, true)
+            }
+            board.unmakeMove(move)
+            if (stopped()) return 0
+
+            if (value > best) {
+                best = value
+                bestMove = move
+                if (value > alpha) {
+                    alpha = value
+                    updatePv(ply, move)
+                    if (value >= beta) {
+                        if (quiet) {
+                            if (killers[2 * ply] != move) {
+                                killers[2 * ply + 1] = killers[2 * ply]
+                                killers[2 * ply] = move
+                            }
+                            history[historyIndex(move)] += depth * depth
+                        }
+                        break
+                    }
+                }
+            }
+        }
+
+        val bound = when {
+            best >= beta -> TranspositionTable.LOWER
+            best > originalAlpha -> TranspositionTable.EXACT
+            else -> TranspositionTable.UPPER
+        }
+        table.store(hash, bestMove, toTable(best, ply), depth, bound)
+        return best
+    }
+
+    private fun nullMoveSearch(depth: Int, alpha: Int, ply: Int): Int {
+        val halfMoveClock = board.halfMoveClock
+        board.makeNullMove()
+        // Positions before a null move cannot repeat after it
+        board.halfMoveClock = 0
+        hashes[rootIndex + ply + 1] = board.zobristKey
+        val value = search(depth, alpha, alpha + 1, ply + 1, false)
+        board.unmakeNullMove()
+        board.halfMoveClock = halfMoveClock
+        return value
+    }
+
+    private fun quiesce(alphaIn: Int, beta: Int, ply: Int): Int {
+        countNode()
+        if (stopped()) return 0
+        pvLength[ply] = ply
+        if (ply >= MAX_PLY - 1) return Evaluation.evaluate(board)
+
+        var alpha = alphaIn
+        val inCheck = board.isInCheck(board.activeColor)
+        var best = -INFINITY
+        if (!inCheck) {
+            // Standing pat: the side to move is not forced to capture
+            best = Evaluation.evaluate(board)
+            if (best >= beta) return best
+            if (best > alpha) alpha = best
+        }
+
+        val moveList = moves[ply]
+        val count = board.generateLegalMoves(moveList)
+        if (count == 0) return if (inCheck) -MATE + ply else DRAW
+
+        // Out of check every evasion is searched, otherwise only captures and promotions
+        var tactical = 0
+        for (i in 0 until count) {
+            val move = moveList[i]
+            if (inCheck || isCapture(move) || BoardState.movePromotion(move) != 0) moveList[tactical++] = move
+        }
+        scoreMoves(moveList, moveScores[ply], tactical, 0, ply)
+
+        for (i in 0 until tactical) {
+            val move = pickMove(moveList, moveScores[ply], i, tactical)
+            makeMove(move, ply)
+            val value = -quiesce(-beta, -alpha, ply + 1)
+            board.unmakeMove(move)
+            if (stopped()) return 0
+            if (value > best) {
+                best = value
+                if (value > alpha) {
+                    alpha = value
+                    updatePv(ply, move)
+                    if (value >= beta) break
+                }
+            }
+        }
+        return best
+    }
+
+    /**
+     * Whether the search must stop. The main thread always completes its first
+     * iteration, so that every search has a result.
+     */
+    private fun stopped(): Boolean = state.stopped && (id != 0 || completedDepth > 0)
+
+    private fun makeMove(move: Int, ply: Int) {
+        board.makeMove(move)
+        hashes[rootIndex + ply + 1] = board.zobristKey
+    }
+
+    private fun countNode() {
+        if (++pendingNodes < NODE_BATCH) return
+        val nodes = state.nodes.addAndGet(pendingNodes.toLong())
+        pendingNodes = 0
+        if (nodes >= state.limits.nodes || System.nanoTime() >= state.deadline ||
+            (id == 0 && Thread.currentThread().isInterrupted)
+        ) {
+            state.stopped = true
+        }
+    }
+
+    private fun isRepetition(ply: Int): Boolean {
+        val current = rootIndex + ply
+        val hash = hashes[current]
+        val first = maxOf(0, current - board.halfMoveClock)
+        var i = current - 2
+        while (i >= first) {
+            if (hashes[i] == hash) return true
+            i -= 2
+        }
+        return false
+    }
+
+    private fun hasPieces(color: Int): Boolean {
+        for (code in board.squares) {
+            if (code == BoardState.EMPTY || code shr 3 != color) continue
+            val type = code and BoardState.TYPE_MASK
+            if (type != BoardState.PAWN && type != BoardState.KING) return true
+        }
+        return false
+    }
+
+    private fun isCapture(move: Int): Boolean {
+        val to = BoardState.moveTo(move)
+        if (board.squares[to] != BoardState.EMPTY) return true
+        val from = BoardState.moveFrom(move)
+        return to == board.enPassantTarget && board.squares[from] and BoardState.TYPE_MASK == BoardState.PAWN
+    }
+
+    private fun scoreMoves(moveList: IntArray, scores: IntArray, count: Int, tableMove: Int, ply: Int) {
+        for (i in 0 until count) {
+            val move = moveList[i]
+            scores[i] = when {
+                move == tableMove -> 1_000_000
+                isCapture(move) -> {
+                    val victim = board.squares[BoardState.moveTo(move)] and BoardState.TYPE_MASK
+                    val attacker = board.squares[BoardState.moveFrom(move)] and BoardState.TYPE_MASK
+                    // En passant captures have no piece on the destination square
+                    val victimValue = if (victim == BoardState.EMPTY) Evaluation.PIECE_VALUES[BoardState.PAWN] else Evaluation.PIECE_VALUES[victim]
+                    100_000 + 10 * victimValue - Evaluation.PIECE_VALUES[attacker] / 10
+                }
+                BoardState.movePromotion(move) != 0 -> 90_000 + Evaluation.PIECE_VALUES[BoardState.movePromotion(move)]
+                move == killers[2 * ply] -> 80_000
+                move == killers[2 * ply + 1] -> 79_000
+                else -> minOf(history[historyIndex(move)], 70_000)
+            }
+        }
+    }
+
+    /**
+     * Moves the best scored move from index [i] on to [i] (selection sort step) and returns it.
+     */
+    private fun pickMove(moveList: IntArray, scores: IntArray, i: Int, count: Int): Int {
+        var best = i
+        for (j in i + 1 until count) if (scores[j] > scores[best]) best = j
+        if (best != i) {
+            val move = moveList[i]
+            moveList[i] = moveList[best]
+            moveList[best] = move
+            val score = scores[i]
+            scores[i] = scores[best]
+            scores[best] = score
+        }
+        return moveList[i]
+    }
+
+    private fun updatePv(ply: Int, move: Int) {
+        pv[ply][ply] = move
+        val childLength = if (ply + 1 < MAX_PLY) pvLength[ply + 1] else ply + 1
+        for (i in ply + 1 until childLength) pv[ply][i] = pv[ply + 1][i]
+        pvLength[ply] = maxOf(childLength, ply + 1)
+    }
+
+    private fun historyIndex(move: Int): Int = BoardState.moveFrom(move) * 64 + BoardState.moveTo(move)
+
+    /** Mate scores are stored relative to the position rather than to the root. */
+    private fun toTable(score: Int, ply: Int): Int = when {
+        score > MATE_BOUND -> score + ply
+        score < -MATE_BOUND -> score - ply
+        else -> score
+    }
+
+    private fun fromTable(score: Int, ply: Int): Int = when {
+        score > MATE_BOUND -> score - ply
+        score < -MATE_BOUND -> score + ply
+        else -> score
+    }
+
+    companion object {
+        const val MAX_PLY = 128
+        const val MATE = 32_000
+        const val MATE_BOUND = MATE - MAX_PLY
+        const val INFINITY = 32_001
+        const val DRAW = 0
+
+        private const val NODE_BATCH = 1024
+        private const val NULL_MOVE_REDUCTION = 2
+        private const val ASPIRATION_WINDOW = 50
+    }
+}
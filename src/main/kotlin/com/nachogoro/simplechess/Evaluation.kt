@@ -0,0 +1,369 @@
+package com.nachogoro.simplechess
+
+/**
+ * Static evaluation used by the [Engine] and [Evaluator.DEFAULT]: material plus
+ * piece-square tables, with the king table blended between middlegame and
+ * endgame by the material left on the board, plus mobility and pawn structure.
+ *
+ * Material and piece-square terms only depend on each piece and its square, so
+ * [Accumulator] keeps them up to date move by move; mobility and pawn structure
+ * are recomputed from the board on every evaluation.
+ */
+internal object Evaluation {
+
+    /** Value of each board piece type, in centipawns. */
+    val PIECE_VALUES = intArrayOf(0, 100, 500, 320, 330, 900, 0)
+
+    /** Weight of each board piece type in the game phase; 24 is the full opening material. */
+    private val PHASE_WEIGHTS = intArrayOf(0, 0, 2, 1, 1, 4, 0)
+    private const val FULL_PHASE = 24
+
+    // Tables are laid out as seen from white, rank 8 first
+    private val PAWN_TABLE = intArrayOf(
+        0, 0, 0, 0, 0, 0, 0, 0,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        10, 10, 20, 30, 30, 20, 10, 10,
+        5, 5, 10, 25, 25, 10, 5, 5,
+        0, 0, 0, 20, 20, 0, 0, 0,
+        5, -5, -10, 0, 0, -10, -5, 5,
+        5, 10, 10, -20, -20, 10, 10, 5,
+        0, 0, 0, 0, 0, 0, 0, 0
+    )
+
+    private val KNIGHT_TABLE = intArrayOf(
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20, 0, 0, 0, 0, -20, -40,
+        -30, 0, 10, 15, 15, 10, 0, -30,
+        -30, 5, 15, 20, 20, 15, 5, -30,
+        -30, 0, 15, 20, 20, 15, 0, -30,
+        -30, 5, 10, 15, 15, 10, 5, -30,
+        -40, -20, 0, 5, 5, 0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    )
+
+    private val BISHOP_TABLE = intArrayOf(
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -10, 0, 5, 10, 10, 5, 0, -10,
+        -10, 5, 5, 10, 10, 5, 5, -10,
+        -10, 0, 10, 10, 10, 10, 0, -10,
+        -10, 10, 10, 10, 10, 10, 10, -10,
+        -10, 5, 0, 0, 0, 0, 5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    )
+
+    private val ROOK_TABLE = intArrayOf(
+        0, 0, 0, 0, 0, 0, 0, 0,
+        5, 10, 10, 10, 10, 10, 10, 5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        0, 0, 0, 5, 5, 0, 0, 0
+    )
+
+    private val QUEEN_TABLE = intArrayOf(
+        -20, -10, -10, -5, -5, -10, -10, -20,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -10, 0, 5, 5, 5, 5, 0, -10,
+        -5, 0, 5, 5, 5, 5, 0, -5,
+        0, 0, 5, 5, 5, 5, 0, -5,
+        -10, 5, 5, 5, 5, 5, 0, -10,
+        -10, 0, 5, 0, 0, 0, 0, -10,
+        -20, -10, -10, -5, -5, -10, -10, -20
+    )
+
+    private val KING_MIDDLEGAME_TABLE = intArrayOf(
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+        20, 20, 0, 0, 0, 0, 20, 20,
+        20, 30, 10, 0, 0, 10, 30, 20
+    )
+
+    private val KING_ENDGAME_TABLE = intArrayOf(
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10, 0, 0, -10, -20, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -30, 0, 0, 0, 0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    )
+
+    /** Piece-square table of each board piece type (the king's is handled separately). */
+    private val TABLES = arrayOf(IntArray(64), PAWN_TABLE, ROOK_TABLE, KNIGHT_TABLE, BISHOP_TABLE, QUEEN_TABLE, IntArray(64))
+
+    /** Bonus per reachable square of each board piece type. */
+    private val MOBILITY_WEIGHTS = intArrayOf(0, 0, 2, 4, 5, 1, 0)
+
+    private const val DOUBLED_PAWN_PENALTY = 10
+    private const val ISOLATED_PAWN_PENALTY = 15
+
+    /** Bonus of a passed pawn by its rank, counted from its own side. */
+    private val PASSED_PAWN_BONUS = intArrayOf(0, 5, 10, 20, 35, 60, 100, 0)
+
+    private const val FILE_A = 0x0101010101010101L
+
+    /** Pawns on the files next to each file. */
+    private val ADJACENT_FILES = LongArray(8) { file ->
+        (if (file > 0) FILE_A shl (file - 1) else 0L) or (if (file < 7) FILE_A shl (file + 1) else 0L)
+    }
+
+    /** Squares in front of a pawn, on its file and the adjacent ones, for each color and square. */
+    private val PASSED_PAWN_MASKS = Array(2) { color ->
+        LongArray(64) { square ->
+            val rank = square shr 3
+            val files = ADJACENT_FILES[square and 7] or (FILE_A shl (square and 7))
+            var ahead = 0L
+            for (r in 0 until 8) {
+                if (if (color == BoardState.WHITE) r > rank else r < rank) ahead = ahead or (0xffL shl (8 * r))
+            }
+            files and ahead
+        }
+    }
+
+    /**
+     * Evaluates a board.
+     *
+     * @return The score in centipawns, from the point of view of the side to move
+     */
+    fun evaluate(board: BoardState): Int {
+        val score = evaluateForWhite(board)
+        return if (board.activeColor == BoardState.WHITE) score else -score
+    }
+
+    /**
+     * Evaluates a board.
+     *
+     * @return The score in centipawns, positive when white is better
+     */
+    fun evaluateForWhite(board: BoardState): Int {
+        var material = 0
+        var kingMiddlegame = 0
+        var kingEndgame = 0
+        var phase = 0
+        val squares = board.squares
+        for (square in 0 until 64) {
+            val code = squares[square]
+            if (code == BoardState.EMPTY) continue
+            val type = code and BoardState.TYPE_MASK
+            phase += PHASE_WEIGHTS[type]
+            if (type == BoardState.KING) {
+                kingMiddlegame += kingTerm(KING_MIDDLEGAME_TABLE, code, square)
+                kingEndgame += kingTerm(KING_ENDGAME_TABLE, code, square)
+            } else {
+                material += pieceTerm(code, square)
+            }
+        }
+        return taper(material, kingMiddlegame, kingEndgame, phase) + positional(board)
+    }
+
+    private fun pieceTerm(code: Int, square: Int): Int {
+        val type = code and BoardState.TYPE_MASK
+        // Black pieces use the white tables on the mirrored square
+        return if (code shr 3 == BoardState.WHITE) {
+            PIECE_VALUES[type] + TABLES[type][square xor 56]
+        } else {
+            -(PIECE_VALUES[type] + TABLES[type][square])
+        }
+    }
+
+    private fun kingTerm(table: IntArray, code: Int, square: Int): Int =
+        if (code shr 3 == BoardState.WHITE) table[square xor 56] else -table[square]
+
+    private fun taper(material: Int, kingMiddlegame: Int, kingEndgame: Int, phase: Int): Int {
+        val clamped = minOf(phase, FULL_PHASE)
+        return material + (kingMiddlegame * clamped + kingEndgame * (FULL_PHASE - clamped)) / FULL_PHASE
+    }
+
+    /**
+     * Mobility and pawn structure, in centipawns, positive when white is better.
+     */
+    private fun positional(board: BoardState): Int {
+        val squares = board.squares
+        var score = 0
+        var whitePawns = 0L
+        var blackPawns = 0L
+        for (square in 0 until 64) {
+            val code = squares[square]
+            if (code == BoardState.EMPTY) continue
+            val type = code and BoardState.TYPE_MASK
+            val color = code shr 3
+            when (type) {
+                BoardState.PAWN -> if (color == BoardState.WHITE) {
+                    whitePawns = whitePawns or (1L shl square)
+                } else {
+                    blackPawns = blackPawns or (1L shl square)
+                }
+                BoardState.KING -> Unit
+                else -> {
+                    val mobility = MOBILITY_WEIGHTS[type] * reachableSquares(squares, square, type, color)
+                    score += if (color == BoardState.WHITE) mobility else -mobility
+                }
+            }
+        }
+        return score + pawnStructure(whitePawns, blackPawns, BoardState.WHITE) -
+            pawnStructure(blackPawns, whitePawns, BoardState.BLACK)
+    }
+
+    private fun reachableSquares(squares: IntArray, square: Int, type: Int, color: Int): Int {
+        var count = 0
+        if (type == BoardState.KNIGHT) {
+            for (to in BoardState.KNIGHT_TARGETS[square]) {
+                val target = squares[to]
+                if (target == BoardState.EMPTY || target shr 3 != color) count++
+            }
+            return count
+        }
+        // Rays 0 to 3 are straight and 4 to 7 diagonal
+        val first = if (type == BoardState.BISHOP) 4 else 0
+        val last = if (type == BoardState.ROOK) 4 else 8
+        for (direction in first until last) {
+            for (to in BoardState.RAYS[direction][square]) {
+                val target = squares[to]
+                if (target == BoardState.EMPTY) {
+                    count++
+                    continue
+                }
+                if (target shr 3 != color) count++
+                break
+            }
+        }
+        return count
+    }
+
+    /**
+     * Pawn structure of one side: penalties for doubled and isolated pawns and
+     * a bonus for passed pawns.
+     */
+    private fun pawnStructure(own: Long, enemy: Long, color: Int): Int {
+        var score = 0
+        for (file in 0 until 8) {
+            val onFile = java.lang.Long.bitCount(own and (FILE_A shl file))
+            if (onFile == 0) continue
+            if (onFile > 1) score -= DOUBLED_PAWN_PENALTY * (onFile - 1)
+            if (own and ADJACENT_FILES[file] == 0L) score -= ISOLATED_PAWN_PENALTY * onFile
+        }
+        var pawns = own
+        while (pawns != 0L) {
+            val square = java.lang.Long.numberOfTrailingZeros(pawns)
+            pawns = pawns and (pawns - 1)
+            if (enemy and PASSED_PAWN_MASKS[color][square] == 0L) {
+                val rank = square shr 3
+                score += PASSED_PAWN_BONUS[if (color == BoardState.WHITE) rank else 7 - rank]
+            }
+        }
+        return score
+    }
+
+    /**
+     * Material and piece-square terms of a board, updated move by move.
+     *
+     * Moves must be passed to [play] before they are made on the board; the
+     * terms of earlier positions are restored with [save] and [restore].
+     */
+    class Accumulator {
+        private var material = 0
+        private var kingMiddlegame = 0
+        private var kingEndgame = 0
+        private var phase = 0
+
+        /**
+         * Recomputes the terms from scratch.
+         */
+        fun reset(board: BoardState) {
+            material = 0
+            kingMiddlegame = 0
+            kingEndgame = 0
+            phase = 0
+            for (square in 0 until 64) {
+                val code = board.squares[square]
+                if (code != BoardState.EMPTY) add(code, square)
+            }
+        }
+
+        /**
+         * Updates the terms for a (pseudo-legal) move which is about to be made on [board].
+         */
+        fun play(board: BoardState, move: Int) {
+            val squares = board.squares
+            val from = BoardState.moveFrom(move)
+            val to = BoardState.moveTo(move)
+            val promotion = BoardState.movePromotion(move)
+            val piece = squares[from]
+            val type = piece and BoardState.TYPE_MASK
+            val captured = squares[to]
+
+            remove(piece, from)
+            if (captured != BoardState.EMPTY) {
+                remove(captured, to)
+            } else if (type == BoardState.PAWN && (from and 7) != (to and 7)) {
+                // En passant: the captured pawn is behind the target square
+                val capturedSquare = if (piece shr 3 == BoardState.WHITE) to - 8 else to + 8
+                remove(squares[capturedSquare], capturedSquare)
+            }
+            add(if (promotion != 0) promotion or (piece and BoardState.TYPE_MASK.inv()) else piece, to)
+
+            if (type == BoardState.KING && (to - from == 2 || from - to == 2)) {
+                val rookFrom = if (to > from) from + 3 else from - 4
+                val rookTo = if (to > from) from + 1 else from - 1
+                val rook = squares[rookFrom]
+                remove(rook, rookFrom)
+                add(rook, rookTo)
+            }
+        }
+
+        /**
+         * Score of [board], whose material must match these terms, in
+         * centipawns and positive when white is better.
+         */
+        fun evaluateForWhite(board: BoardState): Int =
+            taper(material, kingMiddlegame, kingEndgame, phase) + positional(board)
+
+        /**
+         * Writes the terms into [out] at [offset], taking [STATE_SIZE] ints.
+         */
+        fun save(out: IntArray, offset: Int) {
+            out[offset] = material
+            out[offset + 1] = kingMiddlegame
+            out[offset + 2] = kingEndgame
+            out[offset + 3] = phase
+        }
+
+        /**
+         * Restores the terms written by [save].
+         */
+        fun restore(from: IntArray, offset: Int) {
+            material = from[offset]
+            kingMiddlegame = from[offset + 1]
+            kingEndgame = from[offset + 2]
+            phase = from[offset + 3]
+        }
+
+        private fun add(code: Int, square: Int) = update(code, square, 1)
+
+        private fun remove(code: Int, square: Int) = update(code, square, -1)
+
+        private fun update(code: Int, square: Int, sign: Int) {
+            val type = code and BoardState.TYPE_MASK
+            phase += sign * PHASE_WEIGHTS[type]
+            if (type == BoardState.KING) {
+                kingMiddlegame += sign * kingTerm(KING_MIDDLEGAME_TABLE, code, square)
+                kingEndgame += sign * kingTerm(KING_ENDGAME_TABLE, code, square)
+            } else {
+                material += sign * pieceTerm(code, square)
+            }
+        }
+
+        companion object {
+            /** Number of ints written by [save]. */
+            const val STATE_SIZE = 4
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nachogoro.simplechess
+
+/**
+ * Static evaluation of chess positions, without any search.
+ *
+ * Scores are in centipawns and positive when white is better, regardless of
+ * the side to move.
+ *
+ * Implementations only need [evaluate]; the batch and incremental entry points
+ * fall back to it. [DEFAULT] overrides both to work directly on an internal
+ * board, which is much cheaper when scoring many positions.
+ */
+public interface Evaluator {
+
+    /**
+     * Evaluates a position.
+     *
+     * @param position The position to evaluate
+     * @return The score in centipawns, positive when white is better
+     */
+    public fun evaluate(position: Position): Double
+
+    /**
+     * Evaluates several positions.
+     *
+     * @param positions The positions to evaluate
+     * @return The score of each position, in the same order
+     */
+    public fun evaluate(positions: List<Position>): DoubleArray =
+        DoubleArray(positions.size) { evaluate(positions[it]) }
+
+    /**
+     * Starts an incremental evaluation from a position, to score the
+     * positions reached by pushing and popping moves on it.
+     *
+     * @param position The root position of the session
+     * @return A new session, not safe for concurrent use
+     */
+    public fun session(position: Position): EvaluationSession = RebuildingEvaluationSession(this, position)
+
+    public companion object {
+        /**
+         * Evaluation used by [Engine]: material and piece-square tables (with
+         * the king's blended between middlegame and endgame), mobility of the
+         * pieces and pawn structure (doubled, isolated and passed pawns).
+         *
+         * Its sessions update material and piece-square terms move by move.
+         */
+        public val DEFAULT: Evaluator = StandardEvaluator
+    }
+}
+
+/**
+ * Evaluation of the positions of a make/unmake-style traversal, starting at a
+ * root position.
+ *
+ * A session keeps its own board: [push] plays a move on it and [pop] takes it
+ * back, so a tree of positions can be scored without building a [Position]
+ * for each of them.
+ */
+public interface EvaluationSession {
+
+    /**
+     * Score of the current position, in centipawns and positive when white is better.
+     */
+    public val score: Double
+
+    /**
+     * Number of moves pushed since the root position.
+     */
+    public val depth: Int
+
+    /**
+     * The current position.
+     */
+    public val position: Position
+
+    /**
+     * Legal moves in the current position.
+     */
+    public val availableMoves: List<Move>
+
+    /**
+     * Plays a move from the current position.
+     *
+     * @param move A legal move in the current position
+     * @return A ChessResult containing the score of the resulting position, or an Error if the move is not legal
+     */
+    public fun push(move: Move): ChessResult<Double>
+
+    /**
+     * Takes back the last move pushed.
+     *
+     * @return The score of the position before that move
+     * @throws IllegalStateException If no move has been pushed
+     */
+    public fun pop(): Double
+}
+
+/**
+ * Session over a [BoardState], which validates and plays the moves.
+ * Subclasses supply the score of the current board.
+ */
+internal abstract class BoardEvaluationSession(root: Position) : EvaluationSession {
+
+    protected val board: BoardState = root.toBoard()
+
+    private var moves = IntArray(16)
+    private var pushed = 0
+    private val legalMoves = IntArray(BoardState.MAX_MOVES)
+
+    override val depth: Int get() = pushed
+
+    override val position: Position get() = Position.fromBoard(board)
+
+    override val availableMoves: List<Move>
+        get() {
+            val count = board.generateLegalMoves(legalMoves)
+            return List(count) { Move.fromPacked(legalMoves[it], board) }
+        }
+
+    override fun push(move: Move): ChessResult<Double> {
+        val packed = move.packed
+        val count = board.generateLegalMoves(legalMoves)
+        var legal = false
+        for (i in 0 until count) {
+            if (legalMoves[i] == packed) {
+                legal = true
+                break
+            }
+        }
+        if (!legal || board.squares[move.from.index] != BoardState.code(move.piece)) {
+            return ChessResult.error(ErrorKind.ILLEGAL_MOVE, "Move $move is not legal in ${Fen.format(board)}")
+        }
+
+        beforeMove(packed, pushed)
+        if (pushed == moves.size) moves = moves.copyOf(pushed * 2)
+        moves[pushed++] = packed
+        board.makeMove(packed)
+        return ChessResult.success(score)
+    }
+
+    override fun pop(): Double {
+        check(pushed > 0) { "No move to pop" }
+        board.unmakeMove(moves[--pushed])
+        afterUnmove(pushed)
+        return score
+    }
+
+    /**
+     * Called before [move] is made on the board, [ply] being the depth of the current position.
+     */
+    protected open fun beforeMove(move: Int, ply: Int) {}
+
+    /**
+     * Called after the move made at [ply] is taken back.
+     */
+    protected open fun afterUnmove(ply: Int) {}
+}
+
+/**
+ * Session for evaluators which only know how to score a [Position]: one is
+ * built for every score requested.
+ */
+internal class RebuildingEvaluationSession(
+    private val evaluator: Evaluator,
+    root: Position
+) : BoardEvaluationSession(root) {
+
+    override val score: Double get() = evaluator.evaluate(position)
+}
+
+/**
+ * Implementation of [Evaluator.DEFAULT] over [Evaluation].
+ */
+internal object StandardEvaluator : Evaluator {
+
+    override fun evaluate(position: Position): Double =
+        Evaluation.evaluateForWhite(position.toBoard()).toDouble()
+
+    override fun evaluate(positions: List<Position>): DoubleArray {
+        val board = BoardState()
+        return DoubleArray(positions.size) { Evaluation.evaluateForWhite(positions[it].toBoard(board)).toDouble() }
+    }
+
+    override fun session(position: Position): EvaluationSession = IncrementalEvaluationSession(position)
+
+    /**
+     * Session keeping the material and piece-square terms up to date, saving
+     * them at each ply so that [pop] restores them without recomputing.
+     */
+    private class IncrementalEvaluationSession(root: Position) : BoardEvaluationSession(root) {
+        private val accumulator = Evaluation.Accumulator().also { it.reset(board) }
+        private var saved = IntArray(16 * Evaluation.Accumulator.STATE_SIZE)
+
+        override val score: Double get() = accumulator.evaluateForWhite(board).toDouble()
+
+        override fun beforeMove(move: Int, ply: Int) {
+            val offset = ply * Evaluation.Accumulator.STATE_SIZE
+            if (offset == saved.size) saved = saved.copyOf(offset * 2)
+            accumulator.save(saved, offset)
+            accumulator.play(board, move)
+        }
+
+        override fun afterUnmove(ply: Int) {
+            accumulator.restore(saved, ply * Evaluation.Accumulator.STATE_SIZE)
+        }
+    }
+}
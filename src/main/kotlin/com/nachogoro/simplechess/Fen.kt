@@ -0,0 +1,269 @@
+package com.nachogoro.simplechess
+
+/**
+ * Reasons why a FEN string is rejected.
+ */
+public enum class FenError(public val message: String) {
+    MALFORMED_FIELDS("FEN must consist of six space-separated fields"),
+    INVALID_PLACEMENT("Invalid piece placement"),
+    INVALID_ACTIVE_COLOR("Active color must be 'w' or 'b'"),
+    INVALID_CASTLING_RIGHTS("Invalid castling availability"),
+    INVALID_EN_PASSANT_TARGET("Invalid en passant target square"),
+    INVALID_HALF_MOVE_CLOCK("Invalid half move clock"),
+    INVALID_FULL_MOVE_NUMBER("Invalid full move number"),
+    INVALID_KING_COUNT("Each side must have exactly one king"),
+    PAWN_ON_BACK_RANK("Pawns cannot stand on the first or last rank"),
+    OPPONENT_IN_CHECK("The side which is not to move is in check"),
+
+    /**
+     * A castling right is granted although the king or the rook are not on
+     * their original squares. Only reported by strict validation ([FenBatch]).
+     */
+    INCONSISTENT_CASTLING_RIGHTS("Castling rights do not match the position of kings and rooks"),
+
+    /**
+     * The en passant target is not the square skipped by a pawn which has just
+     * advanced two squares. Only reported by strict validation ([FenBatch]).
+     */
+    INCONSISTENT_EN_PASSANT_TARGET("En passant target does not match a pawn which has just advanced two squares"),
+}
+
+/**
+ * Pure-Kotlin reader and writer of Forsyth-Edwards Notation.
+ *
+ * Parsing enforces the same rules as the native library when creating a game
+ * from a FEN string, without going through JNA.
+ */
+internal object Fen {
+
+    /**
+     * Parses a FEN string into the given board, replacing its contents.
+     *
+     * @return null if the FEN is valid, or the reason why it is rejected
+     */
+    fun parse(fen: CharSequence, board: BoardState): FenError? = parse(fen, board, acceptEpd = false)
+
+    /**
+     * Parses a FEN string into the given board, replacing its contents.
+     *
+     * If [acceptEpd] is true, EPD records are accepted as well: only the first
+     * four fields are required, the move counters default to "0 1" and any
+     * trailing EPD operations are ignored.
+     *
+     * @return null if the FEN is valid, or the reason why it is rejected
+     */
+    fun parse(fen: CharSequence, board: BoardState, acceptEpd: Boolean): FenError? {
+        val bounds = IntArray(2 * FIELD_COUNT)
+        var fields = 0
+        var i = 0
+        while (true) {
+            while (i < fen.length && fen[i].isWhitespace()) i++
+            if (i == fen.length) break
+            if (fields == FIELD_COUNT) return FenError.MALFORMED_FIELDS
+            if (acceptEpd && fields == EPD_FIELD_COUNT && fen[i] !in '0'..'9') break
+            bounds[2 * fields] = i
+            while (i < fen.length && !fen[i].isWhitespace()) i++
+            bounds[2 * fields + 1] = i
+            fields++
+        }
+        val hasCounters = fields == FIELD_COUNT
+        if (!hasCounters && !(acceptEpd && fields == EPD_FIELD_COUNT)) return FenError.MALFORMED_FIELDS
+
+        board.clear()
+        parsePlacement(fen, bounds[0], bounds[1], board)?.let { return it }
+
+        board.activeColor = when {
+            bounds[3] - bounds[2] != 1 -> return FenError.INVALID_ACTIVE_COLOR
+            fen[bounds[2]] == 'w' -> BoardState.WHITE
+            fen[bounds[2]] == 'b' -> BoardState.BLACK
+            else -> return FenError.INVALID_ACTIVE_COLOR
+        }
+
+        board.castlingRights = parseCastlingRights(fen, bounds[4], bounds[5])
+            ?: return FenError.INVALID_CASTLING_RIGHTS
+        board.enPassantTarget = parseEnPassantTarget(fen, bounds[6], bounds[7], board.activeColor)
+            ?: return FenError.INVALID_EN_PASSANT_TARGET
+        if (hasCounters) {
+            board.halfMoveClock = parseCounter(fen, bounds[8], bounds[9])
+                ?: return FenError.INVALID_HALF_MOVE_CLOCK
+            board.fullMoveNumber = parseCounter(fen, bounds[10], bounds[11])?.takeIf { it >= 1 }
+                ?: return FenError.INVALID_FULL_MOVE_NUMBER
+        }
+
+        if (board.isInCheck(board.activeColor xor 1)) return FenError.OPPONENT_IN_CHECK
+        return null
+    }
+
+    /**
+     * Checks the castling rights and en passant target of a parsed board
+     * against its pieces. These rules are stricter than the ones enforced by
+     * [parse] (and by the native library).
+     *
+     * @return null if the board is consistent, or the first inconsistency found
+     */
+    fun checkConsistency(board: BoardState): FenError? {
+        val squares = board.squares
+        for ((right, king, rook) in CASTLING_SQUARES) {
+            if (board.castlingRights and right.jnaValue == 0) continue
+            val colorBits = (if (king < 32) BoardState.WHITE else BoardState.BLACK) shl 3
+            if (squares[king] != BoardState.KING or colorBits || squares[rook] != BoardState.ROOK or colorBits) {
+                return FenError.INCONSISTENT_CASTLING_RIGHTS
+            }
+        }
+
+        val target = board.enPassantTarget
+        if (target != BoardState.NO_SQUARE) {
+            // The pawn which advanced two squares stands past the target and its origin square is empty
+            val forward = if (board.activeColor == BoardState.WHITE) -8 else 8
+            val pawn = BoardState.PAWN or ((board.activeColor xor 1) shl 3)
+            if (squares[target] != BoardState.EMPTY ||
+                squares[target - forward] != BoardState.EMPTY ||
+                squares[target + forward] != pawn
+            ) {
+                return FenError.INCONSISTENT_EN_PASSANT_TARGET
+            }
+        }
+        return null
+    }
+
+    private fun parsePlacement(fen: CharSequence, start: Int, end: Int, board: BoardState): FenError? {
+        var rank = 7
+        var file = 0
+        val kings = IntArray(2)
+        for (i in start until end) {
+            val c = fen[i]
+            when {
+                c == '/' -> {
+                    if (file != 8 || rank == 0) return FenError.INVALID_PLACEMENT
+                    rank--
+                    file = 0
+                }
+                c in '1'..'8' -> {
+                    file += c - '0'
+                    if (file > 8) return FenError.INVALID_PLACEMENT
+                }
+                else -> {
+                    val type = PIECE_LETTERS.indexOf(c.uppercaseChar()) + 1
+                    if (type == 0 || file == 8) return FenError.INVALID_PLACEMENT
+                    val color = if (c.isUpperCase()) BoardState.WHITE else BoardState.BLACK
+                    if (type == BoardState.PAWN && (rank == 0 || rank == 7)) return FenError.PAWN_ON_BACK_RANK
+                    if (type == BoardState.KING) kings[color]++
+                    board.put(rank * 8 + file, type or (color shl 3))
+                    file++
+                }
+            }
+        }
+        if (rank != 0 || file != 8) return FenError.INVALID_PLACEMENT
+        if (kings[0] != 1 || kings[1] != 1) return FenError.INVALID_KING_COUNT
+        return null
+    }
+
+    private fun parseCastlingRights(fen: CharSequence, start: Int, end: Int): Int? {
+        if (end - start == 1 && fen[start] == '-') return 0
+        var rights = 0
+        for (i in start until end) {
+            val right = when (fen[i]) {
+                'K' -> CastlingRight.WHITE_KING_SIDE
+                'Q' -> CastlingRight.WHITE_QUEEN_SIDE
+                'k' -> CastlingRight.BLACK_KING_SIDE
+                'q' -> CastlingRight.BLACK_QUEEN_SIDE
+                else -> return null
+            }.jnaValue
+            if (rights and right != 0) return null
+            rights = rights or right
+        }
+        return rights
+    }
+
+    private fun parseEnPassantTarget(fen: CharSequence, start: Int, end: Int, activeColor: Int): Int? {
+        if (end - start == 1 && fen[start] == '-') return BoardState.NO_SQUARE
+        if (end - start != 2) return null
+        val file = fen[start]
+        val rank = fen[start + 1]
+        // The target lies behind a pawn which has just advanced two squares
+        val expectedRank = if (activeColor == BoardState.WHITE) '6' else '3'
+        if (file !in 'a'..'h' || rank != expectedRank) return null
+        return (rank - '1') * 8 + (file - 'a')
+    }
+
+    private fun parseCounter(fen: CharSequence, start: Int, end: Int): Int? {
+        if (end - start !in 1..MAX_COUNTER_DIGITS) return null
+        var value = 0
+        for (i in start until end) {
+            val c = fen[i]
+            if (c !in '0'..'9') return null
+            value = value * 10 + (c - '0')
+        }
+        // The native library stores counters as 16-bit integers
+        return value.takeIf { it <= Short.MAX_VALUE }
+    }
+
+    /**
+     * Writes the FEN representation of a board.
+     */
+    fun format(board: BoardState): String = buildString(MAX_FEN_LENGTH) {
+        for (rank in 7 downTo 0) {
+            var empty = 0
+            for (file in 0 until 8) {
+                val piece = board.squares[rank * 8 + file]
+                if (piece == BoardState.EMPTY) {
+                    empty++
+                    continue
+                }
+                if (empty > 0) append(empty)
+                empty = 0
+                append(letter(piece))
+            }
+            if (empty > 0) append(empty)
+            if (rank > 0) append('/')
+        }
+
+        append(if (board.activeColor == BoardState.WHITE) " w " else " b ")
+
+        val rights = board.castlingRights
+        if (rights == 0) append('-')
+        if (rights and CastlingRight.WHITE_KING_SIDE.jnaValue != 0) append('K')
+        if (rights and CastlingRight.WHITE_QUEEN_SIDE.jnaValue != 0) append('Q')
+        if (rights and CastlingRight.BLACK_KING_SIDE.jnaValue != 0) append('k')
+        if (rights and CastlingRight.BLACK_QUEEN_SIDE.jnaValue != 0) append('q')
+
+        append(' ')
+        val target = board.enPassantTarget
+        if (target == BoardState.NO_SQUARE) {
+            append('-')
+        } else {
+            append('a' + (target and 7))
+            append('1' + (target shr 3))
+        }
+
+        append(' ').append(board.halfMoveClock)
+        append(' ').append(board.fullMoveNumber)
+    }
+
+    /**
+     * FEN letter of a (non-empty) board code.
+     */
+    fun letter(piece: Int): Char {
+        val letter = PIECE_LETTERS[(piece and BoardState.TYPE_MASK) - 1]
+        return if (piece shr 3 == BoardState.WHITE) letter else letter.lowercaseChar()
+    }
+
+    /** The standard starting position. */
+    const val STANDARD_START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+
+    private const val FIELD_COUNT = 6
+    private const val EPD_FIELD_COUNT = 4
+    private const val MAX_COUNTER_DIGITS = 5
+    private const val MAX_FEN_LENGTH = 90
+
+    /** Castling rights with the original squares of the king and rook they involve. */
+    private val CASTLING_SQUARES = listOf(
+        Triple(CastlingRight.WHITE_KING_SIDE, 4, 7),
+        Triple(CastlingRight.WHITE_QUEEN_SIDE, 4, 0),
+        Triple(CastlingRight.BLACK_KING_SIDE, 60, 63),
+        Triple(CastlingRight.BLACK_QUEEN_SIDE, 60, 56)
+    )
+
+    /** Letters of the piece types, in the order of the board codes. */
+    private const val PIECE_LETTERS = "PRNBQK"
+}
@@ -0,0 +1,100 @@
+package com.nachogoro.simplechess
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.Future
+
+/**
+ * Outcome of validating one line of a FEN or EPD dump.
+ */
+@ConsistentCopyVisibility
+public data class FenValidation internal constructor(
+    /** Number of the line in the input, starting at 1. */
+    val lineNumber: Long,
+    /** The line as read from the input. */
+    val input: String,
+    /** The position written in canonical FEN, or null if the line is invalid. */
+    val normalizedFen: String?,
+    /** The reason why the line is invalid, or null if it is valid. */
+    val error: FenError?
+) {
+
+    /**
+     * Whether the line holds a valid position.
+     */
+    public val isValid: Boolean get() = error == null
+}
+
+/**
+ * Bulk validation and normalization of FEN and EPD dumps.
+ *
+ * Each line is parsed with the same rules enforced by [Game.fromFen], plus
+ * consistency checks of the castling rights and en passant target against the
+ * pieces on the board, and re-emitted in canonical FEN. EPD records (four
+ * fields, optionally followed by operations) are accepted and normalized with
+ * move counters "0 1".
+ *
+ * Lines are validated in chunks on a pool of daemon threads, one per available
+ * processor, without creating native games. Results are streamed back in input
+ * order while only a bounded number of chunks is in flight.
+ */
+public object FenBatch {
+
+    private const val CHUNK_SIZE = 2048
+
+    /**
+     * Validates a sequence of FEN or EPD lines.
+     *
+     * The input is consumed lazily as the returned sequence is iterated, which
+     * can only be done once.
+     *
+     * @param lines The lines to validate
+     * @return The outcome for each line, in input order
+     */
+    public fun validate(lines: Sequence<String>): Sequence<FenValidation> = sequence {
+        val input = lines.iterator()
+        val inFlight = ArrayDeque<Future<List<FenValidation>>>()
+        var lineNumber = 0L
+        try {
+            while (true) {
+                while (inFlight.size < 2 * BatchWorkers.parallelism && input.hasNext()) {
+                    val chunk = ArrayList<String>(CHUNK_SIZE)
+                    while (chunk.size < CHUNK_SIZE && input.hasNext()) chunk.add(input.next())
+                    val firstLineNumber = lineNumber + 1
+                    lineNumber += chunk.size
+                    inFlight.addLast(BatchWorkers.executor.submit(Callable { validateChunk(chunk, firstLineNumber) }))
+                }
+                val next = inFlight.removeFirstOrNull() ?: break
+                yieldAll(next.get())
+            }
+        } finally {
+            // Drop pending work if a chunk fails
+            inFlight.forEach { it.cancel(true) }
+        }
+    }
+
+    /**
+     * Validates every line of a FEN or EPD file.
+     *
+     * The file is read lazily and closed when [block] returns, so the sequence
+     * must not be used outside of it.
+     *
+     * @param path The file to validate
+     * @param block Consumer of the outcome of each line, in file order
+     * @return The value returned by [block]
+     */
+    public fun <T> validate(path: Path, block: (Sequence<FenValidation>) -> T): T =
+        Files.newBufferedReader(path).use { reader -> block(validate(reader.lineSequence())) }
+
+    private fun validateChunk(lines: List<String>, firstLineNumber: Long): List<FenValidation> {
+        val board = BoardState()
+        return lines.mapIndexed { i, line -> validateLine(line, firstLineNumber + i, board) }
+    }
+
+    private fun validateLine(line: String, lineNumber: Long, board: BoardState): FenValidation {
+        val error = Fen.parse(line, board, acceptEpd = true) ?: Fen.checkConsistency(board)
+        val normalizedFen = if (error == null) Fen.format(board) else null
+        return FenValidation(lineNumber, line, normalizedFen, error)
+    }
+}
@@ -1,8 +1,13 @@
 package com.nachogoro.simplechess
 
 import com.nachogoro.simplechess.internal.ChessLibraryJNA
+import com.nachogoro.simplechess.internal.ChessLibraryJNA.Offsets
 import com.sun.jna.Pointer
 import java.lang.ref.Cleaner
+import java.lang.ref.Reference
+import java.lang.ref.SoftReference
+import java.lang.ref.WeakReference
+import java.util.BitSet
 
 /**
  * A representation of a chess game at a given point.
@@ -19,6 +24,11 @@ public sealed interface Game {
      */
     public val gameState: GameState
 
+    /**
+     * The options this game was created with.
+     */
+    public val options: GameOptions
+
     /**
      * The reason why the game ended in a draw (only valid if gameState is DRAWN).
      */
@@ -26,14 +36,60 @@ public sealed interface Game {
 
     /**
      * The history of the game as pairs of position and move.
+     *
+     * Entries are decoded when they are accessed and only a bounded number of
+     * them are kept, so reading a few plies of a long game is cheap. The list
+     * supports constant-time random access.
      */
     public val history: List<Pair<Position, PlayedMove>>
 
+    /**
+     * The number of moves (plies) in [history], known without decoding it.
+     */
+    public val plyCount: Int
+
+    /**
+     * The last move of [history], or null if it is empty. Only that entry is decoded.
+     */
+    public val lastMove: PlayedMove?
+
+    /**
+     * The game this one was derived from with [makeMove], [claimDraw] or
+     * [resign], or, for games created by the factory methods, the game before
+     * the last move of [history]. Null if there is no such game.
+     *
+     * The parent is kept as set by [GameOptions.parentRetention]; if it is no
+     * longer kept it is rebuilt by replaying the history.
+     */
+    public val parent: Game?
+
+    /**
+     * Takes back the last move of [history].
+     *
+     * @return A ChessResult containing the game before the last move (which is
+     *         [parent] unless this game ended by a draw claim or resignation),
+     *         or an Error if the history is empty
+     */
+    public fun undo(): ChessResult<Game> {
+        if (plyCount == 0) return ChessResult.error(ErrorKind.NO_MOVE_TO_UNDO, "No move to take back")
+        return ChessResult.catching {
+            var game = checkNotNull(parent)
+            while (game.plyCount == plyCount) game = checkNotNull(game.parent)
+            game
+        }
+    }
+
     /**
      * The current position of the game.
      */
     public val currentPosition: Position
 
+    /**
+     * The current position in Forsyth-Edwards Notation, known without
+     * decoding the whole [currentPosition].
+     */
+    public val fen: String
+
     /**
      * The color which is to move next.
      */
@@ -44,6 +100,11 @@ public sealed interface Game {
      */
     public val availableMoves: List<Move>
 
+    /**
+     * The number of [availableMoves], known without decoding them.
+     */
+    public val availableMoveCount: Int
+
     /**
      * Returns an optional reason under which the current player can claim a draw.
      * Returns null if a draw cannot be claimed.
@@ -62,17 +123,99 @@ public sealed interface Game {
      */
     public fun availableMovesForPiece(square: Square): List<Move>
 
+    /**
+     * Whether a move is available for the player whose turn it is to play,
+     * i.e. whether [makeMove] would accept it.
+     */
+    public fun isLegal(move: Move): Boolean
+
+    /**
+     * Returns the available move between two squares.
+     *
+     * @param from The origin square of the move
+     * @param to The destination square of the move
+     * @param promotion The piece type a pawn is promoted to, or null if the move is not a promotion
+     * @return The matching available move, or null if there is none
+     */
+    public fun findMove(from: Square, to: Square, promotion: PieceType? = null): Move?
+
     /**
      * Make a move for the player whose turn it is to play.
      *
+     * With a successor cache (see [GameOptions.successorCacheSize]), repeating
+     * a move returns the same Game as before while it remains cached.
+     *
      * @param move The desired move
      * @param offerDraw true if the move is accompanied by an offer to draw, false otherwise
-     * @return A ChessResult containing a new Game with the move applied, or an Error if:
+     * @return A ChessResult containing a Game with the move applied, or an Error if:
      *         - The Game has already concluded (state is not PLAYING)
      *         - The move is not valid for the current player
      */
     public fun makeMove(move: Move, offerDraw: Boolean = false): ChessResult<Game>
 
+    /**
+     * Plays every available move, without draw offers.
+     *
+     * The children are created in a single pass over the native game, reusing
+     * one move buffer, and their properties are decoded on first use as with
+     * [makeMove]. With a successor cache (see [GameOptions.successorCacheSize])
+     * cached children are reused and new ones are cached.
+     *
+     * @return Each available move, in the order of [availableMoves], with the
+     *         Game it leads to; empty if the game has concluded
+     */
+    public fun successors(): List<Pair<Move, Game>>
+
+    /**
+     * Returns the position reached by every available move.
+     *
+     * Unlike [successors], no native game is created: the positions are
+     * computed on a JVM-side board and only carry the position itself, not
+     * the history or the draw rules of a [Game].
+     *
+     * @return Each available move, in the order of [availableMoves], with the
+     *         position it leads to; empty if the game has concluded
+     */
+    public fun successorPositions(): List<Pair<Move, Position>> {
+        if (gameState != GameState.PLAYING) return emptyList()
+        val moves = availableMoves
+        val board = currentPosition.toBoard()
+        return moves.map { move ->
+            val packed = move.packed
+            board.makeMove(packed)
+            val position = Position.fromBoard(board)
+            board.unmakeMove(packed)
+            move to position
+        }
+    }
+
+    /**
+     * Resolves a move written in Standard Algebraic Notation (e.g. "Nbd7",
+     * "exd8=Q+", "O-O") against the moves available in the current position.
+     *
+     * Check, checkmate, draw offer and annotation suffixes are accepted but
+     * not verified.
+     *
+     * @param san The move in Standard Algebraic Notation
+     * @return A ChessResult containing the matching Move, or an Error if:
+     *         - The notation is malformed
+     *         - No available move matches the notation
+     *         - The notation is ambiguous
+     */
+    public fun parseSan(san: String): ChessResult<Move>
+
+    /**
+     * Make a move written in Standard Algebraic Notation for the player whose turn it is to play.
+     *
+     * @param san The move in Standard Algebraic Notation
+     * @param offerDraw true if the move is accompanied by an offer to draw, false otherwise
+     * @return A ChessResult containing a new Game with the move applied, or an Error if
+     *         the notation cannot be resolved (see [parseSan]) or the move cannot be made
+     *         (see [makeMove])
+     */
+    public fun makeSanMove(san: String, offerDraw: Boolean = false): ChessResult<Game> =
+        parseSan(san).flatMap { makeMove(it, offerDraw) }
+
     /**
      * Claim a draw if one is available.
      *
@@ -91,13 +234,28 @@ public sealed interface Game {
      */
     public fun resign(resigningPlayer: Color): ChessResult<Game>
 
+    /**
+     * Probes the current position in a tablebase.
+     *
+     * Tablebase probing is experimental (see [Tablebase]).
+     *
+     * @param tablebase The tablebase to probe
+     * @return The result of the current position with perfect play, or null if
+     *         the tablebase does not cover it (see [Tablebase.covers]) or cannot
+     *         probe it
+     */
+    public fun tablebaseResult(tablebase: Tablebase): TablebaseResult? =
+        if (tablebase.covers(currentPosition)) tablebase.probe(currentPosition).getOrNull() else null
+
     public companion object {
         /**
          * Factory method to create a new game from the standard starting position.
          *
+         * @param options The options of the game and every game derived from it
          * @return A ChessResult containing the new Game, or an Error if creation fails
          */
-        public fun newGame(): ChessResult<Game> = GameImpl.createNewGame()
+        public fun newGame(options: GameOptions = GameOptions.DEFAULT): ChessResult<Game> =
+            GameImpl.createNewGame(options)
 
         /**
          * Factory method to create a new game from a given board position.
@@ -111,158 +269,616 @@ public sealed interface Game {
          * resulting Game will not necessarily be complete.
          *
          * @param fen The representation of the initial position in Forsyth-Edwards Notation
+         * @param options The options of the game and every game derived from it
          * @return A ChessResult containing the new Game, or an Error if the FEN is invalid
          */
-        public fun fromFen(fen: String): ChessResult<Game> = GameImpl.createFromFen(fen)
+        public fun fromFen(fen: String, options: GameOptions = GameOptions.DEFAULT): ChessResult<Game> =
+            GameImpl.createFromFen(fen, options)
+
+        /**
+         * Factory method to create a game by replaying moves given in UCI long
+         * algebraic notation, as in the UCI command `position startpos moves e2e4 e7e5`.
+         *
+         * The whole move string is resolved and applied in a single pass over the
+         * native games; only the resulting Game is materialized.
+         *
+         * @param startFen The initial position in Forsyth-Edwards Notation, or "startpos"
+         *                 for the standard starting position
+         * @param moves The moves in UCI long algebraic notation, separated by whitespace
+         * @param options The options of the game and every game derived from it
+         * @return A ChessResult containing the resulting Game, or an Error if:
+         *         - The FEN is invalid
+         *         - A move is malformed or cannot be made in its position
+         */
+        public fun fromUciMoves(startFen: String, moves: String, options: GameOptions = GameOptions.DEFAULT): ChessResult<Game> =
+            GameImpl.createFromUciMoves(startFen, moves, options)
     }
 }
 
 /**
  * Internal implementation of the Game interface.
  * Uses the Cleaner API for automatic memory management of native resources.
+ *
+ * With checkpointed history (see [GameOptions.historyCheckpointInterval]) the
+ * first [archivedPlies] plies of the history live in [archive] and the native
+ * game only holds the ones played after them.
  */
 internal class GameImpl private constructor(
-    private val nativePtr: Pointer
+    private val nativePtr: Pointer,
+    override val options: GameOptions,
+    private val archive: HistoryArchive?,
+    private val archivedPlies: Int,
+    parent: GameImpl?,
+    parentPlies: Int
 ) : Game {
 
-    @Volatile
-    private var destroyed = false
+    // Scalar fields are read straight from native memory on construction: this
+    // is cheaper than decoding the whole structure, and final fields are safely
+    // published to every thread without locking
+    override val gameState: GameState =
+        GameState.fromJna(nativePtr.getInt(Offsets.GAME_STATE.toLong()))
 
-    private val gameData: ChessLibraryJNA.Game by lazy {
-        ChessLibraryJNA.getGameFromPointer(nativePtr)
-            ?: throw IllegalStateException("Failed to read game data from native pointer")
-    }
+    override val drawReason: DrawReason? =
+        if (gameState == GameState.DRAWN) {
+            DrawReason.fromJna(nativePtr.getInt(Offsets.GAME_DRAW_REASON.toLong()))
+        } else null
+
+    override val drawClaimReason: DrawReason? =
+        if (nativePtr.getByte(Offsets.GAME_IS_DRAW_CLAIMABLE.toLong()) != 0.toByte()) {
+            DrawReason.fromJna(nativePtr.getInt(Offsets.GAME_REASON_TO_CLAIM_DRAW.toLong()))
+        } else null
 
-    override val gameState: GameState by lazy {
-        GameState.fromJna(gameData.state)
+    private val nativePlyCount: Int = nativePtr.getShort(Offsets.GAME_HISTORY_SIZE.toLong()).toInt()
+
+    override val plyCount: Int = archivedPlies + nativePlyCount
+
+    /** Number of moves of the parent, which is rebuilt from the first ones of the history. */
+    private val parentPlies: Int = if (parentPlies == UNKNOWN_PARENT) plyCount - 1 else parentPlies
+
+    /** The parent itself, a reference to it, or null, depending on [GameOptions.parentRetention]. */
+    private val parentLink: Any? = when (options.parentRetention) {
+        ParentRetention.STRONG -> parent
+        ParentRetention.SOFT -> parent?.let { SoftReference(it) }
+        ParentRetention.WEAK -> parent?.let { WeakReference(it) }
+        ParentRetention.NONE -> null
     }
 
-    override val drawReason: DrawReason? by lazy {
-        if (gameState == GameState.DRAWN) {
-            DrawReason.fromJna(gameData.draw_reason)
-        } else null
+    override val availableMoveCount: Int = nativePtr.getShort(Offsets.GAME_AVAILABLE_MOVE_COUNT.toLong()).toInt()
+
+    /** Games returned by [makeMove], if [GameOptions.successorCacheSize] is positive. */
+    private val successorCache: SuccessorSlots<GameImpl>? =
+        if (options.successorCacheSize > 0) SuccessorSlots(options.successorCacheSize, options.successorRetention) else null
+
+    // The remaining properties are decoded on first use. Decoding is idempotent,
+    // so concurrent readers may race to compute them instead of blocking on a
+    // lock; the first result is published and the others are discarded
+    override val history: List<Pair<Position, PlayedMove>> by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        if (plyCount > 0) LazyHistory(plyCount, ::historyEntry) else emptyList()
     }
 
-    override val history: List<Pair<Position, PlayedMove>> by lazy {
-        if (gameData.history_size > 0) {
-            val historyEntries = ChessLibraryJNA.getHistoryFromPointer(gameData.history, gameData.history_size.toInt())
-            historyEntries.map { entry ->
-                val position = Position.fromJna(GameStageFromFen(ChessLibraryJNA.byteArrayToString(entry.fen)))
-                val playedMove = PlayedMove.fromJna(entry.played_move)
-                position to playedMove
+    override val lastMove: PlayedMove? by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        when {
+            nativePlyCount > 0 -> PlayedMove.fromJna(decodeNativeMove(nativePlyCount - 1)) {
+                decodeHistoryEntry(nativePlyCount - 1).first.enPassantTarget
             }
-        } else emptyList()
+            archivedPlies > 0 -> checkNotNull(archive).entry(archivedPlies - 1).second
+            else -> null
+        }
     }
 
-    override val currentPosition: Position by lazy {
-        Position.fromJna(gameData.current_stage)
+    override val currentPosition: Position by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        Position.fromSource(NativePositionSource())
     }
 
-    override val availableMoves: List<Move> by lazy {
-        if (gameData.available_move_count > 0) {
-            val jnaMoves = ChessLibraryJNA.getAvailableMovesFromPointer(
-                gameData.available_moves,
-                gameData.available_move_count.toInt()
-            )
-            jnaMoves.map { Move.fromJna(it) }
-        } else emptyList()
+    override val fen: String by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        Instrumentation.measure(ChessOperation.DECODE_FEN, Offsets.FEN_SIZE.toLong()) {
+            withNativeGame { ChessLibraryJNA.getFenFromPointer(it) }
+        }
     }
 
-    override val drawClaimReason: DrawReason? by lazy {
-        if (gameData.is_draw_claimable != 0.toByte()) {
-            DrawReason.fromJna(gameData.reason_to_claim_draw)
-        } else null
+    override val availableMoves: List<Move> by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        if (availableMoveCount > 0) {
+            // Moves are read field by field into the shared Move instances,
+            // without decoding a structure per move
+            Instrumentation.measure(ChessOperation.DECODE_MOVES, availableMoveCount.toLong() * Offsets.PIECE_MOVE_SIZE) {
+                withNativeGame {
+                    val moves = it.getPointer(Offsets.GAME_AVAILABLE_MOVES.toLong())
+                    List(availableMoveCount) { i -> Move.fromNative(moves, i.toLong() * Offsets.PIECE_MOVE_SIZE) }
+                }
+            }
+        } else emptyList()
     }
 
-    override fun availableMovesForPiece(square: Square): List<Move> {
-        // Filter available moves to only those starting from the given square
-        return availableMoves.filter { it.from == square }
+    private val moveIndex: MoveIndex by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        MoveIndex(availableMoves)
     }
 
+    override val parent: Game?
+        get() = if (parentPlies < 0) null else retainedParent() ?: replay(parentPlies)
+
+    override fun availableMovesForPiece(square: Square): List<Move> = moveIndex.movesFrom(square)
+
+    override fun isLegal(move: Move): Boolean = move in moveIndex
+
+    override fun findMove(from: Square, to: Square, promotion: PieceType?): Move? = moveIndex.find(from, to, promotion)
+
     override fun makeMove(move: Move, offerDraw: Boolean): ChessResult<Game> {
+        // Expected failures are returned without throwing, and illegal moves
+        // are rejected without a native round-trip
+        concludedError()?.let { return it }
+        if (move !in moveIndex) return ChessResult.error(ErrorKind.ILLEGAL_MOVE, "Invalid move: $move")
+        val key = move.packed or (if (offerDraw) HistoryArchive.DRAW_OFFER else 0)
+        successorCache?.get(key)?.let { return ChessResult.success(it) }
+
         return ChessResult.catching {
-            validateGamePlaying()
             val jnaMove = move.toJna()
-            val newPtr = if (offerDraw) {
-                ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_make_move_with_draw_offer(nativePtr, jnaMove, true)
-            } else {
-                ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_make_move(nativePtr, jnaMove)
-            }
+            val newPtr = withNativeGame { NativeCalls.makeMove(it, jnaMove, offerDraw) } ?: throw IllegalStateException("Native library rejected available move: $move")
 
-            if (newPtr == null) {
-                throw IllegalArgumentException("Invalid move: $move")
+            child(newPtr, key)
+        }
+    }
+
+    override fun successors(): List<Pair<Move, Game>> {
+        if (gameState != GameState.PLAYING) return emptyList()
+        val moves = availableMoves
+        val jnaMove = ChessLibraryJNA.PieceMove.ByValue()
+        return withNativeGame { ptr ->
+            moves.map { move ->
+                val key = move.packed
+                val cached = successorCache?.get(key)
+                if (cached != null) return@map move to cached
+
+                move.writeJna(jnaMove)
+                val newPtr = NativeCalls.makeMove(ptr, jnaMove, offerDraw = false)
+                    ?: throw IllegalStateException("Failed to make available move: $move")
+                move to child(newPtr, key)
             }
+        }
+    }
 
-            create(newPtr)
+    /**
+     * Wraps the native game reached by a move of this one, caching it if
+     * there is a successor cache.
+     *
+     * @param key The packed move, with [HistoryArchive.DRAW_OFFER] set if it offered a draw
+     */
+    private fun child(nativePtr: Pointer, key: Int): GameImpl {
+        // The native game is released here unless a new instance owns it
+        var released = false
+        try {
+            val next = compacted(nativePtr, options, archive, archivedPlies, this, plyCount)
+                ?: create(nativePtr, options, archive, archivedPlies, this, plyCount).also { released = true }
+            successorCache?.put(key, next, next.nativeBytes())?.let { cleaner.register(next, it) }
+            return next
+        } finally {
+            if (!released) NativeCalls.destroyGame(nativePtr)
         }
     }
 
+    override fun parseSan(san: String): ChessResult<Move> = SanParser.resolve(san, moveIndex)
+
     override fun claimDraw(): ChessResult<Game> {
-        return ChessResult.catching {
-            validateGamePlaying()
-            if (!canClaimDraw) {
-                throw IllegalStateException("No draw can be claimed in the current position")
-            }
+        concludedError()?.let { return it }
+        if (!canClaimDraw) {
+            return ChessResult.error(ErrorKind.DRAW_NOT_CLAIMABLE, "No draw can be claimed in the current position")
+        }
 
-            val newPtr = ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_claim_draw(nativePtr)
+        return ChessResult.catching {
+            val newPtr = withNativeGame { NativeCalls.claimDraw(it) }
                 ?: throw IllegalStateException("Failed to claim draw")
 
-            create(newPtr)
+            create(newPtr, options, archive, archivedPlies, this, plyCount)
         }
     }
 
     override fun resign(resigningPlayer: Color): ChessResult<Game> {
+        concludedError()?.let { return it }
         return ChessResult.catching {
-            validateGamePlaying()
-            val newPtr = ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_resign(nativePtr, resigningPlayer.toJna())
+            val newPtr = withNativeGame { NativeCalls.resign(it, resigningPlayer) }
                 ?: throw IllegalStateException("Failed to resign game")
 
-            create(newPtr)
+            create(newPtr, options, archive, archivedPlies, this, plyCount)
         }
     }
 
-    private fun validateGamePlaying() {
-        if (gameState != GameState.PLAYING) {
-            throw IllegalStateException("Game has already concluded with state: $gameState")
+    /**
+     * Runs an operation on the native game, keeping this instance reachable until
+     * it completes: the Cleaner releases the native game as soon as the instance
+     * becomes unreachable, which could otherwise happen in the middle of a call.
+     */
+    private inline fun <T> withNativeGame(operation: (Pointer) -> T): T {
+        try {
+            return operation(nativePtr)
+        } finally {
+            Reference.reachabilityFence(this)
+        }
+    }
+
+    /**
+     * Estimated native memory of this game: the structure plus its history and available moves.
+     */
+    private fun nativeBytes(): Long =
+        Offsets.GAME_SIZE.toLong() +
+            nativePlyCount.toLong() * Offsets.HISTORY_ENTRY_SIZE +
+            availableMoveCount.toLong() * Offsets.PIECE_MOVE_SIZE
+
+    private fun retainedParent(): GameImpl? = when (val link = parentLink) {
+        is GameImpl -> link
+        is Reference<*> -> link.get() as GameImpl?
+        else -> null
+    }
+
+    /**
+     * Rebuilds the game after the first [plies] moves of the history.
+     */
+    private fun replay(plies: Int): GameImpl {
+        val history = history
+        val startFen = if (history.isEmpty()) fen else history[0].first.fen
+        val moves = IntArray(plies) { history[it].second.move.packed }
+        val drawOffers = BitSet().apply { for (ply in 0 until plies) if (history[ply].second.offersDraw) set(ply) }
+        return createFromPackedMoves(startFen, moves, plies, drawOffers, options).getOrThrow() as GameImpl
+    }
+
+    /**
+     * Hashes of the positions since the last capture or pawn move, before the
+     * current one and in order: the only ones which can still repeat.
+     *
+     * The moves are replayed on a single board from the first of those
+     * positions, rather than parsing the FEN of every history entry.
+     */
+    internal fun repetitionKeys(): LongArray {
+        val first = maxOf(0, plyCount - currentPosition.halfMoveClock)
+        val keys = LongArray(plyCount - first)
+        if (keys.isEmpty()) return keys
+
+        val board = BoardState()
+        if (first < archivedPlies) {
+            checkNotNull(archive).board(first, board)
+        } else {
+            val fen = decodeHistoryFen(first - archivedPlies)
+            Fen.parse(fen, board)?.let { throw IllegalStateException("Invalid history FEN ($fen): ${it.message}") }
+        }
+        for (ply in first until plyCount) {
+            keys[ply - first] = board.zobristKey
+            if (ply + 1 == plyCount) break
+            val move = if (ply < archivedPlies) {
+                checkNotNull(archive).move(ply)
+            } else {
+                Move.fromJna(decodeNativeMove(ply - archivedPlies).move).packed
+            }
+            board.makeMove(move)
+        }
+        return keys
+    }
+
+    private fun historyEntry(ply: Int): Pair<Position, PlayedMove> =
+        if (ply < archivedPlies) checkNotNull(archive).entry(ply) else decodeHistoryEntry(ply - archivedPlies)
+
+    private fun decodeNativeMove(index: Int): ChessLibraryJNA.PlayedMove = withNativeGame { readNativeMove(it, index) }
+
+    private fun decodeHistoryFen(index: Int): String = withNativeGame { readHistoryFen(it, index) }
+
+    /**
+     * Decodes a single entry of the native history.
+     */
+    private fun decodeHistoryEntry(index: Int): Pair<Position, PlayedMove> {
+        val entry = Instrumentation.measure(ChessOperation.DECODE_HISTORY_ENTRY, Offsets.HISTORY_ENTRY_SIZE.toLong()) {
+            withNativeGame {
+                ChessLibraryJNA.getHistoryEntryFromPointer(it.getPointer(Offsets.GAME_HISTORY.toLong()), index)
+            }
+        }
+        val position = Position.fromNativeFen(ChessLibraryJNA.byteArrayToString(entry.fen))
+        return position to PlayedMove.fromJna(entry.played_move) { position.enPassantTarget }
+    }
+
+    /**
+     * Reads the properties of the current position straight from the native
+     * game, which is kept alive for as long as the position is reachable.
+     */
+    private inner class NativePositionSource : PositionSource {
+        /** The scalar fields of the position, read together the first time one of them is needed. */
+        private val fields: StageFields by lazy(LazyThreadSafetyMode.PUBLICATION) {
+            Instrumentation.measure(ChessOperation.READ_FIELDS, STAGE_FIELDS_SIZE) {
+                withNativeGame {
+                    val enPassantTarget = if (it.getByte(Offsets.STAGE_HAS_EN_PASSANT_TARGET.toLong()) != 0.toByte()) {
+                        val square = Offsets.STAGE_EN_PASSANT_TARGET.toLong()
+                        Square.fromRankAndFile(
+                            it.getByte(square + Offsets.SQUARE_RANK).toInt(),
+                            it.getByte(square + Offsets.SQUARE_FILE).toInt().toChar()
+                        )
+                    } else null
+                    StageFields(
+                        Color.fromJna(it.getInt(Offsets.STAGE_ACTIVE_COLOR.toLong())),
+                        it.getByte(Offsets.STAGE_CASTLING_RIGHTS.toLong()).toInt() and 0xff,
+                        enPassantTarget,
+                        it.getShort(Offsets.STAGE_HALF_MOVES.toLong()).toInt(),
+                        it.getShort(Offsets.STAGE_FULL_MOVES.toLong()).toInt(),
+                        CheckType.fromJna(it.getInt(Offsets.STAGE_CHECK_STATUS.toLong()))
+                    )
+                }
+            }
+        }
+
+        override fun fen(): String = this@GameImpl.fen
+
+        override fun activeColor(): Color = fields.activeColor
+
+        override fun castlingRights(): Int = fields.castlingRights
+
+        override fun enPassantTarget(): Square? = fields.enPassantTarget
+
+        override fun halfMoveClock(): Int = fields.halfMoveClock
+
+        override fun fullMoveNumber(): Int = fields.fullMoveNumber
+
+        override fun checkStatus(): CheckType = fields.checkStatus
+
+        override fun board(): Map<Square, Piece> {
+            val pieces = readPieces()
+            return buildMap {
+                for (i in 0 until 64) {
+                    if (pieces[i] >= 0) put(Square.fromIndex(i), nativePiece(pieces[i]))
+                }
+            }
+        }
+
+        // Reads the squares in bulk instead of going through board(), which
+        // would build a map only to copy it into the board
+        override fun load(board: BoardState) {
+            val pieces = readPieces()
+            val fields = fields
+            board.clear()
+            for (i in 0 until 64) {
+                if (pieces[i] >= 0) board.put(i, BoardState.code(nativePiece(pieces[i])))
+            }
+            board.activeColor = if (fields.activeColor == Color.WHITE) BoardState.WHITE else BoardState.BLACK
+            board.castlingRights = fields.castlingRights
+            board.enPassantTarget = fields.enPassantTarget?.index ?: BoardState.NO_SQUARE
+            board.halfMoveClock = fields.halfMoveClock
+            board.fullMoveNumber = fields.fullMoveNumber
         }
+
+        private fun readPieces(): IntArray =
+            Instrumentation.measure(ChessOperation.DECODE_BOARD, 64L * Offsets.PIECE_SIZE) {
+                val pieces = IntArray(64)
+                withNativeGame { ChessLibraryJNA.getBoardFromPointer(it, pieces) }
+                pieces
+            }
+
+        private fun nativePiece(piece: Int): Piece =
+            Piece.create(PieceType.fromJna(piece and 0xff), Color.fromJna(piece shr 8))
     }
 
+    private class StageFields(
+        val activeColor: Color,
+        val castlingRights: Int,
+        val enPassantTarget: Square?,
+        val halfMoveClock: Int,
+        val fullMoveNumber: Int,
+        val checkStatus: CheckType
+    )
+
+    private fun concludedError(): ChessResult<Nothing>? =
+        if (gameState != GameState.PLAYING) {
+            ChessResult.error(ErrorKind.GAME_CONCLUDED, "Game has already concluded with state: $gameState")
+        } else null
+
     companion object {
         private val cleaner = Cleaner.create()
 
-        internal fun createNewGame(): ChessResult<Game> {
+        const val START_POSITION = "startpos"
+
+        /** Bytes read by the constructor: state, draw reason, draw claim flag and reason, history size and move count. */
+        private const val GAME_FIELDS_SIZE = 3L * Int.SIZE_BYTES + Byte.SIZE_BYTES + 2 * Short.SIZE_BYTES
+
+        /** Bytes read for the scalar fields of a position: side to move, castling rights, en passant target, clocks and check status. */
+        private const val STAGE_FIELDS_SIZE = 2L * Int.SIZE_BYTES + 4 * Byte.SIZE_BYTES + 2 * Short.SIZE_BYTES
+
+        private const val INITIAL_REPLAY_CAPACITY = 128
+
+        /** Parent plies of games without a known parent: their parent is the game before the last move. */
+        private const val UNKNOWN_PARENT = -1
+
+        internal fun createNewGame(options: GameOptions): ChessResult<Game> {
             return ChessResult.catching {
-                val ptr = ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_create_new_game()
+                val ptr = NativeCalls.createNewGame()
                     ?: throw RuntimeException("Failed to create new game - native library returned null")
-                create(ptr)
+                create(ptr, options)
             }
         }
 
-        fun createFromFen(fen: String): ChessResult<Game> {
+        fun createFromFen(fen: String, options: GameOptions): ChessResult<Game> {
             return ChessResult.catching {
-                val ptr = ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_create_game_from_fen(fen)
-                    ?: throw IllegalArgumentException("Invalid FEN string: $fen")
-                create(ptr)
+                val ptr = NativeCalls.createGameFromFen(fen)
+                    ?: return ChessResult.error(ErrorKind.INVALID_FEN, "Invalid FEN string: $fen")
+                create(ptr, options)
+            }
+        }
+
+        fun createFromUciMoves(startFen: String, moves: String, options: GameOptions): ChessResult<Game> {
+            return ChessResult.catching {
+                var packedMoves = IntArray(INITIAL_REPLAY_CAPACITY)
+                var count = 0
+                var end = 0
+                while (true) {
+                    var start = end
+                    while (start < moves.length && moves[start].isWhitespace()) start++
+                    if (start == moves.length) break
+                    end = start
+                    while (end < moves.length && !moves[end].isWhitespace()) end++
+
+                    val packed = UciNotation.decode(moves, start, end)
+                    if (packed == UciNotation.INVALID) {
+                        return ChessResult.error(
+                            ErrorKind.INVALID_NOTATION,
+                            "Malformed UCI move at ply ${count + 1}: ${moves.substring(start, end)}"
+                        )
+                    }
+                    if (count == packedMoves.size) packedMoves = packedMoves.copyOf(count * 2)
+                    packedMoves[count++] = packed
+                }
+                packedMoves to count
+            }.flatMap { (packedMoves, count) -> createFromPackedMoves(startFen, packedMoves, count, null, options) }
+        }
+
+        /**
+         * Creates a game by replaying moves packed as in [UciNotation], in a single
+         * pass over the native games; only the resulting Game is materialized.
+         *
+         * @param startFen The initial position in FEN, or [START_POSITION]
+         * @param moves The packed moves, of which the first [count] are replayed
+         * @param drawOffers Plies (starting at 0) whose move offers a draw, or null if there are none
+         * @param options The options of the resulting game
+         */
+        fun createFromPackedMoves(
+            startFen: String,
+            moves: IntArray,
+            count: Int,
+            drawOffers: BitSet?,
+            options: GameOptions = GameOptions.DEFAULT
+        ): ChessResult<Game> {
+            return ChessResult.catching {
+                var ptr: Pointer = if (startFen == START_POSITION) {
+                    NativeCalls.createNewGame()
+                        ?: throw RuntimeException("Failed to create new game - native library returned null")
+                } else {
+                    NativeCalls.createGameFromFen(startFen)
+                        ?: return ChessResult.error(ErrorKind.INVALID_FEN, "Invalid FEN string: $startFen")
+                }
+
+                var released = false
+                try {
+                    // A single move buffer is reused for every ply, and intermediate
+                    // native games are released as soon as their successor exists.
+                    // Illegal moves return their error directly, releasing the
+                    // last native game on the way out
+                    val jnaMove = ChessLibraryJNA.PieceMove.ByValue()
+                    for (ply in 0 until count) {
+                        val packed = moves[ply]
+                        val from = UciNotation.from(packed)
+                        val to = UciNotation.to(packed)
+                        val piece = ChessLibraryJNA.getPieceAtFromPointer(ptr, from)
+                        if (piece < 0) return illegalMoveAt(ply, packed)
+                        val promotion = UciNotation.promotion(packed)
+
+                        jnaMove.piece.type = piece and 0xff
+                        jnaMove.piece.color = piece shr 8
+                        jnaMove.src.rank = (from / 8 + 1).toByte()
+                        jnaMove.src.file = ('a' + from % 8).code.toByte()
+                        jnaMove.dst.rank = (to / 8 + 1).toByte()
+                        jnaMove.dst.file = ('a' + to % 8).code.toByte()
+                        jnaMove.is_promotion = if (promotion != null) 1 else 0
+                        jnaMove.promoted_to = promotion?.toJna() ?: 0
+
+                        val next = NativeCalls.makeMove(ptr, jnaMove, drawOffers != null && drawOffers[ply])
+                            ?: return illegalMoveAt(ply, packed)
+                        NativeCalls.destroyGame(ptr)
+                        ptr = next
+                    }
+
+                    compacted(ptr, options, null, 0, null, UNKNOWN_PARENT)
+                        ?: create(ptr, options).also { released = true }
+                } finally {
+                    if (!released) NativeCalls.destroyGame(ptr)
+                }
             }
         }
 
+        private fun illegalMoveAt(ply: Int, packed: Int): ChessResult<Game> =
+            ChessResult.error(ErrorKind.ILLEGAL_MOVE, "Invalid move at ply ${ply + 1}: ${UciNotation.encode(packed)}")
+
         /**
          * Creates a GameImpl instance with automatic cleanup.
          */
-        internal fun create(nativePtr: Pointer): GameImpl {
-            val game = GameImpl(nativePtr)
+        internal fun create(
+            nativePtr: Pointer,
+            options: GameOptions,
+            archive: HistoryArchive? = null,
+            archivedPlies: Int = 0,
+            parent: GameImpl? = null,
+            parentPlies: Int = UNKNOWN_PARENT
+        ): GameImpl {
+            // The constructor reads the scalar fields of the game
+            val game = Instrumentation.measure(ChessOperation.READ_FIELDS, GAME_FIELDS_SIZE) {
+                GameImpl(nativePtr, options, archive, archivedPlies, parent, parentPlies)
+            }
             // Register cleanup action that captures only the pointer, avoiding circular references
             cleaner.register(game, CleanupAction(nativePtr))
             return game
         }
 
+        /**
+         * Builds the compacted form of a new native game, if checkpointed history
+         * is enabled, its native history is long enough and its last move was a
+         * capture or a pawn move: its native history is moved into the archive,
+         * and the native game is recreated from its current FEN. No position
+         * before such a move can repeat, so no draw rule is lost.
+         *
+         * The native game is read straight from its pointer, so that no game is
+         * wrapped only to be discarded. It is left to the caller, which must
+         * release it if a compacted game is returned.
+         *
+         * @param ptr The new native game
+         * @param archive The archive of the game it was reached from, if any
+         * @param archivedPlies The number of plies of that archive which belong to the game
+         * @return The game holding the moved history, or null if nothing was moved
+         */
+        private fun compacted(
+            ptr: Pointer,
+            options: GameOptions,
+            archive: HistoryArchive?,
+            archivedPlies: Int,
+            parent: GameImpl?,
+            parentPlies: Int
+        ): GameImpl? {
+            val interval = options.historyCheckpointInterval
+            if (interval == 0) return null
+            val (state, nativePlies) = Instrumentation.measure(ChessOperation.READ_FIELDS, (Int.SIZE_BYTES + Short.SIZE_BYTES).toLong()) {
+                GameState.fromJna(ptr.getInt(Offsets.GAME_STATE.toLong())) to
+                    ptr.getShort(Offsets.GAME_HISTORY_SIZE.toLong()).toInt()
+            }
+            if (nativePlies < interval || state != GameState.PLAYING) return null
+            val last = readNativeMove(ptr, nativePlies - 1)
+            // A pending draw offer would not survive the new native game
+            if (last.offers_draw != 0.toByte()) return null
+            if (last.is_capture == 0.toByte() && last.move.piece.type != ChessLibraryJNA.PieceType.PAWN) return null
+
+            val moves = IntArray(nativePlies) { ply ->
+                val move = readNativeMove(ptr, ply)
+                Move.fromJna(move.move).packed or (if (move.offers_draw != 0.toByte()) HistoryArchive.DRAW_OFFER else 0)
+            }
+            val root = BoardState()
+            val rootFen = readHistoryFen(ptr, 0)
+            Fen.parse(rootFen, root)?.let { throw IllegalStateException("Invalid history FEN ($rootFen): ${it.message}") }
+            val extended = (archive ?: HistoryArchive(interval)).append(archivedPlies, root, moves, moves.size)
+
+            val fen = Instrumentation.measure(ChessOperation.DECODE_FEN, Offsets.FEN_SIZE.toLong()) {
+                ChessLibraryJNA.getFenFromPointer(ptr)
+            }
+            val compactedPtr = NativeCalls.createGameFromFen(fen)
+                ?: throw IllegalStateException("Failed to recreate game from $fen")
+            return create(compactedPtr, options, extended, archivedPlies + moves.size, parent, parentPlies)
+        }
+
+        private fun readNativeMove(ptr: Pointer, index: Int): ChessLibraryJNA.PlayedMove =
+            Instrumentation.measure(ChessOperation.DECODE_PLAYED_MOVE, Offsets.PLAYED_MOVE_SIZE.toLong()) {
+                ChessLibraryJNA.getPlayedMoveFromPointer(ptr.getPointer(Offsets.GAME_HISTORY.toLong()), index)
+            }
+
+        private fun readHistoryFen(ptr: Pointer, index: Int): String =
+            Instrumentation.measure(ChessOperation.DECODE_HISTORY_ENTRY, Offsets.HISTORY_ENTRY_SIZE.toLong()) {
+                ChessLibraryJNA.byteArrayToString(
+                    ChessLibraryJNA.getHistoryEntryFromPointer(ptr.getPointer(Offsets.GAME_HISTORY.toLong()), index).fen
+                )
+            }
+
         /**
          * Cleanup action that only holds the native pointer to avoid memory leaks.
          */
         private class CleanupAction(private val ptr: Pointer) : Runnable {
             override fun run() {
                 try {
-                    ChessLibraryJNA.ChessLib.INSTANCE.destroy_game(ptr)
+                    NativeCalls.destroyGame(ptr)
                 } catch (e: Exception) {
                     // Log but don't throw - cleanup should be silent
                     System.err.println("Warning: Failed to cleanup native game resource: ${e.message}")
@@ -270,21 +886,4 @@ internal class GameImpl private constructor(
             }
         }
     }
-
-    /**
-     * Helper function to create a GameStage from FEN.
-     */
-    private fun GameStageFromFen(fen: String): ChessLibraryJNA.GameStage {
-        val tempPtr = ChessLibraryJNA.ChessLib.INSTANCE.simple_chess_create_game_from_fen(fen)
-        if (tempPtr != null) {
-            try {
-                val tempGame = ChessLibraryJNA.getGameFromPointer(tempPtr)
-                return tempGame?.current_stage ?: throw IllegalArgumentException("Invalid FEN: $fen")
-            } finally {
-                ChessLibraryJNA.ChessLib.INSTANCE.destroy_game(tempPtr)
-            }
-        } else {
-            throw IllegalArgumentException("Invalid FEN: $fen")
-        }
-    }
 }
\ No newline at end of file
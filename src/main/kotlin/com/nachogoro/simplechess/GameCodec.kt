@@ -0,0 +1,325 @@
+package com.nachogoro.simplechess
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.BitSet
+
+/**
+ * Compact binary format for games.
+ *
+ * A game is stored as its initial position followed by one byte per move: the
+ * index of the played move among the legal moves of its position, sorted by
+ * origin square, destination square and promotion type. Records start with a
+ * variable-length header:
+ *
+ * - format version (one byte)
+ * - flags (varint): whether the initial position is not the standard one,
+ *   whether any move offers a draw, and how the game was ended if not by a move
+ *   (resignation or draw claim)
+ * - the initial position in FEN (varint length and ASCII bytes), unless it is
+ *   the standard one
+ * - the number of moves (varint)
+ * - if any move offers a draw, the number of such moves followed by the gaps
+ *   between their plies (varints)
+ *
+ * Records can be concatenated into a stream. Move indices are computed and
+ * resolved in Kotlin; decoding a game is a single native replay.
+ */
+public object GameCodec {
+
+    private const val VERSION = 1
+
+    private const val FLAG_CUSTOM_START = 1
+    private const val FLAG_DRAW_OFFERS = 2
+    private const val TERMINAL_SHIFT = 2
+
+    private const val TERMINAL_NONE = 0
+    private const val TERMINAL_WHITE_RESIGNED = 1
+    private const val TERMINAL_BLACK_RESIGNED = 2
+    private const val TERMINAL_DRAW_CLAIMED = 3
+
+    // Bounds on header values, so that corrupt data cannot trigger huge allocations.
+    // The native library counts moves with 16-bit integers
+    private const val MAX_FEN_LENGTH = 128
+    private const val MAX_PLY_COUNT = Short.MAX_VALUE.toInt()
+
+    private const val VARINT_END_OF_STREAM = -1
+    private const val VARINT_MALFORMED = -2
+    private const val END_OF_STREAM_MESSAGE = "Unexpected end of stream"
+
+    /**
+     * Encodes a game.
+     *
+     * @param game The game to encode
+     * @return A ChessResult containing the encoded game, or an Error if it cannot be encoded
+     */
+    public fun encode(game: Game): ChessResult<ByteArray> {
+        val bytes = ByteArrayOutputStream()
+        return encode(game, bytes).map { bytes.toByteArray() }
+    }
+
+    /**
+     * Encodes a game and appends it to a stream.
+     *
+     * The stream is written byte by byte, so it should be buffered.
+     *
+     * @param game The game to encode
+     * @param out The stream to write to
+     * @return A ChessResult containing Unit, or an Error if the game cannot be
+     *         encoded or the stream cannot be written
+     */
+    public fun encode(game: Game, out: OutputStream): ChessResult<Unit> = ChessResult.catching {
+        val history = game.history
+        val startFen = if (history.isEmpty()) game.currentPosition.fen else history[0].first.fen
+
+        val board = BoardState()
+        Fen.parse(startFen, board)?.let { throw IllegalStateException("Invalid start position ($startFen): ${it.message}") }
+
+        // Resolve every move first, so that nothing is written for games which cannot be encoded
+        val indices = ByteArray(history.size)
+        val drawOffers = ArrayList<Int>()
+        val moves = IntArray(BoardState.MAX_MOVES)
+        for ((ply, entry) in history.withIndex()) {
+            val move = entry.second.move.packed
+            val count = board.generateLegalMoves(moves)
+            moves.sort(0, count)
+            val index = moves.binarySearch(move, 0, count)
+            if (index < 0) throw IllegalStateException("Move at ply ${ply + 1} is not legal: ${entry.second.algebraicNotation}")
+            indices[ply] = index.toByte()
+            if (entry.second.offersDraw) drawOffers.add(ply)
+            board.makeMove(move)
+        }
+
+        var flags = terminalEvent(game) shl TERMINAL_SHIFT
+        if (startFen != Fen.STANDARD_START) flags = flags or FLAG_CUSTOM_START
+        if (drawOffers.isNotEmpty()) flags = flags or FLAG_DRAW_OFFERS
+
+        out.write(VERSION)
+        writeVarint(out, flags)
+        if (flags and FLAG_CUSTOM_START != 0) {
+            writeVarint(out, startFen.length)
+            out.write(startFen.toByteArray(Charsets.US_ASCII))
+        }
+        writeVarint(out, history.size)
+        if (flags and FLAG_DRAW_OFFERS != 0) {
+            writeVarint(out, drawOffers.size)
+            var previous = 0
+            for (ply in drawOffers) {
+                writeVarint(out, ply - previous)
+                previous = ply
+            }
+        }
+        out.write(indices)
+    }
+
+    /**
+     * Decodes a game.
+     *
+     * @param bytes The encoded game
+     * @return A ChessResult containing the decoded Game, or an Error if the data is corrupt
+     */
+    public fun decode(bytes: ByteArray): ChessResult<Game> {
+        val input = ByteArrayInputStream(bytes)
+        return decode(input).flatMap { game ->
+            if (input.available() == 0) ChessResult.success(game)
+            else ChessResult.error(ErrorKind.INVALID_DATA, "Trailing data after encoded game")
+        }
+    }
+
+    /**
+     * Decodes the next game of a stream.
+     *
+     * The stream is read byte by byte, so it should be buffered.
+     *
+     * @param input The stream to read from
+     * @return A ChessResult containing the decoded Game, or an Error if:
+     *         - The stream ends before the record does
+     *         - The data is corrupt
+     *         - The stream cannot be read
+     */
+    public fun decode(input: InputStream): ChessResult<Game> {
+        val first = try {
+            input.read()
+        } catch (e: Exception) {
+            return ChessResult.error(e.message ?: "Failed to read game", e)
+        }
+        return decodeRecord(first, input)
+    }
+
+    /**
+     * Decodes every game of a stream until its end.
+     *
+     * The stream is read lazily as the returned sequence is iterated. Iteration
+     * stops after the first record which cannot be decoded, since the position
+     * of the following one is then unknown.
+     *
+     * @param input The stream to read from
+     * @return The decoded games, in stream order
+     */
+    public fun decodeAll(input: InputStream): Sequence<ChessResult<Game>> = sequence {
+        while (true) {
+            val first = try {
+                input.read()
+            } catch (e: Exception) {
+                yield(ChessResult.error(e.message ?: "Failed to read game", e))
+                break
+            }
+            if (first < 0) break
+            val result = decodeRecord(first, input)
+            yield(result)
+            if (result.isError) break
+        }
+    }
+
+    private fun decodeRecord(version: Int, input: InputStream): ChessResult<Game> {
+        // Corrupt data is an expected outcome, reported without exceptions; only
+        // failures of the stream itself are thrown
+        val record = try {
+            readRecord(version, input)
+        } catch (e: IOException) {
+            return ChessResult.error(e.message ?: "Failed to read game", e)
+        }
+
+        return record.flatMap { (startFen, packedMoves, drawOffers, terminal) ->
+            GameImpl.createFromPackedMoves(startFen, packedMoves, packedMoves.size, drawOffers).flatMap { game ->
+                when (terminal) {
+                    TERMINAL_NONE -> ChessResult.success(game)
+                    TERMINAL_WHITE_RESIGNED -> game.resign(Color.WHITE)
+                    TERMINAL_BLACK_RESIGNED -> game.resign(Color.BLACK)
+                    else -> game.claimDraw()
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and validates the rest of a record, resolving its moves.
+     */
+    private fun readRecord(version: Int, input: InputStream): ChessResult<DecodedRecord> {
+        if (version < 0) return invalidData(END_OF_STREAM_MESSAGE)
+        if (version != VERSION) return invalidData("Unsupported game format version: $version")
+
+        val flags = readVarint(input)
+        if (flags < 0) return invalidVarint(flags)
+        val startFen = if (flags and FLAG_CUSTOM_START != 0) {
+            val length = readVarint(input)
+            if (length < 0) return invalidVarint(length)
+            if (length > MAX_FEN_LENGTH) return invalidData("Invalid FEN length: $length")
+            String(readBytes(input, length) ?: return invalidData(END_OF_STREAM_MESSAGE), Charsets.US_ASCII)
+        } else Fen.STANDARD_START
+        val plyCount = readVarint(input)
+        if (plyCount < 0) return invalidVarint(plyCount)
+        if (plyCount > MAX_PLY_COUNT) return invalidData("Invalid number of moves: $plyCount")
+
+        var drawOffers: BitSet? = null
+        if (flags and FLAG_DRAW_OFFERS != 0) {
+            drawOffers = BitSet(plyCount)
+            val offerCount = readVarint(input)
+            if (offerCount < 0) return invalidVarint(offerCount)
+            var ply = 0
+            repeat(offerCount) {
+                val gap = readVarint(input)
+                if (gap < 0) return invalidVarint(gap)
+                ply += gap
+                if (ply >= plyCount) return invalidData("Draw offer at ply $ply is out of range")
+                drawOffers.set(ply)
+            }
+        }
+
+        val board = BoardState()
+        Fen.parse(startFen, board)?.let { return invalidData("Invalid FEN string ($startFen): ${it.message}") }
+
+        val indices = readBytes(input, plyCount) ?: return invalidData(END_OF_STREAM_MESSAGE)
+        val packedMoves = IntArray(plyCount)
+        val moves = IntArray(BoardState.MAX_MOVES)
+        for (ply in 0 until plyCount) {
+            val count = board.generateLegalMoves(moves)
+            moves.sort(0, count)
+            val index = indices[ply].toInt() and 0xff
+            if (index >= count) return invalidData("Invalid move index at ply ${ply + 1}: $index")
+            packedMoves[ply] = moves[index]
+            board.makeMove(moves[index])
+        }
+        return ChessResult.success(
+            DecodedRecord(
+                if (startFen == Fen.STANDARD_START) GameImpl.START_POSITION else startFen,
+                packedMoves,
+                drawOffers,
+                flags shr TERMINAL_SHIFT
+            )
+        )
+    }
+
+    private fun <T> invalidData(message: String): ChessResult<T> = ChessResult.error(ErrorKind.INVALID_DATA, message)
+
+    private fun <T> invalidVarint(code: Int): ChessResult<T> =
+        invalidData(if (code == VARINT_END_OF_STREAM) END_OF_STREAM_MESSAGE else "Malformed varint")
+
+    /**
+     * How a game ended, if it was not by the last move.
+     */
+    private fun terminalEvent(game: Game): Int = when (game.gameState) {
+        GameState.PLAYING -> TERMINAL_NONE
+        GameState.WHITE_WON ->
+            if (game.currentPosition.isInCheckmate) TERMINAL_NONE else TERMINAL_BLACK_RESIGNED
+        GameState.BLACK_WON ->
+            if (game.currentPosition.isInCheckmate) TERMINAL_NONE else TERMINAL_WHITE_RESIGNED
+        GameState.DRAWN -> when (game.drawReason) {
+            DrawReason.OFFERED_AND_ACCEPTED,
+            DrawReason.THREE_FOLD_REPETITION,
+            DrawReason.FIFTY_MOVE_RULE -> TERMINAL_DRAW_CLAIMED
+            else -> TERMINAL_NONE
+        }
+    }
+
+    private fun writeVarint(out: OutputStream, value: Int) {
+        var remaining = value
+        while (remaining and 0x7f.inv() != 0) {
+            out.write((remaining and 0x7f) or 0x80)
+            remaining = remaining ushr 7
+        }
+        out.write(remaining)
+    }
+
+    /**
+     * Reads a non-negative varint, or returns [VARINT_END_OF_STREAM] or
+     * [VARINT_MALFORMED] if it cannot be read.
+     */
+    private fun readVarint(input: InputStream): Int {
+        var value = 0
+        var shift = 0
+        while (true) {
+            val byte = input.read()
+            if (byte < 0) return VARINT_END_OF_STREAM
+            value = value or ((byte and 0x7f) shl shift)
+            if (byte and 0x80 == 0) break
+            shift += 7
+            if (shift > 28) return VARINT_MALFORMED
+        }
+        return if (value < 0) VARINT_MALFORMED else value
+    }
+
+    /**
+     * Reads exactly [count] bytes, or returns null if the stream ends first.
+     */
+    private fun readBytes(input: InputStream, count: Int): ByteArray? {
+        val bytes = ByteArray(count)
+        var read = 0
+        while (read < count) {
+            val n = input.read(bytes, read, count - read)
+            if (n < 0) return null
+            read += n
+        }
+        return bytes
+    }
+
+    private data class DecodedRecord(
+        val startFen: String,
+        val packedMoves: IntArray,
+        val drawOffers: BitSet?,
+        val terminal: Int
+    )
+}
@@ -0,0 +1,128 @@
+package com.nachogoro.simplechess
+
+/**
+ * Options of a [Game], given to its factory methods and inherited by every
+ * game derived from it.
+ */
+public data class GameOptions(
+    /**
+     * Plies between position snapshots of checkpointed history, or 0 to keep
+     * the whole history in the native game.
+     *
+     * The native game stores a FEN and a move description for every ply, and
+     * each game derived by a move holds its own copy. With checkpointed
+     * history, whenever the native history reaches this many plies and a
+     * capture or pawn move is played (so no earlier position can repeat), its
+     * plies are moved to a JVM-side archive shared by all derived games. The
+     * archive takes one int per ply plus a snapshot of a few dozen bytes every
+     * this many plies, and rebuilds the entries of [Game.history] by replaying
+     * at most this many moves from the nearest snapshot.
+     */
+    val historyCheckpointInterval: Int = 0,
+
+    /**
+     * How strongly a game keeps the game it was derived from, returned by
+     * [Game.parent] and [Game.undo]. A parent which is no longer kept is
+     * rebuilt by replaying the history.
+     */
+    val parentRetention: ParentRetention = ParentRetention.WEAK,
+
+    /**
+     * Number of successors each game remembers, or 0 to disable the cache.
+     *
+     * With a successor cache, [Game.makeMove] returns the game it returned
+     * before for the same move and draw offer, as long as it is still cached,
+     * instead of creating a new native game. Each game keeps its most recently
+     * used successors, held as given by [successorRetention], and all caches
+     * together stay below [SuccessorCache.maxMemoryBytes] of native memory.
+     */
+    val successorCacheSize: Int = 0,
+
+    /**
+     * How the successors remembered by a game are held when
+     * [successorCacheSize] is positive.
+     */
+    val successorRetention: SuccessorRetention = SuccessorRetention.SOFT
+) {
+    init {
+        require(historyCheckpointInterval >= 0) {
+            "historyCheckpointInterval must not be negative: $historyCheckpointInterval"
+        }
+        require(successorCacheSize >= 0) {
+            "successorCacheSize must not be negative: $successorCacheSize"
+        }
+    }
+
+    public companion object {
+        /** Default checkpoint interval of [checkpointedHistory]. */
+        public const val DEFAULT_CHECKPOINT_INTERVAL: Int = 32
+
+        /** Options keeping the whole history in the native game. */
+        public val DEFAULT: GameOptions = GameOptions()
+
+        /** Options with checkpointed history, snapshotting every [interval] plies. */
+        public fun checkpointedHistory(interval: Int = DEFAULT_CHECKPOINT_INTERVAL): GameOptions {
+            require(interval > 0) { "interval must be positive: $interval" }
+            return GameOptions(historyCheckpointInterval = interval)
+        }
+
+        /** Default cache size of [cachedSuccessors]. */
+        public const val DEFAULT_SUCCESSOR_CACHE_SIZE: Int = 16
+
+        /** Options with a successor cache of [size] games per game, held as given by [retention]. */
+        public fun cachedSuccessors(
+            size: Int = DEFAULT_SUCCESSOR_CACHE_SIZE,
+            retention: SuccessorRetention = SuccessorRetention.SOFT
+        ): GameOptions {
+            require(size > 0) { "size must be positive: $size" }
+            return GameOptions(successorCacheSize = size, successorRetention = retention)
+        }
+    }
+}
+
+/**
+ * How a [Game] keeps its parent (see [Game.parent]).
+ */
+public enum class ParentRetention {
+    /**
+     * The parent is kept as long as the game: stepping back is always
+     * immediate, but every game keeps its whole line of predecessors, and
+     * their native memory, alive.
+     */
+    STRONG,
+
+    /**
+     * The parent is kept until the JVM runs short of heap. Native memory does
+     * not count towards the heap, so long lines of games may hold much more
+     * memory than the heap usage suggests.
+     */
+    SOFT,
+
+    /**
+     * The parent is kept while something else references it, such as an
+     * undo stack of the caller, so memory stays bounded by what the caller keeps.
+     */
+    WEAK,
+
+    /**
+     * The parent is not kept and is rebuilt whenever it is requested.
+     */
+    NONE
+}
+
+/**
+ * How a [Game] holds the successors in its cache (see [GameOptions.successorCacheSize]).
+ */
+public enum class SuccessorRetention {
+    /**
+     * Successors are kept until the JVM runs short of heap, which suits
+     * exploring a few lines back and forth.
+     */
+    SOFT,
+
+    /**
+     * Successors are kept while something else references them, so the cache
+     * only avoids creating a second game for a move whose result is still in use.
+     */
+    WEAK
+}
@@ -0,0 +1,135 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * [ChessInstrumentation] recording a latency histogram per operation.
+ *
+ * Durations are counted in buckets of logarithmic size, each spanning about
+ * 6% of its values, as in HDR histograms: percentiles are accurate to that
+ * precision over the whole range of durations, with fixed memory and no
+ * locking on the recording path.
+ */
+public class HistogramInstrumentation : ChessInstrumentation {
+
+    private val buckets = AtomicLongArray(OPERATIONS * BUCKET_COUNT)
+
+    /** Count, total nanoseconds, total payload and maximum nanoseconds of each operation. */
+    private val totals = AtomicLongArray(OPERATIONS * TOTAL_FIELDS)
+
+    override fun onOperation(operation: ChessOperation, nanos: Long, payloadBytes: Long) {
+        val duration = maxOf(nanos, 0)
+        buckets.incrementAndGet(operation.ordinal * BUCKET_COUNT + bucketOf(duration))
+        val base = operation.ordinal * TOTAL_FIELDS
+        totals.incrementAndGet(base + COUNT)
+        totals.addAndGet(base + TOTAL_NANOS, duration)
+        totals.addAndGet(base + TOTAL_PAYLOAD, payloadBytes)
+        totals.accumulateAndGet(base + MAX_NANOS, duration, ::maxOf)
+    }
+
+    /**
+     * Returns the statistics recorded for an operation.
+     */
+    public fun snapshot(operation: ChessOperation): OperationStats {
+        val base = operation.ordinal * TOTAL_FIELDS
+        val counts = LongArray(BUCKET_COUNT) { buckets.get(operation.ordinal * BUCKET_COUNT + it) }
+        return OperationStats(
+            operation,
+            count = totals.get(base + COUNT),
+            totalNanos = totals.get(base + TOTAL_NANOS),
+            totalPayloadBytes = totals.get(base + TOTAL_PAYLOAD),
+            maxNanos = totals.get(base + MAX_NANOS),
+            bucketCounts = counts
+        )
+    }
+
+    /**
+     * Returns the statistics of every operation recorded at least once.
+     */
+    public fun snapshots(): List<OperationStats> =
+        ChessOperation.entries.map { snapshot(it) }.filter { it.count > 0 }
+
+    /**
+     * Discards everything recorded. Operations recorded concurrently may be
+     * partially kept.
+     */
+    public fun reset() {
+        for (i in 0 until buckets.length()) buckets.set(i, 0)
+        for (i in 0 until totals.length()) totals.set(i, 0)
+    }
+
+    /**
+     * Statistics of one operation (see [snapshot]).
+     */
+    public class OperationStats internal constructor(
+        /** The operation. */
+        public val operation: ChessOperation,
+        /** Number of times it ran. */
+        public val count: Long,
+        /** Total time it took, in nanoseconds. */
+        public val totalNanos: Long,
+        /** Total size of its payloads, in bytes. */
+        public val totalPayloadBytes: Long,
+        /** Longest time it took, in nanoseconds. */
+        public val maxNanos: Long,
+        private val bucketCounts: LongArray
+    ) {
+        /** Mean time it took, in nanoseconds, or 0 if it never ran. */
+        public val meanNanos: Double get() = if (count == 0L) 0.0 else totalNanos.toDouble() / count
+
+        /**
+         * Returns the time within which the given percentage of the runs completed.
+         *
+         * @param percentile The percentage, from 0 to 100
+         * @return The duration in nanoseconds, rounded up to its bucket, or 0 if it never ran
+         */
+        public fun percentileNanos(percentile: Double): Long {
+            require(percentile in 0.0..100.0) { "percentile must be between 0 and 100: $percentile" }
+            val total = bucketCounts.sum()
+            if (total == 0L) return 0
+            val rank = maxOf(1, kotlin.math.ceil(total * percentile / 100).toLong())
+            var seen = 0L
+            for (bucket in bucketCounts.indices) {
+                seen += bucketCounts[bucket]
+                if (seen >= rank) return minOf(upperBoundOf(bucket), maxNanos)
+            }
+            return maxNanos
+        }
+
+        override fun toString(): String =
+            "$operation: count=$count, mean=${meanNanos.toLong()}ns, p50=${percentileNanos(50.0)}ns, " +
+                "p99=${percentileNanos(99.0)}ns, max=${maxNanos}ns, payload=${totalPayloadBytes}B"
+    }
+
+    private companion object {
+        private val OPERATIONS = ChessOperation.entries.size
+
+        /** Sub-buckets per power of two: values below this are counted exactly. */
+        private const val SUB_BUCKETS = 16
+        private const val SUB_BUCKET_BITS = 4
+
+        /** Exact buckets for values below [SUB_BUCKETS], then [SUB_BUCKETS] per power of two up to 2^63. */
+        private const val BUCKET_COUNT = SUB_BUCKETS * (64 - SUB_BUCKET_BITS)
+
+        private const val TOTAL_FIELDS = 4
+        private const val COUNT = 0
+        private const val TOTAL_NANOS = 1
+        private const val TOTAL_PAYLOAD = 2
+        private const val MAX_NANOS = 3
+
+        fun bucketOf(value: Long): Int {
+            if (value < SUB_BUCKETS) return value.toInt()
+            val magnitude = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val sub = (value shr (magnitude - SUB_BUCKET_BITS)).toInt() and (SUB_BUCKETS - 1)
+            return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub
+        }
+
+        /** Largest value counted in a bucket. */
+        fun upperBoundOf(bucket: Int): Long {
+            if (bucket < SUB_BUCKETS) return bucket.toLong()
+            val shift = bucket / SUB_BUCKETS - 1
+            val sub = (bucket % SUB_BUCKETS).toLong()
+            return ((SUB_BUCKETS + sub + 1) shl shift) - 1
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nachogoro.simplechess
+
+/**
+ * Compact JVM-side store of the first plies of a game history, used by
+ * games with checkpointed history (see [GameOptions.historyCheckpointInterval]).
+ *
+ * Each ply takes a single int (the packed move plus a draw offer flag), and
+ * the position before every [interval]-th ply is kept as a snapshot of
+ * [SNAPSHOT_SIZE] bytes. An entry is rebuilt by replaying at most
+ * `interval - 1` moves from the nearest snapshot.
+ *
+ * Archives are append-only and shared by a game and its successors, each
+ * of which only reads the prefix which existed when it was created. Appending
+ * to an archive whose end is not the caller's prefix (because a sibling game
+ * appended first) copies that prefix into a new archive instead.
+ */
+internal class HistoryArchive private constructor(
+    private val interval: Int,
+    @Volatile private var moves: IntArray,
+    @Volatile private var snapshots: Array<ByteArray?>,
+    size: Int
+) {
+
+    constructor(interval: Int) : this(interval, IntArray(INITIAL_CAPACITY), arrayOfNulls(INITIAL_CAPACITY / interval + 1), 0)
+
+    /** Number of plies stored. */
+    @Volatile
+    var size: Int = size
+        private set
+
+    /**
+     * Appends plies to the first [prefix] plies of this archive.
+     *
+     * @param prefix The number of plies of this archive the caller knows about
+     * @param before The board before the first appended ply, which is left at the position after the last one
+     * @param appended The packed moves to append, with [DRAW_OFFER] set on those which offered a draw
+     * @param count The number of moves to append
+     * @return The archive holding the prefix followed by the appended plies: this one or a copy
+     */
+    @Synchronized
+    fun append(prefix: Int, before: BoardState, appended: IntArray, count: Int): HistoryArchive {
+        if (prefix != size) {
+            return HistoryArchive(interval, moves.copyOf(maxOf(prefix, 1)), snapshots.copyOf(), prefix)
+                .append(prefix, before, appended, count)
+        }
+
+        var newMoves = moves
+        var newSnapshots = snapshots
+        for (i in 0 until count) {
+            val ply = prefix + i
+            if (ply == newMoves.size) newMoves = newMoves.copyOf(ply * 2)
+            if (ply % interval == 0) {
+                val index = ply / interval
+                if (index == newSnapshots.size) newSnapshots = newSnapshots.copyOf(index * 2)
+                newSnapshots[index] = snapshot(before)
+            }
+            newMoves[ply] = appended[i]
+            before.makeMove(appended[i] and MOVE_MASK)
+        }
+        // Publish the arrays before the size, so readers of the new size see them
+        moves = newMoves
+        snapshots = newSnapshots
+        size = prefix + count
+        return this
+    }
+
+    /**
+     * Rebuilds the history entry of a ply, which must be below [size].
+     */
+    fun entry(ply: Int): Pair<Position, PlayedMove> {
+        val board = BoardState()
+        board(ply, board)
+
+        val position = Position.fromBoard(board)
+        val packed = moves[ply] and MOVE_MASK
+        val offersDraw = moves[ply] and DRAW_OFFER != 0
+        val san = SanWriter.format(board, packed, offersDraw)
+
+        val move = Move.fromPacked(packed, board)
+        val to = BoardState.moveTo(packed)
+        val enPassant = move.piece.type == PieceType.PAWN && move.from.file != move.to.file &&
+            board.squares[to] == BoardState.EMPTY
+        val capturedCode = if (enPassant) board.squares[to + if (board.activeColor == BoardState.WHITE) -8 else 8] else board.squares[to]
+        val captured = if (capturedCode == BoardState.EMPTY) null else BoardState.piece(capturedCode)
+        board.makeMove(packed)
+        val checkType = board.checkStatus()
+
+        return position to PlayedMove(move, captured != null, captured, checkType, offersDraw, san, enPassant)
+    }
+
+    /**
+     * Writes the position before a ply, which must be below [size], into [board].
+     */
+    fun board(ply: Int, board: BoardState) {
+        val moves = this.moves
+        restore(checkNotNull(snapshots[ply / interval]), board)
+        for (i in ply / interval * interval until ply) board.makeMove(moves[i] and MOVE_MASK)
+    }
+
+    /**
+     * The packed move of a ply, which must be below [size].
+     */
+    fun move(ply: Int): Int = moves[ply] and MOVE_MASK
+
+    companion object {
+        /** Flag set on archived moves which offered a draw. */
+        const val DRAW_OFFER = 1 shl 16
+
+        private const val MOVE_MASK = 0xffff
+
+        private const val INITIAL_CAPACITY = 64
+
+        /** Size of a position snapshot: two squares per byte, then the game state fields. */
+        const val SNAPSHOT_SIZE = 39
+
+        private fun snapshot(board: BoardState): ByteArray {
+            val bytes = ByteArray(SNAPSHOT_SIZE)
+            for (i in 0 until 32) {
+                bytes[i] = (board.squares[2 * i] or (board.squares[2 * i + 1] shl 4)).toByte()
+            }
+            bytes[32] = board.activeColor.toByte()
+            bytes[33] = board.castlingRights.toByte()
+            bytes[34] = board.enPassantTarget.toByte()
+            bytes[35] = (board.halfMoveClock shr 8).toByte()
+            bytes[36] = board.halfMoveClock.toByte()
+            bytes[37] = (board.fullMoveNumber shr 8).toByte()
+            bytes[38] = board.fullMoveNumber.toByte()
+            return bytes
+        }
+
+        private fun restore(bytes: ByteArray, board: BoardState) {
+            board.clear()
+            for (i in 0 until 32) {
+                val pair = bytes[i].toInt() and 0xff
+                board.put(2 * i, pair and 0xf)
+                board.put(2 * i + 1, pair shr 4)
+            }
+            board.activeColor = bytes[32].toInt()
+            board.castlingRights = bytes[33].toInt()
+            board.enPassantTarget = bytes[34].toInt()
+            board.halfMoveClock = ((bytes[35].toInt() and 0xff) shl 8) or (bytes[36].toInt() and 0xff)
+            board.fullMoveNumber = ((bytes[37].toInt() and 0xff) shl 8) or (bytes[38].toInt() and 0xff)
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Read-only view of a game history which decodes each entry when it is first
+ * accessed.
+ *
+ * Decoded entries are kept in a small direct-mapped cache (entry `i` goes to
+ * slot `i % CACHE_SIZE`), so navigating around a few plies does not decode them
+ * again while the memory held by a long history stays bounded. Concurrent
+ * readers may decode the same entry twice, but never block each other.
+ *
+ * Random access is constant time, so [subList] views and reverse iteration
+ * only decode the entries they visit.
+ */
+internal class LazyHistory(
+    override val size: Int,
+    private val decode: (Int) -> Pair<Position, PlayedMove>
+) : AbstractList<Pair<Position, PlayedMove>>(), RandomAccess {
+
+    private val cache = AtomicReferenceArray<CachedEntry>(minOf(size, CACHE_SIZE))
+
+    override fun get(index: Int): Pair<Position, PlayedMove> {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("index: $index, size: $size")
+        val slot = index % CACHE_SIZE
+        val cached = cache.get(slot)
+        if (cached != null && cached.index == index) return cached.entry
+
+        val entry = decode(index)
+        cache.set(slot, CachedEntry(index, entry))
+        return entry
+    }
+
+    private class CachedEntry(val index: Int, val entry: Pair<Position, PlayedMove>)
+
+    private companion object {
+        const val CACHE_SIZE = 64
+    }
+}
@@ -1,9 +1,16 @@
 package com.nachogoro.simplechess
 
 import com.nachogoro.simplechess.internal.ChessLibraryJNA
+import com.nachogoro.simplechess.internal.ChessLibraryJNA.Offsets
+import com.sun.jna.Pointer
+import kotlin.math.abs
 
 /**
  * Describes a move which can be made by a player.
+ *
+ * Every move a piece could make on some board has a single shared instance,
+ * which the factory methods and decoded move lists return, so equal moves are
+ * usually the same object and reading moves allocates none.
  */
 @ConsistentCopyVisibility
 public data class Move private constructor(
@@ -18,12 +25,23 @@ public data class Move private constructor(
      */
     public val isPromotion: Boolean get() = promotion != null
 
+    /**
+     * Returns the move in UCI long algebraic notation (e.g. "e2e4", "e7e8q").
+     */
+    public fun toUci(): String = UciNotation.encode(this)
+
+    /**
+     * The move packed as in [UciNotation] and [BoardState].
+     */
+    internal val packed: Int
+        get() = BoardState.packMove(from.index, to.index, promotion?.let { it.ordinal + 1 } ?: 0)
+
     public companion object {
         /**
          * Creates a regular move (non-promotion).
          */
         public fun regularMove(piece: Piece, from: Square, to: Square): Move {
-            return Move(piece, from, to, null)
+            return of(piece, from, to, null)
         }
 
         /**
@@ -33,10 +51,84 @@ public data class Move private constructor(
          */
         public fun pawnPromotion(piece: Piece, from: Square, to: Square, promotionType: PieceType): Move {
             require(piece.type == PieceType.PAWN) { "Only pawns can be promoted, got: ${piece.type}" }
-            require(promotionType in setOf(PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT)) {
+            require(promotionType in PROMOTIONS) {
                 "Invalid promotion type: $promotionType"
             }
-            return Move(piece, from, to, promotionType)
+            return of(piece, from, to, promotionType)
+        }
+
+        /**
+         * Creates a move from UCI long algebraic notation (e.g. "e2e4", "e7e8q").
+         *
+         * UCI notation does not name the moving piece, so it is looked up on
+         * the board of the position in which the move is to be played. The
+         * move is not checked for legality.
+         *
+         * @param uci The move in UCI long algebraic notation
+         * @param position The position in which the move is to be played
+         * @return A ChessResult containing the Move, or an Error if:
+         *         - The notation is malformed
+         *         - The origin square is empty in the given position
+         *         - A promotion is requested for a piece which is not a pawn
+         */
+        public fun fromUci(uci: String, position: Position): ChessResult<Move> {
+            val packed = UciNotation.decode(uci, 0, uci.length)
+            if (packed == UciNotation.INVALID) {
+                return ChessResult.error(ErrorKind.INVALID_NOTATION, "Malformed UCI move: '$uci'")
+            }
+            val from = Square.fromIndex(UciNotation.from(packed))
+            val to = Square.fromIndex(UciNotation.to(packed))
+            val piece = position.board[from]
+                ?: return ChessResult.error(ErrorKind.ILLEGAL_MOVE, "No piece on origin square of UCI move: '$uci'")
+            val promotion = UciNotation.promotion(packed)
+                ?: return ChessResult.success(of(piece, from, to, null))
+            if (piece.type != PieceType.PAWN) {
+                return ChessResult.error(ErrorKind.ILLEGAL_MOVE, "Only pawns can be promoted, got: ${piece.type}")
+            }
+            return ChessResult.success(of(piece, from, to, promotion))
+        }
+
+        /**
+         * Creates a move packed as in [BoardState], taking the moving piece from the board.
+         */
+        internal fun fromPacked(packed: Int, board: BoardState): Move {
+            val from = BoardState.moveFrom(packed)
+            val promotion = BoardState.movePromotion(packed)
+            return of(
+                BoardState.piece(board.squares[from]),
+                Square.fromIndex(from),
+                Square.fromIndex(BoardState.moveTo(packed)),
+                if (promotion == 0) null else PieceType.entries[promotion - 1]
+            )
+        }
+
+        /**
+         * Reads a move straight from a native PieceMove, without decoding the structure.
+         *
+         * @param ptr Pointer to native memory holding the move
+         * @param offset Offset of the move from [ptr]
+         */
+        internal fun fromNative(ptr: Pointer, offset: Long): Move {
+            val piece = offset + Offsets.PIECE_MOVE_PIECE
+            val promotion = if (ptr.getByte(offset + Offsets.PIECE_MOVE_IS_PROMOTION) != 0.toByte()) {
+                PieceType.fromJna(ptr.getInt(offset + Offsets.PIECE_MOVE_PROMOTED_TO))
+            } else null
+            return of(
+                Piece.create(
+                    PieceType.fromJna(ptr.getInt(piece + Offsets.PIECE_TYPE)),
+                    Color.fromJna(ptr.getInt(piece + Offsets.PIECE_COLOR))
+                ),
+                nativeSquare(ptr, offset + Offsets.PIECE_MOVE_SRC),
+                nativeSquare(ptr, offset + Offsets.PIECE_MOVE_DST),
+                promotion
+            )
+        }
+
+        private fun nativeSquare(ptr: Pointer, offset: Long): Square {
+            val rank = ptr.getByte(offset + Offsets.SQUARE_RANK).toInt()
+            val file = ptr.getByte(offset + Offsets.SQUARE_FILE).toInt()
+            require(rank in 1..8 && file in 'a'.code..'h'.code) { "Invalid native square: $rank, $file" }
+            return Square.fromIndex((rank - 1) * 8 + (file - 'a'.code))
         }
 
         /**
@@ -50,8 +142,90 @@ public data class Move private constructor(
                 PieceType.fromJna(jnaMove.promoted_to)
             } else null
 
+            return of(piece, from, to, promotion)
+        }
+
+        private val PROMOTIONS = setOf(PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT)
+
+        /** Slots of [CANONICAL] for moves without promotion: one per piece, origin and destination. */
+        private const val REGULAR_SLOTS = 12 * 64 * 64
+
+        /**
+         * The shared instance of every move a piece can make on an empty board,
+         * plus castling moves and promotions, indexed by [slot].
+         */
+        private val CANONICAL: Array<Move?> = buildCanonicalTable()
+
+        /**
+         * Returns the shared instance of a move, or a new one for moves no
+         * piece can make, which are only built by hand.
+         */
+        internal fun of(piece: Piece, from: Square, to: Square, promotion: PieceType?): Move {
+            if (promotion == null || (piece.type == PieceType.PAWN && promotion in PROMOTIONS)) {
+                CANONICAL[slot(piece.code, from.index, to.index, promotion)]?.let { return it }
+            }
             return Move(piece, from, to, promotion)
         }
+
+        /**
+         * Index of a move in [CANONICAL]. Promotions, which are always made
+         * by pawns, are indexed by color instead of piece.
+         */
+        private fun slot(pieceCode: Int, from: Int, to: Int, promotion: PieceType?): Int {
+            val color = pieceCode shr 3
+            return if (promotion == null) {
+                ((color * 6 + (pieceCode and 7)) * 64 + from) * 64 + to
+            } else {
+                REGULAR_SLOTS + ((color * 64 + from) * 64 + to) * 4 + promotion.ordinal - PieceType.ROOK.ordinal
+            }
+        }
+
+        private fun buildCanonicalTable(): Array<Move?> {
+            val table = arrayOfNulls<Move>(REGULAR_SLOTS + 2 * 64 * 64 * 4)
+            for (color in Color.entries) {
+                val lastRank = if (color == Color.WHITE) 7 else 0
+                for (type in PieceType.entries) {
+                    val piece = Piece.create(type, color)
+                    for (from in 0 until 64) {
+                        for (to in 0 until 64) {
+                            if (!isReachable(type, color, from, to)) continue
+                            val fromSquare = Square.fromIndex(from)
+                            val toSquare = Square.fromIndex(to)
+                            if (type == PieceType.PAWN && to shr 3 == lastRank) {
+                                for (promotion in PROMOTIONS) {
+                                    table[slot(piece.code, from, to, promotion)] = Move(piece, fromSquare, toSquare, promotion)
+                                }
+                            } else {
+                                table[slot(piece.code, from, to, null)] = Move(piece, fromSquare, toSquare, null)
+                            }
+                        }
+                    }
+                }
+            }
+            return table
+        }
+
+        /**
+         * Whether a piece can move between two squares on some board.
+         */
+        private fun isReachable(type: PieceType, color: Color, from: Int, to: Int): Boolean {
+            val dx = abs((to and 7) - (from and 7))
+            val dy = (to shr 3) - (from shr 3)
+            val ady = abs(dy)
+            return when (type) {
+                PieceType.PAWN -> {
+                    val forward = if (color == Color.WHITE) dy else -dy
+                    val rank = if (color == Color.WHITE) from shr 3 else 7 - (from shr 3)
+                    rank in 1..6 && ((forward == 1 && dx <= 1) || (forward == 2 && dx == 0 && rank == 1))
+                }
+                PieceType.KNIGHT -> dx * ady == 2
+                PieceType.BISHOP -> dx == ady && dx > 0
+                PieceType.ROOK -> (dx == 0) != (ady == 0)
+                PieceType.QUEEN -> (dx == ady && dx > 0) || (dx == 0) != (ady == 0)
+                PieceType.KING -> maxOf(dx, ady) == 1 ||
+                    (ady == 0 && dx == 2 && from == if (color == Color.WHITE) 4 else 60)
+            }
+        }
     }
 
     /**
@@ -66,6 +240,21 @@ public data class Move private constructor(
         jnaMove.promoted_to = promotion?.toJna() ?: 0
         return jnaMove
     }
+
+    /**
+     * Writes this move into an existing JNA PieceMove, so a single buffer can
+     * be reused for several native calls.
+     */
+    internal fun writeJna(jnaMove: ChessLibraryJNA.PieceMove.ByValue) {
+        jnaMove.piece.type = piece.type.toJna()
+        jnaMove.piece.color = piece.color.toJna()
+        jnaMove.src.rank = from.rank.toByte()
+        jnaMove.src.file = from.file.code.toByte()
+        jnaMove.dst.rank = to.rank.toByte()
+        jnaMove.dst.file = to.file.code.toByte()
+        jnaMove.is_promotion = if (isPromotion) 1 else 0
+        jnaMove.promoted_to = promotion?.toJna() ?: 0
+    }
 }
 
 /**
@@ -78,7 +267,9 @@ public data class PlayedMove internal constructor(
     val capturedPiece: Piece?,
     val checkType: CheckType,
     val offersDraw: Boolean,
-    val algebraicNotation: String
+    val algebraicNotation: String,
+    /** Whether this move captured a pawn en passant. */
+    val isEnPassant: Boolean
 ) {
 
     /**
@@ -91,19 +282,33 @@ public data class PlayedMove internal constructor(
      */
     public val isCheckmate: Boolean get() = checkType == CheckType.CHECKMATE
 
+    /**
+     * The squares changed by this move, including the rook of a castling move,
+     * the pawn captured en passant and the piece a pawn is promoted to.
+     */
+    public val boardDelta: BoardDelta get() = BoardDelta.of(this)
+
     public companion object {
         /**
          * Creates a PlayedMove from JNA PlayedMove.
+         *
+         * The native move does not tell en passant captures apart from other
+         * pawn captures on the same square, so for pawn captures of a pawn on
+         * the sixth (or third) rank [enPassantTarget] is asked for the en
+         * passant target of the position before the move.
          */
-        internal fun fromJna(jnaPlayedMove: ChessLibraryJNA.PlayedMove): PlayedMove {
+        internal fun fromJna(jnaPlayedMove: ChessLibraryJNA.PlayedMove, enPassantTarget: () -> Square?): PlayedMove {
             val move = Move.fromJna(jnaPlayedMove.move)
             val isCapture = jnaPlayedMove.is_capture != 0.toByte()
             val capturedPiece = if (isCapture) Piece.fromJna(jnaPlayedMove.captured_piece) else null
             val checkType = CheckType.fromJna(jnaPlayedMove.check_type)
             val offersDraw = jnaPlayedMove.offers_draw != 0.toByte()
             val algebraicNotation = ChessLibraryJNA.byteArrayToString(jnaPlayedMove.in_algebraic_notation)
+            val isEnPassant = move.piece.type == PieceType.PAWN && capturedPiece?.type == PieceType.PAWN &&
+                move.to.rank == (if (move.piece.color == Color.WHITE) 6 else 3) &&
+                enPassantTarget() == move.to
 
-            return PlayedMove(move, isCapture, capturedPiece, checkType, offersDraw, algebraicNotation)
+            return PlayedMove(move, isCapture, capturedPiece, checkType, offersDraw, algebraicNotation, isEnPassant)
         }
     }
 }
\ No newline at end of file
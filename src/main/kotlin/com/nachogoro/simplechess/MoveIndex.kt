@@ -0,0 +1,58 @@
+package com.nachogoro.simplechess
+
+/**
+ * Index over the moves available in a position.
+ *
+ * Moves are bucketed by destination square and type of the moving piece, so
+ * resolving a move described in a textual notation only inspects the handful
+ * of moves which can possibly match, and by origin square, so looking up or
+ * validating a move only inspects the moves of a single piece.
+ */
+internal class MoveIndex(moves: List<Move>) {
+
+    private val byTarget = arrayOfNulls<MutableList<Move>>(64 * PIECE_TYPE_COUNT)
+
+    private val bySource = arrayOfNulls<MutableList<Move>>(64)
+
+    init {
+        for (move in moves) {
+            val key = key(move.to, move.piece.type)
+            val bucket = byTarget[key] ?: ArrayList<Move>(2).also { byTarget[key] = it }
+            bucket.add(move)
+            val source = bySource[move.from.index] ?: ArrayList<Move>(8).also { bySource[move.from.index] = it }
+            source.add(move)
+        }
+    }
+
+    /**
+     * Returns the available moves of a piece of the given type to the given square.
+     */
+    fun movesTo(to: Square, type: PieceType): List<Move> = byTarget[key(to, type)] ?: emptyList()
+
+    /**
+     * Returns the available moves of the piece on the given square.
+     */
+    fun movesFrom(from: Square): List<Move> = bySource[from.index] ?: emptyList()
+
+    /**
+     * Returns the available move between two squares with the given promotion, or null if there is none.
+     */
+    fun find(from: Square, to: Square, promotion: PieceType?): Move? {
+        val moves = bySource[from.index] ?: return null
+        for (move in moves) {
+            if (move.to == to && move.promotion == promotion) return move
+        }
+        return null
+    }
+
+    /**
+     * Whether a move is available.
+     */
+    operator fun contains(move: Move): Boolean = find(move.from, move.to, move.promotion) == move
+
+    private fun key(to: Square, type: PieceType): Int = to.index * PIECE_TYPE_COUNT + type.ordinal
+
+    private companion object {
+        private val PIECE_TYPE_COUNT = PieceType.entries.size
+    }
+}
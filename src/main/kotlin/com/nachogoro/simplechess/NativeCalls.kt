@@ -0,0 +1,34 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.internal.ChessLibraryJNA
+import com.nachogoro.simplechess.internal.ChessLibraryJNA.Offsets
+import com.sun.jna.Pointer
+
+/**
+ * Calls into the native library, each reported to the installed [ChessInstrumentation].
+ */
+internal object NativeCalls {
+
+    private val lib: ChessLibraryJNA.ChessLib get() = ChessLibraryJNA.ChessLib.INSTANCE
+
+    fun createNewGame(): Pointer? =
+        Instrumentation.measure(ChessOperation.CREATE_GAME, 0) { lib.simple_chess_create_new_game() }
+
+    fun createGameFromFen(fen: String): Pointer? =
+        Instrumentation.measure(ChessOperation.CREATE_FROM_FEN, fen.length.toLong()) { lib.simple_chess_create_game_from_fen(fen) }
+
+    fun makeMove(game: Pointer, move: ChessLibraryJNA.PieceMove.ByValue, offerDraw: Boolean): Pointer? =
+        Instrumentation.measure(ChessOperation.MAKE_MOVE, Offsets.PIECE_MOVE_SIZE.toLong()) {
+            if (offerDraw) lib.simple_chess_make_move_with_draw_offer(game, move, true) else lib.simple_chess_make_move(game, move)
+        }
+
+    fun claimDraw(game: Pointer): Pointer? =
+        Instrumentation.measure(ChessOperation.CLAIM_DRAW, 0) { lib.simple_chess_claim_draw(game) }
+
+    fun resign(game: Pointer, color: Color): Pointer? =
+        Instrumentation.measure(ChessOperation.RESIGN, 0) { lib.simple_chess_resign(game, color.toJna()) }
+
+    fun destroyGame(game: Pointer) {
+        Instrumentation.measure(ChessOperation.DESTROY_GAME, 0) { lib.destroy_game(game) }
+    }
+}
@@ -0,0 +1,193 @@
+package com.nachogoro.simplechess
+
+import java.io.Closeable
+import java.io.IOException
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import kotlin.random.Random
+
+/**
+ * A move found in an [OpeningBook].
+ */
+@ConsistentCopyVisibility
+public data class BookMove internal constructor(
+    val move: Move,
+    /** Relative weight of the move among the book moves of its position. */
+    val weight: Int,
+    /** Learning data stored with the move (unused by most books). */
+    val learn: Int
+)
+
+/**
+ * Reader of opening books in the Polyglot (.bin) format.
+ *
+ * The book file is memory-mapped and probed by binary search, so books are
+ * never loaded into the heap and probes do not allocate beyond their result.
+ *
+ * Polyglot books identify positions by their Zobrist hash, computed with the
+ * Polyglot "Random64" table ([ZobristKeys.POLYGLOT]) both by other tools and
+ * by [OpeningBookWriter]. Books hashed with other keys can be opened by
+ * supplying them (see [ZobristKeys.of]).
+ *
+ * Probes are safe from any number of threads.
+ */
+public class OpeningBook private constructor(
+    private val channel: FileChannel,
+    private val buffer: MappedByteBuffer,
+    /** Number of entries in the book. */
+    public val entryCount: Int,
+    private val keys: ZobristKeys
+) : Closeable {
+
+    /**
+     * Returns the book moves of a position, by decreasing weight.
+     *
+     * @param position The position to probe
+     * @return The book moves, or an empty list if the position is not in the book
+     */
+    public fun lookup(position: Position): List<BookMove> {
+        val key = keys.hash(position)
+        var i = lowerBound(key)
+        if (i == entryCount || key(i) != key) return emptyList()
+
+        val moves = ArrayList<BookMove>(4)
+        while (i < entryCount && key(i) == key) {
+            val offset = i * ENTRY_SIZE
+            val move = decodeMove(buffer.getShort(offset + 8).toInt() and 0xffff, position)
+            if (move != null) {
+                moves.add(BookMove(move, buffer.getShort(offset + 10).toInt() and 0xffff, buffer.getInt(offset + 12)))
+            }
+            i++
+        }
+        moves.sortByDescending { it.weight }
+        return moves
+    }
+
+    /**
+     * Returns the book moves of the current position of a game, by decreasing weight.
+     *
+     * @param game The game whose current position is probed
+     * @return The book moves, or an empty list if the position is not in the book
+     */
+    public fun lookup(game: Game): List<BookMove> = lookup(game.currentPosition)
+
+    /**
+     * Picks a book move at random, with probability proportional to its weight.
+     *
+     * @param position The position to probe
+     * @param random Source of randomness
+     * @return A book move, or null if the position is not in the book or all its moves have weight 0
+     */
+    public fun pick(position: Position, random: Random = Random.Default): Move? {
+        val moves = lookup(position)
+        val total = moves.sumOf { it.weight.toLong() }
+        if (total == 0L) return null
+        var target = random.nextLong(total)
+        for (bookMove in moves) {
+            target -= bookMove.weight
+            if (target < 0) return bookMove.move
+        }
+        return null
+    }
+
+    /**
+     * Closes the book file. The mapping is released once the book is garbage collected.
+     */
+    override fun close() {
+        channel.close()
+    }
+
+    private fun key(i: Int): Long = buffer.getLong(i * ENTRY_SIZE)
+
+    /** Index of the first entry whose key is not lower than [key]; keys are sorted as unsigned numbers. */
+    private fun lowerBound(key: Long): Int {
+        var low = 0
+        var high = entryCount
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (java.lang.Long.compareUnsigned(key(mid), key) < 0) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    /**
+     * Decodes a Polyglot move in a position, or returns null if it cannot be
+     * played there (which only happens with corrupt books or hash collisions).
+     */
+    private fun decodeMove(encoded: Int, position: Position): Move? {
+        val from = Square.fromIndex(PolyglotMoves.from(encoded))
+        var to = Square.fromIndex(PolyglotMoves.to(encoded))
+        val piece = position.board[from] ?: return null
+
+        // Castling is encoded as the king capturing its own rook
+        if (piece.type == PieceType.KING && position.board[to] == Piece.create(PieceType.ROOK, piece.color)) {
+            to = Square.fromIndex(PolyglotMoves.castlingTarget(from.index, to.index))
+        }
+
+        val promotion = PolyglotMoves.promotion(encoded) ?: return Move.regularMove(piece, from, to)
+        if (piece.type != PieceType.PAWN) return null
+        return Move.pawnPromotion(piece, from, to, promotion)
+    }
+
+    public companion object {
+        internal const val ENTRY_SIZE = 16
+
+        /**
+         * Opens a Polyglot book.
+         *
+         * @param path The book file
+         * @param keys The keys the book was written with
+         * @return The book
+         * @throws IOException if the file cannot be read or is not a valid book
+         */
+        public fun open(path: Path, keys: ZobristKeys = ZobristKeys.POLYGLOT): OpeningBook {
+            val channel = FileChannel.open(path, StandardOpenOption.READ)
+            try {
+                val size = channel.size()
+                if (size % ENTRY_SIZE != 0L || size > Int.MAX_VALUE) throw IOException("Invalid Polyglot book size: $path")
+                val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                return OpeningBook(channel, buffer, (size / ENTRY_SIZE).toInt(), keys)
+            } catch (e: IOException) {
+                channel.close()
+                throw e
+            }
+        }
+    }
+}
+
+/**
+ * Encoding of moves in Polyglot books: bits 0-5 hold the destination square,
+ * bits 6-11 the origin square and bits 12-14 the promotion type (1 = knight,
+ * 2 = bishop, 3 = rook, 4 = queen). Squares use the library's indices.
+ */
+internal object PolyglotMoves {
+
+    private val PROMOTIONS = listOf(null, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN)
+
+    fun from(encoded: Int): Int = (encoded shr 6) and 0x3f
+
+    fun to(encoded: Int): Int = encoded and 0x3f
+
+    fun promotion(encoded: Int): PieceType? = PROMOTIONS.getOrNull((encoded shr 12) and 7)
+
+    /**
+     * Encodes a move packed as in [BoardState], played on [board]. Castling is
+     * encoded as the king capturing its own rook.
+     */
+    fun encode(packed: Int, board: BoardState): Int {
+        val from = BoardState.moveFrom(packed)
+        var to = BoardState.moveTo(packed)
+        if (board.squares[from] and BoardState.TYPE_MASK == BoardState.KING && (to - from == 2 || from - to == 2)) {
+            to = if (to > from) to + 1 else to - 2
+        }
+        val promotionType = BoardState.movePromotion(packed)
+        val promotion = if (promotionType == 0) 0 else PROMOTIONS.indexOf(PieceType.entries[promotionType - 1])
+        return to or (from shl 6) or (promotion shl 12)
+    }
+
+    /** Destination of the king when castling with the rook on [rookSquare]. */
+    fun castlingTarget(kingSquare: Int, rookSquare: Int): Int =
+        if (rookSquare > kingSquare) kingSquare + 2 else kingSquare - 2
+}
@@ -0,0 +1,195 @@
+package com.nachogoro.simplechess
+
+import java.io.DataOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.Future
+
+/**
+ * Builds opening books in the Polyglot (.bin) format from games.
+ *
+ * Every move played in the first [maxPly] plies of a game is added to the book
+ * with a weight depending on the result for the side which played it: 2 for a
+ * win, 1 for a draw or an unknown result and 0 for a loss. When the book is
+ * written, the weights of each position are scaled down to fit in 16 bits if
+ * needed.
+ *
+ * Games are replayed in Kotlin, without creating native games. PGN corpora
+ * are processed in parallel on a pool of daemon threads, one per available
+ * processor. Writers are not thread safe.
+ */
+public class OpeningBookWriter(
+    /** Number of plies of each game which are added to the book. */
+    public val maxPly: Int = DEFAULT_MAX_PLY,
+    private val keys: ZobristKeys = ZobristKeys.POLYGLOT
+) {
+
+    private val entries = Aggregate()
+
+    /** Number of games added so far. */
+    public var gameCount: Long = 0L
+        private set
+
+    init {
+        require(maxPly >= 0) { "maxPly must not be negative: $maxPly" }
+    }
+
+    /**
+     * Adds the moves of a game.
+     *
+     * Games which have not concluded are counted as having an unknown result.
+     *
+     * @param game The game to add
+     */
+    public fun addGame(game: Game) {
+        val history = game.history
+        val startFen = if (history.isEmpty()) game.currentPosition.fen else history[0].first.fen
+        val result = when (game.gameState) {
+            GameState.WHITE_WON -> WHITE_WON
+            GameState.BLACK_WON -> BLACK_WON
+            GameState.DRAWN -> DRAWN
+            GameState.PLAYING -> UNKNOWN
+        }
+        val board = BoardState()
+        if (Fen.parse(startFen, board) != null) return
+
+        for ((ply, entry) in history.withIndex()) {
+            if (ply == maxPly) break
+            val packed = entry.second.move.packed
+            entries.add(keys.hash(board), PolyglotMoves.encode(packed, board), weight(result, board.activeColor))
+            board.makeMove(packed)
+        }
+        gameCount++
+    }
+
+    /**
+     * Adds the games of a PGN document.
+     *
+     * Games start from the position of their "FEN" tag, or from the standard
+     * starting position. A game with a move which cannot be resolved is added
+     * up to that move. The input is consumed lazily while games are replayed
+     * in parallel.
+     *
+     * @param lines The lines of the document
+     * @return The number of games added
+     */
+    public fun addPgn(lines: Sequence<String>): Int {
+        val games = PgnGame.read(lines).iterator()
+        val inFlight = ArrayDeque<Future<Pair<Aggregate, Int>>>()
+        var added = 0
+        try {
+            while (true) {
+                while (inFlight.size < 2 * BatchWorkers.parallelism && games.hasNext()) {
+                    val chunk = ArrayList<PgnGame>(CHUNK_SIZE)
+                    while (chunk.size < CHUNK_SIZE && games.hasNext()) chunk.add(games.next())
+                    inFlight.addLast(BatchWorkers.executor.submit(Callable { aggregate(chunk) }))
+                }
+                val next = inFlight.removeFirstOrNull() ?: break
+                val (aggregate, count) = next.get()
+                entries.addAll(aggregate)
+                added += count
+            }
+        } finally {
+            // Drop pending work if a chunk fails
+            inFlight.forEach { it.cancel(true) }
+        }
+        gameCount += added
+        return added
+    }
+
+    /**
+     * Adds the games of a PGN file.
+     *
+     * @param path The PGN file
+     * @return The number of games added
+     * @see addPgn
+     */
+    public fun addPgn(path: Path): Int = Files.newBufferedReader(path).use { addPgn(it.lineSequence()) }
+
+    /**
+     * Writes the book.
+     *
+     * @param path The file to write, which is replaced if it exists
+     */
+    public fun write(path: Path) {
+        val positions = entries.byKey.entries.sortedWith { a, b -> java.lang.Long.compareUnsigned(a.key, b.key) }
+        DataOutputStream(Files.newOutputStream(path).buffered()).use { out ->
+            for ((key, moves) in positions) {
+                val max = moves.values.maxOf { it[0] }
+                val scale = if (max > MAX_WEIGHT) MAX_WEIGHT.toDouble() / max else 1.0
+                for ((move, weight) in moves.entries.sortedByDescending { it.value[0] }) {
+                    out.writeLong(key)
+                    out.writeShort(move)
+                    out.writeShort((weight[0] * scale).toInt())
+                    out.writeInt(0)
+                }
+            }
+        }
+    }
+
+    private fun aggregate(games: List<PgnGame>): Pair<Aggregate, Int> {
+        val aggregate = Aggregate()
+        val board = BoardState()
+        val moves = IntArray(BoardState.MAX_MOVES)
+        var added = 0
+        for (game in games) {
+            val fen = game.tags["FEN"] ?: Fen.STANDARD_START
+            if (Fen.parse(fen, board) != null) continue
+            val result = when (game.result) {
+                "1-0" -> WHITE_WON
+                "0-1" -> BLACK_WON
+                "1/2-1/2" -> DRAWN
+                else -> UNKNOWN
+            }
+            for ((ply, san) in game.moves.withIndex()) {
+                if (ply == maxPly) break
+                val count = board.generateLegalMoves(moves)
+                val index = MoveIndex(List(count) { Move.fromPacked(moves[it], board) })
+                val packed = SanParser.resolve(san, index).getOrNull()?.packed ?: break
+                aggregate.add(keys.hash(board), PolyglotMoves.encode(packed, board), weight(result, board.activeColor))
+                board.makeMove(packed)
+            }
+            added++
+        }
+        return aggregate to added
+    }
+
+    private fun weight(result: Int, color: Int): Long = when (result) {
+        UNKNOWN, DRAWN -> 1L
+        WHITE_WON -> if (color == BoardState.WHITE) 2L else 0L
+        else -> if (color == BoardState.BLACK) 2L else 0L
+    }
+
+    /**
+     * Weights of the moves of each position: position key to encoded move to weight.
+     */
+    private class Aggregate {
+        val byKey = HashMap<Long, HashMap<Int, LongArray>>()
+
+        fun add(key: Long, move: Int, weight: Long) {
+            val moves = byKey.getOrPut(key) { HashMap(4) }
+            val total = moves.getOrPut(move) { LongArray(1) }
+            total[0] += weight
+        }
+
+        fun addAll(other: Aggregate) {
+            for ((key, moves) in other.byKey) {
+                for ((move, weight) in moves) add(key, move, weight[0])
+            }
+        }
+    }
+
+    public companion object {
+        /** Default number of plies of each game added to the book. */
+        public const val DEFAULT_MAX_PLY: Int = 30
+
+        private const val CHUNK_SIZE = 256
+        private const val MAX_WEIGHT = 0xffff
+
+        private const val UNKNOWN = 0
+        private const val WHITE_WON = 1
+        private const val BLACK_WON = 2
+        private const val DRAWN = 3
+    }
+}
@@ -0,0 +1,54 @@
+package com.nachogoro.simplechess
+
+/**
+ * A game read from a PGN document: its tag pairs and the moves of its main line.
+ */
+internal class PgnGame(
+    val tags: Map<String, String>,
+    /** The moves in Standard Algebraic Notation. */
+    val moves: List<String>,
+    /** The result token, or null if the movetext ended without one. */
+    val result: String?
+) {
+
+    companion object {
+        /**
+         * Splits the lines of a PGN document into games.
+         *
+         * A game ends at its result token, or when the tag pairs of the next
+         * game start.
+         */
+        fun read(lines: Sequence<String>): Sequence<PgnGame> = sequence {
+            val tokenizer = PgnTokenizer()
+            var tags = LinkedHashMap<String, String>()
+            var moves = ArrayList<String>()
+            var inMovetext = false
+
+            for (line in lines) {
+                if (PgnTokenizer.isTagLine(line)) {
+                    if (inMovetext) {
+                        yield(PgnGame(tags, moves, tokenizer.result))
+                        tags = LinkedHashMap()
+                        moves = ArrayList()
+                        inMovetext = false
+                        tokenizer.reset()
+                    }
+                    PgnTokenizer.parseTag(line)?.let { (name, value) -> tags[name] = value }
+                    continue
+                }
+                if (line.isBlank()) continue
+
+                inMovetext = true
+                moves.addAll(tokenizer.tokens(line))
+                if (tokenizer.isFinished) {
+                    yield(PgnGame(tags, moves, tokenizer.result))
+                    tags = LinkedHashMap()
+                    moves = ArrayList()
+                    inMovetext = false
+                    tokenizer.reset()
+                }
+            }
+            if (inMovetext || tags.isNotEmpty()) yield(PgnGame(tags, moves, tokenizer.result))
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.nachogoro.simplechess
+
+/**
+ * Splits PGN movetext into the moves of its main line.
+ *
+ * Lines are fed one at a time; comments and variations may span several lines.
+ * Move numbers, numeric annotation glyphs, comments and variations are
+ * skipped, and the result token ends the game. Call [reset] to read the next
+ * game of a document.
+ *
+ * Also used by the simplechess-coroutines module, which is compiled as a
+ * friend of this one.
+ */
+internal class PgnTokenizer {
+
+    private var inComment = false
+    private var variationDepth = 0
+
+    /**
+     * The result token which ended the game ("1-0", "0-1", "1/2-1/2" or "*"),
+     * or null if it has not been read yet.
+     */
+    var result: String? = null
+        private set
+
+    /**
+     * Whether the result token which ends the game has been read.
+     */
+    val isFinished: Boolean get() = result != null
+
+    /**
+     * Prepares the tokenizer for the movetext of a new game.
+     */
+    fun reset() {
+        inComment = false
+        variationDepth = 0
+        result = null
+    }
+
+    /**
+     * Returns the moves of the main line found in one line of movetext, in
+     * Standard Algebraic Notation.
+     *
+     * @param line A line of movetext
+     * @return The moves found in the line, in order. Nothing is returned once
+     *         the game is finished
+     */
+    fun tokens(line: String): List<String> {
+        val tokens = ArrayList<String>()
+        // Escaped lines are ignored altogether
+        if (line.startsWith('%')) return tokens
+
+        var i = 0
+        while (i < line.length && !isFinished) {
+            val c = line[i]
+            when {
+                inComment -> {
+                    if (c == '}') inComment = false
+                    i++
+                }
+                c == '{' -> {
+                    inComment = true
+                    i++
+                }
+                // Rest-of-line comment
+                c == ';' -> break
+                c == '(' -> {
+                    variationDepth++
+                    i++
+                }
+                c == ')' -> {
+                    if (variationDepth > 0) variationDepth--
+                    i++
+                }
+                c.isWhitespace() -> i++
+                else -> {
+                    val start = i
+                    while (i < line.length) {
+                        // A draw offer suffix belongs to the move, it does not open a variation
+                        if (line.startsWith(DRAW_OFFER, i)) {
+                            i += DRAW_OFFER.length
+                            continue
+                        }
+                        if (line[i].isWhitespace() || line[i] in DELIMITERS) break
+                        i++
+                    }
+                    if (variationDepth == 0) move(line, start, i)?.let { tokens.add(it) }
+                }
+            }
+        }
+        return tokens
+    }
+
+    /**
+     * Returns the move in a movetext token, or null if the token holds none
+     * (move number, annotation glyph or result).
+     */
+    private fun move(line: String, start: Int, end: Int): String? {
+        val token = line.substring(start, end)
+        if (token in RESULTS) {
+            result = token
+            return null
+        }
+        if (token[0] == '$') return null
+
+        // Strip move numbers such as "12." or "12...", possibly glued to the move
+        var i = 0
+        while (i < token.length && token[i].isDigit()) i++
+        if (i == token.length || token[i] != '.') return token
+        while (i < token.length && token[i] == '.') i++
+        return if (i == token.length) null else token.substring(i)
+    }
+
+    companion object {
+        private const val DRAW_OFFER = "(=)"
+        private const val DELIMITERS = "{}();"
+        private val RESULTS = setOf("1-0", "0-1", "1/2-1/2", "*")
+
+        /**
+         * Whether a line is a tag pair, e.g. `[White "Kasparov"]`.
+         */
+        fun isTagLine(line: String): Boolean = line.trimStart().startsWith('[')
+
+        /**
+         * Returns the name and value of a tag pair, or null if it is malformed.
+         */
+        fun parseTag(line: String): Pair<String, String>? {
+            val text = line.trim()
+            if (!text.startsWith('[') || !text.endsWith(']')) return null
+            val nameEnd = text.indexOfFirst { it.isWhitespace() }.takeIf { it > 1 } ?: return null
+            val value = text.substring(nameEnd, text.length - 1).trim()
+            if (value.length < 2 || !value.startsWith('"') || !value.endsWith('"')) return null
+            return text.substring(1, nameEnd) to value.substring(1, value.length - 1)
+                .replace("\\\"", "\"")
+                .replace("\\\\", "\\")
+        }
+    }
+}
@@ -23,6 +23,11 @@ public value class Piece private constructor(private val encoded: Int) {
      */
     public override fun toString(): String = "${color.name.lowercase()} ${type.name.lowercase()}"
 
+    /**
+     * Compact code of the piece: the type ordinal in the lower three bits and the color in bit 3.
+     */
+    internal val code: Int get() = encoded
+
     public companion object {
         /**
          * Creates a Piece from type and color.
@@ -32,6 +37,11 @@ public value class Piece private constructor(private val encoded: Int) {
             return Piece((colorBit shl 3) or type.ordinal)
         }
 
+        /**
+         * Creates a Piece from its compact code (see [code]).
+         */
+        internal fun fromCode(code: Int): Piece = Piece(code)
+
         /**
          * Creates a Piece from JNA Piece.
          */
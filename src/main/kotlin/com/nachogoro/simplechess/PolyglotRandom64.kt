@@ -0,0 +1,212 @@
+package com.nachogoro.simplechess
+
+/**
+ * The "Random64" table of the Polyglot book format, with which Polyglot books
+ * and the tools reading them hash positions.
+ */
+internal object PolyglotRandom64 {
+
+    @OptIn(ExperimentalUnsignedTypes::class)
+    val KEYS: LongArray = ulongArrayOf(
+        // Pieces: 64 keys for each kind, black pawn first, then white pawn, black knight and so on
+        0x9D39247E33776D41uL, 0x2AF7398005AAA5C7uL, 0x44DB015024623547uL, 0x9C15F73E62A76AE2uL,
+        0x75834465489C0C89uL, 0x3290AC3A203001BFuL, 0x0FBBAD1F61042279uL, 0xE83A908FF2FB60CAuL,
+        0x0D7E765D58755C10uL, 0x1A083822CEAFE02DuL, 0x9605D5F0E25EC3B0uL, 0xD021FF5CD13A2ED5uL,
+        0x40BDF15D4A672E32uL, 0x011355146FD56395uL, 0x5DB4832046F3D9E5uL, 0x239F8B2D7FF719CCuL,
+        0x05D1A1AE85B49AA1uL, 0x679F848F6E8FC971uL, 0x7449BBFF801FED0BuL, 0x7D11CDB1C3B7ADF0uL,
+        0x82C7709E781EB7CCuL, 0xF3218F1C9510786CuL, 0x331478F3AF51BBE6uL, 0x4BB38DE5E7219443uL,
+        0xAA649C6EBCFD50FCuL, 0x8DBD98A352AFD40BuL, 0x87D2074B81D79217uL, 0x19F3C751D3E92AE1uL,
+        0xB4AB30F062B19ABFuL, 0x7B0500AC42047AC4uL, 0xC9452CA81A09D85DuL, 0x24AA6C514DA27500uL,
+        0x4C9F34427501B447uL, 0x14A68FD73C910841uL, 0xA71B9B83461CBD93uL, 0x03488B95B0F1850FuL,
+        0x637B2B34FF93C040uL, 0x09D1BC9A3DD90A94uL, 0x3575668334A1DD3BuL, 0x735E2B97A4C45A23uL,
+        0x18727070F1BD400BuL, 0x1FCBACD259BF02E7uL, 0xD310A7C2CE9B6555uL, 0xBF983FE0FE5D8244uL,
+        0x9F74D14F7454A824uL, 0x51EBDC4AB9BA3035uL, 0x5C82C505DB9AB0FAuL, 0xFCF7FE8A3430B241uL,
+        0x3253A729B9BA3DDEuL, 0x8C74C368081B3075uL, 0xB9BC6C87167C33E7uL, 0x7EF48F2B83024E20uL,
+        0x11D505D4C351BD7FuL, 0x6568FCA92C76A243uL, 0x4DE0B0F40F32A7B8uL, 0x96D693460CC37E5DuL,
+        0x42E240CB63689F2FuL, 0x6D2BDCDAE2919661uL, 0x42880B0236E4D951uL, 0x5F0F4A5898171BB6uL,
+        0x39F890F579F92F88uL, 0x93C5B5F47356388BuL, 0x63DC359D8D231B78uL, 0xEC16CA8AEA98AD76uL,
+        0x5355F900C2A82DC7uL, 0x07FB9F855A997142uL, 0x5093417AA8A7ED5EuL, 0x7BCBC38DA25A7F3CuL,
+        0x19FC8A768CF4B6D4uL, 0x637A7780DECFC0D9uL, 0x8249A47AEE0E41F7uL, 0x79AD695501E7D1E8uL,
+        0x14ACBAF4777D5776uL, 0xF145B6BECCDEA195uL, 0xDABF2AC8201752FCuL, 0x24C3C94DF9C8D3F6uL,
+        0xBB6E2924F03912EAuL, 0x0CE26C0B95C980D9uL, 0xA49CD132BFBF7CC4uL, 0xE99D662AF4243939uL,
+        0x27E6AD7891165C3FuL, 0x8535F040B9744FF1uL, 0x54B3F4FA5F40D873uL, 0x72B12C32127FED2BuL,
+        0xEE954D3C7B411F47uL, 0x9A85AC909A24EAA1uL, 0x70AC4CD9F04F21F5uL, 0xF9B89D3E99A075C2uL,
+        0x87B3E2B2B5C907B1uL, 0xA366E5B8C54F48B8uL, 0xAE4A9346CC3F7CF2uL, 0x1920C04D47267BBDuL,
+        0x87BF02C6B49E2AE9uL, 0x092237AC237F3859uL, 0xFF07F64EF8ED14D0uL, 0x8DE8DCA9F03CC54EuL,
+        0x9C1633264DB49C89uL, 0xB3F22C3D0B0B38EDuL, 0x390E5FB44D01144BuL, 0x5BFEA5B4712768E9uL,
+        0x1E1032911FA78984uL, 0x9A74ACB964E78CB3uL, 0x4F80F7A035DAFB04uL, 0x6304D09A0B3738C4uL,
+        0x2171E64683023A08uL, 0x5B9B63EB9CEFF80CuL, 0x506AACF489889342uL, 0x1881AFC9A3A701D6uL,
+        0x6503080440750644uL, 0xDFD395339CDBF4A7uL, 0xEF927DBCF00C20F2uL, 0x7B32F7D1E03680ECuL,
+        0xB9FD7620E7316243uL, 0x05A7E8A57DB91B77uL, 0xB5889C6E15630A75uL, 0x4A750A09CE9573F7uL,
+        0xCF464CEC899A2F8AuL, 0xF538639CE705B824uL, 0x3C79A0FF5580EF7FuL, 0xEDE6C87F8477609DuL,
+        0x799E81F05BC93F31uL, 0x86536B8CF3428A8CuL, 0x97D7374C60087B73uL, 0xA246637CFF328532uL,
+        0x043FCAE60CC0EBA0uL, 0x920E449535DD359EuL, 0x70EB093B15B290CCuL, 0x73A1921916591CBDuL,
+        0x56436C9FE1A1AA8DuL, 0xEFAC4B70633B8F81uL, 0xBB215798D45DF7AFuL, 0x45F20042F24F1768uL,
+        0x930F80F4E8EB7462uL, 0xFF6712FFCFD75EA1uL, 0xAE623FD67468AA70uL, 0xDD2C5BC84BC8D8FCuL,
+        0x7EED120D54CF2DD9uL, 0x22FE545401165F1CuL, 0xC91800E98FB99929uL, 0x808BD68E6AC10365uL,
+        0xDEC468145B7605F6uL, 0x1BEDE3A3AEF53302uL, 0x43539603D6C55602uL, 0xAA969B5C691CCB7AuL,
+        0xA87832D392EFEE56uL, 0x65942C7B3C7E11AEuL, 0xDED2D633CAD004F6uL, 0x21F08570F420E565uL,
+        0xB415938D7DA94E3CuL, 0x91B859E59ECB6350uL, 0x10CFF333E0ED804AuL, 0x28AED140BE0BB7DDuL,
+        0xC5CC1D89724FA456uL, 0x5648F680F11A2741uL, 0x2D255069F0B7DAB3uL, 0x9BC5A38EF729ABD4uL,
+        0xEF2F054308F6A2BCuL, 0xAF2042F5CC5C2858uL, 0x480412BAB7F5BE2AuL, 0xAEF3AF4A563DFE43uL,
+        0x19AFE59AE451497FuL, 0x52593803DFF1E840uL, 0xF4F076E65F2CE6F0uL, 0x11379625747D5AF3uL,
+        0xBCE5D2248682C115uL, 0x9DA4243DE836994FuL, 0x066F70B33FE09017uL, 0x4DC4DE189B671A1CuL,
+        0x51039AB7712457C3uL, 0xC07A3F80C31FB4B4uL, 0xB46EE9C5E64A6E7CuL, 0xB3819A42ABE61C87uL,
+        0x21A007933A522A20uL, 0x2DF16F761598AA4FuL, 0x763C4A1371B368FDuL, 0xF793C46702E086A0uL,
+        0xD7288E012AEB8D31uL, 0xDE336A2A4BC1C44BuL, 0x0BF692B38D079F23uL, 0x2C604A7A177326B3uL,
+        0x4850E73E03EB6064uL, 0xCFC447F1E53C8E1BuL, 0xB05CA3F564268D99uL, 0x9AE182C8BC9474E8uL,
+        0xA4FC4BD4FC5558CAuL, 0xE755178D58FC4E76uL, 0x69B97DB1A4C03DFEuL, 0xF9B5B7C4ACC67C96uL,
+        0xFC6A82D64B8655FBuL, 0x9C684CB6C4D24417uL, 0x8EC97D2917456ED0uL, 0x6703DF9D2924E97EuL,
+        0xC547F57E42A7444EuL, 0x78E37644E7CAD29EuL, 0xFE9A44E9362F05FAuL, 0x08BD35CC38336615uL,
+        0x9315E5EB3A129ACEuL, 0x94061B871E04DF75uL, 0xDF1D9F9D784BA010uL, 0x3BBA57B68871B59DuL,
+        0xD2B7ADEEDED1F73FuL, 0xF7A255D83BC373F8uL, 0xD7F4F2448C0CEB81uL, 0xD95BE88CD210FFA7uL,
+        0x336F52F8FF4728E7uL, 0xA74049DAC312AC71uL, 0xA2F61BB6E437FDB5uL, 0x4F2A5CB07F6A35B3uL,
+        0x87D380BDA5BF7859uL, 0x16B9F7E06C453A21uL, 0x7BA2484C8A0FD54EuL, 0xF3A678CAD9A2E38CuL,
+        0x39B0BF7DDE437BA2uL, 0xFCAF55C1BF8A4424uL, 0x18FCF680573FA594uL, 0x4C0563B89F495AC3uL,
+        0x40E087931A00930DuL, 0x8CFFA9412EB642C1uL, 0x68CA39053261169FuL, 0x7A1EE967D27579E2uL,
+        0x9D1D60E5076F5B6FuL, 0x3810E399B6F65BA2uL, 0x32095B6D4AB5F9B1uL, 0x35CAB62109DD038AuL,
+        0xA90B24499FCFAFB1uL, 0x77A225A07CC2C6BDuL, 0x513E5E634C70E331uL, 0x4361C0CA3F692F12uL,
+        0xD941ACA44B20A45BuL, 0x528F7C8602C5807BuL, 0x52AB92BEB9613989uL, 0x9D1DFA2EFC557F73uL,
+        0x722FF175F572C348uL, 0x1D1260A51107FE97uL, 0x7A249A57EC0C9BA2uL, 0x04208FE9E8F7F2D6uL,
+        0x5A110C6058B920A0uL, 0x0CD9A497658A5698uL, 0x56FD23C8F9715A4CuL, 0x284C847B9D887AAEuL,
+        0x04FEABFBBDB619CBuL, 0x742E1E651C60BA83uL, 0x9A9632E65904AD3CuL, 0x881B82A13B51B9E2uL,
+        0x506E6744CD974924uL, 0xB0183DB56FFC6A79uL, 0x0ED9B915C66ED37EuL, 0x5E11E86D5873D484uL,
+        0xF678647E3519AC6EuL, 0x1B85D488D0F20CC5uL, 0xDAB9FE6525D89021uL, 0x0D151D86ADB73615uL,
+        0xA865A54EDCC0F019uL, 0x93C42566AEF98FFBuL, 0x99E7AFEABE000731uL, 0x48CBFF086DDF285AuL,
+        0x7F9B6AF1EBF78BAFuL, 0x58627E1A149BBA21uL, 0x2CD16E2ABD791E33uL, 0xD363EFF5F0977996uL,
+        0x0CE2A38C344A6EEDuL, 0x1A804AADB9CFA741uL, 0x907F30421D78C5DEuL, 0x501F65EDB3034D07uL,
+        0x37624AE5A48FA6E9uL, 0x957BAF61700CFF4EuL, 0x3A6C27934E31188AuL, 0xD49503536ABCA345uL,
+        0x088E049589C432E0uL, 0xF943AEE7FEBF21B8uL, 0x6C3B8E3E336139D3uL, 0x364F6FFA464EE52EuL,
+        0xD60F6DCEDC314222uL, 0x56963B0DCA418FC0uL, 0x16F50EDF91E513AFuL, 0xEF1955914B609F93uL,
+        0x565601C0364E3228uL, 0xECB53939887E8175uL, 0xBAC7A9A18531294BuL, 0xB344C470397BBA52uL,
+        0x65D34954DAF3CEBDuL, 0xB4B81B3FA97511E2uL, 0xB422061193D6F6A7uL, 0x071582401C38434DuL,
+        0x7A13F18BBEDC4FF5uL, 0xBC4097B116C524D2uL, 0x59B97885E2F2EA28uL, 0x99170A5DC3115544uL,
+        0x6F423357E7C6A9F9uL, 0x325928EE6E6F8794uL, 0xD0E4366228B03343uL, 0x565C31F7DE89EA27uL,
+        0x30F5611484119414uL, 0xD873DB391292ED4FuL, 0x7BD94E1D8E17DEBCuL, 0xC7D9F16864A76E94uL,
+        0x947AE053EE56E63CuL, 0xC8C93882F9475F5FuL, 0x3A9BF55BA91F81CAuL, 0xD9A11FBB3D9808E4uL,
+        0x0FD22063EDC29FCAuL, 0xB3F256D8ACA0B0B9uL, 0xB03031A8B4516E84uL, 0x35DD37D5871448AFuL,
+        0xE9F6082B05542E4EuL, 0xEBFAFA33D7254B59uL, 0x9255ABB50D532280uL, 0xB9AB4CE57F2D34F3uL,
+        0x693501D628297551uL, 0xC62C58F97DD949BFuL, 0xCD454F8F19C5126AuL, 0xBBE83F4ECC2BDECBuL,
+        0xDC842B7E2819E230uL, 0xBA89142E007503B8uL, 0xA3BC941D0A5061CBuL, 0xE9F6760E32CD8021uL,
+        0x09C7E552BC76492FuL, 0x852F54934DA55CC9uL, 0x8107FCCF064FCF56uL, 0x098954D51FFF6580uL,
+        0x23B70EDB1955C4BFuL, 0xC330DE426430F69DuL, 0x4715ED43E8A45C0AuL, 0xA8D7E4DAB780A08DuL,
+        0x0572B974F03CE0BBuL, 0xB57D2E985E1419C7uL, 0xE8D9ECBE2CF3D73FuL, 0x2FE4B17170E59750uL,
+        0x11317BA87905E790uL, 0x7FBF21EC8A1F45ECuL, 0x1725CABFCB045B00uL, 0x964E915CD5E2B207uL,
+        0x3E2B8BCBF016D66DuL, 0xBE7444E39328A0ACuL, 0xF85B2B4FBCDE44B7uL, 0x49353FEA39BA63B1uL,
+        0x1DD01AAFCD53486AuL, 0x1FCA8A92FD719F85uL, 0xFC7C95D827357AFAuL, 0x18A6A990C8B35EBDuL,
+        0xCCCB7005C6B9C28DuL, 0x3BDBB92C43B17F26uL, 0xAA70B5B4F89695A2uL, 0xE94C39A54A98307FuL,
+        0xB7A0B174CFF6F36EuL, 0xD4DBA84729AF48ADuL, 0x2E18BC1AD9704A68uL, 0x2DE0966DAF2F8B1CuL,
+        0xB9C11D5B1E43A07EuL, 0x64972D68DEE33360uL, 0x94628D38D0C20584uL, 0xDBC0D2B6AB90A559uL,
+        0xD2733C4335C6A72FuL, 0x7E75D99D94A70F4DuL, 0x6CED1983376FA72BuL, 0x97FCAACBF030BC24uL,
+        0x7B77497B32503B12uL, 0x8547EDDFB81CCB94uL, 0x79999CDFF70902CBuL, 0xCFFE1939438E9B24uL,
+        0x829626E3892D95D7uL, 0x92FAE24291F2B3F1uL, 0x63E22C147B9C3403uL, 0xC678B6D860284A1CuL,
+        0x5873888850659AE7uL, 0x0981DCD296A8736DuL, 0x9F65789A6509A440uL, 0x9FF38FED72E9052FuL,
+        0xE479EE5B9930578CuL, 0xE7F28ECD2D49EECDuL, 0x56C074A581EA17FEuL, 0x5544F7D774B14AEFuL,
+        0x7B3F0195FC6F290FuL, 0x12153635B2C0CF57uL, 0x7F5126DBBA5E0CA7uL, 0x7A76956C3EAFB413uL,
+        0x3D5774A11D31AB39uL, 0x8A1B083821F40CB4uL, 0x7B4A38E32537DF62uL, 0x950113646D1D6E03uL,
+        0x4DA8979A0041E8A9uL, 0x3BC36E078F7515D7uL, 0x5D0A12F27AD310D1uL, 0x7F9D1A2E1EBE1327uL,
+        0xDA3A361B1C5157B1uL, 0xDCDD7D20903D0C25uL, 0x36833336D068F707uL, 0xCE68341F79893389uL,
+        0xAB9090168DD05F34uL, 0x43954B3252DC25E5uL, 0xB438C2B67F98E5E9uL, 0x10DCD78E3851A492uL,
+        0xDBC27AB5447822BFuL, 0x9B3CDB65F82CA382uL, 0xB67B7896167B4C84uL, 0xBFCED1B0048EAC50uL,
+        0xA9119B60369FFEBDuL, 0x1FFF7AC80904BF45uL, 0xAC12FB171817EEE7uL, 0xAF08DA9177DDA93DuL,
+        0x1B0CAB936E65C744uL, 0xB559EB1D04E5E932uL, 0xC37B45B3F8D6F2BAuL, 0xC3A9DC228CAAC9E9uL,
+        0xF3B8B6675A6507FFuL, 0x9FC477DE4ED681DAuL, 0x67378D8ECCEF96CBuL, 0x6DD856D94D259236uL,
+        0xA319CE15B0B4DB31uL, 0x073973751F12DD5EuL, 0x8A8E849EB32781A5uL, 0xE1925C71285279F5uL,
+        0x74C04BF1790C0EFEuL, 0x4DDA48153C94938AuL, 0x9D266D6A1CC0542CuL, 0x7440FB816508C4FEuL,
+        0x13328503DF48229FuL, 0xD6BF7BAEE43CAC40uL, 0x4838D65F6EF6748FuL, 0x1E152328F3318DEAuL,
+        0x8F8419A348F296BFuL, 0x72C8834A5957B511uL, 0xD7A023A73260B45CuL, 0x94EBC8ABCFB56DAEuL,
+        0x9FC10D0F989993E0uL, 0xDE68A2355B93CAE6uL, 0xA44CFE79AE538BBEuL, 0x9D1D84FCCE371425uL,
+        0x51D2B1AB2DDFB636uL, 0x2FD7E4B9E72CD38CuL, 0x65CA5B96B7552210uL, 0xDD69A0D8AB3B546DuL,
+        0x604D51B25FBF70E2uL, 0x73AA8A564FB7AC9EuL, 0x1A8C1E992B941148uL, 0xAAC40A2703D9BEA0uL,
+        0x764DBEAE7FA4F3A6uL, 0x1E99B96E70A9BE8BuL, 0x2C5E9DEB57EF4743uL, 0x3A938FEE32D29981uL,
+        0x26E6DB8FFDF5ADFEuL, 0x469356C504EC9F9DuL, 0xC8763C5B08D1908CuL, 0x3F6C6AF859D80055uL,
+        0x7F7CC39420A3A545uL, 0x9BFB227EBDF4C5CEuL, 0x89039D79D6FC5C5CuL, 0x8FE88B57305E2AB6uL,
+        0xA09E8C8C35AB96DEuL, 0xFA7E393983325753uL, 0xD6B6D0ECC617C699uL, 0xDFEA21EA9E7557E3uL,
+        0xB67C1FA481680AF8uL, 0xCA1E3785A9E724E5uL, 0x1CFC8BED0D681639uL, 0xD18D8549D140CAEAuL,
+        0x4ED0FE7E9DC91335uL, 0xE4DBF0634473F5D2uL, 0x1761F93A44D5AEFEuL, 0x53898E4C3910DA55uL,
+        0x734DE8181F6EC39AuL, 0x2680B122BAA28D97uL, 0x298AF231C85BAFABuL, 0x7983EED3740847D5uL,
+        0x66C1A2A1A60CD889uL, 0x9E17E49642A3E4C1uL, 0xEDB454E7BADC0805uL, 0x50B704CAB602C329uL,
+        0x4CC317FB9CDDD023uL, 0x66B4835D9EAFEA22uL, 0x219B97E26FFC81BDuL, 0x261E4E4C0A333A9DuL,
+        0x1FE2CCA76517DB90uL, 0xD7504DFA8816EDBBuL, 0xB9571FA04DC089C8uL, 0x1DDC0325259B27DEuL,
+        0xCF3F4688801EB9AAuL, 0xF4F5D05C10CAB243uL, 0x38B6525C21A42B0EuL, 0x36F60E2BA4FA6800uL,
+        0xEB3593803173E0CEuL, 0x9C4CD6257C5A3603uL, 0xAF0C317D32ADAA8AuL, 0x258E5A80C7204C4BuL,
+        0x8B889D624D44885DuL, 0xF4D14597E660F855uL, 0xD4347F66EC8941C3uL, 0xE699ED85B0DFB40DuL,
+        0x2472F6207C2D0484uL, 0xC2A1E7B5B459AEB5uL, 0xAB4F6451CC1D45ECuL, 0x63767572AE3D6174uL,
+        0xA59E0BD101731A28uL, 0x116D0016CB948F09uL, 0x2CF9C8CA052F6E9FuL, 0x0B090A7560A968E3uL,
+        0xABEEDDB2DDE06FF1uL, 0x58EFC10B06A2068DuL, 0xC6E57A78FBD986E0uL, 0x2EAB8CA63CE802D7uL,
+        0x14A195640116F336uL, 0x7C0828DD624EC390uL, 0xD74BBE77E6116AC7uL, 0x804456AF10F5FB53uL,
+        0xEBE9EA2ADF4321C7uL, 0x03219A39EE587A30uL, 0x49787FEF17AF9924uL, 0xA1E9300CD8520548uL,
+        0x5B45E522E4B1B4EFuL, 0xB49C3B3995091A36uL, 0xD4490AD526F14431uL, 0x12A8F216AF9418C2uL,
+        0x001F837CC7350524uL, 0x1877B51E57A764D5uL, 0xA2853B80F17F58EEuL, 0x993E1DE72D36D310uL,
+        0xB3598080CE64A656uL, 0x252F59CF0D9F04BBuL, 0xD23C8E176D113600uL, 0x1BDA0492E7E4586EuL,
+        0x21E0BD5026C619BFuL, 0x3B097ADAF088F94EuL, 0x8D14DEDB30BE846EuL, 0xF95CFFA23AF5F6F4uL,
+        0x3871700761B3F743uL, 0xCA672B91E9E4FA16uL, 0x64C8E531BFF53B55uL, 0x241260ED4AD1E87DuL,
+        0x106C09B972D2E822uL, 0x7FBA195410E5CA30uL, 0x7884D9BC6CB569D8uL, 0x0647DFEDCD894A29uL,
+        0x63573FF03E224774uL, 0x4FC8E9560F91B123uL, 0x1DB956E450275779uL, 0xB8D91274B9E9D4FBuL,
+        0xA2EBEE47E2FBFCE1uL, 0xD9F1F30CCD97FB09uL, 0xEFED53D75FD64E6BuL, 0x2E6D02C36017F67FuL,
+        0xA9AA4D20DB084E9BuL, 0xB64BE8D8B25396C1uL, 0x70CB6AF7C2D5BCF0uL, 0x98F076A4F7A2322EuL,
+        0xBF84470805E69B5FuL, 0x94C3251F06F90CF3uL, 0x3E003E616A6591E9uL, 0xB925A6CD0421AFF3uL,
+        0x61BDD1307C66E300uL, 0xBF8D5108E27E0D48uL, 0x240AB57A8B888B20uL, 0xFC87614BAF287E07uL,
+        0xEF02CDD06FFDB432uL, 0xA1082C0466DF6C0AuL, 0x8215E577001332C8uL, 0xD39BB9C3A48DB6CFuL,
+        0x2738259634305C14uL, 0x61CF4F94C97DF93DuL, 0x1B6BACA2AE4E125BuL, 0x758F450C88572E0BuL,
+        0x959F587D507A8359uL, 0xB063E962E045F54DuL, 0x60E8ED72C0DFF5D1uL, 0x7B64978555326F9FuL,
+        0xFD080D236DA814BAuL, 0x8C90FD9B083F4558uL, 0x106F72FE81E2C590uL, 0x7976033A39F7D952uL,
+        0xA4EC0132764CA04BuL, 0x733EA705FAE4FA77uL, 0xB4D8F77BC3E56167uL, 0x9E21F4F903B33FD9uL,
+        0x9D765E419FB69F6DuL, 0xD30C088BA61EA5EFuL, 0x5D94337FBFAF7F5BuL, 0x1A4E4822EB4D7A59uL,
+        0x6FFE73E81B637FB3uL, 0xDDF957BC36D8B9CAuL, 0x64D0E29EEA8838B3uL, 0x08DD9BDFD96B9F63uL,
+        0x087E79E5A57D1D13uL, 0xE328E230E3E2B3FBuL, 0x1C2559E30F0946BEuL, 0x720BF5F26F4D2EAAuL,
+        0xB0774D261CC609DBuL, 0x443F64EC5A371195uL, 0x4112CF68649A260EuL, 0xD813F2FAB7F5C5CAuL,
+        0x660D3257380841EEuL, 0x59AC2C7873F910A3uL, 0xE846963877671A17uL, 0x93B633ABFA3469F8uL,
+        0xC0C0F5A60EF4CDCFuL, 0xCAF21ECD4377B28CuL, 0x57277707199B8175uL, 0x506C11B9D90E8B1DuL,
+        0xD83CC2687A19255FuL, 0x4A29C6465A314CD1uL, 0xED2DF21216235097uL, 0xB5635C95FF7296E2uL,
+        0x22AF003AB672E811uL, 0x52E762596BF68235uL, 0x9AEBA33AC6ECC6B0uL, 0x944F6DE09134DFB6uL,
+        0x6C47BEC883A7DE39uL, 0x6AD047C430A12104uL, 0xA5B1CFDBA0AB4067uL, 0x7C45D833AFF07862uL,
+        0x5092EF950A16DA0BuL, 0x9338E69C052B8E7BuL, 0x455A4B4CFE30E3F5uL, 0x6B02E63195AD0CF8uL,
+        0x6B17B224BAD6BF27uL, 0xD1E0CCD25BB9C169uL, 0xDE0C89A556B9AE70uL, 0x50065E535A213CF6uL,
+        0x9C1169FA2777B874uL, 0x78EDEFD694AF1EEDuL, 0x6DC93D9526A50E68uL, 0xEE97F453F06791EDuL,
+        0x32AB0EDB696703D3uL, 0x3A6853C7E70757A7uL, 0x31865CED6120F37DuL, 0x67FEF95D92607890uL,
+        0x1F2B1D1F15F6DC9CuL, 0xB69E38A8965C6B65uL, 0xAA9119FF184CCCF4uL, 0xF43C732873F24C13uL,
+        0xFB4A3D794A9A80D2uL, 0x3550C2321FD6109CuL, 0x371F77E76BB8417EuL, 0x6BFA9AAE5EC05779uL,
+        0xCD04F3FF001A4778uL, 0xE3273522064480CAuL, 0x9F91508BFFCFC14AuL, 0x049A7F41061A9E60uL,
+        0xFCB6BE43A9F2FE9BuL, 0x08DE8A1C7797DA9BuL, 0x8F9887E6078735A1uL, 0xB5B4071DBFC73A66uL,
+        0x230E343DFBA08D33uL, 0x43ED7F5A0FAE657DuL, 0x3A88A0FBBCB05C63uL, 0x21874B8B4D2DBC4FuL,
+        0x1BDEA12E35F6A8C9uL, 0x53C065C6C8E63528uL, 0xE34A1D250E7A8D6BuL, 0xD6B04D3B7651DD7EuL,
+        0x5E90277E7CB39E2DuL, 0x2C046F22062DC67DuL, 0xB10BB459132D0A26uL, 0x3FA9DDFB67E2F199uL,
+        0x0E09B88E1914F7AFuL, 0x10E8B35AF3EEAB37uL, 0x9EEDECA8E272B933uL, 0xD4C718BC4AE8AE5FuL,
+        0x81536D601170FC20uL, 0x91B534F885818A06uL, 0xEC8177F83F900978uL, 0x190E714FADA5156EuL,
+        0xB592BF39B0364963uL, 0x89C350C893AE7DC1uL, 0xAC042E70F8B383F2uL, 0xB49B52E587A1EE60uL,
+        0xFB152FE3FF26DA89uL, 0x3E666E6F69AE2C15uL, 0x3B544EBE544C19F9uL, 0xE805A1E290CF2456uL,
+        0x24B33C9D7ED25117uL, 0xE74733427B72F0C1uL, 0x0A804D18B7097475uL, 0x57E3306D881EDB4FuL,
+        0x4AE7D6A36EB5DBCBuL, 0x2D8D5432157064C8uL, 0xD1E649DE1E7F268BuL, 0x8A328A1CEDFE552CuL,
+        0x07A3AEC79624C7DAuL, 0x84547DDC3E203C94uL, 0x990A98FD5071D263uL, 0x1A4FF12616EEFC89uL,
+        0xF6F7FD1431714200uL, 0x30C05B1BA332F41CuL, 0x8D2636B81555A786uL, 0x46C9FEB55D120902uL,
+        0xCCEC0A73B49C9921uL, 0x4E9D2827355FC492uL, 0x19EBB029435DCB0FuL, 0x4659D2B743848A2CuL,
+        0x963EF2C96B33BE31uL, 0x74F85198B05A2E7DuL, 0x5A0F544DD2B1FB18uL, 0x03727073C2E134B1uL,
+        0xC7F6AA2DE59AEA61uL, 0x352787BAA0D7C22FuL, 0x9853EAB63B5E0B35uL, 0xABBDCDD7ED5C0860uL,
+        0xCF05DAF5AC8D77B0uL, 0x49CAD48CEBF4A71EuL, 0x7A4C10EC2158C4A6uL, 0xD9E92AA246BF719EuL,
+        0x13AE978D09FE5557uL, 0x730499AF921549FFuL, 0x4E4B705B92903BA4uL, 0xFF577222C14F0A3AuL,
+        0x55B6344CF97AAFAEuL, 0xB862225B055B6960uL, 0xCAC09AFBDDD2CDB4uL, 0xDAF8E9829FE96B5FuL,
+        0xB5FDFC5D3132C498uL, 0x310CB380DB6F7503uL, 0xE87FBB46217A360EuL, 0x2102AE466EBB1148uL,
+        0xF8549E1A3AA5E00DuL, 0x07A69AFDCC42261AuL, 0xC4C118BFE78FEAAEuL, 0xF9F4892ED96BD438uL,
+        0x1AF3DBE25D8F45DAuL, 0xF5B4B0B0D2DEEEB4uL, 0x962ACEEFA82E1C84uL, 0x046E3ECAAF453CE9uL,
+        0xF05D129681949A4CuL, 0x964781CE734B3C84uL, 0x9C2ED44081CE5FBDuL, 0x522E23F3925E319EuL,
+        0x177E00F9FC32F791uL, 0x2BC60A63A6F3B3F2uL, 0x222BBFAE61725606uL, 0x486289DDCC3D6780uL,
+        0x7DC7785B8EFDFC80uL, 0x8AF38731C02BA980uL, 0x1FAB64EA29A2DDF7uL, 0xE4D9429322CD065AuL,
+        0x9DA058C67844F20CuL, 0x24C0E332B70019B0uL, 0x233003B5A6CFE6ADuL, 0xD586BD01C5C217F6uL,
+        0x5E5637885F29BC2BuL, 0x7EBA726D8C94094BuL, 0x0A56A5F0BFE39272uL, 0xD79476A84EE20D06uL,
+        0x9E4C1269BAA4BF37uL, 0x17EFEE45B0DEE640uL, 0x1D95B0A5FCF90BC6uL, 0x93CBE0B699C2585DuL,
+        0x65FA4F227A2B6D79uL, 0xD5F9E858292504D5uL, 0xC2B5A03F71471A6FuL, 0x59300222B4561E00uL,
+        0xCE2F8642CA0712DCuL, 0x7CA9723FBB2E8988uL, 0x2785338347F2BA08uL, 0xC61BB3A141E50E8CuL,
+        0x150F361DAB9DEC26uL, 0x9F6A419D382595F4uL, 0x64A53DC924FE7AC9uL, 0x142DE49FFF7A7C3DuL,
+        0x0C335248857FA9E7uL, 0x0A9C32D5EAE45305uL, 0xE6C42178C4BBB92EuL, 0x71F1CE2490D20B07uL,
+        0xF1BCC3D275AFE51AuL, 0xE728E8C83C334074uL, 0x96FBF83A12884624uL, 0x81A1549FD6573DA5uL,
+        0x5FA7867CAF35E149uL, 0x56986E2EF3ED091BuL, 0x917F1DD5F8886C61uL, 0xD20D8C88C8FFE65FuL,
+        // Castling rights: white king side, white queen side, black king side, black queen side
+        0x31D71DCE64B2C310uL, 0xF165B587DF898190uL, 0xA57E6339DD2CF3A0uL, 0x1EF6E6DBB1961EC9uL,
+        // En passant target file, from a to h
+        0x70CC73D90BC26E24uL, 0xE21A6B35DF0C3AD7uL, 0x003A93D8B2806962uL, 0x1C99DED33CB890A1uL,
+        0xCF3145DE0ADD4289uL, 0xD0E4427A5514FB72uL, 0x77C621CC9FB3A483uL, 0x67A34DAC4356550BuL,
+        // White to move
+        0xF8D626AAAF278509uL
+    ).asLongArray()
+}
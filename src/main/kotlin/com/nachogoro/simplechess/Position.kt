@@ -1,21 +1,58 @@
 package com.nachogoro.simplechess
 
-import com.nachogoro.simplechess.internal.ChessLibraryJNA
-
 /**
  * Represents a complete chess game position.
+ *
+ * Each property is decoded from the source of the position (a native game,
+ * a FEN string or a board) the first time it is read, so reading a single
+ * property such as [fen] or [checkStatus] does not pay for the others.
+ *
+ * Every property is determined by [fen], so two positions are equal if and
+ * only if their FENs are.
  */
-@ConsistentCopyVisibility
-public data class Position internal constructor(
-    val fen: String,
-    val activeColor: Color,
-    val castlingRights: Set<CastlingRight>,
-    val enPassantTarget: Square?,
-    val halfMoveClock: Int,
-    val fullMoveNumber: Int,
-    val checkStatus: CheckType,
-    val board: Map<Square, Piece>
-) {
+public class Position private constructor(private val source: PositionSource) {
+
+    /**
+     * The position in Forsyth-Edwards Notation.
+     */
+    public val fen: String by lazy(LazyThreadSafetyMode.PUBLICATION) { source.fen() }
+
+    /**
+     * The color which is to move.
+     */
+    public val activeColor: Color get() = source.activeColor()
+
+    /**
+     * The castling rights of both players.
+     */
+    public val castlingRights: Set<CastlingRight> by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        CastlingRight.fromJnaBitfield(source.castlingRights())
+    }
+
+    /**
+     * The square a pawn can be captured on en passant, if any.
+     */
+    public val enPassantTarget: Square? get() = source.enPassantTarget()
+
+    /**
+     * The number of half moves since the last capture or pawn advance.
+     */
+    public val halfMoveClock: Int get() = source.halfMoveClock()
+
+    /**
+     * The full move number, incremented after each move of black.
+     */
+    public val fullMoveNumber: Int get() = source.fullMoveNumber()
+
+    /**
+     * Check status of the active player.
+     */
+    public val checkStatus: CheckType by lazy(LazyThreadSafetyMode.PUBLICATION) { source.checkStatus() }
+
+    /**
+     * The pieces on the board, by square.
+     */
+    public val board: Map<Square, Piece> by lazy(LazyThreadSafetyMode.PUBLICATION) { source.board() }
 
     /**
      * Whether the active player is in check.
@@ -27,35 +64,187 @@ public data class Position internal constructor(
      */
     public val isInCheckmate: Boolean get() = checkStatus == CheckType.CHECKMATE
 
+    /**
+     * Returns the squares whose content differs between this position and another.
+     *
+     * Only the boards are compared, not the other properties of the positions.
+     * To follow a move, [PlayedMove.boardDelta] gives the same squares without
+     * looking at the boards.
+     *
+     * @param other The position to compare with
+     * @return The changes leading from the board of this position to that of [other]
+     */
+    public fun diff(other: Position): BoardDelta = BoardDelta.between(toBoard(), other.toBoard())
+
+    /**
+     * Writes this position into [board], replacing its contents.
+     */
+    internal fun toBoard(board: BoardState = BoardState()): BoardState {
+        source.load(board)
+        return board
+    }
+
+    // Destructuring follows the property order of the former data class
+
+    public operator fun component1(): String = fen
+
+    public operator fun component2(): Color = activeColor
+
+    public operator fun component3(): Set<CastlingRight> = castlingRights
+
+    public operator fun component4(): Square? = enPassantTarget
+
+    public operator fun component5(): Int = halfMoveClock
+
+    public operator fun component6(): Int = fullMoveNumber
+
+    public operator fun component7(): CheckType = checkStatus
+
+    public operator fun component8(): Map<Square, Piece> = board
+
+    override fun equals(other: Any?): Boolean = this === other || other is Position && fen == other.fen
+
+    override fun hashCode(): Int = fen.hashCode()
+
+    override fun toString(): String = "Position(fen=$fen)"
+
     public companion object {
         /**
-         * Creates a Position from JNA GameStage.
+         * Creates a Position from its representation in Forsyth-Edwards Notation.
+         *
+         * The FEN is parsed and validated in Kotlin, enforcing the same rules
+         * as [Game.fromFen] without creating a native game.
+         *
+         * @param fen The position in Forsyth-Edwards Notation
+         * @return A ChessResult containing the Position, or an Error if the FEN is invalid
          */
-        internal fun fromJna(jnaStage: ChessLibraryJNA.GameStage): Position {
-            val fen = ChessLibraryJNA.byteArrayToString(jnaStage.fen)
-            val activeColor = Color.fromJna(jnaStage.active_color)
-            val castlingRights = CastlingRight.fromJnaBitfield(jnaStage.castling_rights.toInt())
-            val enPassantTarget = if (jnaStage.has_en_passant_target != 0.toByte()) {
-                Square.fromJna(jnaStage.en_passant_target)
-            } else null
-            val halfMoveClock = jnaStage.half_moves_since_last_capture_or_pawn_advance.toInt()
-            val fullMoveNumber = jnaStage.full_moves.toInt()
-            val checkStatus = CheckType.fromJna(jnaStage.check_status)
-
-            // Convert JNA board to Kotlin map
-            val board = buildMap<Square, Piece> {
-                for (i in 0 until 64) {
-                    if (jnaStage.board.occupied[i] != 0.toByte()) {
-                        val rank = (i / 8) + 1
-                        val file = ('a' + (i % 8))
-                        val square = Square.fromRankAndFile(rank, file)
-                        val piece = Piece.fromJna(jnaStage.board.piece_at[i])
-                        put(square, piece)
-                    }
-                }
+        public fun fromFen(fen: String): ChessResult<Position> {
+            val board = BoardState()
+            val error = Fen.parse(fen, board)
+            return if (error == null) {
+                ChessResult.success(Position(BoardSource(board)))
+            } else {
+                ChessResult.error(ErrorKind.INVALID_FEN, "Invalid FEN string ($fen): ${error.message}")
             }
+        }
+
+        /**
+         * Creates a Position from a snapshot of a board, which may keep changing afterwards.
+         */
+        internal fun fromBoard(board: BoardState): Position = Position(BoardSource(board.copy()))
+
+        /**
+         * Creates a Position from a FEN produced by the native library, which
+         * is only parsed if a property other than [fen] is read.
+         */
+        internal fun fromNativeFen(fen: String): Position = Position(FenSource(fen))
+
+        /**
+         * Creates a Position backed by a source of its properties.
+         */
+        internal fun fromSource(source: PositionSource): Position = Position(source)
+    }
+}
+
+/**
+ * Source from which the properties of a [Position] are decoded.
+ */
+internal interface PositionSource {
+    fun fen(): String
 
-            return Position(fen, activeColor, castlingRights, enPassantTarget, halfMoveClock, fullMoveNumber, checkStatus, board)
+    fun activeColor(): Color
+
+    /** Castling rights as a bitfield of the native values. */
+    fun castlingRights(): Int
+
+    fun enPassantTarget(): Square?
+
+    fun halfMoveClock(): Int
+
+    fun fullMoveNumber(): Int
+
+    fun checkStatus(): CheckType
+
+    fun board(): Map<Square, Piece>
+
+    /**
+     * Writes the position into [board], replacing its contents.
+     */
+    fun load(board: BoardState) {
+        board.clear()
+        for ((square, piece) in board()) board.put(square.index, BoardState.code(piece))
+        board.activeColor = if (activeColor() == Color.WHITE) BoardState.WHITE else BoardState.BLACK
+        board.castlingRights = castlingRights()
+        board.enPassantTarget = enPassantTarget()?.index ?: BoardState.NO_SQUARE
+        board.halfMoveClock = halfMoveClock()
+        board.fullMoveNumber = fullMoveNumber()
+    }
+}
+
+/**
+ * Position stored in a board, which must not change afterwards.
+ */
+private class BoardSource(private val board: BoardState) : PositionSource {
+    override fun fen(): String = Fen.format(board)
+
+    override fun activeColor(): Color = if (board.activeColor == BoardState.WHITE) Color.WHITE else Color.BLACK
+
+    override fun castlingRights(): Int = board.castlingRights
+
+    override fun enPassantTarget(): Square? =
+        board.enPassantTarget.takeIf { it != BoardState.NO_SQUARE }?.let { Square.fromIndex(it) }
+
+    override fun halfMoveClock(): Int = board.halfMoveClock
+
+    override fun fullMoveNumber(): Int = board.fullMoveNumber
+
+    // Finding legal moves plays them on the board, so it works on a copy to
+    // keep concurrent readers safe
+    override fun checkStatus(): CheckType = board.copy().checkStatus()
+
+    override fun board(): Map<Square, Piece> = buildMap {
+        for (i in 0 until 64) {
+            val code = board.squares[i]
+            if (code != BoardState.EMPTY) put(Square.fromIndex(i), BoardState.piece(code))
         }
     }
-}
\ No newline at end of file
+
+    override fun load(board: BoardState) {
+        board.clear()
+        for (i in 0 until 64) board.put(i, this.board.squares[i])
+        board.activeColor = this.board.activeColor
+        board.castlingRights = this.board.castlingRights
+        board.enPassantTarget = this.board.enPassantTarget
+        board.halfMoveClock = this.board.halfMoveClock
+        board.fullMoveNumber = this.board.fullMoveNumber
+    }
+}
+
+/**
+ * Position known by a trusted FEN, parsed on first use of any other property.
+ */
+private class FenSource(private val fen: String) : PositionSource {
+    private val parsed: BoardSource by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        val board = BoardState()
+        Fen.parse(fen, board)?.let { throw IllegalStateException("Invalid FEN string ($fen): ${it.message}") }
+        BoardSource(board)
+    }
+
+    override fun fen(): String = fen
+
+    override fun activeColor(): Color = parsed.activeColor()
+
+    override fun castlingRights(): Int = parsed.castlingRights()
+
+    override fun enPassantTarget(): Square? = parsed.enPassantTarget()
+
+    override fun halfMoveClock(): Int = parsed.halfMoveClock()
+
+    override fun fullMoveNumber(): Int = parsed.fullMoveNumber()
+
+    override fun checkStatus(): CheckType = parsed.checkStatus()
+
+    override fun board(): Map<Square, Piece> = parsed.board()
+
+    override fun load(board: BoardState) = parsed.load(board)
+}
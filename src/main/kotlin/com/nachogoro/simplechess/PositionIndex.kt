@@ -0,0 +1,343 @@
+package com.nachogoro.simplechess
+
+import java.io.Closeable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * A game which reached a position, as found in a [PositionIndex].
+ */
+@ConsistentCopyVisibility
+public data class PositionHit internal constructor(
+    /** Identifier given to the game when it was indexed. */
+    val gameId: Int,
+    /** Number of moves (plies) played in the game when the position was reached. */
+    val ply: Int
+)
+
+/**
+ * On-disk index answering which games reached a given position.
+ *
+ * The index is a directory of immutable segment files written by
+ * [PositionIndexWriter]. Each segment holds postings (position hash, game id,
+ * ply) sorted by hash, and is memory-mapped and binary searched, so lookups
+ * never load the index into the heap.
+ *
+ * Positions are identified by their Zobrist hash, which ignores the move
+ * counters. Hash collisions are possible, though extremely unlikely.
+ *
+ * Lookups are safe from any number of threads. The index only sees the
+ * segments present when it was opened; reopen it to see newer ones.
+ */
+public class PositionIndex private constructor(private val segments: List<Segment>) : Closeable {
+
+    /**
+     * Total number of postings (indexed positions) in the index.
+     */
+    public val postingCount: Long = segments.sumOf { it.count.toLong() }
+
+    /**
+     * Finds the games which reached a position.
+     *
+     * @param position The position to look up
+     * @return The games and plies at which the position was reached, in index order
+     */
+    public fun lookup(position: Position): List<PositionHit> = lookup(ZobristKeys.POLYGLOT.hash(position))
+
+    /**
+     * Finds the games which reached the current position of a game.
+     *
+     * @param game The game whose current position is looked up
+     * @return The games and plies at which the position was reached, in index order
+     */
+    public fun lookup(game: Game): List<PositionHit> = lookup(game.currentPosition)
+
+    internal fun lookup(key: Long): List<PositionHit> {
+        val hits = ArrayList<PositionHit>()
+        for (segment in segments) {
+            var i = segment.lowerBound(key)
+            while (i < segment.count && segment.key(i) == key) {
+                val value = segment.value(i)
+                hits.add(PositionHit((value ushr 32).toInt(), value.toInt()))
+                i++
+            }
+        }
+        return hits
+    }
+
+    /**
+     * Closes the segment files. Mappings are released once the index is garbage collected.
+     */
+    override fun close() {
+        segments.forEach { it.channel.close() }
+    }
+
+    internal class Segment(val channel: FileChannel, private val buffer: MappedByteBuffer, val count: Int) {
+
+        fun key(i: Int): Long = buffer.getLong(HEADER_SIZE + i * RECORD_SIZE)
+
+        fun value(i: Int): Long = buffer.getLong(HEADER_SIZE + i * RECORD_SIZE + 8)
+
+        /** Index of the first posting whose key is not lower than [key]. */
+        fun lowerBound(key: Long): Int {
+            var low = 0
+            var high = count
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (key(mid) < key) low = mid + 1 else high = mid
+            }
+            return low
+        }
+    }
+
+    public companion object {
+        internal const val MAGIC = 0x53435049 // "SCPI"
+        internal const val VERSION = 1
+        internal const val HEADER_SIZE = 16
+        internal const val RECORD_SIZE = 16
+
+        /** Largest segment which can be mapped in a single buffer. */
+        internal const val MAX_SEGMENT_POSTINGS = (Int.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE
+
+        internal const val SEGMENT_PREFIX = "positions-"
+        internal const val SEGMENT_SUFFIX = ".seg"
+
+        /**
+         * Opens the index stored in a directory.
+         *
+         * @param directory The index directory
+         * @return The index, with every segment present in the directory
+         * @throws IOException if a segment cannot be read or is corrupt
+         */
+        public fun open(directory: Path): PositionIndex {
+            val segments = ArrayList<Segment>()
+            try {
+                for (path in segmentPaths(directory)) segments.add(openSegment(path))
+            } catch (e: IOException) {
+                segments.forEach { it.channel.close() }
+                throw e
+            }
+            return PositionIndex(segments)
+        }
+
+        internal fun segmentPaths(directory: Path): List<Path> {
+            if (!Files.isDirectory(directory)) return emptyList()
+            return Files.list(directory).use { paths ->
+                paths.iterator().asSequence().filter { segmentNumber(it) != null }.sorted().toList()
+            }
+        }
+
+        internal fun segmentNumber(path: Path): Int? {
+            val name = path.fileName.toString()
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return null
+            return name.substring(SEGMENT_PREFIX.length, name.length - SEGMENT_SUFFIX.length).toIntOrNull()
+        }
+
+        private fun openSegment(path: Path): Segment {
+            val channel = FileChannel.open(path, StandardOpenOption.READ)
+            try {
+                val size = channel.size()
+                if (size < HEADER_SIZE || size > Int.MAX_VALUE) throw IOException("Invalid segment size: $path")
+                val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) throw IOException("Not a position index segment: $path")
+                val count = buffer.getLong(8)
+                if (count < 0 || HEADER_SIZE + count * RECORD_SIZE != size) throw IOException("Corrupt segment: $path")
+                return Segment(channel, buffer, count.toInt())
+            } catch (e: IOException) {
+                channel.close()
+                throw e
+            }
+        }
+    }
+}
+
+/**
+ * Builds a [PositionIndex] by replaying games.
+ *
+ * Postings are buffered in memory and written as a new sorted segment whenever
+ * the buffer fills up, on [flush] and on [close]. Segments are written to a
+ * temporary file and then moved into place, so readers never see partial
+ * segments. Opening a writer on an existing index appends new segments to it.
+ *
+ * Writers are not thread safe, and at most one writer may be open on a
+ * directory at a time.
+ */
+public class PositionIndexWriter private constructor(
+    private val directory: Path,
+    private val maxBufferedPostings: Int
+) : Closeable {
+
+    private var keys = LongArray(minOf(maxBufferedPostings, INITIAL_CAPACITY))
+    private var values = LongArray(keys.size)
+    private var size = 0
+    private var nextSegment = (PositionIndex.segmentPaths(directory).mapNotNull { PositionIndex.segmentNumber(it) }.maxOrNull() ?: -1) + 1
+    private val board = BoardState()
+
+    /**
+     * Indexes every position reached in a game, from its initial position to its current one.
+     *
+     * @param gameId Identifier of the game, returned by lookups
+     * @param game The game to index
+     * @throws IllegalArgumentException if gameId is negative
+     * @throws IOException if the buffer fills up and the new segment cannot be written
+     */
+    public fun add(gameId: Int, game: Game) {
+        require(gameId >= 0) { "gameId must not be negative: $gameId" }
+        val history = game.history
+        val startFen = if (history.isEmpty()) game.currentPosition.fen else history[0].first.fen
+        Fen.parse(startFen, board)?.let { throw IllegalStateException("Invalid position FEN: ${it.message}") }
+
+        // Positions are hashed while replaying the moves on a Kotlin board,
+        // rather than parsing the FEN of each history entry
+        addPosting(ZobristKeys.POLYGLOT.hash(board), gameId, 0)
+        for ((ply, entry) in history.withIndex()) {
+            board.makeMove(entry.second.move.packed)
+            addPosting(ZobristKeys.POLYGLOT.hash(board), gameId, ply + 1)
+        }
+    }
+
+    /**
+     * Writes the buffered postings as a new segment.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public fun flush() {
+        if (size == 0) return
+        sortPostings(keys, values, 0, size - 1)
+
+        Files.createDirectories(directory)
+        val name = "%s%06d%s".format(PositionIndex.SEGMENT_PREFIX, nextSegment, PositionIndex.SEGMENT_SUFFIX)
+        val target = directory.resolve(name)
+        val temporary = directory.resolve("$name.tmp")
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        ).use { channel ->
+            val buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE)
+            buffer.putInt(PositionIndex.MAGIC).putInt(PositionIndex.VERSION).putLong(size.toLong())
+            for (i in 0 until size) {
+                if (buffer.remaining() < PositionIndex.RECORD_SIZE) drain(buffer, channel)
+                buffer.putLong(keys[i]).putLong(values[i])
+            }
+            drain(buffer, channel)
+            channel.force(true)
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE)
+
+        nextSegment++
+        size = 0
+    }
+
+    /**
+     * Writes the buffered postings, if any.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    override fun close() {
+        flush()
+    }
+
+    private fun addPosting(key: Long, gameId: Int, ply: Int) {
+        if (size == keys.size) {
+            if (size == maxBufferedPostings) {
+                flush()
+            } else {
+                val capacity = minOf(maxBufferedPostings.toLong(), 2L * size).toInt()
+                keys = keys.copyOf(capacity)
+                values = values.copyOf(capacity)
+            }
+        }
+        keys[size] = key
+        values[size] = (gameId.toLong() shl 32) or ply.toLong()
+        size++
+    }
+
+    private fun drain(buffer: ByteBuffer, channel: FileChannel) {
+        buffer.flip()
+        while (buffer.hasRemaining()) channel.write(buffer)
+        buffer.clear()
+    }
+
+    public companion object {
+        private const val INITIAL_CAPACITY = 1 shl 16
+        private const val WRITE_BUFFER_SIZE = 1 shl 16
+
+        /** Default number of postings buffered before a segment is written (64 MiB of postings). */
+        public const val DEFAULT_MAX_BUFFERED_POSTINGS: Int = 1 shl 22
+
+        /**
+         * Opens a writer on an index directory, which is created if needed.
+         *
+         * @param directory The index directory
+         * @param maxBufferedPostings Number of postings buffered before a segment is written
+         * @return A new writer
+         * @throws IllegalArgumentException if maxBufferedPostings is not positive or too large
+         *         for a segment
+         */
+        public fun open(directory: Path, maxBufferedPostings: Int = DEFAULT_MAX_BUFFERED_POSTINGS): PositionIndexWriter {
+            require(maxBufferedPostings in 1..PositionIndex.MAX_SEGMENT_POSTINGS) {
+                "Invalid maxBufferedPostings: $maxBufferedPostings"
+            }
+            return PositionIndexWriter(directory, maxBufferedPostings)
+        }
+
+        /**
+         * Sorts postings by key, then by value, in place (quicksort on the parallel arrays).
+         */
+        private fun sortPostings(keys: LongArray, values: LongArray, first: Int, last: Int) {
+            var low = first
+            var high = last
+            while (high - low > INSERTION_SORT_THRESHOLD) {
+                val mid = (low + high) ushr 1
+                val pivotKey = keys[mid]
+                val pivotValue = values[mid]
+                var i = low
+                var j = high
+                while (i <= j) {
+                    while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) i++
+                    while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) j--
+                    if (i <= j) {
+                        swap(keys, values, i, j)
+                        i++
+                        j--
+                    }
+                }
+                // Recurse into the smaller half to bound the stack depth
+                if (j - low < high - i) {
+                    sortPostings(keys, values, low, j)
+                    low = i
+                } else {
+                    sortPostings(keys, values, i, high)
+                    high = j
+                }
+            }
+            for (i in low + 1..high) {
+                var j = i
+                while (j > low && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0) {
+                    swap(keys, values, j - 1, j)
+                    j--
+                }
+            }
+        }
+
+        private const val INSERTION_SORT_THRESHOLD = 16
+
+        private fun compare(key1: Long, value1: Long, key2: Long, value2: Long): Int =
+            if (key1 != key2) key1.compareTo(key2) else value1.compareTo(value2)
+
+        private fun swap(keys: LongArray, values: LongArray, i: Int, j: Int) {
+            val key = keys[i]
+            keys[i] = keys[j]
+            keys[j] = key
+            val value = values[i]
+            values[i] = values[j]
+            values[j] = value
+        }
+    }
+}
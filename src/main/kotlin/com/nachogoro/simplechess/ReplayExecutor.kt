@@ -0,0 +1,237 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * A game to be replayed: an initial position and the moves played from it.
+ */
+public data class ReplayJob(
+    /** The initial position in Forsyth-Edwards Notation, or "startpos" for the standard starting position. */
+    val startFen: String,
+    /** The moves in UCI long algebraic notation, separated by whitespace. */
+    val moves: String
+) {
+    public companion object {
+        /**
+         * Creates a job replaying moves from the standard starting position.
+         */
+        public fun fromStartPosition(moves: String): ReplayJob = ReplayJob(GameImpl.START_POSITION, moves)
+    }
+}
+
+/**
+ * Outcome of replaying one [ReplayJob].
+ */
+@ConsistentCopyVisibility
+public data class ReplayResult<out T> internal constructor(
+    /** Position of the job in the input, starting at 0. */
+    val index: Long,
+    /** The replayed job. */
+    val job: ReplayJob,
+    /** The value computed from the final game, or the reason why the job failed. */
+    val result: ChessResult<T>
+)
+
+/**
+ * Compact description of a replayed game, which does not keep the game alive.
+ */
+@ConsistentCopyVisibility
+public data class ReplaySummary internal constructor(
+    /** The final position in Forsyth-Edwards Notation. */
+    val fen: String,
+    /** The state of the game after the last move. */
+    val gameState: GameState,
+    /** The reason why the game ended in a draw (only valid if gameState is DRAWN). */
+    val drawReason: DrawReason?,
+    /** The number of moves (plies) which were replayed. */
+    val plyCount: Int
+) {
+    internal companion object {
+        fun of(game: Game): ReplaySummary =
+            ReplaySummary(game.fen, game.gameState, game.drawReason, game.plyCount)
+    }
+}
+
+/**
+ * Outcomes of the jobs of a [ReplayExecutor], streamed in completion order.
+ *
+ * Jobs are submitted as the results are iterated, keeping at most
+ * [ReplayExecutor.maxConcurrency] of them in flight; the results can only be
+ * iterated once. Abandoning the iteration does not stop the jobs in flight:
+ * closing the results cancels them and ends the iteration, so callers which
+ * may stop early should iterate within `use`.
+ */
+public class ReplayResults<T> internal constructor(
+    private val executor: ExecutorService,
+    private val maxConcurrency: Int,
+    jobs: Sequence<ReplayJob>,
+    private val transform: (Game) -> T
+) : Sequence<ReplayResult<T>>, AutoCloseable {
+
+    private val input = jobs.iterator()
+    private val inFlight: MutableSet<Future<ReplayResult<T>>> = ConcurrentHashMap.newKeySet()
+    private val iterated = AtomicBoolean()
+
+    @Volatile
+    private var closed = false
+
+    override fun iterator(): Iterator<ReplayResult<T>> {
+        check(iterated.compareAndSet(false, true)) { "Replay results can only be iterated once" }
+        return iterator {
+            val completion = ExecutorCompletionService<ReplayResult<T>>(executor)
+            var index = 0L
+            while (!closed) {
+                while (inFlight.size < maxConcurrency && input.hasNext() && !closed) {
+                    val job = input.next()
+                    val jobIndex = index++
+                    val future = completion.submit(Callable { replayJob(jobIndex, job) })
+                    inFlight.add(future)
+                    // The results may have been closed concurrently
+                    if (closed) future.cancel(true)
+                }
+                if (inFlight.isEmpty()) break
+                val done = completion.take()
+                inFlight.remove(done)
+                if (!done.isCancelled) yield(done.get())
+            }
+        }
+    }
+
+    /**
+     * Cancels the jobs in flight and ends the iteration. Jobs already replayed
+     * are not affected.
+     */
+    override fun close() {
+        closed = true
+        inFlight.forEach { it.cancel(true) }
+    }
+
+    private fun replayJob(index: Long, job: ReplayJob): ReplayResult<T> {
+        val result = Game.fromUciMoves(job.startFen, job.moves).flatMap { game ->
+            ChessResult.catching { transform(game) }
+        }
+        return ReplayResult(index, job, result)
+    }
+}
+
+/**
+ * Replays many games concurrently.
+ *
+ * Each job is replayed with [Game.fromUciMoves] on its own task. On Java 21 and
+ * later tasks run on virtual threads; on earlier versions they run on a pool of
+ * daemon platform threads. In both cases at most [maxConcurrency] jobs are in
+ * flight at any time, so arbitrarily long job streams are replayed in bounded
+ * memory.
+ *
+ * Results are streamed back in completion order, not in input order; use
+ * [ReplayResult.index] to correlate them with the input. Native calls are safe
+ * from any thread (see `ChessLibraryJNA.ChessLib`), so no further
+ * synchronization is needed by callers.
+ *
+ * Executors must be closed once they are no longer needed.
+ */
+public class ReplayExecutor private constructor(
+    private val executor: ExecutorService,
+    /** Maximum number of jobs replayed at the same time. */
+    public val maxConcurrency: Int,
+    /** Whether jobs run on virtual threads rather than on a platform thread pool. */
+    public val usesVirtualThreads: Boolean
+) : AutoCloseable {
+
+    /**
+     * Replays a sequence of jobs and transforms each resulting game.
+     *
+     * [transform] runs on the replaying thread, so expensive work on the final
+     * game (e.g. reading its history) is parallelized as well. The input is
+     * consumed lazily as the returned results are iterated, which can only be
+     * done once. Callers which may stop iterating early should do so within
+     * `use`, so that the jobs still in flight are cancelled (see [ReplayResults]).
+     *
+     * @param jobs The games to replay
+     * @param transform Function computing the result of a job from its final game
+     * @return The outcome of each job, in completion order. A job fails if its
+     *         FEN is invalid, a move cannot be made, or [transform] throws
+     */
+    public fun <T> replay(jobs: Sequence<ReplayJob>, transform: (Game) -> T): ReplayResults<T> =
+        ReplayResults(executor, maxConcurrency, jobs, transform)
+
+    /**
+     * Replays a sequence of jobs.
+     *
+     * @param jobs The games to replay
+     * @return The final game of each job, in completion order
+     */
+    public fun replay(jobs: Sequence<ReplayJob>): ReplayResults<Game> = replay(jobs) { it }
+
+    /**
+     * Replays a sequence of jobs, keeping only a summary of each final game.
+     *
+     * Unlike [replay], no native game outlives its task, which keeps memory
+     * usage flat for large workloads.
+     *
+     * @param jobs The games to replay
+     * @return The summary of each job, in completion order
+     */
+    public fun summarize(jobs: Sequence<ReplayJob>): ReplayResults<ReplaySummary> =
+        replay(jobs, ReplaySummary::of)
+
+    /**
+     * Stops accepting jobs. Jobs already submitted are allowed to finish.
+     */
+    override fun close() {
+        executor.shutdown()
+    }
+
+    public companion object {
+        /**
+         * Creates an executor, using virtual threads if the running JVM supports them.
+         *
+         * @param maxConcurrency Maximum number of jobs replayed at the same time;
+         *                       defaults to the number of available processors
+         * @return A new executor
+         * @throws IllegalArgumentException if maxConcurrency is not positive
+         */
+        public fun create(maxConcurrency: Int = Runtime.getRuntime().availableProcessors()): ReplayExecutor {
+            require(maxConcurrency > 0) { "maxConcurrency must be positive: $maxConcurrency" }
+            val virtualThreads = newVirtualThreadExecutor()
+            return if (virtualThreads != null) {
+                ReplayExecutor(virtualThreads, maxConcurrency, usesVirtualThreads = true)
+            } else {
+                ReplayExecutor(newPlatformThreadExecutor(maxConcurrency), maxConcurrency, usesVirtualThreads = false)
+            }
+        }
+
+        /**
+         * Creates an executor running on a pool of platform threads, regardless of
+         * whether the running JVM supports virtual threads.
+         *
+         * @param maxConcurrency Number of threads in the pool
+         * @return A new executor
+         * @throws IllegalArgumentException if maxConcurrency is not positive
+         */
+        public fun createWithPlatformThreads(
+            maxConcurrency: Int = Runtime.getRuntime().availableProcessors()
+        ): ReplayExecutor {
+            require(maxConcurrency > 0) { "maxConcurrency must be positive: $maxConcurrency" }
+            return ReplayExecutor(newPlatformThreadExecutor(maxConcurrency), maxConcurrency, usesVirtualThreads = false)
+        }
+
+        // The library targets Java 11, so virtual threads are looked up reflectively
+        private fun newVirtualThreadExecutor(): ExecutorService? = try {
+            Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor").invoke(null) as ExecutorService
+        } catch (e: ReflectiveOperationException) {
+            null
+        }
+
+        private fun newPlatformThreadExecutor(threads: Int): ExecutorService =
+            Executors.newFixedThreadPool(threads) { task ->
+                Thread(task, "simple-chess-replay").apply { isDaemon = true }
+            }
+    }
+}
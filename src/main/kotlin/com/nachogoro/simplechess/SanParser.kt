@@ -0,0 +1,126 @@
+package com.nachogoro.simplechess
+
+/**
+ * Resolves moves written in Standard Algebraic Notation (SAN) against the
+ * moves available in a position.
+ *
+ * The notation is scanned in place: no substrings are created and no
+ * algebraic notation is generated for the candidate moves. Check, checkmate,
+ * draw offer and annotation suffixes ("+", "#", "(=)", "!", "?") are accepted
+ * but not verified.
+ */
+internal object SanParser {
+
+    /**
+     * Finds the unique available move described by the given SAN string.
+     */
+    fun resolve(san: String, moves: MoveIndex): ChessResult<Move> {
+        var start = 0
+        var end = san.length
+        while (start < end && san[start].isWhitespace()) start++
+        while (end > start && san[end - 1].isWhitespace()) end--
+        if (end - start > DRAW_OFFER_SUFFIX.length && san.startsWith(DRAW_OFFER_SUFFIX, end - DRAW_OFFER_SUFFIX.length)) {
+            end -= DRAW_OFFER_SUFFIX.length
+        }
+        while (end > start && san[end - 1] in IGNORED_SUFFIXES) end--
+
+        if (end - start < 2) return malformed(san)
+
+        castlingTargetFile(san, start, end)?.let { file ->
+            return resolveCastling(san, file, moves)
+        }
+
+        // Optional promotion, with or without the '=' separator
+        var promotion: PieceType? = null
+        val last = san[end - 1]
+        if (last in PROMOTION_LETTERS && end - start >= 3) {
+            val beforeLast = san[end - 2]
+            if (beforeLast == '=' || beforeLast in '1'..'8') {
+                promotion = pieceTypeForLetter(last)
+                end -= if (beforeLast == '=') 2 else 1
+            }
+        }
+
+        // Destination square
+        if (end - start < 2) return malformed(san)
+        val toFile = san[end - 2]
+        val toRank = san[end - 1]
+        if (toFile !in 'a'..'h' || toRank !in '1'..'8') return malformed(san)
+        val to = Square.fromIndex((toRank - '1') * 8 + (toFile - 'a'))
+        end -= 2
+
+        // Moving piece (pawns carry no letter)
+        val type = pieceTypeForLetter(san[start])?.also { start++ } ?: PieceType.PAWN
+        if (type == PieceType.PAWN && promotion == null && (toRank == '1' || toRank == '8')) {
+            return ChessResult.error(ErrorKind.INVALID_NOTATION, "Promotion piece missing in move: '$san'")
+        }
+
+        // Disambiguation and capture marker
+        var fromFile = NONE
+        var fromRank = NONE
+        for (i in start until end) {
+            when (val c = san[i]) {
+                in 'a'..'h' -> if (fromFile == NONE) fromFile = c.code else return malformed(san)
+                in '1'..'8' -> if (fromRank == NONE) fromRank = c.code else return malformed(san)
+                'x', ':', '-' -> Unit
+                else -> return malformed(san)
+            }
+        }
+
+        var match: Move? = null
+        for (candidate in moves.movesTo(to, type)) {
+            if (fromFile != NONE && candidate.from.file.code != fromFile) continue
+            if (fromRank != NONE && candidate.from.rank + '0'.code != fromRank) continue
+            if (candidate.promotion != promotion) continue
+            if (match != null) return ChessResult.error(ErrorKind.INVALID_NOTATION, "Ambiguous move: '$san'")
+            match = candidate
+        }
+
+        return match?.let { ChessResult.success(it) }
+            ?: ChessResult.error(ErrorKind.ILLEGAL_MOVE, "No available move matches: '$san'")
+    }
+
+    /**
+     * Returns the destination file of the king if the notation describes castling.
+     */
+    private fun castlingTargetFile(san: String, start: Int, end: Int): Char? {
+        val length = end - start
+        if (length != 3 && length != 5) return null
+        for (i in 0 until length) {
+            val c = san[start + i]
+            val expected = if (i % 2 == 0) c == 'O' || c == '0' else c == '-'
+            if (!expected) return null
+        }
+        return if (length == 3) 'g' else 'c'
+    }
+
+    private fun resolveCastling(san: String, targetFile: Char, moves: MoveIndex): ChessResult<Move> {
+        // Only the side to move has available moves, so at most one rank matches
+        for (rank in intArrayOf(1, 8)) {
+            val to = Square.fromIndex((rank - 1) * 8 + (targetFile - 'a'))
+            for (candidate in moves.movesTo(to, PieceType.KING)) {
+                if (candidate.from.file == 'e' && candidate.from.rank == rank) {
+                    return ChessResult.success(candidate)
+                }
+            }
+        }
+        return ChessResult.error(ErrorKind.ILLEGAL_MOVE, "Castling is not available: '$san'")
+    }
+
+    private fun pieceTypeForLetter(letter: Char): PieceType? = when (letter) {
+        'K' -> PieceType.KING
+        'Q' -> PieceType.QUEEN
+        'R' -> PieceType.ROOK
+        'B' -> PieceType.BISHOP
+        'N' -> PieceType.KNIGHT
+        else -> null
+    }
+
+    private fun <T> malformed(san: String): ChessResult<T> =
+        ChessResult.error(ErrorKind.INVALID_NOTATION, "Malformed algebraic notation: '$san'")
+
+    private const val NONE = -1
+    private const val DRAW_OFFER_SUFFIX = "(=)"
+    private const val IGNORED_SUFFIXES = "+#!?"
+    private const val PROMOTION_LETTERS = "QRBN"
+}
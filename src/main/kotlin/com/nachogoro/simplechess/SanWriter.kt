@@ -0,0 +1,84 @@
+package com.nachogoro.simplechess
+
+/**
+ * Writes moves in Standard Algebraic Notation (SAN), in the same format as
+ * the native library: "Nbd7", "exd8=Q+", "O-O-O#", with "(=)" appended to
+ * moves which offer a draw.
+ */
+internal object SanWriter {
+
+    private const val PIECE_LETTERS = " PRNBQK"
+
+    /**
+     * Describes a legal move of [board], which is left unchanged.
+     *
+     * @param board The board before the move
+     * @param move The move, packed as in [BoardState]
+     * @param offersDraw Whether the move is accompanied by a draw offer
+     */
+    fun format(board: BoardState, move: Int, offersDraw: Boolean): String {
+        val from = BoardState.moveFrom(move)
+        val to = BoardState.moveTo(move)
+        val promotion = BoardState.movePromotion(move)
+        val type = board.squares[from] and BoardState.TYPE_MASK
+        val san = StringBuilder(10)
+
+        if (type == BoardState.KING && (to - from == 2 || from - to == 2)) {
+            san.append(if (to > from) "O-O" else "O-O-O")
+        } else {
+            val capture = board.squares[to] != BoardState.EMPTY ||
+                (type == BoardState.PAWN && (from and 7) != (to and 7))
+            if (type == BoardState.PAWN) {
+                if (capture) san.append('a' + (from and 7))
+            } else {
+                san.append(PIECE_LETTERS[type])
+                appendDisambiguation(board, move, type, san)
+            }
+            if (capture) san.append('x')
+            san.append('a' + (to and 7)).append('1' + (to shr 3))
+            if (promotion != 0) san.append('=').append(PIECE_LETTERS[promotion])
+        }
+
+        board.makeMove(move)
+        when (board.checkStatus()) {
+            CheckType.CHECK -> san.append('+')
+            CheckType.CHECKMATE -> san.append('#')
+            CheckType.NONE -> Unit
+        }
+        board.unmakeMove(move)
+
+        if (offersDraw) san.append("(=)")
+        return san.toString()
+    }
+
+    /**
+     * Appends the file, rank or both of the origin square when other pieces of
+     * the same type can move to the same square.
+     */
+    private fun appendDisambiguation(board: BoardState, move: Int, type: Int, san: StringBuilder) {
+        val from = BoardState.moveFrom(move)
+        val to = BoardState.moveTo(move)
+        val moves = IntArray(BoardState.MAX_MOVES)
+        val count = board.generateLegalMoves(moves)
+
+        var ambiguous = false
+        var sameFile = false
+        var sameRank = false
+        for (i in 0 until count) {
+            val other = BoardState.moveFrom(moves[i])
+            if (other == from || BoardState.moveTo(moves[i]) != to) continue
+            if (board.squares[other] and BoardState.TYPE_MASK != type) continue
+            ambiguous = true
+            if (other and 7 == from and 7) sameFile = true
+            if (other shr 3 == from shr 3) sameRank = true
+        }
+        if (!ambiguous) return
+        if (!sameFile) {
+            san.append('a' + (from and 7))
+        } else if (!sameRank) {
+            san.append('1' + (from shr 3))
+        } else {
+            san.append('a' + (from and 7)).append('1' + (from shr 3))
+        }
+    }
+}
@@ -24,6 +24,11 @@ public value class Square private constructor(private val notation: String) {
      */
     public val color: Color get() = if ((file.code - 'a'.code + rank) % 2 == 0) Color.BLACK else Color.WHITE
 
+    /**
+     * Index of the square in the native board layout (a1 = 0, b1 = 1, ..., h8 = 63).
+     */
+    internal val index: Int get() = (notation[1] - '1') * 8 + (notation[0] - 'a')
+
     /**
      * String representation in algebraic notation (e.g., "e4").
      */
@@ -75,11 +80,20 @@ public value class Square private constructor(private val notation: String) {
             }
         }
 
+        /**
+         * Returns the square at the given index of the native board layout (a1 = 0, h8 = 63).
+         */
+        internal fun fromIndex(index: Int): Square = ALL_SQUARES[index]
+
         /**
          * Creates a Square from JNA Square.
          */
         internal fun fromJna(jnaSquare: ChessLibraryJNA.Square): Square {
-            return fromRankAndFile(jnaSquare.rank.toInt(), jnaSquare.file.toInt().toChar())
+            val rank = jnaSquare.rank.toInt()
+            val file = jnaSquare.file.toInt().toChar()
+            require(rank in 1..8) { "Rank must be between 1 and 8, got: $rank" }
+            require(file in 'a'..'h') { "File must be between 'a' and 'h', got: $file" }
+            return fromIndex((rank - 1) * 8 + (file - 'a'))
         }
     }
 
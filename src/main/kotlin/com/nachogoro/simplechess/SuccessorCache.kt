@@ -0,0 +1,220 @@
+package com.nachogoro.simplechess
+
+import java.lang.ref.Reference
+import java.lang.ref.SoftReference
+import java.lang.ref.WeakReference
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Limits and statistics shared by the successor caches of all games (see
+ * [GameOptions.successorCacheSize]).
+ *
+ * Memory is estimated from the size of the native games held by the caches.
+ * A successor counts towards it from the moment it is cached until it is
+ * evicted from its cache or garbage collected.
+ */
+public object SuccessorCache {
+
+    /** Default of [maxMemoryBytes]: 64 MiB. */
+    public const val DEFAULT_MAX_MEMORY_BYTES: Long = 64L shl 20
+
+    /**
+     * Estimated native memory all successor caches may hold together. Once it
+     * is reached, new successors are not cached until others are released.
+     */
+    @Volatile
+    public var maxMemoryBytes: Long = DEFAULT_MAX_MEMORY_BYTES
+        set(value) {
+            require(value >= 0) { "maxMemoryBytes must not be negative: $value" }
+            field = value
+        }
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+    private val evictions = LongAdder()
+    private val rejections = LongAdder()
+    private val entries = AtomicLong()
+    private val memoryBytes = AtomicLong()
+
+    /**
+     * Statistics of all successor caches since the start or the last [resetStats].
+     */
+    public val stats: SuccessorCacheStats
+        get() = SuccessorCacheStats(
+            hits = hits.sum(),
+            misses = misses.sum(),
+            evictions = evictions.sum(),
+            rejections = rejections.sum(),
+            entries = entries.get(),
+            estimatedMemoryBytes = memoryBytes.get()
+        )
+
+    /**
+     * Resets the counters of [stats]. The current entries and memory are not affected.
+     */
+    public fun resetStats() {
+        hits.reset()
+        misses.reset()
+        evictions.reset()
+        rejections.reset()
+    }
+
+    internal fun recordHit() = hits.increment()
+
+    internal fun recordMiss() = misses.increment()
+
+    internal fun recordEviction() = evictions.increment()
+
+    /**
+     * Accounts for a new entry of [bytes], unless it would exceed [maxMemoryBytes].
+     *
+     * @return Whether the entry may be cached
+     */
+    internal fun reserve(bytes: Long): Boolean {
+        while (true) {
+            val current = memoryBytes.get()
+            if (current + bytes > maxMemoryBytes) {
+                rejections.increment()
+                return false
+            }
+            if (memoryBytes.compareAndSet(current, current + bytes)) {
+                entries.incrementAndGet()
+                return true
+            }
+        }
+    }
+
+    internal fun release(bytes: Long) {
+        memoryBytes.addAndGet(-bytes)
+        entries.decrementAndGet()
+    }
+}
+
+/**
+ * Statistics of the successor caches (see [SuccessorCache.stats]).
+ */
+public data class SuccessorCacheStats(
+    /** Moves whose successor was found in the cache. */
+    val hits: Long,
+    /** Moves whose successor had to be created. */
+    val misses: Long,
+    /** Successors dropped to make room for more recent ones of the same game. */
+    val evictions: Long,
+    /** Successors not cached because of [SuccessorCache.maxMemoryBytes]. */
+    val rejections: Long,
+    /** Successors currently accounted for. */
+    val entries: Long,
+    /** Estimated native memory of the successors currently accounted for. */
+    val estimatedMemoryBytes: Long
+) {
+    /** Fraction of cache lookups which were hits, or 0 if there were none. */
+    val hitRate: Double
+        get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+}
+
+/**
+ * Successor cache of a single game: the most recently used successors, keyed
+ * by packed move (plus a draw offer flag) and held through soft or weak references.
+ *
+ * Caches are small, so entries live in arrays ordered from most to least
+ * recently used.
+ */
+internal class SuccessorSlots<T : Any>(
+    private val capacity: Int,
+    private val retention: SuccessorRetention
+) {
+    private val keys = IntArray(capacity)
+    private val entries = arrayOfNulls<Entry<T>>(capacity)
+    private var size = 0
+
+    /**
+     * Returns the successor cached for a key, recording a hit or a miss.
+     */
+    @Synchronized
+    fun get(key: Int): T? {
+        for (i in 0 until size) {
+            if (keys[i] != key) continue
+            val entry = checkNotNull(entries[i])
+            val value = entry.reference.get()
+            if (value == null) {
+                // Collected: its release action accounts for the memory
+                removeAt(i)
+                break
+            }
+            moveToFront(i)
+            SuccessorCache.recordHit()
+            return value
+        }
+        SuccessorCache.recordMiss()
+        return null
+    }
+
+    /**
+     * Caches a successor, evicting the least recently used one if the cache is full.
+     *
+     * @param key The key of the move leading to the successor
+     * @param value The successor
+     * @param bytes The estimated memory of the successor
+     * @return The action releasing the entry, to run once [value] is unreachable,
+     *         or null if it was not cached
+     */
+    @Synchronized
+    fun put(key: Int, value: T, bytes: Long): Runnable? {
+        if (!SuccessorCache.reserve(bytes)) return null
+
+        val entry = Entry(
+            when (retention) {
+                SuccessorRetention.SOFT -> SoftReference(value)
+                SuccessorRetention.WEAK -> WeakReference(value)
+            },
+            bytes
+        )
+        val existing = (0 until size).firstOrNull { keys[it] == key }
+        when {
+            existing != null -> {
+                checkNotNull(entries[existing]).run()
+                removeAt(existing)
+            }
+            size == capacity -> {
+                checkNotNull(entries[size - 1]).run()
+                SuccessorCache.recordEviction()
+                removeAt(size - 1)
+            }
+        }
+        keys.copyInto(keys, 1, 0, size)
+        entries.copyInto(entries, 1, 0, size)
+        keys[0] = key
+        entries[0] = entry
+        size++
+        return entry
+    }
+
+    private fun moveToFront(index: Int) {
+        val key = keys[index]
+        val entry = entries[index]
+        keys.copyInto(keys, 1, 0, index)
+        entries.copyInto(entries, 1, 0, index)
+        keys[0] = key
+        entries[0] = entry
+    }
+
+    private fun removeAt(index: Int) {
+        keys.copyInto(keys, index, index + 1, size)
+        entries.copyInto(entries, index, index + 1, size)
+        entries[--size] = null
+    }
+
+    /**
+     * A cached successor, whose memory is released once, either when it is
+     * evicted or when it is collected.
+     */
+    private class Entry<T : Any>(val reference: Reference<T>, private val bytes: Long) : Runnable {
+        private val released = AtomicBoolean()
+
+        override fun run() {
+            if (released.compareAndSet(false, true)) SuccessorCache.release(bytes)
+        }
+    }
+}
@@ -0,0 +1,732 @@
+package com.nachogoro.simplechess
+
+import java.io.IOException
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+/**
+ * Material configuration covered by a pair of Syzygy files (e.g. "KRvKN"),
+ * whose tables are mapped on first use.
+ *
+ * The name lists the pieces of the stronger side first, which the tables
+ * treat as white. [key] identifies positions with that material where white
+ * is the stronger side and [key2] those where black is.
+ */
+internal class SyzygyMaterial(val name: String, val wdlPath: Path?, val dtzPath: Path?) {
+
+    /** Number of pieces of each Syzygy piece code (1-6 for white pawn to king, 9-14 for black). */
+    private val counts = IntArray(16)
+
+    val pieceCount: Int = name.length - 1
+    val key: Long
+    val key2: Long
+    val hasPawns: Boolean
+    val hasUniquePieces: Boolean
+
+    /** Number of pawns of the leading color and of the other color. */
+    val pawnCount: IntArray
+
+    @Volatile
+    private var wdl: SyzygyTable? = null
+
+    @Volatile
+    private var dtz: SyzygyTable? = null
+
+    init {
+        for ((color, side) in name.split('v').withIndex()) {
+            for (letter in side) counts[Syzygy.PIECE_LETTERS.indexOf(letter) + 1 + 8 * color]++
+        }
+        key = Syzygy.materialKey(counts, swapColors = false)
+        key2 = Syzygy.materialKey(counts, swapColors = true)
+
+        val whitePawns = counts[Syzygy.PAWN]
+        val blackPawns = counts[Syzygy.PAWN + 8]
+        hasPawns = whitePawns + blackPawns > 0
+        hasUniquePieces = (Syzygy.PAWN until Syzygy.KING).any { counts[it] == 1 || counts[it + 8] == 1 }
+
+        // The leading color is the one with fewer pawns, which compresses better
+        val whiteLeads = blackPawns == 0 || (whitePawns > 0 && blackPawns >= whitePawns)
+        pawnCount = if (whiteLeads) intArrayOf(whitePawns, blackPawns) else intArrayOf(blackPawns, whitePawns)
+    }
+
+    /**
+     * The WDL table, mapped on first use.
+     *
+     * @throws IOException if the table is missing or corrupt
+     */
+    fun wdlTable(): SyzygyTable = wdl ?: synchronized(this) {
+        wdl ?: SyzygyTable(MappedTableFile.open(wdlPath ?: throw IOException("Missing WDL table: $name"), Syzygy.WDL_MAGIC), this, isDtz = false)
+            .also { wdl = it }
+    }
+
+    /**
+     * The DTZ table, mapped on first use.
+     *
+     * @throws IOException if the table is missing or corrupt
+     */
+    fun dtzTable(): SyzygyTable = dtz ?: synchronized(this) {
+        dtz ?: SyzygyTable(MappedTableFile.open(dtzPath ?: throw IOException("Missing DTZ table: $name"), Syzygy.DTZ_MAGIC), this, isDtz = true)
+            .also { dtz = it }
+    }
+}
+
+/**
+ * A Syzygy WDL (.rtbw) or DTZ (.rtbz) table.
+ *
+ * Positions are mapped to an index by the Syzygy encoding (pieces are grouped,
+ * the board is mirrored so the leading piece lies in a canonical region, and
+ * each group is encoded as a combination of squares). The value at that index
+ * is then decompressed from the block of Huffman-coded, recursively paired
+ * symbols which holds it. Tables are immutable once constructed, so probes are
+ * safe from any number of threads.
+ */
+internal class SyzygyTable(private val file: MappedTableFile, private val material: SyzygyMaterial, private val isDtz: Boolean) {
+
+    /** Sides stored in the table: WDL tables of unbalanced material store both sides to move. */
+    private val sides = if (!isDtz && material.key != material.key2) 2 else 1
+
+    /** Tables with pawns are split by the file of the leading pawn (a to d). */
+    private val files = if (material.hasPawns) 4 else 1
+
+    private val pairs = Array(sides * files) { PairsData() }
+
+    init {
+        var data = 4L // Skip the magic number
+        val flags = file.u8(data++)
+        if ((flags and HAS_PAWNS != 0) != material.hasPawns) throw IOException("Corrupt tablebase file: ${material.name}")
+
+        val pawnsOnBothSides = material.hasPawns && material.pawnCount[1] > 0
+        for (f in 0 until files) {
+            val first = file.u8(data)
+            val second = if (pawnsOnBothSides) file.u8(data + 1) else 0xff
+            val order = arrayOf(intArrayOf(first and 0xf, second and 0xf), intArrayOf(first ushr 4, second ushr 4))
+            data += if (pawnsOnBothSides) 2 else 1
+
+            for (k in 0 until material.pieceCount) {
+                val pieces = file.u8(data++)
+                for (i in 0 until sides) get(i, f).pieces[k] = if (i == 0) pieces and 0xf else pieces ushr 4
+            }
+            for (i in 0 until sides) setGroups(get(i, f), order[i], f)
+        }
+        data += data and 1
+
+        for (f in 0 until files) for (i in 0 until sides) data = setSizes(get(i, f), data)
+        if (isDtz) data = setDtzMap(data)
+
+        for (f in 0 until files) for (i in 0 until sides) {
+            get(i, f).sparseIndex = data
+            data += get(i, f).sparseIndexSize * SPARSE_ENTRY_SIZE
+        }
+        for (f in 0 until files) for (i in 0 until sides) {
+            get(i, f).blockLength = data
+            data += get(i, f).blockLengthSize * 2
+        }
+        for (f in 0 until files) for (i in 0 until sides) {
+            data = (data + 0x3f) and 0x3fL.inv()
+            get(i, f).data = data
+            data += get(i, f).numBlocks * get(i, f).blockSize
+        }
+        if (data > file.size) throw IOException("Corrupt tablebase file: ${material.name}")
+    }
+
+    private fun get(stm: Int, file: Int): PairsData = pairs[(stm % sides) * files + file]
+
+    /**
+     * Probes a position with this table's material.
+     *
+     * @param board The position
+     * @param key Material key of the position, telling whether white is the stronger side
+     * @param wdl WDL score of the position (only used by DTZ tables)
+     * @return The WDL score (-2 to 2) or DTZ value of the position, or
+     *         [CHANGE_STM] if this DTZ table only stores the other side to move
+     */
+    fun probe(board: BoardState, key: Long, wdl: Int): Int {
+        val squares = IntArray(Syzygy.MAX_PIECES)
+        val pieces = IntArray(Syzygy.MAX_PIECES)
+        var size = 0
+
+        // Tables are built with white as the stronger side, and symmetric
+        // tables only store white to move: otherwise swap the colors
+        val symmetricBlackToMove = material.key == material.key2 && board.activeColor == BoardState.BLACK
+        val flip = symmetricBlackToMove || key != material.key
+        val flipColor = if (flip) 8 else 0
+        val flipSquares = if (flip) 56 else 0
+        val stm = (if (flip) 1 else 0) xor board.activeColor
+
+        // With pawns, the table is split by the file of the leading pawn, which
+        // is the one nearest to the edge and, among those, on the lowest rank
+        var leadPawnCount = 0
+        var leadPawn = BoardState.EMPTY
+        var tbFile = 0
+        if (material.hasPawns) {
+            val color = (get(0, 0).pieces[0] xor flipColor) shr 3
+            leadPawn = BoardState.PAWN or (color shl 3)
+            for (square in 0 until 64) {
+                if (board.squares[square] == leadPawn) squares[size++] = square xor flipSquares
+            }
+            leadPawnCount = size
+            var lead = 0
+            for (i in 1 until leadPawnCount) if (Syzygy.MAP_PAWNS[squares[i]] > Syzygy.MAP_PAWNS[squares[lead]]) lead = i
+            swap(squares, 0, lead)
+            val leadFile = squares[0] and 7
+            tbFile = minOf(leadFile, 7 - leadFile)
+        }
+
+        if (isDtz && !storesSideToMove(stm, tbFile)) return CHANGE_STM
+
+        for (square in 0 until 64) {
+            val code = board.squares[square]
+            if (code == BoardState.EMPTY || code == leadPawn) continue
+            squares[size] = square xor flipSquares
+            pieces[size++] = Syzygy.PIECE_CODE[code] xor flipColor
+        }
+
+        // Reorder the pieces to follow the table's sequence
+        val d = get(stm, tbFile)
+        for (i in leadPawnCount until size - 1) {
+            for (j in i + 1 until size) {
+                if (d.pieces[i] == pieces[j]) {
+                    swap(pieces, i, j)
+                    swap(squares, i, j)
+                    break
+                }
+            }
+        }
+
+        // Mirror the board so that the leading piece is on files a to d
+        if (squares[0] and 7 > 3) for (i in 0 until size) squares[i] = squares[i] xor 7
+
+        var index: Long
+        if (material.hasPawns) {
+            index = Syzygy.LEAD_PAWN_INDEX[leadPawnCount][squares[0]].toLong()
+            sortByMapPawns(squares, 1, leadPawnCount)
+            for (i in 1 until leadPawnCount) index += Syzygy.BINOMIAL[i][Syzygy.MAP_PAWNS[squares[i]]]
+        } else {
+            // Without pawns, also mirror the leading piece into the a1-d1-d4 triangle
+            if (squares[0] shr 3 > 3) for (i in 0 until size) squares[i] = squares[i] xor 56
+            for (i in 0 until d.groupLen[0]) {
+                val offDiagonal = Syzygy.offA1H8(squares[i])
+                if (offDiagonal == 0) continue
+                if (offDiagonal > 0) {
+                    for (j in i until size) squares[j] = ((squares[j] shr 3) or (squares[j] shl 3)) and 63
+                }
+                break
+            }
+            index = if (material.hasUniquePieces) encodeUniqueLeaders(squares) else Syzygy.MAP_KK[Syzygy.MAP_A1D1D4[squares[0]]][squares[1]].toLong()
+        }
+
+        // Encode the remaining groups as combinations of the squares left free
+        index *= d.groupIdx[0]
+        var groupStart = d.groupLen[0]
+        var remainingPawns = material.hasPawns && material.pawnCount[1] > 0
+        var next = 1
+        while (d.groupLen[next] != 0) {
+            val length = d.groupLen[next]
+            squares.sort(groupStart, groupStart + length)
+            var n = 0L
+            for (i in 0 until length) {
+                val square = squares[groupStart + i]
+                var adjust = 0
+                for (j in 0 until groupStart) if (square > squares[j]) adjust++
+                n += Syzygy.BINOMIAL[i + 1][square - adjust - if (remainingPawns) 8 else 0]
+            }
+            remainingPawns = false
+            index += n * d.groupIdx[next]
+            groupStart += length
+            next++
+        }
+
+        return mapScore(tbFile, storedValue(stm, tbFile, index), wdl)
+    }
+
+    /**
+     * Value stored at an index, before it is mapped to a score.
+     *
+     * @param stm Side to move of the table (0 for the stronger side)
+     * @param tbFile File of the leading pawn (a to d), or 0 without pawns
+     * @param index Index of the position in the table
+     */
+    fun storedValue(stm: Int, tbFile: Int, index: Long): Int = decompress(get(stm, tbFile), index)
+
+    /**
+     * Index of the first three pieces when they are unique (e.g. KRvK): the
+     * first one in the a1-d1-d4 triangle, with special cases for the diagonal.
+     */
+    private fun encodeUniqueLeaders(squares: IntArray): Long {
+        val adjust1 = if (squares[1] > squares[0]) 1 else 0
+        val adjust2 = (if (squares[2] > squares[0]) 1 else 0) + (if (squares[2] > squares[1]) 1 else 0)
+        val index = when {
+            Syzygy.offA1H8(squares[0]) != 0 ->
+                (Syzygy.MAP_A1D1D4[squares[0]] * 63 + (squares[1] - adjust1)) * 62 + squares[2] - adjust2
+            Syzygy.offA1H8(squares[1]) != 0 ->
+                (6 * 63 + (squares[0] shr 3) * 28 + Syzygy.MAP_B1H1H7[squares[1]]) * 62 + squares[2] - adjust2
+            Syzygy.offA1H8(squares[2]) != 0 ->
+                6 * 63 * 62 + 4 * 28 * 62 + (squares[0] shr 3) * 7 * 28 +
+                    ((squares[1] shr 3) - adjust1) * 28 + Syzygy.MAP_B1H1H7[squares[2]]
+            else ->
+                6 * 63 * 62 + 4 * 28 * 62 + 4 * 7 * 28 + (squares[0] shr 3) * 7 * 6 +
+                    ((squares[1] shr 3) - adjust1) * 6 + ((squares[2] shr 3) - adjust2)
+        }
+        return index.toLong()
+    }
+
+    /**
+     * Whether this DTZ table stores positions with the given side to move.
+     */
+    private fun storesSideToMove(stm: Int, tbFile: Int): Boolean =
+        (get(stm, tbFile).flags and FLAG_STM) == stm || (material.key == material.key2 && !material.hasPawns)
+
+    /**
+     * Converts a stored value to a WDL score or to a DTZ in plies.
+     */
+    private fun mapScore(tbFile: Int, value: Int, wdl: Int): Int {
+        if (!isDtz) return value - 2
+
+        val d = get(0, tbFile)
+        var dtz = value
+        if (d.flags and FLAG_MAPPED != 0) {
+            val map = d.mapIdx[WDL_MAP[wdl + 2]]
+            dtz = if (d.flags and FLAG_WIDE != 0) file.u16le(map + 2L * dtz) else file.u8(map + dtz)
+        }
+
+        // Values are stored in moves unless the table says they are in plies
+        if ((wdl == Syzygy.WIN && d.flags and FLAG_WIN_PLIES == 0) ||
+            (wdl == Syzygy.LOSS && d.flags and FLAG_LOSS_PLIES == 0) ||
+            wdl == Syzygy.CURSED_WIN || wdl == Syzygy.BLESSED_LOSS
+        ) {
+            dtz *= 2
+        }
+        return dtz + 1
+    }
+
+    /**
+     * Decompresses the value stored at an index.
+     */
+    private fun decompress(d: PairsData, index: Long): Int {
+        if (d.flags and FLAG_SINGLE_VALUE != 0) return d.minSymLen
+
+        // Locate the block holding the index, starting from the nearest sparse index entry
+        val k = index / d.span
+        var block = file.u32le(d.sparseIndex + k * SPARSE_ENTRY_SIZE)
+        var offset = file.u16le(d.sparseIndex + k * SPARSE_ENTRY_SIZE + 4)
+        offset += (index % d.span - d.span / 2).toInt()
+        while (offset < 0) offset += file.u16le(d.blockLength + 2 * --block) + 1
+        while (offset > file.u16le(d.blockLength + 2 * block)) offset -= file.u16le(d.blockLength + 2 * block++) + 1
+
+        // Walk the canonical Huffman symbols of the block until the one covering the offset
+        var pointer = d.data + block * d.blockSize
+        var buffer = file.u64be(pointer)
+        pointer += 8
+        var bufferSize = 64
+        var symbol: Int
+        while (true) {
+            var length = 0
+            while (java.lang.Long.compareUnsigned(buffer, d.base64[length]) < 0) length++
+            symbol = ((buffer - d.base64[length]) ushr (64 - length - d.minSymLen)).toInt() + d.lowestSym[length]
+            if (offset < d.symlen[symbol] + 1) break
+
+            offset -= d.symlen[symbol] + 1
+            length += d.minSymLen
+            buffer = buffer shl length
+            bufferSize -= length
+            if (bufferSize <= 32) {
+                bufferSize += 32
+                buffer = buffer or (file.u32be(pointer) shl (64 - bufferSize))
+                pointer += 4
+            }
+        }
+
+        // Expand the symbol's pairs down to the leaf holding the value
+        while (d.symlen[symbol] != 0) {
+            val left = d.left[symbol]
+            if (offset < d.symlen[left] + 1) {
+                symbol = left
+            } else {
+                offset -= d.symlen[left] + 1
+                symbol = d.right[symbol]
+            }
+        }
+        return d.left[symbol]
+    }
+
+    /**
+     * Splits the pieces into groups and computes the index factor of each group.
+     */
+    private fun setGroups(d: PairsData, order: IntArray, tbFile: Int) {
+        var n = 0
+        var firstLength = if (material.hasPawns) 0 else if (material.hasUniquePieces) 3 else 2
+        d.groupLen[0] = 1
+        for (i in 1 until material.pieceCount) {
+            firstLength--
+            if (firstLength > 0 || d.pieces[i] == d.pieces[i - 1]) d.groupLen[n]++ else d.groupLen[++n] = 1
+        }
+        d.groupLen[++n] = 0
+
+        val pawnsOnBothSides = material.hasPawns && material.pawnCount[1] > 0
+        var next = if (pawnsOnBothSides) 2 else 1
+        var freeSquares = 64 - d.groupLen[0] - if (pawnsOnBothSides) d.groupLen[1] else 0
+        var index = 1L
+        var k = 0
+        while (next < n || k == order[0] || k == order[1]) {
+            if (k == order[0]) {
+                d.groupIdx[0] = index
+                index *= when {
+                    material.hasPawns -> Syzygy.LEAD_PAWNS_SIZE[d.groupLen[0]][tbFile].toLong()
+                    material.hasUniquePieces -> 31332L
+                    else -> 462L
+                }
+            } else if (k == order[1]) {
+                d.groupIdx[1] = index
+                index *= Syzygy.BINOMIAL[d.groupLen[1]][48 - d.groupLen[0]]
+            } else {
+                d.groupIdx[next] = index
+                index *= Syzygy.BINOMIAL[d.groupLen[next]][freeSquares]
+                freeSquares -= d.groupLen[next++]
+            }
+            k++
+        }
+        d.groupIdx[n] = index
+    }
+
+    /**
+     * Reads the compression parameters of a table.
+     *
+     * @return The offset following them
+     */
+    private fun setSizes(d: PairsData, start: Long): Long {
+        var data = start
+        d.flags = file.u8(data++)
+        if (d.flags and FLAG_SINGLE_VALUE != 0) {
+            d.minSymLen = file.u8(data++)
+            return data
+        }
+
+        val tableSize = d.groupIdx[d.groupLen.indexOf(0)]
+        d.blockSize = 1L shl file.u8(data++)
+        d.span = 1L shl file.u8(data++)
+        d.sparseIndexSize = (tableSize + d.span - 1) / d.span
+        val padding = file.u8(data++)
+        d.numBlocks = file.u32le(data)
+        data += 4
+        d.blockLengthSize = d.numBlocks + padding
+        d.maxSymLen = file.u8(data++)
+        d.minSymLen = file.u8(data++)
+
+        // Lowest symbol of each length, and the same left-aligned to 64 bits
+        val lengths = d.maxSymLen - d.minSymLen + 1
+        d.lowestSym = IntArray(lengths) { file.u16le(data + 2L * it) }
+        d.base64 = LongArray(lengths)
+        for (i in lengths - 2 downTo 0) d.base64[i] = (d.base64[i + 1] + d.lowestSym[i] - d.lowestSym[i + 1]) / 2
+        for (i in 0 until lengths) d.base64[i] = d.base64[i] shl (64 - i - d.minSymLen)
+        data += 2L * lengths
+
+        // Each symbol stands for a pair of symbols, down to the leaves holding values
+        val symbols = file.u16le(data)
+        data += 2
+        d.left = IntArray(symbols)
+        d.right = IntArray(symbols)
+        for (s in 0 until symbols) {
+            val offset = data + 3L * s
+            val middle = file.u8(offset + 1)
+            d.left[s] = ((middle and 0xf) shl 8) or file.u8(offset)
+            d.right[s] = (file.u8(offset + 2) shl 4) or (middle ushr 4)
+        }
+        d.symlen = IntArray(symbols)
+        val visited = BooleanArray(symbols)
+        for (s in 0 until symbols) if (!visited[s]) d.symlen[s] = setSymlen(d, s, visited)
+
+        return data + 3L * symbols + (symbols and 1)
+    }
+
+    /**
+     * Number of values (minus one) a symbol expands to.
+     */
+    private fun setSymlen(d: PairsData, symbol: Int, visited: BooleanArray): Int {
+        visited[symbol] = true
+        val right = d.right[symbol]
+        if (right == 0xfff) return 0
+        val left = d.left[symbol]
+        if (!visited[left]) d.symlen[left] = setSymlen(d, left, visited)
+        if (!visited[right]) d.symlen[right] = setSymlen(d, right, visited)
+        return d.symlen[left] + d.symlen[right] + 1
+    }
+
+    /**
+     * Reads the maps from stored DTZ values to actual ones, one per WDL outcome.
+     *
+     * @return The offset following them
+     */
+    private fun setDtzMap(start: Long): Long {
+        var data = start
+        for (f in 0 until files) {
+            val d = get(0, f)
+            if (d.flags and FLAG_MAPPED == 0) continue
+            if (d.flags and FLAG_WIDE != 0) {
+                data += data and 1
+                for (i in 0 until 4) {
+                    d.mapIdx[i] = data + 2
+                    data += 2L * file.u16le(data) + 2
+                }
+            } else {
+                for (i in 0 until 4) {
+                    d.mapIdx[i] = data + 1
+                    data += file.u8(data) + 1
+                }
+            }
+        }
+        return data + (data and 1)
+    }
+
+    private fun sortByMapPawns(squares: IntArray, from: Int, to: Int) {
+        for (i in from + 1 until to) {
+            var j = i
+            while (j > from && Syzygy.MAP_PAWNS[squares[j - 1]] > Syzygy.MAP_PAWNS[squares[j]]) {
+                swap(squares, j - 1, j)
+                j--
+            }
+        }
+    }
+
+    private fun swap(values: IntArray, i: Int, j: Int) {
+        val value = values[i]
+        values[i] = values[j]
+        values[j] = value
+    }
+
+    /**
+     * Decoding parameters of one table (per side to move and leading pawn file).
+     * Offsets point into the mapped file.
+     */
+    private class PairsData {
+        var flags = 0
+        val pieces = IntArray(Syzygy.MAX_PIECES)
+        val groupLen = IntArray(Syzygy.MAX_PIECES + 1)
+        val groupIdx = LongArray(Syzygy.MAX_PIECES + 1)
+        var blockSize = 0L
+        var span = 0L
+        var sparseIndexSize = 0L
+        var numBlocks = 0L
+        var blockLengthSize = 0L
+        var maxSymLen = 0
+        var minSymLen = 0
+        var lowestSym = IntArray(0)
+        var base64 = LongArray(0)
+        var left = IntArray(0)
+        var right = IntArray(0)
+        var symlen = IntArray(0)
+        var sparseIndex = 0L
+        var blockLength = 0L
+        var data = 0L
+        val mapIdx = LongArray(4)
+    }
+
+    companion object {
+        /** Returned by DTZ probes when the table stores the other side to move. */
+        const val CHANGE_STM = Int.MIN_VALUE
+
+        private const val HAS_PAWNS = 2
+        private const val SPARSE_ENTRY_SIZE = 6
+
+        private const val FLAG_STM = 1
+        private const val FLAG_MAPPED = 2
+        private const val FLAG_WIN_PLIES = 4
+        private const val FLAG_LOSS_PLIES = 8
+        private const val FLAG_WIDE = 16
+        private const val FLAG_SINGLE_VALUE = 128
+
+        /** Index of the DTZ map of each WDL score (loss to win). */
+        private val WDL_MAP = intArrayOf(1, 3, 0, 2, 0)
+    }
+}
+
+/**
+ * Read-only mapping of a whole table file.
+ *
+ * Files larger than a single buffer are mapped in chunks which overlap by a
+ * few bytes, so that any value can be read from a single chunk.
+ */
+internal class MappedTableFile private constructor(private val chunks: Array<MappedByteBuffer>, val size: Long) {
+
+    private fun chunk(offset: Long): MappedByteBuffer = chunks[(offset ushr CHUNK_BITS).toInt()]
+
+    private fun position(offset: Long): Int = (offset and CHUNK_MASK).toInt()
+
+    fun u8(offset: Long): Int = chunk(offset).get(position(offset)).toInt() and 0xff
+
+    fun u16le(offset: Long): Int = java.lang.Short.reverseBytes(chunk(offset).getShort(position(offset))).toInt() and 0xffff
+
+    fun u32le(offset: Long): Long = Integer.reverseBytes(chunk(offset).getInt(position(offset))).toLong() and 0xffffffffL
+
+    fun u32be(offset: Long): Long = chunk(offset).getInt(position(offset)).toLong() and 0xffffffffL
+
+    fun u64be(offset: Long): Long = chunk(offset).getLong(position(offset))
+
+    companion object {
+        private const val CHUNK_BITS = 30
+        private const val CHUNK_MASK = (1L shl CHUNK_BITS) - 1
+        private const val OVERLAP = 8
+
+        /**
+         * Maps a table file and checks its magic number.
+         *
+         * @throws IOException if the file cannot be read or is not a table of the expected kind
+         */
+        fun open(path: Path, magic: Int): MappedTableFile =
+            FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+                // Mappings remain valid once the channel is closed
+                val size = channel.size()
+                if (size % 64 != 16L) throw IOException("Corrupt tablebase file: $path")
+                val chunks = Array(((size + CHUNK_MASK) ushr CHUNK_BITS).toInt()) { i ->
+                    val start = i.toLong() shl CHUNK_BITS
+                    channel.map(FileChannel.MapMode.READ_ONLY, start, minOf(size - start, CHUNK_MASK + 1 + OVERLAP))
+                }
+                val file = MappedTableFile(chunks, size)
+                if (Integer.reverseBytes(chunks[0].getInt(0)) != magic) throw IOException("Not a Syzygy table: $path")
+                file
+            }
+    }
+}
+
+/**
+ * Constants and indexing tables shared by Syzygy tables.
+ *
+ * Pieces are identified by their Syzygy code: the type (pawn = 1, knight,
+ * bishop, rook, queen, king = 6) plus 8 for black.
+ */
+internal object Syzygy {
+    const val MAX_PIECES = 7
+
+    const val WDL_MAGIC = 0x5d23e871
+    const val DTZ_MAGIC = 0xa50c66d7.toInt()
+
+    const val PAWN = 1
+    const val KING = 6
+
+    const val LOSS = -2
+    const val BLESSED_LOSS = -1
+    const val DRAW = 0
+    const val CURSED_WIN = 1
+    const val WIN = 2
+
+    /** Letters of the piece types in Syzygy order, as used in file names. */
+    const val PIECE_LETTERS = "PNBRQK"
+
+    /** Syzygy code of each board code. */
+    val PIECE_CODE = IntArray(16).also {
+        val types = intArrayOf(0, 1, 4, 2, 3, 5, 6) // Board types (pawn, rook, knight, ...) to Syzygy types
+        for (code in 1 until 16) if (code and BoardState.TYPE_MASK in 1..6) it[code] = types[code and BoardState.TYPE_MASK] or (code and 8)
+    }
+
+    /** Squares below the a1-h8 diagonal, numbered from 0 to 27. */
+    val MAP_B1H1H7 = IntArray(64)
+
+    /** Squares of the a1-d1-d4 triangle, numbered from 0 to 9 (diagonal squares last). */
+    val MAP_A1D1D4 = IntArray(64)
+
+    /** The 462 legal placements of two kings, the first in the a1-d1-d4 triangle. */
+    val MAP_KK = Array(10) { IntArray(64) }
+
+    /** Binomial coefficients: BINOMIAL[k][n] ways to choose k elements among n. */
+    val BINOMIAL = Array(6) { LongArray(64) }
+
+    /** Pawn squares a2-h7 numbered by the squares left available when the leading pawn stands on them. */
+    val MAP_PAWNS = IntArray(64)
+
+    val LEAD_PAWN_INDEX = Array(6) { IntArray(64) }
+    val LEAD_PAWNS_SIZE = Array(6) { IntArray(4) }
+
+    /** Distance of a square above (positive) or below (negative) the a1-h8 diagonal. */
+    fun offA1H8(square: Int): Int = (square shr 3) - (square and 7)
+
+    /**
+     * Key identifying the material of a position, from the number of pieces of each Syzygy code.
+     */
+    fun materialKey(counts: IntArray, swapColors: Boolean): Long {
+        var key = 0L
+        for (color in 0..1) {
+            val shift = 20 * (if (swapColors) color xor 1 else color)
+            for (type in PAWN until KING) key = key or (counts[type + 8 * color].toLong() shl (shift + 4 * (type - 1)))
+        }
+        return key
+    }
+
+    /**
+     * Material key of a board.
+     */
+    fun materialKey(board: BoardState): Long {
+        val counts = IntArray(16)
+        for (code in board.squares) if (code != BoardState.EMPTY) counts[PIECE_CODE[code]]++
+        return materialKey(counts, swapColors = false)
+    }
+
+    /**
+     * Name of the material of a board, with white first (e.g. "KRvKN").
+     */
+    fun materialName(board: BoardState): String {
+        val counts = IntArray(16)
+        for (code in board.squares) if (code != BoardState.EMPTY) counts[PIECE_CODE[code]]++
+        return buildString {
+            for (color in 0..1) {
+                if (color == 1) append('v')
+                for (type in KING downTo PAWN) repeat(counts[type + 8 * color]) { append(PIECE_LETTERS[type - 1]) }
+            }
+        }
+    }
+
+    init {
+        var code = 0
+        for (square in 0 until 64) if (offA1H8(square) < 0) MAP_B1H1H7[square] = code++
+
+        code = 0
+        val diagonal = ArrayList<Int>()
+        for (square in 0..27) {
+            if (offA1H8(square) < 0 && square and 7 <= 3) MAP_A1D1D4[square] = code++
+            else if (offA1H8(square) == 0 && square and 7 <= 3) diagonal.add(square)
+        }
+        for (square in diagonal) MAP_A1D1D4[square] = code++
+
+        code = 0
+        val bothOnDiagonal = ArrayList<IntArray>()
+        for (index in 0 until 10) {
+            for (first in 0..27) {
+                if (MAP_A1D1D4[first] != index || (index == 0 && first != 1)) continue // b1 is mapped to 0
+                for (second in 0 until 64) {
+                    val adjacent = Math.abs((first and 7) - (second and 7)) <= 1 && Math.abs((first shr 3) - (second shr 3)) <= 1
+                    when {
+                        adjacent -> {}
+                        offA1H8(first) == 0 && offA1H8(second) > 0 -> {}
+                        offA1H8(first) == 0 && offA1H8(second) == 0 -> bothOnDiagonal.add(intArrayOf(index, second))
+                        else -> MAP_KK[index][second] = code++
+                    }
+                }
+            }
+        }
+        for ((index, second) in bothOnDiagonal) MAP_KK[index][second] = code++
+
+        BINOMIAL[0][0] = 1
+        for (n in 1 until 64) {
+            for (k in 0..minOf(5, n)) {
+                BINOMIAL[k][n] = (if (k > 0) BINOMIAL[k - 1][n - 1] else 0) + (if (k < n) BINOMIAL[k][n - 1] else 0)
+            }
+        }
+
+        var availableSquares = 47
+        for (leadPawns in 1..5) {
+            for (file in 0..3) {
+                var index = 0
+                for (rank in 1..6) {
+                    val square = 8 * rank + file
+                    if (leadPawns == 1) {
+                        MAP_PAWNS[square] = availableSquares--
+                        MAP_PAWNS[square xor 7] = availableSquares--
+                    }
+                    LEAD_PAWN_INDEX[leadPawns][square] = index
+                    index += BINOMIAL[leadPawns - 1][MAP_PAWNS[square]].toInt()
+                }
+                LEAD_PAWNS_SIZE[leadPawns][file] = index
+            }
+        }
+    }
+}
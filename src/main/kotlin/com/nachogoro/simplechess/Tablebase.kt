@@ -0,0 +1,298 @@
+package com.nachogoro.simplechess
+
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * Outcome of a position with perfect play, from the point of view of the side to move.
+ */
+public enum class WdlScore {
+    /** The side to move loses. */
+    LOSS,
+
+    /** The side to move loses, but can hold a draw under the fifty-move rule. */
+    BLESSED_LOSS,
+
+    /** The position is drawn. */
+    DRAW,
+
+    /** The side to move wins, but the opponent can hold a draw under the fifty-move rule. */
+    CURSED_WIN,
+
+    /** The side to move wins. */
+    WIN;
+
+    internal companion object {
+        fun fromSyzygy(value: Int): WdlScore = entries[value + 2]
+    }
+}
+
+/**
+ * Result of probing a position in a [Tablebase].
+ */
+@ConsistentCopyVisibility
+public data class TablebaseResult internal constructor(
+    /** Outcome of the position with perfect play, for the side to move. */
+    val wdl: WdlScore,
+    /**
+     * Distance to zeroing the fifty-move counter (by a capture or a pawn move)
+     * with perfect play, in plies: positive when the side to move wins, negative
+     * when it loses and 0 for draws. Null if the DTZ tables are not available.
+     */
+    val dtz: Int?
+)
+
+/**
+ * Syzygy endgame tablebases, read from local .rtbw (WDL) and .rtbz (DTZ) files.
+ *
+ * Opening a tablebase only lists the table files; each table is memory-mapped
+ * the first time a position with its material is probed, so startup stays
+ * cheap however many tables are available. Once mapped, probes only read the
+ * mapped files and never lock, and are safe from any number of threads.
+ *
+ * Tablebases do not cover positions with castling rights. The results of
+ * positions with an en passant target are computed by probing the positions
+ * after the captures.
+ *
+ * Experimental: the decoder follows the published description of the Syzygy
+ * format, but it has only been tested with small tables written by the test
+ * suite, never with the published table files. Check its results against a
+ * reference prober before relying on them.
+ */
+public class Tablebase private constructor(private val materials: Map<Long, SyzygyMaterial>) {
+
+    /**
+     * Largest number of pieces (kings included) of the available WDL tables.
+     */
+    public val maxPieces: Int = materials.values.filter { it.wdlPath != null }.maxOfOrNull { it.pieceCount } ?: 0
+
+    /**
+     * Number of material configurations (e.g. KRvK) with at least one table.
+     */
+    public val tableCount: Int = materials.values.distinct().size
+
+    /**
+     * Whether the WDL table of a position is available.
+     *
+     * Probing a covered position can still fail if the tables of the positions
+     * reached by captures are missing.
+     *
+     * @param position The position to check
+     * @return true if the position has no castling rights and its WDL table is available
+     */
+    public fun covers(position: Position): Boolean {
+        if (position.castlingRights.isNotEmpty()) return false
+        if (position.board.size == 2) return true
+        if (position.board.size > maxPieces) return false
+        return materials[Syzygy.materialKey(position.toBoard())]?.wdlPath != null
+    }
+
+    /**
+     * Probes the outcome of a position.
+     *
+     * @param position The position to probe
+     * @return A ChessResult containing the outcome for the side to move, or an Error if:
+     *         - The position has castling rights or more than [maxPieces] pieces
+     *           ([ErrorKind.UNSUPPORTED_POSITION])
+     *         - A required table is missing or corrupt
+     */
+    public fun probeWdl(position: Position): ChessResult<WdlScore> = notProbeable(position) ?: ChessResult.catching {
+        WdlScore.fromSyzygy(Probe(position.toBoard()).probeWdl())
+    }
+
+    /**
+     * Probes the distance to zeroing the fifty-move counter of a position.
+     *
+     * Following the move which minimizes (when winning) or maximizes (when
+     * losing) the DTZ is the shortest way to make progress; mating is not
+     * necessarily quicker that way.
+     *
+     * @param position The position to probe
+     * @return A ChessResult containing the DTZ in plies (see [TablebaseResult.dtz]),
+     *         or an Error if:
+     *         - The position has castling rights or more than [maxPieces] pieces
+     *           ([ErrorKind.UNSUPPORTED_POSITION])
+     *         - A required table is missing or corrupt
+     */
+    public fun probeDtz(position: Position): ChessResult<Int> = notProbeable(position) ?: ChessResult.catching {
+        Probe(position.toBoard()).probeDtz()
+    }
+
+    /**
+     * Probes the outcome of a position and, if the DTZ tables are available, its DTZ.
+     *
+     * @param position The position to probe
+     * @return A ChessResult containing the result, or an Error if the outcome
+     *         cannot be probed (see [probeWdl])
+     */
+    public fun probe(position: Position): ChessResult<TablebaseResult> =
+        probeWdl(position).map { wdl -> TablebaseResult(wdl, probeDtz(position).getOrNull()) }
+
+    /**
+     * The error of probing a position which tablebases cannot hold, or null if they can.
+     */
+    private fun notProbeable(position: Position): ChessResult<Nothing>? = when {
+        position.castlingRights.isNotEmpty() ->
+            ChessResult.error(ErrorKind.UNSUPPORTED_POSITION, "Positions with castling rights are not in tablebases")
+        position.board.size > maxOf(maxPieces, 2) ->
+            ChessResult.error(ErrorKind.UNSUPPORTED_POSITION, "Position has ${position.board.size} pieces, tablebases cover up to $maxPieces")
+        else -> null
+    }
+
+    /**
+     * A single probe, which searches captures (and pawn moves, for DTZ) on its
+     * own board: the tables do not store reliable values for positions where
+     * such a move is best, nor for positions with an en passant target.
+     */
+    private inner class Probe(private val board: BoardState) {
+
+        /** Whether the best move found by the last search zeroes the fifty-move counter. */
+        private var zeroingBestMove = false
+
+        fun probeWdl(): Int = search(checkZeroingMoves = false)
+
+        fun probeDtz(): Int {
+            val wdl = search(checkZeroingMoves = true)
+            if (wdl == Syzygy.DRAW) return 0
+            if (zeroingBestMove) return dtzBeforeZeroing(wdl)
+
+            val dtz = probeTable(dtz = true, wdl = wdl)
+            if (dtz != SyzygyTable.CHANGE_STM) {
+                val cursed = wdl == Syzygy.BLESSED_LOSS || wdl == Syzygy.CURSED_WIN
+                return (dtz + if (cursed) 100 else 0) * Integer.signum(wdl)
+            }
+
+            // The table stores the other side to move: search one ply for the
+            // move which leads to the best DTZ
+            var best = NO_DTZ
+            val moves = IntArray(BoardState.MAX_MOVES)
+            val count = board.generateLegalMoves(moves)
+            for (i in 0 until count) {
+                val move = moves[i]
+                val zeroing = isCapture(move) || isPawnMove(move)
+                board.makeMove(move)
+                // After a zeroing move, the DTZ is the one of the move itself
+                var dtz = if (zeroing) -dtzBeforeZeroing(search(checkZeroingMoves = false)) else -probeDtz()
+                if (dtz == 1 && board.isInCheck(board.activeColor) && !board.hasLegalMove()) best = 1
+                if (!zeroing) dtz += Integer.signum(dtz)
+                if (dtz < best && Integer.signum(dtz) == Integer.signum(wdl)) best = dtz
+                board.unmakeMove(move)
+            }
+            return if (best == NO_DTZ) -1 else best
+        }
+
+        /**
+         * Finds the WDL score of the position by searching captures (and pawn
+         * moves if [checkZeroingMoves]) and probing the table.
+         */
+        private fun search(checkZeroingMoves: Boolean): Int {
+            var best = Syzygy.LOSS
+            val moves = IntArray(BoardState.MAX_MOVES)
+            val count = board.generateLegalMoves(moves)
+            var searched = 0
+            for (i in 0 until count) {
+                val move = moves[i]
+                if (!isCapture(move) && (!checkZeroingMoves || !isPawnMove(move))) continue
+                searched++
+                board.makeMove(move)
+                val value = -search(checkZeroingMoves = false)
+                board.unmakeMove(move)
+                if (value > best) {
+                    best = value
+                    if (value >= Syzygy.WIN) {
+                        zeroingBestMove = true
+                        return value
+                    }
+                }
+            }
+
+            // Once every legal move has been searched the table is not needed,
+            // and may even be wrong (e.g. with an en passant target)
+            val allMovesSearched = searched != 0 && searched == count
+            val value = if (allMovesSearched) best else probeTable(dtz = false, wdl = Syzygy.DRAW)
+            if (best >= value) {
+                zeroingBestMove = best > Syzygy.DRAW || allMovesSearched
+                return best
+            }
+            zeroingBestMove = false
+            return value
+        }
+
+        private fun probeTable(dtz: Boolean, wdl: Int): Int {
+            if (board.squares.count { it != BoardState.EMPTY } == 2) return Syzygy.DRAW
+            val key = Syzygy.materialKey(board)
+            val material = materials[key] ?: throw IOException("Missing table: ${Syzygy.materialName(board)}")
+            return (if (dtz) material.dtzTable() else material.wdlTable()).probe(board, key, wdl)
+        }
+
+        private fun isCapture(move: Int): Boolean {
+            val to = BoardState.moveTo(move)
+            if (board.squares[to] != BoardState.EMPTY) return true
+            return to == board.enPassantTarget && isPawnMove(move)
+        }
+
+        private fun isPawnMove(move: Int): Boolean =
+            board.squares[BoardState.moveFrom(move)] and BoardState.TYPE_MASK == BoardState.PAWN
+
+        private fun dtzBeforeZeroing(wdl: Int): Int = when (wdl) {
+            Syzygy.WIN -> 1
+            Syzygy.CURSED_WIN -> 101
+            Syzygy.BLESSED_LOSS -> -101
+            Syzygy.LOSS -> -1
+            else -> 0
+        }
+    }
+
+    public companion object {
+        private const val NO_DTZ = 0xffff
+        private const val WDL_SUFFIX = ".rtbw"
+        private const val DTZ_SUFFIX = ".rtbz"
+        private val TABLE_NAME = Regex("K[QRBNP]*vK[QRBNP]*")
+
+        /**
+         * Opens the tables found in some directories.
+         *
+         * Only file names are read here. If a table is present in several
+         * directories, the first one is used.
+         *
+         * @param directories The directories holding the table files
+         * @return The tablebase
+         * @throws IOException if a directory cannot be listed
+         */
+        public fun open(vararg directories: Path): Tablebase = open(directories.toList())
+
+        /**
+         * Opens the tables found in some directories.
+         *
+         * @param directories The directories holding the table files
+         * @return The tablebase
+         * @throws IOException if a directory cannot be listed
+         * @see open
+         */
+        public fun open(directories: List<Path>): Tablebase {
+            val wdlPaths = HashMap<String, Path>()
+            val dtzPaths = HashMap<String, Path>()
+            for (directory in directories) {
+                val paths = Files.list(directory).use { it.iterator().asSequence().toList() }
+                for (path in paths) {
+                    val fileName = path.fileName.toString()
+                    val name = fileName.substringBeforeLast('.')
+                    if (!TABLE_NAME.matches(name) || name.length - 1 > Syzygy.MAX_PIECES) continue
+                    when {
+                        fileName.endsWith(WDL_SUFFIX) -> wdlPaths.putIfAbsent(name, path)
+                        fileName.endsWith(DTZ_SUFFIX) -> dtzPaths.putIfAbsent(name, path)
+                    }
+                }
+            }
+
+            val materials = HashMap<Long, SyzygyMaterial>()
+            for (name in wdlPaths.keys + dtzPaths.keys) {
+                val material = SyzygyMaterial(name, wdlPaths[name], dtzPaths[name])
+                materials[material.key] = material
+                materials[material.key2] = material
+            }
+            return Tablebase(materials)
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.nachogoro.simplechess
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Transposition table shared by the threads of a search, without locks.
+ *
+ * Each entry takes two longs: the data (move, score, depth, bound and search
+ * generation) and the position hash xor the data. Entries written by several
+ * threads at once may mix the halves of different writes, but such entries no
+ * longer match their hash and are simply ignored on probe.
+ */
+internal class TranspositionTable(sizeMb: Int) {
+
+    private val entryCount: Int = run {
+        val requested = sizeMb.toLong() * 1024 * 1024 / ENTRY_SIZE
+        // Round down to a power of two so that slots are selected with a mask
+        java.lang.Long.highestOneBit(requested.coerceIn(1, MAX_ENTRIES)).toInt()
+    }
+
+    private val table = AtomicLongArray(2 * entryCount)
+
+    @Volatile
+    private var generation = 0
+
+    /**
+     * Starts a new search: entries of previous searches become preferred for replacement.
+     */
+    fun newSearch() {
+        generation = (generation + 1) and GENERATION_MASK
+    }
+
+    /**
+     * Clears every entry.
+     */
+    fun clear() {
+        for (i in 0 until table.length()) table.set(i, 0L)
+    }
+
+    /**
+     * Returns the data stored for a position, or [NONE].
+     */
+    fun probe(hash: Long): Long {
+        val slot = 2 * (hash.toInt() and (entryCount - 1))
+        val data = table.get(slot)
+        return if (table.get(slot + 1) xor data == hash) data else NONE
+    }
+
+    /**
+     * Stores the result of searching a position.
+     *
+     * @param hash The position hash
+     * @param move The best move found, packed, or 0
+     * @param score The score, already adjusted for storage (see [Engine])
+     * @param depth The remaining depth of the search
+     * @param bound [EXACT], [LOWER] or [UPPER]
+     */
+    fun store(hash: Long, move: Int, score: Int, depth: Int, bound: Int) {
+        val slot = 2 * (hash.toInt() and (entryCount - 1))
+        val old = table.get(slot)
+        val sameHash = table.get(slot + 1) xor old == hash
+        // Keep deeper results of the same position from the current search
+        if (sameHash && generation(old) == generation && depth(old) > depth && bound != EXACT) return
+
+        val keptMove = if (move == 0 && sameHash) move(old) else move
+        val data = (keptMove.toLong() and 0xffff) or
+            ((score.toLong() and 0xffff) shl 16) or
+            ((depth.toLong() and 0xff) shl 32) or
+            (bound.toLong() shl 40) or
+            (generation.toLong() shl 42)
+        table.lazySet(slot, data)
+        table.lazySet(slot + 1, hash xor data)
+    }
+
+    companion object {
+        const val NONE = 0L
+
+        const val EXACT = 1
+        const val LOWER = 2
+        const val UPPER = 3
+
+        private const val ENTRY_SIZE = 16
+        private const val MAX_ENTRIES = 1L shl 30
+        private const val GENERATION_MASK = 0xff
+
+        fun move(data: Long): Int = (data and 0xffff).toInt()
+
+        fun score(data: Long): Int = (data shr 16).toShort().toInt()
+
+        fun depth(data: Long): Int = ((data shr 32) and 0xff).toInt()
+
+        fun bound(data: Long): Int = ((data shr 40) and 3).toInt()
+
+        private fun generation(data: Long): Int = ((data shr 42) and GENERATION_MASK.toLong()).toInt()
+    }
+}
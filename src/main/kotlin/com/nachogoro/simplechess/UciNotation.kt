@@ -0,0 +1,81 @@
+package com.nachogoro.simplechess
+
+/**
+ * Codec for moves in UCI long algebraic notation ("e2e4", "e7e8q").
+ *
+ * Moves are decoded into a packed integer holding the origin square index,
+ * the destination square index and the promotion type, so callers can
+ * resolve them without allocating intermediate objects.
+ */
+internal object UciNotation {
+
+    /** Value returned by [decode] for malformed input. */
+    const val INVALID = -1
+
+    /**
+     * Decodes the move found in `text[start, end)`.
+     *
+     * @return the packed move (see [from], [to] and [promotion]) or [INVALID]
+     */
+    fun decode(text: CharSequence, start: Int, end: Int): Int {
+        val length = end - start
+        if (length != 4 && length != 5) return INVALID
+        val from = squareIndex(text[start], text[start + 1])
+        val to = squareIndex(text[start + 2], text[start + 3])
+        if (from < 0 || to < 0) return INVALID
+        val promotion = if (length == 5) {
+            when (text[start + 4]) {
+                'q', 'Q' -> PieceType.QUEEN
+                'r', 'R' -> PieceType.ROOK
+                'b', 'B' -> PieceType.BISHOP
+                'n', 'N' -> PieceType.KNIGHT
+                else -> return INVALID
+            }.ordinal + 1
+        } else 0
+        return from or (to shl 6) or (promotion shl 12)
+    }
+
+    /** Origin square index of a packed move. */
+    fun from(packed: Int): Int = packed and 0x3f
+
+    /** Destination square index of a packed move. */
+    fun to(packed: Int): Int = (packed shr 6) and 0x3f
+
+    /** Promotion type of a packed move, or null if it is not a promotion. */
+    fun promotion(packed: Int): PieceType? {
+        val code = packed shr 12
+        return if (code == 0) null else PieceType.entries[code - 1]
+    }
+
+    /**
+     * Encodes a move in UCI long algebraic notation.
+     */
+    fun encode(move: Move): String {
+        val promotion = when (move.promotion) {
+            null -> ""
+            PieceType.QUEEN -> "q"
+            PieceType.ROOK -> "r"
+            PieceType.BISHOP -> "b"
+            PieceType.KNIGHT -> "n"
+            else -> throw IllegalStateException("Invalid promotion type: ${move.promotion}")
+        }
+        return "${move.from}${move.to}$promotion"
+    }
+
+    /**
+     * Encodes a packed move in UCI long algebraic notation.
+     */
+    fun encode(packed: Int): String {
+        val to = to(packed)
+        val promotion = promotion(packed)?.let { PROMOTION_LETTERS[it.ordinal] } ?: ""
+        return "${Square.fromIndex(from(packed))}${Square.fromIndex(to)}$promotion"
+    }
+
+    private fun squareIndex(file: Char, rank: Char): Int {
+        if (file !in 'a'..'h' || rank !in '1'..'8') return -1
+        return (rank - '1') * 8 + (file - 'a')
+    }
+
+    /** UCI letters of the promotion types, indexed by ordinal. */
+    private const val PROMOTION_LETTERS = "prnbqk"
+}
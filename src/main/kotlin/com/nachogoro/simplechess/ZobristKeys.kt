@@ -0,0 +1,124 @@
+package com.nachogoro.simplechess
+
+/**
+ * Random keys for Zobrist hashing of positions.
+ *
+ * Keys follow the Polyglot layout: 768 keys for each (piece, square) pair,
+ * 4 for the castling rights, 8 for the file of the en passant target and one
+ * for white to move. As in Polyglot, the en passant key only applies when a
+ * pawn of the side to move can actually capture. Hashes ignore the move
+ * counters.
+ *
+ * The library hashes positions with [POLYGLOT], the "Random64" table of the
+ * Polyglot book format, so its hashes match those of Polyglot books and the
+ * tools reading them. Other tables can be loaded with [of].
+ */
+public class ZobristKeys private constructor(private val keys: LongArray) {
+
+    /**
+     * Hash of a position.
+     *
+     * @param position The position to hash
+     * @return The Zobrist hash of the position
+     */
+    public fun hash(position: Position): Long = hash(position.toBoard(PROBE_BOARD.get()))
+
+    /** Combined keys of each castling rights bitfield. */
+    private val castlingKeys = LongArray(16) { rights ->
+        var key = 0L
+        for (i in CASTLING_ORDER.indices) {
+            if (rights and CASTLING_ORDER[i].jnaValue != 0) key = key xor keys[CASTLING_OFFSET + i]
+        }
+        key
+    }
+
+    /**
+     * Hash of a board. With the [POLYGLOT] keys, this is the key the board
+     * keeps up to date as moves are made (see [BoardState.zobristKey]).
+     */
+    internal fun hash(board: BoardState): Long = if (this === POLYGLOT) board.zobristKey else computeHash(board)
+
+    /**
+     * Hash of a board, computed from scratch.
+     */
+    internal fun computeHash(board: BoardState): Long {
+        var hash = stateKey(board)
+        val squares = board.squares
+        for (square in 0 until 64) {
+            val piece = squares[square]
+            if (piece != BoardState.EMPTY) hash = hash xor pieceKey(piece, square)
+        }
+        return hash
+    }
+
+    /**
+     * Key of a (non-empty) board code on a square.
+     */
+    internal fun pieceKey(piece: Int, square: Int): Long {
+        val white = if (piece shr 3 == BoardState.WHITE) 1 else 0
+        return keys[64 * (2 * POLYGLOT_TYPE[piece and BoardState.TYPE_MASK] + white) + square]
+    }
+
+    /**
+     * Combined keys of the castling rights, en passant target and side to move of a board.
+     */
+    internal fun stateKey(board: BoardState): Long {
+        var key = castlingKeys[board.castlingRights]
+        val target = board.enPassantTarget
+        if (target != BoardState.NO_SQUARE && canCaptureEnPassant(board, target)) {
+            key = key xor keys[EN_PASSANT_OFFSET + (target and 7)]
+        }
+        if (board.activeColor == BoardState.WHITE) key = key xor keys[TURN_OFFSET]
+        return key
+    }
+
+    private fun canCaptureEnPassant(board: BoardState, target: Int): Boolean {
+        val us = board.activeColor
+        // Capturing pawns stand beside the pawn which has just advanced two squares
+        val pawnRankSquare = if (us == BoardState.WHITE) target - 8 else target + 8
+        val pawn = BoardState.PAWN or (us shl 3)
+        val file = target and 7
+        return (file > 0 && board.squares[pawnRankSquare - 1] == pawn) ||
+            (file < 7 && board.squares[pawnRankSquare + 1] == pawn)
+    }
+
+    public companion object {
+        /** Number of keys in a table. */
+        public const val KEY_COUNT: Int = 781
+
+        private const val CASTLING_OFFSET = 768
+        private const val EN_PASSANT_OFFSET = 772
+        private const val TURN_OFFSET = 780
+
+        /** Polyglot piece type index of each board type (pawn, knight, bishop, rook, queen, king). */
+        private val POLYGLOT_TYPE = intArrayOf(-1, 0, 3, 1, 2, 4, 5)
+
+        private val CASTLING_ORDER = listOf(
+            CastlingRight.WHITE_KING_SIDE,
+            CastlingRight.WHITE_QUEEN_SIDE,
+            CastlingRight.BLACK_KING_SIDE,
+            CastlingRight.BLACK_QUEEN_SIDE
+        )
+
+        /** Board each thread loads positions into to hash them. */
+        private val PROBE_BOARD = ThreadLocal.withInitial { BoardState() }
+
+        /**
+         * Keys of the Polyglot "Random64" table, used by default throughout the
+         * library.
+         */
+        public val POLYGLOT: ZobristKeys = ZobristKeys(PolyglotRandom64.KEYS)
+
+        /**
+         * Creates custom keys from a table in the Polyglot layout.
+         *
+         * @param keys The [KEY_COUNT] keys, in Polyglot order
+         * @return The keys, which do not depend on later changes to the array
+         * @throws IllegalArgumentException if the table does not hold [KEY_COUNT] keys
+         */
+        public fun of(keys: LongArray): ZobristKeys {
+            require(keys.size == KEY_COUNT) { "Expected $KEY_COUNT keys, got ${keys.size}" }
+            return ZobristKeys(keys.copyOf())
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class BoardDeltaTest {
+
+    private fun position(fen: String): Position = assertSuccess(Position.fromFen(fen))
+
+    /**
+     * Checks that the delta of every legal move of a position, computed from
+     * the move alone, matches the boards before and after it.
+     */
+    private fun assertMoveDeltas(fen: String) {
+        val board = position(fen).toBoard()
+        val moves = IntArray(BoardState.MAX_MOVES)
+        val count = board.generateLegalMoves(moves)
+        for (i in 0 until count) {
+            val before = Position.fromBoard(board)
+            val played = HistoryArchive(1).append(0, board.copy(), intArrayOf(moves[i]), 1).entry(0).second
+            board.makeMove(moves[i])
+            val after = Position.fromBoard(board)
+            board.unmakeMove(moves[i])
+
+            assertEquals(before.diff(after).changes, played.boardDelta.changes, played.algebraicNotation)
+            assertEquals(after.board, played.boardDelta.applyTo(before.board), played.algebraicNotation)
+        }
+    }
+
+    @Test
+    fun moveDeltasMatchBoards() {
+        // Castling on both sides, en passant and promotions with and without capture
+        assertMoveDeltas("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1")
+        assertMoveDeltas("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 0 1")
+        assertMoveDeltas("n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1")
+        assertMoveDeltas("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1")
+        assertMoveDeltas("4k3/8/8/8/3Pp3/8/8/4K3 b - d3 0 1")
+    }
+
+    @Test
+    fun enPassantRemovesTheCapturedPawn() {
+        val before = position("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1")
+        val after = position("4k3/8/3P4/8/8/8/8/4K3 b - - 0 1")
+
+        assertEquals(
+            mapOf(
+                square(5, 'e') to null,
+                square(6, 'd') to piece(PieceType.PAWN, Color.WHITE),
+                square(5, 'd') to null
+            ),
+            before.diff(after).changes
+        )
+    }
+
+    @Test
+    fun identicalBoardsHaveEmptyDeltas() {
+        val white = position(Fen.STANDARD_START)
+        val black = position("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1")
+
+        assertTrue(white.diff(black).isEmpty)
+        assertSame(BoardDelta.EMPTY, white.diff(white))
+        assertEquals(white.board, BoardDelta.EMPTY.applyTo(white.board))
+    }
+
+    @Test
+    fun playedMovesOfGamesHaveDeltas() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", "e2e4 a7a6 e4e5 d7d5 e5d6 e7d6 g1f3 a6a5 f1e2 a5a4 e1g1"))
+
+        val history = game.history
+        history.forEachIndexed { ply, (position, played) ->
+            val after = if (ply + 1 < history.size) history[ply + 1].first else game.currentPosition
+            assertEquals(position.diff(after).changes, played.boardDelta.changes, played.algebraicNotation)
+        }
+        assertTrue(history[4].second.isEnPassant)
+        assertFalse(history[5].second.isEnPassant)
+        assertEquals(4, game.lastMove!!.boardDelta.changes.size)
+    }
+}
@@ -0,0 +1,69 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class CanonicalMoveTest {
+
+    @Test
+    fun factoriesReturnSharedInstances() {
+        val knight = piece(PieceType.KNIGHT, Color.WHITE)
+        val pawn = piece(PieceType.PAWN, Color.BLACK)
+
+        assertSame(Move.regularMove(knight, square(1, 'g'), square(3, 'f')), Move.regularMove(knight, square(1, 'g'), square(3, 'f')))
+        assertSame(
+            Move.pawnPromotion(pawn, square(2, 'b'), square(1, 'a'), PieceType.KNIGHT),
+            Move.pawnPromotion(pawn, square(2, 'b'), square(1, 'a'), PieceType.KNIGHT)
+        )
+        assertNotSame(
+            Move.pawnPromotion(pawn, square(2, 'b'), square(1, 'a'), PieceType.KNIGHT),
+            Move.pawnPromotion(pawn, square(2, 'b'), square(1, 'a'), PieceType.QUEEN)
+        )
+
+        val start = assertSuccess(Position.fromFen(Fen.STANDARD_START))
+        assertSame(Move.regularMove(knight, square(1, 'g'), square(3, 'f')), assertSuccess(Move.fromUci("g1f3", start)))
+    }
+
+    @Test
+    fun movesNoPieceCanMakeAreStillBuilt() {
+        val king = piece(PieceType.KING, Color.WHITE)
+        val move = Move.regularMove(king, square(1, 'a'), square(8, 'h'))
+
+        assertEquals(king, move.piece)
+        assertEquals(square(8, 'h'), move.to)
+        assertEquals(move, Move.regularMove(king, square(1, 'a'), square(8, 'h')))
+        assertNotSame(move, Move.regularMove(king, square(1, 'a'), square(8, 'h')))
+    }
+
+    @Test
+    fun everyLegalMoveIsShared() {
+        for (fen in listOf(
+            Fen.STANDARD_START,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 0 1",
+            "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+            "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N w - - 0 1",
+            "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1"
+        )) {
+            val board = assertSuccess(Position.fromFen(fen)).toBoard()
+            assertShared(board, 2)
+        }
+    }
+
+    private fun assertShared(board: BoardState, depth: Int) {
+        val moves = IntArray(BoardState.MAX_MOVES)
+        val count = board.generateLegalMoves(moves)
+        for (i in 0 until count) {
+            val move = Move.fromPacked(moves[i], board)
+            assertSame(move, Move.fromPacked(moves[i], board))
+            if (depth > 1) {
+                board.makeMove(moves[i])
+                assertShared(board, depth - 1)
+                board.unmakeMove(moves[i])
+            }
+        }
+    }
+}
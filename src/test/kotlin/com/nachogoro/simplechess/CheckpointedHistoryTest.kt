@@ -0,0 +1,119 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class CheckpointedHistoryTest {
+
+    // Exchange Ruy Lopez with both castlings, captures and a queen trade
+    private val moves = ("e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5c6 d7c6 e1g1 f7f6 d2d4 e5d4 f3d4 c6c5 " +
+        "d4b3 d8d1 f1d1 c8g4 f2f3 g4e6 b1c3 e8c8").split(" ")
+
+    private fun board(fen: String): BoardState = BoardState().also { assertNull(Fen.parse(fen, it)) }
+
+    private fun packed(uci: String): Int = UciNotation.decode(uci, 0, uci.length)
+
+    @Test
+    fun sanMatchesNativeNotation() {
+        val cases = listOf(
+            Triple("8/4k3/8/8/8/6K1/8/R6R w - - 0 1", "h1d1", "Rhd1"),
+            Triple("8/4k3/8/8/8/6K1/8/R6R w - - 0 1", "h1h2", "Rh2"),
+            Triple("b4k2/8/2P5/8/b7/8/8/5K2 b - - 0 1", "a8c6", "B8xc6"),
+            Triple("b3bk2/8/2P5/8/b7/5K2/8/8 b - - 0 1", "a8c6", "Ba8xc6+"),
+            Triple("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1", "b7b8q", "b8=Q"),
+            Triple("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1", "b7c8r", "bxc8=R+"),
+            Triple("rnbqkbnr/pppp1ppp/8/8/4pP2/4P3/PPPP2PP/RNBQKBNR b KQkq f3 0 1", "e4f3", "exf3"),
+            Triple("8/8/8/8/6k1/8/4PP1P/4K2R w K - 0 1", "e1g1", "O-O"),
+            Triple("r3k1K1/1q6/8/8/8/8/8/8 b q - 0 1", "e8c8", "O-O-O#")
+        )
+        for ((fen, uci, san) in cases) {
+            val board = board(fen)
+            assertEquals(san, SanWriter.format(board, packed(uci), offersDraw = false), "$uci in $fen")
+            assertEquals(fen, Fen.format(board))
+        }
+        assertEquals("Qb4+(=)", SanWriter.format(board("8/8/3K4/8/Q7/8/p7/1k6 w - - 0 1"), packed("a4b4"), offersDraw = true))
+    }
+
+    @Test
+    fun archivedEntriesAreRebuiltFromSnapshots() {
+        for (interval in listOf(1, 4, 7, 64)) {
+            val archive = HistoryArchive(interval)
+            val packedMoves = moves.map { packed(it) }.toIntArray()
+            packedMoves[5] = packedMoves[5] or HistoryArchive.DRAW_OFFER
+            // Appended in two parts, as successive games would
+            archive.append(0, board(Fen.STANDARD_START), packedMoves, 10)
+            val middle = board(Fen.STANDARD_START).also { b -> repeat(10) { b.makeMove(packed(moves[it])) } }
+            archive.append(10, middle, packedMoves.copyOfRange(10, moves.size), moves.size - 10)
+            assertEquals(moves.size, archive.size)
+
+            val replay = board(Fen.STANDARD_START)
+            for (ply in moves.indices) {
+                val (position, played) = archive.entry(ply)
+                assertEquals(Fen.format(replay), position.fen, "ply $ply, interval $interval")
+                assertEquals(Move.fromPacked(packed(moves[ply]), replay), played.move)
+                assertEquals(ply == 5, played.offersDraw)
+                replay.makeMove(packed(moves[ply]))
+            }
+        }
+
+        val archive = HistoryArchive(4)
+        archive.append(0, board(Fen.STANDARD_START), moves.map { packed(it) }.toIntArray(), moves.size)
+        val notation = moves.indices.map { archive.entry(it).second.algebraicNotation }
+        assertEquals(
+            listOf(
+                "e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Bxc6", "dxc6", "O-O", "f6", "d4", "exd4", "Nxd4", "c5",
+                "Nb3", "Qxd1", "Rxd1", "Bg4", "f3", "Be6", "Nc3", "O-O-O"
+            ),
+            notation
+        )
+        assertTrue(archive.entry(7).second.isCapture)
+        assertEquals(TestUtils.piece(PieceType.BISHOP, Color.WHITE), archive.entry(7).second.capturedPiece)
+    }
+
+    @Test
+    fun siblingsAppendToCopies() {
+        val archive = HistoryArchive(4)
+        val packedMoves = moves.map { packed(it) }.toIntArray()
+        archive.append(0, board(Fen.STANDARD_START), packedMoves, 4)
+
+        val first = archive.append(4, board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3"), intArrayOf(packed("f1b5")), 1)
+        val second = archive.append(4, board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3"), intArrayOf(packed("f1c4")), 1)
+
+        assertSame(archive, first)
+        assertNotSame(archive, second)
+        assertEquals("Bb5", first.entry(4).second.algebraicNotation)
+        assertEquals("Bc4", second.entry(4).second.algebraicNotation)
+        assertEquals(first.entry(3), second.entry(3))
+    }
+
+    @Test
+    fun checkpointedGamesHaveTheSameHistory() {
+        val uci = moves.joinToString(" ")
+        val native = assertSuccess(Game.fromUciMoves("startpos", uci))
+        var checkpointed = assertSuccess(Game.newGame(GameOptions.checkpointedHistory(4)))
+        for (move in moves) {
+            val next = assertSuccess(Move.fromUci(move, checkpointed.currentPosition))
+            checkpointed = assertSuccess(checkpointed.makeMove(next))
+        }
+
+        assertEquals(GameOptions.checkpointedHistory(4), checkpointed.options)
+        assertEquals(native.plyCount, checkpointed.plyCount)
+        assertEquals(native.history, checkpointed.history)
+        assertEquals(native.lastMove, checkpointed.lastMove)
+        assertEquals(native.fen, checkpointed.fen)
+        assertEquals(native.availableMoves.toSet(), checkpointed.availableMoves.toSet())
+    }
+
+    @Test
+    fun repetitionsSurviveCheckpoints() {
+        var game = assertSuccess(Game.newGame(GameOptions.checkpointedHistory(1)))
+        // A pawn move moves the history to the archive, then the knights shuffle
+        for (san in listOf("e4", "e5", "Nf3", "Nf6", "Ng1", "Ng8", "Nf3", "Nf6", "Ng1", "Ng8")) {
+            game = assertSuccess(game.makeSanMove(san))
+        }
+        assertEquals(DrawReason.THREE_FOLD_REPETITION, game.drawClaimReason)
+        assertEquals(10, game.history.size)
+        assertEquals(Fen.STANDARD_START, game.history[0].first.fen)
+    }
+}
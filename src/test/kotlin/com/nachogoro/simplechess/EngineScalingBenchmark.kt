@@ -0,0 +1,41 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+
+/**
+ * Measures the search speed of [Engine] as threads are added.
+ *
+ * Not part of the regular test run; execute with `./gradlew benchmark`.
+ */
+@Tag("benchmark")
+class EngineScalingBenchmark {
+
+    private val middlegame = "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N2N2/PP2BPPP/R2QKB1R w KQ - 0 9"
+
+    @Test
+    fun nodesPerSecondScaleWithThreads() {
+        val cores = Runtime.getRuntime().availableProcessors()
+        val position = assertSuccess(Position.fromFen(middlegame))
+
+        // Warm up the JIT
+        Engine.create(cores).use { it.search(position, SearchLimits.time(2_000)) }
+
+        var baseline = 0.0
+        var threads = 1
+        while (threads <= cores) {
+            val result = Engine.create(threads, hashSizeMb = 64).use { engine ->
+                assertSuccess(engine.search(position, SearchLimits.time(3_000)))
+            }
+            val nps = result.nodesPerSecond.toDouble()
+            if (threads == 1) baseline = nps
+            println(
+                "threads=%2d  %10.0f nodes/s  depth=%2d  speedup=%5.2f  efficiency=%3.0f%%".format(
+                    threads, nps, result.depth, nps / baseline, 100 * nps / baseline / threads
+                )
+            )
+            threads *= 2
+        }
+    }
+}
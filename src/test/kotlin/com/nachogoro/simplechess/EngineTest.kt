@@ -0,0 +1,116 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import kotlin.concurrent.thread
+
+class EngineTest {
+
+    private fun position(fen: String): Position = assertSuccess(Position.fromFen(fen))
+
+    private fun search(fen: String, limits: SearchLimits, threads: Int = 1): SearchResult =
+        Engine.create(threads, hashSizeMb = 4).use { assertSuccess(it.search(position(fen), limits)) }
+
+    @Test
+    fun findsMateInOne() {
+        val result = search("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", SearchLimits.depth(4))
+
+        assertEquals(regularMove(piece(PieceType.ROOK, Color.WHITE), square(1, 'a'), square(8, 'a')), result.bestMove)
+        assertEquals(1, result.mateIn)
+    }
+
+    @Test
+    fun seesBeingMated() {
+        // Kb8 is forced and Rh8 mates
+        val result = search("k7/8/1K6/8/8/8/8/7R b - - 0 1", SearchLimits.depth(4))
+
+        assertEquals(regularMove(piece(PieceType.KING, Color.BLACK), square(8, 'a'), square(8, 'b')), result.bestMove)
+        assertEquals(-1, result.mateIn)
+    }
+
+    @Test
+    fun winsHangingMaterial() {
+        val result = search("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1", SearchLimits.depth(3))
+
+        assertEquals(regularMove(piece(PieceType.ROOK, Color.WHITE), square(2, 'd'), square(5, 'd')), result.bestMove)
+        assertTrue(result.score > 300)
+        assertNull(result.mateIn)
+    }
+
+    @Test
+    fun principalVariationIsPlayable() {
+        val result = search(Fen.STANDARD_START, SearchLimits.depth(5))
+
+        assertEquals(5, result.depth)
+        assertEquals(result.bestMove, result.principalVariation.first())
+        var current = position(Fen.STANDARD_START)
+        for (move in result.principalVariation) {
+            val board = BoardState()
+            assertNull(Fen.parse(current.fen, board))
+            val legal = IntArray(BoardState.MAX_MOVES)
+            val count = board.generateLegalMoves(legal)
+            assertTrue(legal.take(count).contains(move.packed), "Illegal move in PV: $move")
+            board.makeMove(move.packed)
+            current = Position.fromBoard(board)
+        }
+    }
+
+    @Test
+    fun nodeLimitIsRespected() {
+        val result = search(Fen.STANDARD_START, SearchLimits.nodes(20_000))
+
+        // Threads report nodes in batches, so the limit can be overshot by a batch
+        assertTrue(result.nodes < 20_000 + 2048, "Searched ${result.nodes} nodes")
+        assertTrue(result.depth >= 1)
+    }
+
+    @Test
+    fun searchCanBeStopped() {
+        Engine.create(threads = 2, hashSizeMb = 4).use { engine ->
+            val stopper = thread {
+                Thread.sleep(200)
+                engine.stop()
+            }
+            val start = System.nanoTime()
+            val result = assertSuccess(engine.search(position(Fen.STANDARD_START)))
+            stopper.join()
+
+            assertTrue(System.nanoTime() - start < 5_000_000_000L)
+            assertTrue(result.depth >= 1)
+        }
+    }
+
+    @Test
+    fun lazySmpFindsTheSameTactics() {
+        val result = search("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1", SearchLimits.depth(6), threads = 4)
+
+        assertEquals(regularMove(piece(PieceType.ROOK, Color.WHITE), square(2, 'd'), square(5, 'd')), result.bestMove)
+    }
+
+    @Test
+    fun positionsWithoutMovesAreErrors() {
+        Engine.create(threads = 1).use { engine ->
+            assertError(engine.search(position("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1")))
+            assertError(engine.search(position("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1")))
+        }
+    }
+
+    @Test
+    fun repetitionKeysFollowTheHistory() {
+        for (options in listOf(GameOptions.DEFAULT, GameOptions.checkpointedHistory(1))) {
+            var game = assertSuccess(Game.newGame(options))
+            for (san in listOf("e4", "e5", "Nf3", "Nf6", "Ng1", "Ng8", "Nf3")) {
+                game = assertSuccess(game.makeSanMove(san))
+            }
+            val expected = game.history.takeLast(game.currentPosition.halfMoveClock)
+                .map { ZobristKeys.POLYGLOT.hash(it.first) }
+            assertEquals(5, expected.size)
+            assertEquals(expected, (game as GameImpl).repetitionKeys().toList())
+        }
+    }
+}
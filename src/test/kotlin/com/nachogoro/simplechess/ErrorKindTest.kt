@@ -0,0 +1,65 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class ErrorKindTest {
+
+    private val whitePawn = piece(PieceType.PAWN, Color.WHITE)
+
+    @Test
+    fun gameFailuresAreTyped() {
+        val game = assertSuccess(Game.newGame())
+
+        assertError(game.makeMove(regularMove(whitePawn, square(2, 'e'), square(5, 'e'))), ErrorKind.ILLEGAL_MOVE)
+        assertError(game.claimDraw(), ErrorKind.DRAW_NOT_CLAIMABLE)
+        assertError(game.undo(), ErrorKind.NO_MOVE_TO_UNDO)
+        assertError(game.parseSan("e5"), ErrorKind.ILLEGAL_MOVE)
+        assertError(game.parseSan("e9"), ErrorKind.INVALID_NOTATION)
+
+        val resigned = assertSuccess(game.resign(Color.WHITE))
+        assertError(resigned.makeMove(regularMove(whitePawn, square(2, 'e'), square(4, 'e'))), ErrorKind.GAME_CONCLUDED)
+        assertError(resigned.resign(Color.BLACK), ErrorKind.GAME_CONCLUDED)
+    }
+
+    @Test
+    fun factoryFailuresAreTyped() {
+        assertError(Game.fromFen("not a fen"), ErrorKind.INVALID_FEN)
+        assertError(Game.fromUciMoves("startpos", "e2e4 e7e9"), ErrorKind.INVALID_NOTATION)
+        assertError(Game.fromUciMoves("startpos", "e2e4 e2e4"), ErrorKind.ILLEGAL_MOVE)
+        assertError(Game.fromUciMoves("not a fen", "e2e4"), ErrorKind.INVALID_FEN)
+    }
+
+    @Test
+    fun positionAndNotationFailuresAreTyped() {
+        assertError(Position.fromFen("8/8/8/8/8/8/8/8 w - - 0 1"), ErrorKind.INVALID_FEN)
+
+        val start = assertSuccess(Position.fromFen(Fen.STANDARD_START))
+        assertError(Move.fromUci("e2", start), ErrorKind.INVALID_NOTATION)
+        assertError(Move.fromUci("e4e5", start), ErrorKind.ILLEGAL_MOVE)
+        assertError(Move.fromUci("g1h3q", start), ErrorKind.ILLEGAL_MOVE)
+
+        val session = Evaluator.DEFAULT.session(start)
+        assertError(session.push(regularMove(whitePawn, square(2, 'e'), square(5, 'e'))), ErrorKind.ILLEGAL_MOVE)
+    }
+
+    @Test
+    fun unexpectedFailuresKeepTheirCause() {
+        val failure = IllegalStateException("boom")
+        val result = ChessResult.catching<Int> { throw failure }
+
+        assertError(result)
+        val error = result as ChessResult.Error
+        assertEquals(ErrorKind.UNEXPECTED, error.kind)
+        assertSame(failure, error.cause)
+
+        // The kind survives message changes
+        val typed = ChessResult.error<Int>(ErrorKind.INVALID_DATA, "bad").mapError { "very $it" }
+        assertEquals(ChessResult.Error("very bad", null, ErrorKind.INVALID_DATA), typed)
+    }
+}
@@ -0,0 +1,121 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class EvaluatorTest {
+
+    private fun position(fen: String): Position = assertSuccess(Position.fromFen(fen))
+
+    private fun evaluate(fen: String): Double = Evaluator.DEFAULT.evaluate(position(fen))
+
+    @Test
+    fun startingPositionIsBalanced() {
+        assertEquals(0.0, evaluate(Fen.STANDARD_START))
+        assertEquals(0.0, evaluate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1"))
+    }
+
+    @Test
+    fun scoresAreFromWhitesPointOfView() {
+        val white = evaluate("4k3/8/8/8/8/8/8/3QK3 w - - 0 1")
+        assertTrue(white > 800)
+        assertEquals(white, evaluate("4k3/8/8/8/8/8/8/3QK3 b - - 0 1"))
+        // The same position with colors swapped
+        assertEquals(-white, evaluate("3qk3/8/8/8/8/8/8/4K3 w - - 0 1"))
+    }
+
+    @Test
+    fun pawnStructureIsScored() {
+        val healthy = evaluate("4k3/pp6/8/8/8/8/PP6/4K3 w - - 0 1")
+        val doubledAndIsolated = evaluate("4k3/pp6/8/8/8/P7/P7/4K3 w - - 0 1")
+        assertTrue(doubledAndIsolated < healthy)
+
+        // A passed pawn is worth more the further it is
+        assertTrue(evaluate("4k3/8/1P6/8/8/8/8/4K3 w - - 0 1") > evaluate("4k3/8/8/8/8/1P6/8/4K3 w - - 0 1"))
+    }
+
+    @Test
+    fun batchMatchesSinglePositions() {
+        val positions = listOf(
+            Fen.STANDARD_START,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "4k3/8/8/8/8/8/8/3QK3 b - - 0 1"
+        ).map { position(it) }
+
+        val scores = Evaluator.DEFAULT.evaluate(positions)
+
+        assertEquals(positions.size, scores.size)
+        positions.forEachIndexed { i, position -> assertEquals(Evaluator.DEFAULT.evaluate(position), scores[i]) }
+        assertEquals(0, Evaluator.DEFAULT.evaluate(emptyList()).size)
+    }
+
+    @Test
+    fun incrementalScoresMatchFullEvaluation() {
+        // Castling, en passant, promotions and captures within two plies
+        for (fen in listOf(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+            "8/8/8/K2pP2r/8/8/8/7k w - d6 0 1"
+        )) {
+            val root = position(fen)
+            val session = Evaluator.DEFAULT.session(root)
+            traverse(session, 2)
+            assertEquals(0, session.depth)
+            assertEquals(root.fen, session.position.fen)
+        }
+    }
+
+    private fun traverse(session: EvaluationSession, depth: Int) {
+        assertEquals(Evaluator.DEFAULT.evaluate(session.position), session.score, session.position.fen)
+        if (depth == 0) return
+        for (move in session.availableMoves) {
+            val before = session.score
+            val after = assertSuccess(session.push(move))
+            assertEquals(session.score, after)
+            traverse(session, depth - 1)
+            assertEquals(before, session.pop())
+        }
+    }
+
+    @Test
+    fun illegalPushesAreErrors() {
+        val session = Evaluator.DEFAULT.session(position(Fen.STANDARD_START))
+
+        val whitePawn = TestUtils.piece(PieceType.PAWN, Color.WHITE)
+        val blackPawn = TestUtils.piece(PieceType.PAWN, Color.BLACK)
+        assertError(session.push(TestUtils.regularMove(whitePawn, TestUtils.square(2, 'e'), TestUtils.square(5, 'e'))))
+        assertError(session.push(TestUtils.regularMove(blackPawn, TestUtils.square(7, 'e'), TestUtils.square(5, 'e'))))
+        // Legal squares with the wrong piece
+        assertError(session.push(TestUtils.regularMove(blackPawn, TestUtils.square(2, 'e'), TestUtils.square(4, 'e'))))
+        assertEquals(0, session.depth)
+        assertThrows(IllegalStateException::class.java) { session.pop() }
+    }
+
+    @Test
+    fun customEvaluatorsGetBatchAndSessions() {
+        val material = object : Evaluator {
+            override fun evaluate(position: Position): Double = position.board.values.sumOf {
+                val value = when (it.type) {
+                    PieceType.PAWN -> 1.0
+                    PieceType.KNIGHT, PieceType.BISHOP -> 3.0
+                    PieceType.ROOK -> 5.0
+                    PieceType.QUEEN -> 9.0
+                    PieceType.KING -> 0.0
+                }
+                if (it.color == Color.WHITE) value else -value
+            }
+        }
+
+        val positions = listOf(position(Fen.STANDARD_START), position("4k3/8/8/8/8/8/8/3QK3 w - - 0 1"))
+        assertEquals(listOf(0.0, 9.0), material.evaluate(positions).toList())
+
+        val session = material.session(position("4k3/8/8/8/8/8/3q4/3QK3 w - - 0 1"))
+        assertEquals(0.0, session.score)
+        val capture = session.availableMoves.single { it.to == Square.fromRankAndFile(2, 'd') && it.piece.type == PieceType.QUEEN }
+        assertEquals(9.0, assertSuccess(session.push(capture)))
+        assertEquals(0.0, session.pop())
+    }
+}
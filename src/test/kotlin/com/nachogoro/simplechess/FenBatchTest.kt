@@ -0,0 +1,101 @@
+package com.nachogoro.simplechess
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.nio.file.Files
+
+class FenBatchTest {
+
+    @Test
+    fun validLinesAreNormalized() {
+        val results = FenBatch.validate(
+            sequenceOf(
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "  r3k2r/8/8/8/8/8/8/R3K2R   b   qkQK - 3 12 "
+            )
+        ).toList()
+
+        assertEquals(2, results.size)
+        assertTrue(results.all { it.isValid })
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", results[0].normalizedFen)
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 3 12", results[1].normalizedFen)
+    }
+
+    @Test
+    fun epdRecordsAreAccepted() {
+        val results = FenBatch.validate(
+            sequenceOf(
+                "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq -",
+                "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; id \"ruy lopez\";"
+            )
+        ).toList()
+
+        for (result in results) {
+            assertEquals("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 1", result.normalizedFen)
+        }
+    }
+
+    @Test
+    fun errorsAreReportedPerLine() {
+        val results = FenBatch.validate(
+            sequenceOf(
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "5kk1/5Qr1/5Q2/5B2/8/4K3/8/8 b - - 0 1",
+                "k4n2/5n1K/8/8/8/8/8/6r1 b - - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/1NBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq d3 0 1",
+                ""
+            )
+        ).toList()
+
+        assertEquals((1L..7L).toList(), results.map { it.lineNumber })
+        assertEquals(
+            listOf(
+                null,
+                FenError.INVALID_KING_COUNT,
+                FenError.OPPONENT_IN_CHECK,
+                FenError.MALFORMED_FIELDS,
+                FenError.INCONSISTENT_CASTLING_RIGHTS,
+                FenError.INCONSISTENT_EN_PASSANT_TARGET,
+                FenError.MALFORMED_FIELDS
+            ),
+            results.map { it.error }
+        )
+        assertTrue(results.drop(1).all { it.normalizedFen == null })
+    }
+
+    @Test
+    fun largeInputKeepsOrder() {
+        val fens = listOf(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "invalid"
+        )
+        val count = 50_000
+        val results = FenBatch.validate(generateSequence(0) { it + 1 }.take(count).map { fens[it % fens.size] })
+
+        var expectedLine = 1L
+        for (result in results) {
+            assertEquals(expectedLine, result.lineNumber)
+            assertEquals(fens[((expectedLine - 1) % fens.size).toInt()], result.input)
+            assertEquals(result.input != "invalid", result.isValid)
+            expectedLine++
+        }
+        assertEquals(count + 1L, expectedLine)
+    }
+
+    @Test
+    fun validateFile() {
+        val file = Files.createTempFile("fen-batch", ".epd")
+        try {
+            Files.write(file, listOf("8/8/8/8/8/8/8/K6k w - - 0 1", "8/8/8/8/8/8/8/K6K w - - 0 1"))
+
+            val errors = FenBatch.validate(file) { results -> results.map { it.error }.toList() }
+
+            assertEquals(listOf(null, FenError.INVALID_KING_COUNT), errors)
+        } finally {
+            Files.delete(file)
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+class GameCodecTest {
+
+    private fun roundTrip(game: Game): Game = assertSuccess(GameCodec.decode(assertSuccess(GameCodec.encode(game))))
+
+    private fun assertSameGame(expected: Game, actual: Game) {
+        assertEquals(expected.gameState, actual.gameState)
+        assertEquals(expected.drawReason, actual.drawReason)
+        assertEquals(expected.currentPosition, actual.currentPosition)
+        assertEquals(expected.history, actual.history)
+    }
+
+    @Test
+    fun gameFromStartPositionUsesOneBytePerMove() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 e1g1 g8f6"))
+
+        val bytes = assertSuccess(GameCodec.encode(game))
+
+        // Version, flags and move count, then the moves
+        assertEquals(3 + 8, bytes.size)
+        assertSameGame(game, assertSuccess(GameCodec.decode(bytes)))
+    }
+
+    @Test
+    fun gameFromFenWithPromotionAndEnPassant() {
+        val game = assertSuccess(
+            Game.fromUciMoves("4k3/1P6/8/8/5p2/8/4P3/4K3 w - - 0 1", "e2e4 f4e3 b7b8n e3e2")
+        )
+
+        assertSameGame(game, roundTrip(game))
+    }
+
+    @Test
+    fun gameWithoutMoves() {
+        val game = assertSuccess(Game.newGame())
+
+        assertSameGame(game, roundTrip(game))
+    }
+
+    @Test
+    fun checkmateAndResignation() {
+        val mate = assertSuccess(Game.fromUciMoves("startpos", "f2f3 e7e5 g2g4 d8h4"))
+        val resigned = assertSuccess(assertSuccess(Game.fromUciMoves("startpos", "d2d4")).resign(Color.BLACK))
+
+        assertSameGame(mate, roundTrip(mate))
+        assertSameGame(resigned, roundTrip(resigned))
+        assertEquals(GameState.WHITE_WON, roundTrip(resigned).gameState)
+    }
+
+    @Test
+    fun drawOfferAndClaim() {
+        var game = assertSuccess(Game.newGame())
+        game = assertSuccess(game.makeSanMove("e4"))
+        game = assertSuccess(game.makeSanMove("e5", offerDraw = true))
+        game = assertSuccess(game.claimDraw())
+
+        val decoded = roundTrip(game)
+
+        assertSameGame(game, decoded)
+        assertTrue(decoded.history[1].second.offersDraw)
+        assertEquals(DrawReason.OFFERED_AND_ACCEPTED, decoded.drawReason)
+    }
+
+    @Test
+    fun gamesCanBeStreamed() {
+        val games = listOf(
+            assertSuccess(Game.fromUciMoves("startpos", "d2d4 d7d5")),
+            assertSuccess(Game.fromUciMoves("8/8/8/8/8/5k2/8/4K2q w - - 0 1", "e1d2")),
+            assertSuccess(Game.newGame())
+        )
+        val out = ByteArrayOutputStream()
+        games.forEach { assertSuccess(GameCodec.encode(it, out)) }
+
+        val decoded = GameCodec.decodeAll(ByteArrayInputStream(out.toByteArray())).map { assertSuccess(it) }.toList()
+
+        assertEquals(games.size, decoded.size)
+        games.zip(decoded).forEach { (expected, actual) -> assertSameGame(expected, actual) }
+    }
+
+    @Test
+    fun corruptDataIsRejected() {
+        val bytes = assertSuccess(GameCodec.encode(assertSuccess(Game.fromUciMoves("startpos", "e2e4"))))
+
+        // Truncated
+        assertError(GameCodec.decode(bytes.copyOf(bytes.size - 1)), ErrorKind.INVALID_DATA)
+        // Trailing data
+        assertError(GameCodec.decode(bytes + 0), ErrorKind.INVALID_DATA)
+        // Unknown version
+        assertError(GameCodec.decode(byteArrayOf(9) + bytes.copyOfRange(1, bytes.size)), ErrorKind.INVALID_DATA)
+        // Move index out of range
+        assertError(GameCodec.decode(bytes.copyOf().also { it[it.size - 1] = 100 }), ErrorKind.INVALID_DATA)
+    }
+
+    @Test
+    fun corruptHeadersAreRejectedWithoutThrowing() {
+        val corrupt = listOf(
+            byteArrayOf(),
+            byteArrayOf(1),
+            byteArrayOf(1, 0),
+            byteArrayOf(2, 0, 0),
+            // Malformed varint: more than five bytes
+            byteArrayOf(1, -1, -1, -1, -1, -1, 0),
+            // FEN longer than any position
+            byteArrayOf(1, 1, 127),
+            // FEN shorter than its length
+            byteArrayOf(1, 1, 10, 'x'.code.toByte()),
+            // Invalid FEN
+            byteArrayOf(1, 1, 3, 'x'.code.toByte(), 'y'.code.toByte(), 'z'.code.toByte(), 0),
+            // Draw offer after the last move
+            byteArrayOf(1, 2, 1, 1, 1, 0),
+            // Too few move indices
+            byteArrayOf(1, 0, 2, 0),
+            // Only 20 legal moves in the starting position
+            byteArrayOf(1, 0, 1, 20)
+        )
+        for (bytes in corrupt) {
+            val result = GameCodec.decode(bytes)
+            assertError(result, ErrorKind.INVALID_DATA)
+            assertNull((result as ChessResult.Error).cause, bytes.contentToString())
+        }
+    }
+}
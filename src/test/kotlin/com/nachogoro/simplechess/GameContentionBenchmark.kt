@@ -0,0 +1,86 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CyclicBarrier
+import kotlin.concurrent.thread
+
+/**
+ * Measures many threads reading the same [Game] at once, as a server fanning
+ * out one game to several connections does.
+ *
+ * Not part of the regular test run; execute with `./gradlew benchmark`.
+ */
+@Tag("benchmark")
+class GameContentionBenchmark {
+
+    private val threadCount = maxOf(4, Runtime.getRuntime().availableProcessors())
+    private val threads = ManagementFactory.getThreadMXBean()
+
+    @Test
+    fun readersOfFreshGamesDoNotBlock() {
+        val games = List(500) { i ->
+            assertSuccess(Game.fromUciMoves("startpos", if (i % 2 == 0) "e2e4 e7e5 g1f3" else "d2d4 d7d5"))
+        }
+
+        val (elapsed, blocked) = readConcurrently { barrier ->
+            for (game in games) {
+                // Every thread hits the first access of each property at roughly the same time
+                barrier.await()
+                game.gameState
+                game.currentPosition
+                game.availableMoves
+                game.history
+                game.drawClaimReason
+            }
+        }
+
+        println("cold reads: %d threads, %d games, %.1f ms, %d blocked monitor entries"
+            .format(threadCount, games.size, elapsed / 1e6, blocked))
+    }
+
+    @Test
+    fun readersOfInitializedGameNeverBlock() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4"))
+        game.currentPosition
+        game.availableMoves
+        game.history
+
+        val iterations = 1_000_000
+        val (elapsed, blocked) = readConcurrently { barrier ->
+            barrier.await()
+            var sink = 0
+            repeat(iterations) {
+                sink += game.gameState.ordinal + game.currentPosition.halfMoveClock +
+                    game.availableMoves.size + game.history.size
+            }
+            assertTrue(sink > 0)
+        }
+
+        println("warm reads: %d threads, %.1f M reads/s, %d blocked monitor entries"
+            .format(threadCount, threadCount * iterations * 4 / (elapsed / 1e3), blocked))
+        assertEquals(0L, blocked)
+    }
+
+    /**
+     * Runs [body] on [threadCount] threads and returns the elapsed nanoseconds and the
+     * number of times any of them blocked on a monitor.
+     */
+    private fun readConcurrently(body: (CyclicBarrier) -> Unit): Pair<Long, Long> {
+        val barrier = CyclicBarrier(threadCount)
+        val blockedCounts = LongArray(threadCount)
+        val start = System.nanoTime()
+        val workers = List(threadCount) { i ->
+            thread(name = "reader-$i") {
+                val before = threads.getThreadInfo(Thread.currentThread().id).blockedCount
+                body(barrier)
+                blockedCounts[i] = threads.getThreadInfo(Thread.currentThread().id).blockedCount - before
+            }
+        }
+        workers.forEach { it.join() }
+        return (System.nanoTime() - start) to blockedCounts.sum()
+    }
+}
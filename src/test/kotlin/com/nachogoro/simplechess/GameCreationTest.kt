@@ -83,4 +83,25 @@ class GameCreationTest {
         val gameResult = Game.fromFen("k4n2/5n1K/8/8/8/8/8/6r1 b - - 0 1")
         assertError(gameResult)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun metadataWithoutMaterialization() {
+        val start = assertSuccess(Game.newGame())
+        assertEquals(0, start.plyCount)
+        assertNull(start.lastMove)
+        assertEquals(20, start.availableMoveCount)
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", start.fen)
+
+        val game = assertSuccess(start.makeSanMove("e4").flatMap { it.makeSanMove("e5") }.flatMap { it.makeSanMove("Nf3") })
+        assertEquals(3, game.plyCount)
+        assertEquals("Nf3", game.lastMove?.algebraicNotation)
+        assertEquals(29, game.availableMoveCount)
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2", game.fen)
+
+        // Consistent with the fully decoded values
+        assertEquals(game.history.size, game.plyCount)
+        assertEquals(game.history.last().second, game.lastMove)
+        assertEquals(game.availableMoves.size, game.availableMoveCount)
+        assertEquals(game.currentPosition.fen, game.fen)
+    }
+}
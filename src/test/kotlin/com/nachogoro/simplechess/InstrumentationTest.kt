@@ -0,0 +1,100 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class InstrumentationTest {
+
+    @Test
+    fun histogramPercentiles() {
+        val histogram = HistogramInstrumentation()
+        for (nanos in 1L..1000L) histogram.onOperation(ChessOperation.MAKE_MOVE, nanos, 10)
+
+        val stats = histogram.snapshot(ChessOperation.MAKE_MOVE)
+        assertEquals(1000, stats.count)
+        assertEquals(500500, stats.totalNanos)
+        assertEquals(10000, stats.totalPayloadBytes)
+        assertEquals(1000, stats.maxNanos)
+        assertEquals(500.5, stats.meanNanos)
+
+        // Buckets span about 6% of their values
+        val median = stats.percentileNanos(50.0)
+        assertTrue(median in 500..532, "median $median")
+        val p99 = stats.percentileNanos(99.0)
+        assertTrue(p99 in 990..1000, "p99 $p99")
+        assertEquals(1, stats.percentileNanos(0.0))
+        assertEquals(1000, stats.percentileNanos(100.0))
+        assertThrows(IllegalArgumentException::class.java) { stats.percentileNanos(101.0) }
+
+        assertEquals(listOf(ChessOperation.MAKE_MOVE), histogram.snapshots().map { it.operation })
+        histogram.reset()
+        assertEquals(0, histogram.snapshot(ChessOperation.MAKE_MOVE).count)
+        assertEquals(0, histogram.snapshot(ChessOperation.MAKE_MOVE).percentileNanos(50.0))
+    }
+
+    @Test
+    fun histogramCoversLongDurations() {
+        val histogram = HistogramInstrumentation()
+        histogram.onOperation(ChessOperation.CREATE_GAME, 3_000_000_000L, 0)
+        histogram.onOperation(ChessOperation.CREATE_GAME, Long.MAX_VALUE, 0)
+
+        val stats = histogram.snapshot(ChessOperation.CREATE_GAME)
+        val median = stats.percentileNanos(50.0)
+        assertTrue(median in 3_000_000_000L..3_200_000_000L, "median $median")
+        assertEquals(Long.MAX_VALUE, stats.percentileNanos(100.0))
+    }
+
+    @Test
+    fun operationsAreReportedOnlyWhileInstalled() {
+        val recorded = mutableListOf<ChessOperation>()
+        assertSame(ChessInstrumentation.NONE, ChessInstrumentation.current)
+
+        Instrumentation.measure(ChessOperation.DECODE_FEN, 0) { }
+        ChessInstrumentation.install { operation, nanos, _ ->
+            assertTrue(nanos >= 0)
+            synchronized(recorded) { recorded.add(operation) }
+        }
+        try {
+            assertEquals(42, Instrumentation.measure(ChessOperation.DECODE_FEN, 0) { 42 })
+            // Failed operations are reported too
+            assertThrows(IllegalStateException::class.java) {
+                Instrumentation.measure(ChessOperation.DECODE_BOARD, 0) { error("failed") }
+            }
+        } finally {
+            ChessInstrumentation.install(ChessInstrumentation.NONE)
+        }
+        Instrumentation.measure(ChessOperation.DECODE_FEN, 0) { }
+
+        assertEquals(listOf(ChessOperation.DECODE_FEN, ChessOperation.DECODE_BOARD), recorded)
+        assertSame(ChessInstrumentation.NONE, ChessInstrumentation.current)
+    }
+
+    @Test
+    fun nativeCallsAndDecodingAreReported() {
+        val histogram = HistogramInstrumentation()
+        ChessInstrumentation.install(histogram)
+        try {
+            val game = assertSuccess(Game.newGame())
+            val next = assertSuccess(game.makeMove(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(4, 'e'))))
+            next.fen
+            next.history[0]
+            next.currentPosition.activeColor
+            next.currentPosition.halfMoveClock
+        } finally {
+            ChessInstrumentation.install(ChessInstrumentation.NONE)
+        }
+
+        assertEquals(1, histogram.snapshot(ChessOperation.CREATE_GAME).count)
+        assertEquals(1, histogram.snapshot(ChessOperation.MAKE_MOVE).count)
+        assertEquals(1, histogram.snapshot(ChessOperation.DECODE_MOVES).count)
+        assertEquals(1, histogram.snapshot(ChessOperation.DECODE_FEN).count)
+        assertEquals(1, histogram.snapshot(ChessOperation.DECODE_HISTORY_ENTRY).count)
+        // Creating both games, then reading the fields of the current position once
+        assertEquals(3, histogram.snapshot(ChessOperation.READ_FIELDS).count)
+        assertTrue(histogram.snapshot(ChessOperation.DECODE_MOVES).totalPayloadBytes > 0)
+    }
+}
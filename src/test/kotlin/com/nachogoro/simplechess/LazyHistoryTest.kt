@@ -0,0 +1,72 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class LazyHistoryTest {
+
+    private val move = PlayedMove(
+        TestUtils.regularMove(TestUtils.piece(PieceType.KNIGHT, Color.WHITE), TestUtils.square(1, 'g'), TestUtils.square(3, 'f')),
+        false, null, CheckType.NONE, false, "Nf3", false
+    )
+
+    /** History whose entry `i` has `i` as half move clock, counting the entries decoded. */
+    private class CountingHistory(size: Int, move: PlayedMove) {
+        val decoded = mutableListOf<Int>()
+        val list = LazyHistory(size) { index ->
+            decoded.add(index)
+            assertSuccess(Position.fromFen("4k3/8/8/8/8/8/8/4K3 w - - $index 1")) to move
+        }
+    }
+
+    @Test
+    fun entriesAreDecodedOnAccess() {
+        val history = CountingHistory(500, move)
+
+        assertEquals(500, history.list.size)
+        assertTrue(history.decoded.isEmpty())
+
+        assertEquals(250, history.list[250].first.halfMoveClock)
+        assertEquals(250, history.list[250].first.halfMoveClock)
+        assertEquals(499, history.list.last().first.halfMoveClock)
+        assertEquals(listOf(250, 499), history.decoded)
+    }
+
+    @Test
+    fun cacheIsBounded() {
+        val history = CountingHistory(500, move)
+
+        history.list.forEach { }
+        history.list.forEach { }
+
+        // Every entry is decoded again: a full pass evicts all of them
+        assertEquals(1000, history.decoded.size)
+    }
+
+    @Test
+    fun viewsOnlyDecodeWhatTheyVisit() {
+        val history = CountingHistory(300, move)
+
+        val window = history.list.subList(100, 110)
+        assertEquals(10, window.size)
+        assertTrue(history.decoded.isEmpty())
+        assertEquals((100 until 110).toList(), window.map { it.first.halfMoveClock })
+
+        history.decoded.clear()
+        assertEquals(listOf(299, 298, 297), history.list.asReversed().take(3).map { it.first.halfMoveClock })
+        assertEquals(listOf(299, 298, 297), history.decoded)
+    }
+
+    @Test
+    fun behavesAsAList() {
+        val history = CountingHistory(3, move)
+        val expected = (0 until 3).map { assertSuccess(Position.fromFen("4k3/8/8/8/8/8/8/4K3 w - - $it 1")) to move }
+
+        assertEquals(expected, history.list)
+        assertEquals(expected.hashCode(), history.list.hashCode())
+        assertThrows(IndexOutOfBoundsException::class.java) { history.list[3] }
+        assertThrows(IndexOutOfBoundsException::class.java) { history.list[-1] }
+        assertTrue(LazyHistory(0) { throw AssertionError() }.isEmpty())
+    }
+}
@@ -605,4 +605,88 @@ class MoveAvailabilityTest {
         assertEquals(0, enPassantMoves.size, "Should not have en passant move when it would leave king in check")
     }
 
-}
\ No newline at end of file
+    @Test
+    fun movesForPieceComeFromTheIndex() {
+        val game = assertSuccess(Game.newGame())
+
+        assertEquals(
+            setOf(square(3, 'a'), square(3, 'c')),
+            game.availableMovesForPiece(square(1, 'b')).map { it.to }.toSet()
+        )
+        assertTrue(game.availableMovesForPiece(square(1, 'a')).isEmpty())
+        assertTrue(game.availableMovesForPiece(square(4, 'e')).isEmpty())
+        assertTrue(game.availableMovesForPiece(square(7, 'e')).isEmpty())
+    }
+
+    @Test
+    fun legalityAndLookup() {
+        val game = assertSuccess(Game.newGame())
+
+        assertTrue(game.isLegal(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(4, 'e'))))
+        assertFalse(game.isLegal(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(5, 'e'))))
+        // Right squares, wrong piece
+        assertFalse(game.isLegal(regularMove(piece(PieceType.QUEEN, Color.WHITE), square(2, 'e'), square(4, 'e'))))
+
+        assertEquals(
+            regularMove(piece(PieceType.KNIGHT, Color.WHITE), square(1, 'g'), square(3, 'f')),
+            game.findMove(square(1, 'g'), square(3, 'f'))
+        )
+        assertNull(game.findMove(square(1, 'g'), square(3, 'g')))
+        assertNull(game.findMove(square(2, 'e'), square(4, 'e'), PieceType.QUEEN))
+    }
+
+    @Test
+    fun promotionLookup() {
+        val game = assertSuccess(Game.fromFen("7k/P7/8/8/8/8/8/K7 w - - 0 1"))
+
+        assertEquals(
+            promotionMove(piece(PieceType.PAWN, Color.WHITE), square(7, 'a'), square(8, 'a'), PieceType.KNIGHT),
+            game.findMove(square(7, 'a'), square(8, 'a'), PieceType.KNIGHT)
+        )
+        // A promotion needs its piece type
+        assertNull(game.findMove(square(7, 'a'), square(8, 'a')))
+    }
+
+    @Test
+    fun illegalMovesAreRejected() {
+        val game = assertSuccess(Game.newGame())
+        val move = regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(5, 'e'))
+
+        assertFalse(game.isLegal(move))
+        assertTrue(game.makeMove(move).isError)
+        assertTrue(game.makeMove(move, offerDraw = true).isError)
+    }
+
+    @Test
+    fun successorsMatchMakeMove() {
+        // Castling, en passant and promotions
+        for (fen in listOf(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+            "8/8/8/K2pP2r/8/8/8/7k w - d6 0 1"
+        )) {
+            val game = assertSuccess(Game.fromFen(fen))
+            val successors = game.successors()
+            val positions = game.successorPositions()
+
+            assertEquals(game.availableMoves, successors.map { it.first })
+            assertEquals(game.availableMoves, positions.map { it.first })
+            successors.forEachIndexed { i, (move, child) ->
+                val expected = assertSuccess(game.makeMove(move))
+                assertEquals(expected.fen, child.fen)
+                assertEquals(expected.lastMove, child.lastMove)
+                assertEquals(expected.availableMoves, child.availableMoves)
+                assertEquals(expected.currentPosition, positions[i].second)
+                assertEquals(expected.currentPosition.checkStatus, positions[i].second.checkStatus)
+            }
+        }
+    }
+
+    @Test
+    fun concludedGamesHaveNoSuccessors() {
+        val game = assertSuccess(assertSuccess(Game.newGame()).resign(Color.WHITE))
+
+        assertTrue(game.successors().isEmpty())
+        assertTrue(game.successorPositions().isEmpty())
+    }
+}
@@ -0,0 +1,137 @@
+package com.nachogoro.simplechess
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+/**
+ * Verifies the pure-Kotlin move generator against well-known perft node counts.
+ */
+class MoveGenerationTest {
+
+    private fun perft(board: BoardState, depth: Int): Long {
+        val moves = IntArray(BoardState.MAX_MOVES)
+        val count = board.generateLegalMoves(moves)
+        if (depth == 1) return count.toLong()
+        var nodes = 0L
+        for (i in 0 until count) {
+            board.makeMove(moves[i])
+            nodes += perft(board, depth - 1)
+            board.unmakeMove(moves[i])
+        }
+        return nodes
+    }
+
+    private fun perft(fen: String, depth: Int): Long {
+        val board = BoardState()
+        assertNull(Fen.parse(fen, board))
+        val nodes = perft(board, depth)
+        // Traversal must leave the board untouched
+        assertEquals(fen, Fen.format(board))
+        return nodes
+    }
+
+    @Test
+    fun startingPosition() {
+        val fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+        assertEquals(20L, perft(fen, 1))
+        assertEquals(400L, perft(fen, 2))
+        assertEquals(8902L, perft(fen, 3))
+        assertEquals(197281L, perft(fen, 4))
+    }
+
+    @Test
+    fun castlingAndPinsPosition() {
+        val fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+        assertEquals(48L, perft(fen, 1))
+        assertEquals(2039L, perft(fen, 2))
+        assertEquals(97862L, perft(fen, 3))
+    }
+
+    @Test
+    fun enPassantAndDiscoveredChecksPosition() {
+        val fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+        assertEquals(14L, perft(fen, 1))
+        assertEquals(191L, perft(fen, 2))
+        assertEquals(2812L, perft(fen, 3))
+        assertEquals(43238L, perft(fen, 4))
+    }
+
+    @Test
+    fun promotionsPosition() {
+        val fen = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"
+        assertEquals(6L, perft(fen, 1))
+        assertEquals(264L, perft(fen, 2))
+        assertEquals(9467L, perft(fen, 3))
+    }
+
+    @Test
+    fun checksAndPromotionsPosition() {
+        val fen = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+        assertEquals(44L, perft(fen, 1))
+        assertEquals(1486L, perft(fen, 2))
+        assertEquals(62379L, perft(fen, 3))
+    }
+
+    @Test
+    fun legalMovesMatchNativeLibrary() {
+        val fens = listOf(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "7k/8/8/PpP5/8/7K/8/8 w - b6 0 1",
+            "2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1"
+        )
+        for (fen in fens) {
+            val board = BoardState()
+            assertNull(Fen.parse(fen, board))
+            val moves = IntArray(BoardState.MAX_MOVES)
+            val count = board.generateLegalMoves(moves)
+            val kotlinMoves = (0 until count).map { moveOf(board, moves[it]).toUci() }.toSet()
+            val nativeMoves = TestUtils.assertSuccess(Game.fromFen(fen)).availableMoves.map { it.toUci() }.toSet()
+            assertEquals(nativeMoves, kotlinMoves, fen)
+        }
+    }
+
+    @Test
+    fun zobristKeyIsKeptUpToDate() {
+        val fens = listOf(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"
+        )
+        for (fen in fens) {
+            val board = BoardState()
+            assertNull(Fen.parse(fen, board))
+            checkKeys(board, 3)
+            assertEquals(ZobristKeys.POLYGLOT.computeHash(board), board.zobristKey, fen)
+        }
+    }
+
+    private fun checkKeys(board: BoardState, depth: Int) {
+        assertEquals(ZobristKeys.POLYGLOT.computeHash(board), board.zobristKey)
+        if (depth == 0) return
+        val moves = IntArray(BoardState.MAX_MOVES)
+        val count = board.generateLegalMoves(moves)
+        for (i in 0 until count) {
+            board.makeMove(moves[i])
+            checkKeys(board, depth - 1)
+            board.unmakeMove(moves[i])
+        }
+        if (!board.isInCheck(board.activeColor)) {
+            board.makeNullMove()
+            assertEquals(ZobristKeys.POLYGLOT.computeHash(board), board.zobristKey)
+            board.unmakeNullMove()
+        }
+    }
+
+    private fun moveOf(board: BoardState, move: Int): Move {
+        val from = BoardState.moveFrom(move)
+        val piece = BoardState.piece(board.squares[from])
+        val promotion = BoardState.movePromotion(move)
+        val to = Square.fromIndex(BoardState.moveTo(move))
+        return if (promotion == 0) {
+            Move.regularMove(piece, Square.fromIndex(from), to)
+        } else {
+            Move.pawnPromotion(piece, Square.fromIndex(from), to, PieceType.entries[promotion - 1])
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.promotionMove
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.random.Random
+
+class OpeningBookTest {
+
+    private val corpus = """
+        [Event "One"]
+        [Result "1-0"]
+
+        1. e4 e5 2. Nf3 Nc6 3. Bb5 1-0
+
+        [Event "Two"]
+        [Result "1/2-1/2"]
+
+        1. e4 c5 {Sicilian} 2. Nf3 1/2-1/2
+
+        [Event "Three"]
+        [Result "0-1"]
+
+        1. d4 d5 0-1
+    """.trimIndent()
+
+    private fun withBook(pgn: String, maxPly: Int = OpeningBookWriter.DEFAULT_MAX_PLY, block: (OpeningBook) -> Unit) {
+        val path = Files.createTempFile("book", ".bin")
+        try {
+            val writer = OpeningBookWriter(maxPly)
+            writer.addPgn(pgn.lineSequence())
+            writer.write(path)
+            OpeningBook.open(path).use(block)
+        } finally {
+            Files.delete(path)
+        }
+    }
+
+    private fun position(fen: String): Position = assertSuccess(Position.fromFen(fen))
+
+    @Test
+    fun movesAreWeightedByResult() = withBook(corpus) { book ->
+        val moves = book.lookup(position(Fen.STANDARD_START))
+
+        // e4: win (2) + draw (1), d4: loss (0)
+        assertEquals(2, moves.size)
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(4, 'e')), moves[0].move)
+        assertEquals(3, moves[0].weight)
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'd'), square(4, 'd')), moves[1].move)
+        assertEquals(0, moves[1].weight)
+    }
+
+    @Test
+    fun unknownPositionHasNoMoves() = withBook(corpus) { book ->
+        assertEquals(emptyList<BookMove>(), book.lookup(position("4k3/8/8/8/8/8/8/4K3 w - - 0 1")))
+        assertNull(book.pick(position("4k3/8/8/8/8/8/8/4K3 w - - 0 1")))
+    }
+
+    @Test
+    fun pickFollowsWeights() = withBook(corpus) { book ->
+        val random = Random(42)
+        val start = position(Fen.STANDARD_START)
+
+        // d4 has weight 0 and is never picked
+        repeat(100) {
+            assertEquals(square(4, 'e'), book.pick(start, random)?.to)
+        }
+    }
+
+    @Test
+    fun maxPlyLimitsTheBook() = withBook(corpus, maxPly = 1) { book ->
+        assertEquals(2, book.entryCount)
+        assertEquals(
+            emptyList<BookMove>(),
+            book.lookup(position("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1"))
+        )
+    }
+
+    @Test
+    fun castlingAndPromotion() {
+        val pgn = """
+            [FEN "r3k2r/P7/8/8/8/8/8/R3K2R w KQkq - 0 1"]
+
+            1. O-O O-O-O 2. a8=N *
+        """.trimIndent()
+
+        withBook(pgn) { book ->
+            assertEquals(
+                listOf(regularMove(piece(PieceType.KING, Color.WHITE), square(1, 'e'), square(1, 'g'))),
+                book.lookup(position("r3k2r/P7/8/8/8/8/8/R3K2R w KQkq - 0 1")).map { it.move }
+            )
+            assertEquals(
+                listOf(regularMove(piece(PieceType.KING, Color.BLACK), square(8, 'e'), square(8, 'c'))),
+                book.lookup(position("r3k2r/P7/8/8/8/8/8/R4RK1 b kq - 1 1")).map { it.move }
+            )
+            assertEquals(
+                listOf(promotionMove(piece(PieceType.PAWN, Color.WHITE), square(7, 'a'), square(8, 'a'), PieceType.KNIGHT)),
+                book.lookup(position("2kr3r/P7/8/8/8/8/8/R4RK1 w - - 2 2")).map { it.move }
+            )
+        }
+    }
+
+    @Test
+    fun invalidBookIsRejected() {
+        val path: Path = Files.createTempFile("book", ".bin")
+        try {
+            Files.write(path, ByteArray(15))
+            assertThrows(IOException::class.java) { OpeningBook.open(path) }
+        } finally {
+            Files.delete(path)
+        }
+    }
+
+    @Test
+    fun customKeysMustMatchPolyglotLayout() {
+        assertThrows(IllegalArgumentException::class.java) { ZobristKeys.of(LongArray(780)) }
+        assertNotNull(ZobristKeys.of(LongArray(ZobristKeys.KEY_COUNT) { it.toLong() }))
+    }
+
+    @Test
+    fun polyglotKeysMatchReferenceHashes() {
+        // Test vectors of the Polyglot book format specification
+        val expected = mapOf(
+            Fen.STANDARD_START to 0x463b96181691fc9cuL,
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1" to 0x823c9b50fd114196uL,
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2" to 0x0756b94461c50fb0uL,
+            "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2" to 0x662fafb965db29d4uL,
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3" to 0x22a48b5a8e47ff78uL,
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3" to 0x652a607ca3f242c1uL,
+            "rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4" to 0x00fdd303c946bdd9uL,
+            "rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3" to 0x3c8123ea7b067637uL,
+            "rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4" to 0x5c3f9b829b279560uL
+        )
+        for ((fen, hash) in expected) {
+            assertEquals(hash.toLong(), ZobristKeys.POLYGLOT.hash(position(fen)), fen)
+        }
+    }
+
+    @Test
+    fun incrementalKeysMatchReferenceHashes() {
+        // The same test vectors, reached by playing the moves on a board
+        val board = BoardState()
+        assertNull(Fen.parse(Fen.STANDARD_START, board))
+        val line = listOf(
+            12 to 28 to 0x823c9b50fd114196uL, // e2e4
+            51 to 35 to 0x0756b94461c50fb0uL, // d7d5
+            28 to 36 to 0x662fafb965db29d4uL, // e4e5
+            53 to 37 to 0x22a48b5a8e47ff78uL, // f7f5
+            4 to 12 to 0x652a607ca3f242c1uL, // e1e2
+            60 to 53 to 0x00fdd303c946bdd9uL // e8f7
+        )
+        for ((move, hash) in line) {
+            board.makeMove(BoardState.packMove(move.first, move.second, 0))
+            assertEquals(hash.toLong(), board.zobristKey)
+        }
+
+        assertNull(Fen.parse(Fen.STANDARD_START, board))
+        // a2a4 b7b5 h2h4 b5b4 c2c4, then b4xc3 en passant and a1a3
+        for ((from, to) in listOf(8 to 24, 49 to 33, 15 to 31, 33 to 25, 10 to 26)) {
+            board.makeMove(BoardState.packMove(from, to, 0))
+        }
+        assertEquals(0x3c8123ea7b067637L, board.zobristKey)
+        board.makeMove(BoardState.packMove(25, 18, 0))
+        board.makeMove(BoardState.packMove(0, 16, 0))
+        assertEquals(0x5c3f9b829b279560L, board.zobristKey)
+    }
+}
@@ -0,0 +1,65 @@
+package com.nachogoro.simplechess
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class PgnTokenizerTest {
+
+    @Test
+    fun moveNumbersAndGlyphsAreSkipped() {
+        val tokenizer = PgnTokenizer()
+
+        assertEquals(
+            listOf("e4", "e5", "Nf3", "Nc6", "Bb5", "a6"),
+            tokenizer.tokens("1. e4 e5 2.Nf3 \$1 Nc6 3. Bb5 3... a6")
+        )
+        assertFalse(tokenizer.isFinished)
+    }
+
+    @Test
+    fun commentsAndVariationsAreSkippedAcrossLines() {
+        val tokenizer = PgnTokenizer()
+
+        assertEquals(listOf("e4"), tokenizer.tokens("1. e4 {best by"))
+        assertEquals(listOf("c5"), tokenizer.tokens("test} c5 (1... e5 2. Nf3 (2. f4"))
+        assertEquals(listOf("Nf3"), tokenizer.tokens("exf4)) 2. Nf3 ; Open Sicilian next"))
+        assertEquals(emptyList<String>(), tokenizer.tokens("% escaped 3. d4"))
+    }
+
+    @Test
+    fun resultEndsTheGame() {
+        val tokenizer = PgnTokenizer()
+
+        assertEquals(listOf("O-O", "0-0-0"), tokenizer.tokens("14. O-O 0-0-0 1/2-1/2 1. e4"))
+        assertTrue(tokenizer.isFinished)
+        assertEquals("1/2-1/2", tokenizer.result)
+        assertEquals(emptyList<String>(), tokenizer.tokens("2. d4"))
+    }
+
+    @Test
+    fun resetStartsANewGame() {
+        val tokenizer = PgnTokenizer()
+        tokenizer.tokens("1. e4 {unfinished comment")
+
+        tokenizer.reset()
+
+        assertFalse(tokenizer.isFinished)
+        assertNull(tokenizer.result)
+        assertEquals(listOf("d4", "d5"), tokenizer.tokens("1. d4 d5 *"))
+        assertEquals("*", tokenizer.result)
+    }
+
+    @Test
+    fun drawOfferStaysWithTheMove() {
+        assertEquals(listOf("Qxd8+(=)", "Kxd8"), PgnTokenizer().tokens("20. Qxd8+(=) Kxd8"))
+    }
+
+    @Test
+    fun tagPairs() {
+        assertTrue(PgnTokenizer.isTagLine("  [Event \"Casual\"]"))
+        assertFalse(PgnTokenizer.isTagLine("1. e4"))
+        assertEquals("FEN" to "8/8/8/8/8/8/8/K1k5 w - - 0 1", PgnTokenizer.parseTag("[FEN \"8/8/8/8/8/8/8/K1k5 w - - 0 1\"]"))
+        assertEquals("Site" to "The \"Club\"", PgnTokenizer.parseTag("[Site \"The \\\"Club\\\"\"]"))
+        assertNull(PgnTokenizer.parseTag("[Event]"))
+    }
+}
@@ -0,0 +1,154 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class PositionFenParsingTest {
+
+    @Test
+    fun startingPosition() {
+        val position = assertSuccess(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"))
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", position.fen)
+        assertEquals(Color.WHITE, position.activeColor)
+        assertEquals(CastlingRight.entries.toSet(), position.castlingRights)
+        assertNull(position.enPassantTarget)
+        assertEquals(0, position.halfMoveClock)
+        assertEquals(1, position.fullMoveNumber)
+        assertEquals(CheckType.NONE, position.checkStatus)
+        assertEquals(32, position.board.size)
+        assertEquals(piece(PieceType.KING, Color.WHITE), position.board[square(1, 'e')])
+        assertEquals(piece(PieceType.QUEEN, Color.BLACK), position.board[square(8, 'd')])
+    }
+
+    @Test
+    fun fieldsAreParsed() {
+        val position = assertSuccess(Position.fromFen("rnbqkbnr/pppp1ppp/8/4pP2/8/8/PPPP1PPP/RNBQKBNR w Kq e6 3 17"))
+
+        assertEquals(Color.WHITE, position.activeColor)
+        assertEquals(setOf(CastlingRight.WHITE_KING_SIDE, CastlingRight.BLACK_QUEEN_SIDE), position.castlingRights)
+        assertEquals(square(6, 'e'), position.enPassantTarget)
+        assertEquals(3, position.halfMoveClock)
+        assertEquals(17, position.fullMoveNumber)
+    }
+
+    @Test
+    fun fenIsNormalized() {
+        val position = assertSuccess(Position.fromFen("  r3k2r/8/8/8/8/8/8/R3K2R   b   qkQK - 0 1 "))
+
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", position.fen)
+    }
+
+    @Test
+    fun checkIsDetected() {
+        val position = assertSuccess(Position.fromFen("4k3/8/8/8/8/8/8/4R2K b - - 0 1"))
+
+        assertEquals(CheckType.CHECK, position.checkStatus)
+        assertTrue(position.isInCheck)
+    }
+
+    @Test
+    fun checkmateIsDetected() {
+        val position = assertSuccess(Position.fromFen("6kr/5Q1p/3N2p1/8/8/4K3/8/8 b - - 0 1"))
+
+        assertEquals(CheckType.CHECKMATE, position.checkStatus)
+        assertTrue(position.isInCheckmate)
+    }
+
+    @Test
+    fun stalemateIsNotCheck() {
+        val position = assertSuccess(Position.fromFen("7k/5Qr1/5Q2/5B2/8/4K3/8/8 b - - 0 1"))
+
+        assertEquals(CheckType.NONE, position.checkStatus)
+    }
+
+    @Test
+    fun wrongKingCountIsRejected() {
+        assertError(Position.fromFen("5kk1/5Qr1/5Q2/5B2/8/4K3/8/8 b - - 0 1"))
+        assertError(Position.fromFen("8/5Qr1/5Q2/5B2/8/4K3/8/8 b - - 0 1"))
+    }
+
+    @Test
+    fun sideNotToMoveInCheckIsRejected() {
+        assertError(Position.fromFen("k4n2/5n1K/8/8/8/8/8/6r1 b - - 0 1"))
+    }
+
+    @Test
+    fun malformedFenIsRejected() {
+        // Wrong number of fields
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0"))
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 1"))
+        // Wrong number of ranks or squares in a rank
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"))
+        assertError(Position.fromFen("rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"))
+        assertError(Position.fromFen("rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"))
+        // Unknown piece
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1"))
+        // Pawn on the last rank
+        assertError(Position.fromFen("rnbqkbnP/pppppppp/8/8/8/8/PPPPPPP1/RNBQKBNR w KQkq - 0 1"))
+        // Active color
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1"))
+        // Castling rights
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KKq - 0 1"))
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1"))
+        // En passant target on the wrong rank for the active color
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e6 0 1"))
+        // Counters
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - -1 1"))
+        assertError(Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0"))
+        assertError(Position.fromFen(""))
+    }
+
+    @Test
+    fun matchesNativePosition() {
+        val fens = listOf(
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "8/pB1K4/7N/8/1RnP1P1q/4P3/4k3/8 b - - 15 26",
+            "r3k1K1/1q6/8/8/8/8/8/8 b q - 0 1",
+            "6kr/5Q1p/3N2p1/8/8/4K3/8/8 b - - 0 1"
+        )
+        for (fen in fens) {
+            val native = assertSuccess(Game.fromFen(fen)).currentPosition
+            val parsed = assertSuccess(Position.fromFen(fen))
+            assertEquals(native, parsed)
+            // Equality only compares FENs, so check the fields decoded from each source
+            assertEquals(native.activeColor, parsed.activeColor)
+            assertEquals(native.castlingRights, parsed.castlingRights)
+            assertEquals(native.enPassantTarget, parsed.enPassantTarget)
+            assertEquals(native.halfMoveClock, parsed.halfMoveClock)
+            assertEquals(native.fullMoveNumber, parsed.fullMoveNumber)
+            assertEquals(native.checkStatus, parsed.checkStatus)
+            assertEquals(native.board, parsed.board)
+        }
+    }
+
+    @Test
+    fun positionsAreEqualByFen() {
+        val position = assertSuccess(Position.fromFen("  r3k2r/8/8/8/8/8/8/R3K2R   b   qkQK - 0 1 "))
+        val same = assertSuccess(Position.fromFen("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1"))
+        val other = assertSuccess(Position.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"))
+
+        assertEquals(position, same)
+        assertEquals(position.hashCode(), same.hashCode())
+        assertNotEquals(position, other)
+    }
+
+    @Test
+    fun positionsCanBeDestructured() {
+        val (fen, activeColor, castlingRights, enPassantTarget, halfMoveClock, fullMoveNumber, checkStatus, board) =
+            assertSuccess(Position.fromFen("rnbqkbnr/pppp1ppp/8/4pP2/8/8/PPPP1PPP/RNBQKBNR w Kq e6 3 17"))
+
+        assertEquals("rnbqkbnr/pppp1ppp/8/4pP2/8/8/PPPP1PPP/RNBQKBNR w Kq e6 3 17", fen)
+        assertEquals(Color.WHITE, activeColor)
+        assertEquals(setOf(CastlingRight.WHITE_KING_SIDE, CastlingRight.BLACK_QUEEN_SIDE), castlingRights)
+        assertEquals(square(6, 'e'), enPassantTarget)
+        assertEquals(3, halfMoveClock)
+        assertEquals(17, fullMoveNumber)
+        assertEquals(CheckType.NONE, checkStatus)
+        assertEquals(32, board.size)
+    }
+}
@@ -0,0 +1,107 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.nio.file.Files
+import java.nio.file.Path
+
+class PositionIndexTest {
+
+    private fun hash(fen: String): Long {
+        val board = BoardState()
+        assertNull(Fen.parse(fen, board))
+        return ZobristKeys.POLYGLOT.hash(board)
+    }
+
+    private fun withDirectory(block: (Path) -> Unit) {
+        val directory = Files.createTempDirectory("position-index")
+        try {
+            block(directory)
+        } finally {
+            directory.toFile().deleteRecursively()
+        }
+    }
+
+    @Test
+    fun transpositionsHaveTheSameHash() {
+        val board = BoardState()
+        assertNull(Fen.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board))
+        val viaKnightFirst = board.copy().apply {
+            for (uci in listOf("g1f3", "g8f6", "b1c3")) makeMove(UciNotation.decode(uci, 0, uci.length))
+        }
+        val viaKnightSecond = board.copy().apply {
+            for (uci in listOf("b1c3", "g8f6", "g1f3")) makeMove(UciNotation.decode(uci, 0, uci.length))
+        }
+
+        assertEquals(ZobristKeys.POLYGLOT.hash(viaKnightFirst), ZobristKeys.POLYGLOT.hash(viaKnightSecond))
+        assertNotEquals(ZobristKeys.POLYGLOT.hash(board), ZobristKeys.POLYGLOT.hash(viaKnightFirst))
+    }
+
+    @Test
+    fun hashIgnoresMoveCountersButNotState() {
+        val fen = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"
+
+        assertEquals(hash(fen), hash("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 12 40"))
+        assertNotEquals(hash(fen), hash("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1"))
+        assertNotEquals(hash(fen), hash("r3k2r/8/8/8/8/8/8/R3K2R w Kkq - 0 1"))
+    }
+
+    @Test
+    fun enPassantTargetOnlyCountsIfCapturable() {
+        // No black pawn can capture on e3
+        assertEquals(
+            hash("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1"),
+            hash("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1")
+        )
+        // The pawn on d4 can
+        assertNotEquals(
+            hash("4k3/8/8/8/3pP3/8/8/4K3 b - - 0 1"),
+            hash("4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1")
+        )
+    }
+
+    @Test
+    fun emptyIndex() = withDirectory { directory ->
+        PositionIndex.open(directory).use { index ->
+            assertEquals(0, index.postingCount)
+            assertEquals(emptyList<PositionHit>(), index.lookup(hash("4k3/8/8/8/8/8/8/4K3 w - - 0 1")))
+        }
+    }
+
+    @Test
+    fun gamesAreFoundByPosition() = withDirectory { directory ->
+        val ruyLopez = assertSuccess(Game.fromUciMoves("startpos", "e2e4 e7e5 g1f3 b8c6 f1b5"))
+        val italian = assertSuccess(Game.fromUciMoves("startpos", "e2e4 e7e5 g1f3 b8c6 f1c4"))
+        val transposed = assertSuccess(Game.fromUciMoves("startpos", "g1f3 b8c6 e2e4 e7e5"))
+
+        PositionIndexWriter.open(directory).use { writer ->
+            writer.add(1, ruyLopez)
+            writer.add(2, italian)
+            writer.add(3, transposed)
+        }
+
+        PositionIndex.open(directory).use { index ->
+            assertEquals(6L + 6L + 5L, index.postingCount)
+            assertEquals(listOf(PositionHit(1, 5)), index.lookup(ruyLopez))
+            assertEquals(
+                setOf(PositionHit(1, 4), PositionHit(2, 4), PositionHit(3, 4)),
+                index.lookup(transposed).toSet()
+            )
+            assertEquals(3, index.lookup(assertSuccess(Game.newGame())).size)
+        }
+    }
+
+    @Test
+    fun segmentsCanBeAppended() = withDirectory { directory ->
+        val game = assertSuccess(Game.fromUciMoves("startpos", "d2d4 d7d5 c2c4"))
+
+        PositionIndexWriter.open(directory, maxBufferedPostings = 3).use { writer -> writer.add(1, game) }
+        PositionIndexWriter.open(directory).use { writer -> writer.add(2, game) }
+
+        assertEquals(3, PositionIndex.segmentPaths(directory).size)
+        PositionIndex.open(directory).use { index ->
+            assertEquals(listOf(PositionHit(1, 3), PositionHit(2, 3)), index.lookup(game))
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ReplayExecutorTest {
+
+    private val scholarsMate = "e2e4 e7e5 f1c4 b8c6 d1h5 g8f6 h5f7"
+
+    @Test
+    fun replaysEveryJob() {
+        val jobs = (0 until 100).map { ReplayJob.fromStartPosition(if (it % 2 == 0) scholarsMate else "e2e4") }
+
+        val results = ReplayExecutor.create(maxConcurrency = 4).use { it.replay(jobs.asSequence()).toList() }
+
+        assertEquals(100, results.size)
+        assertEquals((0L until 100L).toSet(), results.map { it.index }.toSet())
+        for (result in results) {
+            assertSame(jobs[result.index.toInt()], result.job)
+            val game = assertSuccess(result.result)
+            val expectedState = if (result.index % 2 == 0L) GameState.WHITE_WON else GameState.PLAYING
+            assertEquals(expectedState, game.gameState)
+        }
+    }
+
+    @Test
+    fun summariesDescribeFinalGame() {
+        val jobs = sequenceOf(
+            ReplayJob.fromStartPosition(scholarsMate),
+            ReplayJob("8/8/8/8/8/5k2/8/4K2q w - - 0 1", "e1d2")
+        )
+
+        val summaries = ReplayExecutor.create().use { executor ->
+            executor.summarize(jobs).sortedBy { it.index }.map { assertSuccess(it.result) }.toList()
+        }
+
+        assertEquals(
+            ReplaySummary("r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4", GameState.WHITE_WON, null, 7),
+            summaries[0]
+        )
+        assertEquals(GameState.PLAYING, summaries[1].gameState)
+        assertEquals(1, summaries[1].plyCount)
+    }
+
+    @Test
+    fun failedJobsDoNotStopTheStream() {
+        val jobs = sequenceOf(
+            ReplayJob.fromStartPosition("e2e4 e2e4"),
+            ReplayJob("not a fen", "e2e4"),
+            ReplayJob.fromStartPosition("d2d4")
+        )
+
+        val results = ReplayExecutor.create(maxConcurrency = 2).use { it.replay(jobs).sortedBy { r -> r.index }.toList() }
+
+        assertTrue(results[0].result.isError)
+        assertTrue(results[1].result.isError)
+        assertTrue(results[2].result.isSuccess)
+    }
+
+    @Test
+    fun exceptionsInTransformAreReportedAsErrors() {
+        val results = ReplayExecutor.create().use { executor ->
+            executor.replay(sequenceOf(ReplayJob.fromStartPosition("e2e4"))) { error("boom") }.toList()
+        }
+
+        assertEquals(1, results.size)
+        assertTrue(results[0].result.isError)
+    }
+
+    @Test
+    fun closingResultsCancelsJobsInFlight() {
+        val started = AtomicInteger()
+        val interrupted = CountDownLatch(3)
+
+        ReplayExecutor.createWithPlatformThreads(4).use { executor ->
+            val jobs = generateSequence { ReplayJob.fromStartPosition("e2e4") }
+            // Only the first job completes; the others wait until they are cancelled
+            val first = executor.replay(jobs) { game ->
+                if (started.getAndIncrement() > 0) {
+                    try {
+                        Thread.sleep(60_000)
+                    } catch (e: InterruptedException) {
+                        interrupted.countDown()
+                    }
+                }
+                game
+            }.use { it.first() }
+
+            assertTrue(first.result.isSuccess)
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS))
+        }
+    }
+
+    @Test
+    fun resultsCanOnlyBeIteratedOnce() {
+        ReplayExecutor.create().use { executor ->
+            val results = executor.summarize(emptySequence())
+            assertEquals(0, results.count())
+            assertThrows(IllegalStateException::class.java) { results.count() }
+        }
+    }
+
+    @Test
+    fun platformThreadExecutor() {
+        ReplayExecutor.createWithPlatformThreads(2).use { executor ->
+            assertFalse(executor.usesVirtualThreads)
+            assertEquals(2, executor.maxConcurrency)
+            val result = executor.replay(sequenceOf(ReplayJob.fromStartPosition("g1f3"))).single()
+            assertEquals(1, assertSuccess(result.result).history.size)
+        }
+    }
+
+    @Test
+    fun invalidConcurrencyIsRejected() {
+        assertThrows(IllegalArgumentException::class.java) { ReplayExecutor.create(0) }
+    }
+}
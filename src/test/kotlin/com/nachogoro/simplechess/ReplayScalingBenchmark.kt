@@ -0,0 +1,46 @@
+package com.nachogoro.simplechess
+
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+/**
+ * Measures the throughput of [ReplayExecutor] as concurrency grows.
+ *
+ * Not part of the regular test run; execute with `./gradlew benchmark`.
+ */
+@Tag("benchmark")
+class ReplayScalingBenchmark {
+
+    private val moves = "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6 c1e3 e7e5 d4b3 c8e6 f2f3 f8e7 " +
+        "d1d2 e8g8 e1c1 b8d7 g2g4 b7b5 g4g5 b5b4 c3e2 f6e8 f3f4 a6a5 f4f5 a5a4"
+
+    @Test
+    fun throughputScalesWithConcurrency() {
+        val cores = Runtime.getRuntime().availableProcessors()
+        val jobCount = 2_000
+        val jobs = List(jobCount) { ReplayJob.fromStartPosition(moves) }
+
+        // Warm up JNA and the JIT
+        ReplayExecutor.create(cores).use { it.summarize(jobs.asSequence().take(200)).count() }
+
+        var baseline = 0.0
+        var concurrency = 1
+        while (concurrency <= cores) {
+            val throughput = ReplayExecutor.create(concurrency).use { executor ->
+                val start = System.nanoTime()
+                val failures = executor.summarize(jobs.asSequence()).count { it.result.isError }
+                val elapsed = System.nanoTime() - start
+                assertEquals(0, failures)
+                jobCount * 1e9 / elapsed
+            }
+            if (concurrency == 1) baseline = throughput
+            println(
+                "concurrency=%2d  %8.0f games/s  speedup=%5.2f  efficiency=%3.0f%%".format(
+                    concurrency, throughput, throughput / baseline, 100 * throughput / baseline / concurrency
+                )
+            )
+            concurrency *= 2
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.promotionMove
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class SanParsingTest {
+
+    @Test
+    fun pawnAdvance() {
+        val game = assertSuccess(Game.newGame())
+
+        val move = assertSuccess(game.parseSan("e4"))
+
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(4, 'e')), move)
+    }
+
+    @Test
+    fun pieceMoveWithCheckSuffix() {
+        val game = assertSuccess(Game.fromFen("q1q5/q4k2/2P5/3r4/2P1B3/5K2/Q7/8 b - - 1 1"))
+
+        val move = assertSuccess(game.parseSan("Qch3+"))
+
+        assertEquals(regularMove(piece(PieceType.QUEEN, Color.BLACK), square(8, 'c'), square(3, 'h')), move)
+    }
+
+    @Test
+    fun fileDisambiguation() {
+        val game = assertSuccess(Game.fromFen("8/4k3/8/8/8/6K1/8/R6R w - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("Rae1"))
+
+        assertEquals(regularMove(piece(PieceType.ROOK, Color.WHITE), square(1, 'a'), square(1, 'e')), move)
+    }
+
+    @Test
+    fun rankDisambiguation() {
+        val game = assertSuccess(Game.fromFen("b4k2/8/2P5/8/b7/8/8/5K2 b - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("B8xc6"))
+
+        assertEquals(regularMove(piece(PieceType.BISHOP, Color.BLACK), square(8, 'a'), square(6, 'c')), move)
+    }
+
+    @Test
+    fun fileAndRankDisambiguation() {
+        val game = assertSuccess(Game.fromFen("b3bk2/8/2P5/8/b7/5K2/8/8 b - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("Ba8xc6+"))
+
+        assertEquals(regularMove(piece(PieceType.BISHOP, Color.BLACK), square(8, 'a'), square(6, 'c')), move)
+    }
+
+    @Test
+    fun ambiguousMoveIsRejected() {
+        val game = assertSuccess(Game.fromFen("8/4k3/8/8/8/6K1/8/R6R w - - 0 1"))
+
+        assertError(game.parseSan("Re1"))
+    }
+
+    @Test
+    fun pawnCapture() {
+        val game = assertSuccess(Game.fromFen("k7/8/8/3p1p2/4N3/8/8/7K b - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("dxe4"))
+
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.BLACK), square(5, 'd'), square(4, 'e')), move)
+    }
+
+    @Test
+    fun enPassantCapture() {
+        val game = assertSuccess(Game.fromFen("7k/8/8/PpP5/8/7K/8/8 w - b6 0 1"))
+
+        val move = assertSuccess(game.parseSan("axb6"))
+
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.WHITE), square(5, 'a'), square(6, 'b')), move)
+    }
+
+    @Test
+    fun promotionWithCapture() {
+        val game = assertSuccess(Game.fromFen("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("bxc8=R+"))
+
+        assertEquals(
+            promotionMove(piece(PieceType.PAWN, Color.WHITE), square(7, 'b'), square(8, 'c'), PieceType.ROOK),
+            move
+        )
+    }
+
+    @Test
+    fun promotionWithoutSeparator() {
+        val game = assertSuccess(Game.fromFen("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1"))
+
+        val move = assertSuccess(game.parseSan("b8N"))
+
+        assertEquals(
+            promotionMove(piece(PieceType.PAWN, Color.WHITE), square(7, 'b'), square(8, 'b'), PieceType.KNIGHT),
+            move
+        )
+    }
+
+    @Test
+    fun promotionWithoutPieceIsRejected() {
+        val game = assertSuccess(Game.fromFen("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1"))
+
+        assertError(game.parseSan("b8"))
+    }
+
+    @Test
+    fun castlingKingside() {
+        val game = assertSuccess(Game.fromFen("8/8/8/8/6k1/8/4PP1P/4K2R w K - 0 1"))
+
+        val move = assertSuccess(game.parseSan("O-O"))
+
+        assertEquals(regularMove(piece(PieceType.KING, Color.WHITE), square(1, 'e'), square(1, 'g')), move)
+    }
+
+    @Test
+    fun castlingQueensideWithZeroes() {
+        val game = assertSuccess(Game.fromFen("r3k1K1/1q6/8/8/8/8/8/8 b q - 0 1"))
+
+        val move = assertSuccess(game.parseSan("0-0-0#"))
+
+        assertEquals(regularMove(piece(PieceType.KING, Color.BLACK), square(8, 'e'), square(8, 'c')), move)
+    }
+
+    @Test
+    fun unavailableCastlingIsRejected() {
+        val game = assertSuccess(Game.fromFen("8/8/8/8/6k1/8/4PP1P/4K2R w K - 0 1"))
+
+        assertError(game.parseSan("O-O-O"))
+    }
+
+    @Test
+    fun illegalMoveIsRejected() {
+        val game = assertSuccess(Game.newGame())
+
+        assertError(game.parseSan("e5"))
+        assertError(game.parseSan("Nd2"))
+    }
+
+    @Test
+    fun malformedNotationIsRejected() {
+        val game = assertSuccess(Game.newGame())
+
+        assertError(game.parseSan(""))
+        assertError(game.parseSan("Zf3"))
+        assertError(game.parseSan("Ni3"))
+        assertError(game.parseSan("+"))
+    }
+
+    @Test
+    fun makeSanMoveWithDrawOffer() {
+        val game = assertSuccess(Game.fromFen("8/8/3K4/8/Q7/8/p7/1k6 w - - 0 1"))
+
+        val updatedGame = assertSuccess(game.makeSanMove("Qb4+", offerDraw = true))
+
+        assertEquals("Qb4+(=)", updatedGame.history.last().second.algebraicNotation)
+        assertEquals(DrawReason.OFFERED_AND_ACCEPTED, updatedGame.drawClaimReason)
+    }
+
+    @Test
+    fun replayNotationProducedByTheLibrary() {
+        var game = assertSuccess(Game.newGame())
+        for (san in listOf("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Bxc6", "dxc6", "O-O")) {
+            game = assertSuccess(game.makeSanMove(san))
+        }
+
+        val replayed = game.history.fold(assertSuccess(Game.newGame())) { current, (_, playedMove) ->
+            assertSuccess(current.makeSanMove(playedMove.algebraicNotation))
+        }
+
+        assertEquals(game.currentPosition.fen, replayed.currentPosition.fen)
+    }
+}
@@ -0,0 +1,90 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class SuccessorCacheTest {
+
+    @Test
+    fun leastRecentlyUsedSuccessorsAreEvicted() {
+        val values = List(3) { Any() }
+        val slots = SuccessorSlots<Any>(2, SuccessorRetention.SOFT)
+        val before = SuccessorCache.stats
+
+        assertNull(slots.get(0))
+        assertNotNull(slots.put(0, values[0], 100))
+        assertNotNull(slots.put(1, values[1], 100))
+        assertSame(values[0], slots.get(0))
+        // The cache is full, and 1 was used less recently than 0
+        assertNotNull(slots.put(2, values[2], 100))
+        assertNull(slots.get(1))
+        assertSame(values[0], slots.get(0))
+        assertSame(values[2], slots.get(2))
+
+        val after = SuccessorCache.stats
+        assertEquals(3, after.hits - before.hits)
+        assertEquals(2, after.misses - before.misses)
+        assertEquals(1, after.evictions - before.evictions)
+        assertEquals(2, after.entries - before.entries)
+        assertEquals(200, after.estimatedMemoryBytes - before.estimatedMemoryBytes)
+    }
+
+    @Test
+    fun memoryIsReleasedOnce() {
+        val slots = SuccessorSlots<Any>(4, SuccessorRetention.WEAK)
+        val value = Any()
+        val before = SuccessorCache.stats.estimatedMemoryBytes
+
+        val release = checkNotNull(slots.put(0, value, 300))
+        assertEquals(before + 300, SuccessorCache.stats.estimatedMemoryBytes)
+        release.run()
+        release.run()
+        assertEquals(before, SuccessorCache.stats.estimatedMemoryBytes)
+    }
+
+    @Test
+    fun memoryCapRejectsNewSuccessors() {
+        val slots = SuccessorSlots<Any>(4, SuccessorRetention.SOFT)
+        val rejections = SuccessorCache.stats.rejections
+        SuccessorCache.maxMemoryBytes = SuccessorCache.stats.estimatedMemoryBytes + 150
+        try {
+            val first = Any()
+            val release = checkNotNull(slots.put(0, first, 100))
+            assertNull(slots.put(1, Any(), 100))
+            assertEquals(rejections + 1, SuccessorCache.stats.rejections)
+            assertSame(first, slots.get(0))
+            assertNull(slots.get(1))
+            release.run()
+        } finally {
+            SuccessorCache.maxMemoryBytes = SuccessorCache.DEFAULT_MAX_MEMORY_BYTES
+        }
+    }
+
+    @Test
+    fun optionsAreValidated() {
+        assertEquals(0, GameOptions.DEFAULT.successorCacheSize)
+        assertEquals(GameOptions.DEFAULT_SUCCESSOR_CACHE_SIZE, GameOptions.cachedSuccessors().successorCacheSize)
+        assertThrows(IllegalArgumentException::class.java) { GameOptions(successorCacheSize = -1) }
+        assertThrows(IllegalArgumentException::class.java) { GameOptions.cachedSuccessors(0) }
+        assertThrows(IllegalArgumentException::class.java) { SuccessorCache.maxMemoryBytes = -1 }
+    }
+
+    @Test
+    fun repeatedMovesReturnTheCachedGame() {
+        val game = assertSuccess(Game.newGame(GameOptions.cachedSuccessors()))
+        val e4 = checkNotNull(game.findMove(Square.fromRankAndFile(2, 'e'), Square.fromRankAndFile(4, 'e')))
+
+        val first = assertSuccess(game.makeMove(e4))
+        assertSame(first, assertSuccess(game.makeMove(e4)))
+        // A draw offer leads to a different game
+        val offered = assertSuccess(game.makeMove(e4, offerDraw = true))
+        assertNotSame(first, offered)
+        assertTrue(offered.lastMove!!.offersDraw)
+        assertSame(offered, assertSuccess(game.makeMove(e4, offerDraw = true)))
+
+        // Without the option every move creates a new game
+        val uncached = assertSuccess(Game.newGame())
+        assertNotSame(assertSuccess(uncached.makeMove(e4)), assertSuccess(uncached.makeMove(e4)))
+    }
+}
@@ -0,0 +1,286 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.Random
+
+/**
+ * The tables are written by the tests themselves. No published Syzygy file is
+ * checked in, so the decoder is only checked against this suite's reading of
+ * the format.
+ */
+class TablebaseTest {
+
+    private fun withDirectory(block: (Path) -> Unit) {
+        val directory = Files.createTempDirectory("syzygy")
+        try {
+            block(directory)
+        } finally {
+            directory.toFile().deleteRecursively()
+        }
+    }
+
+    private fun position(fen: String): Position = assertSuccess(Position.fromFen(fen))
+
+    /**
+     * Writes a KQvK table pair storing a single value per side to move:
+     * white (the side with the queen) wins and, in DTZ, zeroes in [dtzMoves] moves.
+     */
+    private fun writeKqvk(directory: Path, dtzMoves: Int = 5) {
+        // King, queen and king, with the same order for both sides to move
+        val header = intArrayOf(0x00, 0x66, 0x55, 0xee)
+        Files.write(directory.resolve("KQvK.rtbw"), table(WDL_MAGIC, 0x01, header, intArrayOf(0x80, 4, 0x80, 0)))
+        Files.write(directory.resolve("KQvK.rtbz"), table(DTZ_MAGIC, 0x01, header, intArrayOf(0x80, dtzMoves)))
+    }
+
+    private fun table(magic: IntArray, flags: Int, header: IntArray, sizes: IntArray): ByteArray {
+        val bytes = ByteArray(80)
+        magic.forEachIndexed { i, b -> bytes[i] = b.toByte() }
+        bytes[4] = flags.toByte()
+        header.forEachIndexed { i, b -> bytes[5 + i] = b.toByte() }
+        sizes.forEachIndexed { i, b -> bytes[10 + i] = b.toByte() }
+        return bytes
+    }
+
+    /**
+     * Writes a KQvK WDL table whose values (one array per side to move) are
+     * compressed as in real tables: runs of values are paired into symbols,
+     * which are Huffman-coded into fixed-size blocks located through a sparse
+     * index. The sides use different block and span sizes.
+     */
+    private fun writeCompressedKqvk(path: Path, values: Array<IntArray>) {
+        val blocks = values.indices.map { encodeBlocks(values[it], 1 shl BLOCK_BITS[it]) }
+        val out = ByteBuffer.allocate(1 shl 17).order(ByteOrder.LITTLE_ENDIAN)
+        WDL_MAGIC.forEach { out.put(it.toByte()) }
+        // Flags, piece order and pieces of both sides, then padding to an even offset
+        intArrayOf(0x01, 0x00, 0x66, 0x55, 0xee, 0x00).forEach { out.put(it.toByte()) }
+
+        for (side in values.indices) {
+            out.put(0).put(BLOCK_BITS[side].toByte()).put(SPAN_BITS[side].toByte())
+            out.put(1).putInt(blocks[side].size) // One padding block length
+            val lengths = SYMBOL_CODES.map { it.length }
+            out.put(lengths.max().toByte()).put(lengths.min().toByte())
+            for (length in lengths.min()..lengths.max()) out.putShort(lengths.indexOf(length).toShort())
+            out.putShort(SYMBOLS.size.toShort())
+            for ((left, right) in SYMBOLS) {
+                out.put(left.toByte()).put(((left ushr 8) or ((right and 0xf) shl 4)).toByte()).put((right ushr 4).toByte())
+            }
+            if (SYMBOLS.size % 2 == 1) out.put(0)
+        }
+
+        for (side in values.indices) {
+            val starts = blocks[side].runningFold(0) { start, block -> start + block.first }
+            val span = 1 shl SPAN_BITS[side]
+            // Each entry locates the middle index of its span
+            for (k in 0 until (values[side].size + span - 1) / span) {
+                val middle = k * span + span / 2
+                val block = minOf(starts.indexOfLast { it <= middle }, blocks[side].size - 1)
+                out.putInt(block).putShort((middle - starts[block]).toShort())
+            }
+        }
+        for (side in values.indices) {
+            for ((count, _) in blocks[side]) out.putShort((count - 1).toShort())
+            out.putShort(0)
+        }
+        for (side in values.indices) {
+            while (out.position() % 64 != 0) out.put(0)
+            for ((_, bits) in blocks[side]) {
+                val padded = bits.padEnd(8 shl BLOCK_BITS[side], '0')
+                padded.chunked(8).forEach { out.put(it.toInt(2).toByte()) }
+            }
+        }
+
+        // Room for reading ahead of the last block, and the size of a table file
+        out.position(out.position() + 8)
+        while (out.position() % 64 != 16) out.put(0)
+        Files.write(path, out.array().copyOf(out.position()))
+    }
+
+    /**
+     * Encodes values greedily with the symbol expanding to the most of them,
+     * returning the number of values and the bits of each block.
+     */
+    private fun encodeBlocks(values: IntArray, blockSize: Int): List<Pair<Int, String>> {
+        val expansions = SYMBOLS.indices.map { expand(it) }
+        val longestFirst = SYMBOLS.indices.sortedByDescending { expansions[it].size }
+        val blocks = ArrayList<Pair<Int, String>>()
+        var i = 0
+        while (i < values.size) {
+            val start = i
+            val bits = StringBuilder()
+            while (i < values.size) {
+                val symbol = longestFirst.first { s ->
+                    expansions[s].withIndex().all { (k, value) -> i + k < values.size && values[i + k] == value }
+                }
+                if (bits.length + SYMBOL_CODES[symbol].length > 8 * blockSize) break
+                bits.append(SYMBOL_CODES[symbol])
+                i += expansions[symbol].size
+            }
+            blocks.add(Pair(i - start, bits.toString()))
+        }
+        return blocks
+    }
+
+    private fun expand(symbol: Int): List<Int> {
+        val (left, right) = SYMBOLS[symbol]
+        return if (right == LEAF) listOf(left) else expand(left) + expand(right)
+    }
+
+    /** WDL values (0 to 4) in runs of draws and wins, as in real tables. */
+    private fun tableValues(count: Int, seed: Long): IntArray {
+        val random = Random(seed)
+        val values = IntArray(count)
+        var i = 0
+        while (i < count) {
+            val value = random.nextInt(5)
+            val run = 1 + random.nextInt(if (value == 0 || value == 4) 9 else 2)
+            for (k in 0 until minOf(run, count - i)) values[i + k] = value
+            i += run
+        }
+        return values
+    }
+
+    @Test
+    fun tablesAreListedWithoutBeingRead() = withDirectory { directory ->
+        writeKqvk(directory)
+        Files.write(directory.resolve("KRvK.rtbw"), ByteArray(3))
+        Files.write(directory.resolve("notes.txt"), ByteArray(3))
+
+        val tablebase = Tablebase.open(directory)
+
+        assertEquals(2, tablebase.tableCount)
+        assertEquals(3, tablebase.maxPieces)
+        assertTrue(tablebase.covers(position("8/8/8/4k3/8/8/8/KQ6 w - - 0 1")))
+        assertTrue(tablebase.covers(position("kq6/8/8/8/4K3/8/8/8 w - - 0 1")))
+        assertFalse(tablebase.covers(position("8/8/8/4k3/8/8/8/KN6 w - - 0 1")))
+        assertFalse(tablebase.covers(position("r3k3/8/8/8/8/8/8/KQ6 w q - 0 1")))
+    }
+
+    @Test
+    fun probesFromBothSides() = withDirectory { directory ->
+        writeKqvk(directory)
+        val tablebase = Tablebase.open(directory)
+
+        assertEquals(WdlScore.WIN, assertSuccess(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/KQ6 w - - 0 1"))))
+        assertEquals(WdlScore.LOSS, assertSuccess(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/KQ6 b - - 0 1"))))
+
+        // Same material with colors swapped
+        assertEquals(WdlScore.LOSS, assertSuccess(tablebase.probeWdl(position("kq6/8/8/8/4K3/8/8/8 w - - 0 1"))))
+        assertEquals(WdlScore.WIN, assertSuccess(tablebase.probeWdl(position("kq6/8/8/8/4K3/8/8/8 b - - 0 1"))))
+    }
+
+    @Test
+    fun capturesAreSearched() = withDirectory { directory ->
+        writeKqvk(directory)
+        val tablebase = Tablebase.open(directory)
+
+        // The black king takes the undefended queen, leaving KvK
+        assertEquals(WdlScore.DRAW, assertSuccess(tablebase.probeWdl(position("7K/8/8/8/8/8/1Qk5/8 b - - 0 1"))))
+        assertEquals(0, assertSuccess(tablebase.probeDtz(position("7K/8/8/8/8/8/1Qk5/8 b - - 0 1"))))
+    }
+
+    @Test
+    fun dtzIsInPlies() = withDirectory { directory ->
+        writeKqvk(directory, dtzMoves = 5)
+        val tablebase = Tablebase.open(directory)
+
+        // Stored in moves for the winning side: 2 * 5 + 1 plies
+        assertEquals(11, assertSuccess(tablebase.probeDtz(position("8/8/8/4k3/8/8/8/KQ6 w - - 0 1"))))
+
+        // Only white to move is stored, so the losing side searches one ply
+        assertEquals(-12, assertSuccess(tablebase.probeDtz(position("8/8/8/4k3/8/8/8/KQ6 b - - 0 1"))))
+
+        val result = assertSuccess(tablebase.probe(position("8/8/8/4k3/8/8/8/KQ6 w - - 0 1")))
+        assertEquals(WdlScore.WIN, result.wdl)
+        assertEquals(11, result.dtz)
+    }
+
+    @Test
+    fun compressedValuesAreDecoded() = withDirectory { directory ->
+        // Three unique pieces: 31332 positions per side to move
+        val values = arrayOf(tableValues(31332, seed = 1), tableValues(31332, seed = 2))
+        val path = directory.resolve("KQvK.rtbw")
+        writeCompressedKqvk(path, values)
+
+        val table = SyzygyMaterial("KQvK", path, null).wdlTable()
+        val mismatches = ArrayList<String>()
+        for (side in values.indices) {
+            for (index in values[side].indices) {
+                val value = table.storedValue(side, 0, index.toLong())
+                if (value != values[side][index]) mismatches.add("side $side, index $index: $value")
+            }
+        }
+        assertEquals(emptyList<String>(), mismatches.take(10))
+    }
+
+    @Test
+    fun bareKingsAreDrawnWithoutTables() = withDirectory { directory ->
+        val tablebase = Tablebase.open(directory)
+
+        assertEquals(0, tablebase.tableCount)
+        assertEquals(WdlScore.DRAW, assertSuccess(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/K7 w - - 0 1"))))
+        assertEquals(0, assertSuccess(tablebase.probeDtz(position("8/8/8/4k3/8/8/8/K7 w - - 0 1"))))
+    }
+
+    @Test
+    fun uncoveredPositionsAreErrors() = withDirectory { directory ->
+        writeKqvk(directory)
+        val tablebase = Tablebase.open(directory)
+
+        assertError(tablebase.probeWdl(position("r3k3/8/8/8/8/8/8/KQ6 w q - 0 1")), ErrorKind.UNSUPPORTED_POSITION)
+        assertError(tablebase.probeWdl(position("4k3/8/8/8/8/8/8/KQR5 w - - 0 1")), ErrorKind.UNSUPPORTED_POSITION)
+        assertError(tablebase.probeDtz(position("4k3/8/8/8/8/8/8/KQR5 w - - 0 1")), ErrorKind.UNSUPPORTED_POSITION)
+        assertError(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/KR6 w - - 0 1")))
+    }
+
+    @Test
+    fun corruptTablesAreErrors() = withDirectory { directory ->
+        Files.write(directory.resolve("KQvK.rtbw"), ByteArray(80))
+        Files.write(directory.resolve("KRvK.rtbw"), ByteArray(81))
+        val tablebase = Tablebase.open(directory)
+
+        assertError(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/KQ6 w - - 0 1")))
+        assertError(tablebase.probeWdl(position("8/8/8/4k3/8/8/8/KR6 w - - 0 1")))
+    }
+
+    @Test
+    fun gameExposesTablebaseResult() = withDirectory { directory ->
+        writeKqvk(directory)
+        val tablebase = Tablebase.open(directory)
+
+        val game = assertSuccess(Game.fromFen("8/8/8/4k3/8/8/8/KQ6 w - - 0 1"))
+        assertEquals(WdlScore.WIN, game.tablebaseResult(tablebase)?.wdl)
+        assertNull(assertSuccess(Game.newGame()).tablebaseResult(tablebase))
+    }
+
+    private companion object {
+        val WDL_MAGIC = intArrayOf(0x71, 0xe8, 0x23, 0x5d)
+        val DTZ_MAGIC = intArrayOf(0xd7, 0x66, 0x0c, 0xa5)
+
+        /** Right child of the symbols which are leaves, whose left child is their value. */
+        const val LEAF = 0xfff
+
+        /**
+         * Symbols of the compressed tables, as (left, right) children: values,
+         * or pairs of symbols such as 8 (four wins) and 4 (four wins then a draw).
+         */
+        val SYMBOLS = listOf(
+            1 to LEAF, 3 to LEAF, 0 to LEAF, 2 to 2, 8 to 5, 2 to LEAF, 4 to LEAF, 6 to 6, 7 to 7
+        )
+
+        /** Canonical Huffman code of each symbol, longest codes on the lowest symbols. */
+        val SYMBOL_CODES = listOf("00000", "00001", "0001", "0010", "0011", "010", "011", "10", "11")
+
+        /** Log2 of the block size, in bytes, of each side to move. */
+        val BLOCK_BITS = intArrayOf(5, 6)
+
+        /** Log2 of the number of indexes spanned by each sparse index entry, for each side to move. */
+        val SPAN_BITS = intArrayOf(9, 6)
+    }
+}
@@ -13,6 +13,16 @@ object TestUtils {
         assertTrue(result.isError, "Expected Error but got Success: ${result.getOrNull()}")
     }
 
+    /**
+     * Asserts that a ChessResult is an Error of the given kind, built without an exception.
+     */
+    fun <T> assertError(result: ChessResult<T>, kind: ErrorKind) {
+        assertError(result)
+        val error = result as ChessResult.Error
+        assertEquals(kind, error.kind, error.message)
+        assertNull(error.cause)
+    }
+
     /**
      * Asserts that a ChessResult is a Success and returns the value.
      */
@@ -0,0 +1,100 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import com.nachogoro.simplechess.TestUtils.piece
+import com.nachogoro.simplechess.TestUtils.promotionMove
+import com.nachogoro.simplechess.TestUtils.regularMove
+import com.nachogoro.simplechess.TestUtils.square
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class UciNotationTest {
+
+    @Test
+    fun regularMoveToUci() {
+        val move = regularMove(piece(PieceType.KNIGHT, Color.WHITE), square(1, 'g'), square(3, 'f'))
+
+        assertEquals("g1f3", move.toUci())
+    }
+
+    @Test
+    fun promotionToUci() {
+        val move = promotionMove(piece(PieceType.PAWN, Color.BLACK), square(2, 'a'), square(1, 'a'), PieceType.KNIGHT)
+
+        assertEquals("a2a1n", move.toUci())
+    }
+
+    @Test
+    fun regularMoveFromUci() {
+        val game = assertSuccess(Game.newGame())
+
+        val move = assertSuccess(Move.fromUci("e2e4", game.currentPosition))
+
+        assertEquals(regularMove(piece(PieceType.PAWN, Color.WHITE), square(2, 'e'), square(4, 'e')), move)
+    }
+
+    @Test
+    fun promotionFromUci() {
+        val game = assertSuccess(Game.fromFen("2rk4/1P6/8/5K2/8/8/8/8 w - - 0 1"))
+
+        val move = assertSuccess(Move.fromUci("b7c8q", game.currentPosition))
+
+        assertEquals(
+            promotionMove(piece(PieceType.PAWN, Color.WHITE), square(7, 'b'), square(8, 'c'), PieceType.QUEEN),
+            move
+        )
+    }
+
+    @Test
+    fun invalidUciIsRejected() {
+        val position = assertSuccess(Game.newGame()).currentPosition
+
+        assertError(Move.fromUci("e2e", position))
+        assertError(Move.fromUci("e2e9", position))
+        assertError(Move.fromUci("e2e4k", position))
+        // Empty origin square
+        assertError(Move.fromUci("e4e5", position))
+        // Only pawns can be promoted
+        assertError(Move.fromUci("g1f3q", position))
+    }
+
+    @Test
+    fun replayFromStartPosition() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 e1g1"))
+
+        assertEquals(7, game.history.size)
+        assertEquals("O-O", game.history.last().second.algebraicNotation)
+        assertEquals(
+            "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQ1RK1 b kq - 1 4",
+            game.currentPosition.fen
+        )
+    }
+
+    @Test
+    fun replayFromFenWithPromotion() {
+        val game = assertSuccess(Game.fromUciMoves("8/1B1K4/7N/8/1RnP1P1q/4P3/p3k3/8 b - - 15 26", "  a2a1q\td7c7  "))
+
+        assertEquals(2, game.history.size)
+        assertEquals(
+            promotionMove(piece(PieceType.PAWN, Color.BLACK), square(2, 'a'), square(1, 'a'), PieceType.QUEEN),
+            game.history.first().second.move
+        )
+    }
+
+    @Test
+    fun replayWithoutMoves() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", ""))
+
+        assertEquals(0, game.history.size)
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", game.currentPosition.fen)
+    }
+
+    @Test
+    fun replayWithIllegalMoveFails() {
+        assertError(Game.fromUciMoves("startpos", "e2e4 e7e5 e4e5"))
+        assertError(Game.fromUciMoves("startpos", "e2e4 e5e4"))
+        assertError(Game.fromUciMoves("startpos", "e2e4 xyz"))
+        assertError(Game.fromUciMoves("not a fen", "e2e4"))
+    }
+}
@@ -0,0 +1,64 @@
+package com.nachogoro.simplechess
+
+import com.nachogoro.simplechess.TestUtils.assertError
+import com.nachogoro.simplechess.TestUtils.assertSuccess
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.*
+
+class UndoTest {
+
+    private fun play(game: Game, vararg sans: String): List<Game> {
+        val games = mutableListOf(game)
+        for (san in sans) games.add(assertSuccess(games.last().makeSanMove(san)))
+        return games
+    }
+
+    @Test
+    fun undoReturnsTheRetainedParent() {
+        for (retention in listOf(ParentRetention.STRONG, ParentRetention.SOFT, ParentRetention.WEAK)) {
+            val games = play(assertSuccess(Game.newGame(GameOptions(parentRetention = retention))), "e4", "e5", "Nf3")
+
+            assertSame(games[2], games[3].parent)
+            assertSame(games[2], assertSuccess(games[3].undo()))
+            assertSame(games[0], assertSuccess(games[1].undo()))
+        }
+    }
+
+    @Test
+    fun collectedParentsAreRebuilt() {
+        val games = play(assertSuccess(Game.newGame(GameOptions(parentRetention = ParentRetention.NONE))), "e4", "e5", "Nf3", "Nc6")
+        val last = games.last()
+
+        val previous = assertSuccess(last.undo())
+        assertNotSame(games[3], previous)
+        assertEquals(games[3].fen, previous.fen)
+        assertEquals(games[3].history, previous.history)
+        assertEquals(ParentRetention.NONE, previous.options.parentRetention)
+
+        // Stepping all the way back
+        var game: Game = last
+        while (game.plyCount > 0) game = assertSuccess(game.undo())
+        assertEquals(Fen.STANDARD_START, game.fen)
+        assertNull(game.parent)
+        assertError(game.undo())
+    }
+
+    @Test
+    fun undoSkipsResignationsAndDrawClaims() {
+        val games = play(assertSuccess(Game.newGame()), "e4", "e5")
+        val resigned = assertSuccess(games[2].resign(Color.WHITE))
+
+        assertSame(games[2], resigned.parent)
+        assertSame(games[1], assertSuccess(resigned.undo()))
+    }
+
+    @Test
+    fun factoryGamesHaveRebuiltParents() {
+        val game = assertSuccess(Game.fromUciMoves("startpos", "e2e4 e7e5 g1f3"))
+
+        val parent = assertSuccess(game.undo())
+        assertEquals(2, parent.plyCount)
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2", parent.fen)
+        assertNull(assertSuccess(Game.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1")).parent)
+    }
+}